@@ -31,6 +31,16 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        unitTests {
+            isIncludeAndroidResources = true
+            // -Pworkload.sizes=..., -Pworkload.budget.<op>=ms etc. reach WorkloadReplayTest
+            all {
+                providers.gradlePropertiesPrefixedBy("workload.").get()
+                    .forEach { (name, value) -> systemProperty(name, value) }
+            }
+        }
+    }
 }
 
 dependencies {
@@ -40,6 +50,7 @@ dependencies {
     implementation(libs.activity)
     implementation(libs.constraintlayout)
     testImplementation(libs.junit)
+    testImplementation(libs.robolectric)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
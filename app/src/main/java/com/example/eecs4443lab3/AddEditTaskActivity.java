@@ -5,6 +5,7 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.view.View;
+import android.widget.TextView;
 
 import androidx.appcompat.app.AppCompatActivity;
 
@@ -25,6 +26,12 @@ import java.util.GregorianCalendar;
  * and optional Notes. When saved, returns data to the caller via
  * setResult(...).
  *
+ * Editing: started with {@link MainActivity#EXTRA_TASK_ID} (+ EXTRA_MODE), the
+ * form is prefilled from {@link TaskCache}; on save the edited task is
+ * published through {@link TaskRepository} (the list screen saves it right
+ * away) and only its id is returned, so large notes never travel through an
+ * Intent.
+ *
  * Layout: activity_add_edit_task.xml
  * - inputTitle (TextInputEditText, required)
  * - inputDeadline (TextInputEditText, opens DatePicker)
@@ -39,6 +46,10 @@ public class AddEditTaskActivity extends AppCompatActivity {
     private TextInputEditText inputNotes;
     private MaterialButton btnSave;
 
+    // Set when editing an existing task (null while it is being looked up)
+    private MainActivity.Mode editMode;
+    private Task editing;
+
     // Holds the currently picked date for the deadline
     private final Calendar picked = new GregorianCalendar();
 
@@ -53,6 +64,16 @@ public class AddEditTaskActivity extends AppCompatActivity {
         inputNotes = findViewById(R.id.inputNotes);
         btnSave = findViewById(R.id.btnSave);
 
+        long editId = getIntent().getLongExtra(MainActivity.EXTRA_TASK_ID, -1);
+        if (editId >= 0) {
+            editMode = MainActivity.Mode.valueOf(getIntent().getStringExtra(MainActivity.EXTRA_MODE));
+            TextView txtBanner = findViewById(R.id.txtBanner);
+            txtBanner.setText("Edit Task");
+            btnSave.setText("Update Task");
+            btnSave.setEnabled(false); // until the task is loaded
+            TaskCache.resolve(this, editMode, editId, this::prefill);
+        }
+
         // Open the date picker when either the deadline field or its container is
         // tapped
         View deadlineContainer = findViewById(R.id.tilDeadline);
@@ -73,6 +94,17 @@ public class AddEditTaskActivity extends AppCompatActivity {
                 return;
             }
 
+            if (editMode != null) {
+                TaskRepository.get().submitEdit(editMode,
+                        new Task(editing.id, title, deadline, notes, editing.status));
+                Intent data = new Intent();
+                data.putExtra(MainActivity.EXTRA_TASK_ID, editing.id);
+                data.putExtra(MainActivity.EXTRA_MODE, editMode.name());
+                setResult(RESULT_OK, data);
+                finish();
+                return;
+            }
+
             Intent data = new Intent();
             data.putExtra(MainActivity.EXTRA_TITLE, title);
             data.putExtra(MainActivity.EXTRA_DEADLINE, deadline);
@@ -91,6 +123,24 @@ public class AddEditTaskActivity extends AppCompatActivity {
         toolbar.setNavigationOnClickListener(v -> finish());
     }
 
+    /** Fills the form with the task being edited (skipped if the user already typed). */
+    private void prefill(Task t) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        if (t == null) {
+            Snackbar.make(btnSave, "Task not found", Snackbar.LENGTH_LONG).show();
+            return;
+        }
+        editing = t;
+        if (TextUtils.isEmpty(safeText(inputTitle))) {
+            inputTitle.setText(t.title);
+            inputDeadline.setText(t.deadline);
+            inputNotes.setText(t.notes);
+        }
+        btnSave.setEnabled(true);
+    }
+
     /**
      * Shows a DatePickerDialog and writes the selected date to the deadline field.
      */
@@ -0,0 +1,133 @@
+package com.example.eecs4443lab3;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bulk edits from the selection mode
+ * ---------------------------------
+ * One action (mark done, set a deadline, delete) over the selected tasks,
+ * saved as one change set, so the store applies it as a single write (one
+ * transaction in SQLite) however many tasks are selected.
+ *
+ * - The in-memory list is rewritten in one pass ({@link #applyTo}) and the
+ *   adapter told once, from the first selected position on.
+ * - Edited tasks keep what they were loaded with: a list row stays a row,
+ *   and the stores keep its notes without reading them.
+ * - Tasks the action would not change (already done, same deadline) are
+ *   not written.
+ */
+final class BulkEdit {
+
+    enum Action {
+        DONE, DEADLINE, DELETE
+    }
+
+    final Action action;
+    private final String deadline; // DEADLINE only; "" clears it
+
+    private BulkEdit(Action action, String deadline) {
+        this.action = action;
+        this.deadline = deadline;
+    }
+
+    static BulkEdit markDone() {
+        return new BulkEdit(Action.DONE, null);
+    }
+
+    /** Gives every selected task {@code deadline} (picker text, or "" for none). */
+    static BulkEdit setDeadline(String deadline) {
+        return new BulkEdit(Action.DEADLINE, deadline == null ? "" : deadline);
+    }
+
+    static BulkEdit delete() {
+        return new BulkEdit(Action.DELETE, null);
+    }
+
+    /** False when the ids alone are enough (a delete); otherwise the rows must be read first. */
+    boolean needsRows() {
+        return action != Action.DELETE;
+    }
+
+    /** {@code t} after this edit: {@code t} itself if unchanged, null if deleted. */
+    Task apply(Task t) {
+        switch (action) {
+            case DONE:
+                return TaskDbHelper.statusCode(t.status) == TaskDbHelper.STATUS_DONE
+                        ? t : t.withStatus(TaskDbHelper.statusText(TaskDbHelper.STATUS_DONE));
+            case DEADLINE:
+                return Objects.equals(deadline, t.deadline == null ? "" : t.deadline)
+                        ? t : t.withDeadline(deadline);
+            default:
+                return null;
+        }
+    }
+
+    /** Records this edit of {@code rows}, as read from the store, in {@code changes}. */
+    void record(Collection<Task> rows, TaskChangeSet changes) {
+        for (Task t : rows) {
+            record(t, apply(t), changes);
+        }
+    }
+
+    /**
+     * Applies this edit, in place, to the tasks of {@code list} whose id is
+     * in {@code ids}, recording the writes in {@code changes}. Returns the
+     * first position holding a selected task, from which on rows may have
+     * changed, moved or gone (0 for a sorted {@link TaskIndex.View}, where
+     * an edited row may move anywhere), or -1 if none was in the list.
+     */
+    int applyTo(List<Task> list, Set<Long> ids, TaskChangeSet changes) {
+        UnaryOperator<Task> recorded = t -> {
+            Task updated = apply(t);
+            record(t, updated, changes);
+            return updated;
+        };
+        if (list instanceof TaskIndex.View) {
+            boolean[] matched = new boolean[1];
+            ((TaskIndex.View) list).rewrite(ids, t -> {
+                matched[0] = true;
+                return recorded.apply(t);
+            });
+            return matched[0] ? 0 : -1;
+        }
+        if (list instanceof TaskTable) {
+            return ((TaskTable) list).rewrite(ids, recorded);
+        }
+        // Any other list: one compacting pass instead of a remove() per row
+        int first = -1;
+        int kept = 0;
+        int size = list.size();
+        for (int i = 0; i < size; i++) {
+            Task old = list.get(i);
+            Task updated = old;
+            if (ids.contains(old.id)) {
+                if (first < 0) {
+                    first = kept;
+                }
+                updated = recorded.apply(old);
+            }
+            if (updated != null) {
+                if (kept != i || updated != old) {
+                    list.set(kept, updated);
+                }
+                kept++;
+            }
+        }
+        if (kept < size) {
+            list.subList(kept, size).clear();
+        }
+        return first;
+    }
+
+    private static void record(Task old, Task updated, TaskChangeSet changes) {
+        if (updated == null) {
+            changes.markDeleted(old.id);
+        } else if (updated != old) {
+            changes.markUpdated(updated);
+        }
+    }
+}
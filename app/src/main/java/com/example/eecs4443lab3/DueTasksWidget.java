@@ -0,0 +1,151 @@
+package com.example.eecs4443lab3;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.view.View;
+import android.widget.RemoteViews;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * "Due soon" home-screen widget
+ * ---------------------------------
+ * The next {@link #ROWS} pending tasks with a deadline up to
+ * {@link #DAYS_AHEAD} days out (overdue ones first), read from
+ * {@link TaskProvider} on a worker thread; {@link MainActivity} only starts
+ * when the widget is tapped.
+ *
+ * - Refreshed when a saved change set could alter what it shows
+ *   ({@link #onTasksChanged}): a shown task changed, or a pending task with
+ *   a deadline was added or edited. Other saves cost nothing.
+ * - The periodic update (see due_tasks_widget_info.xml) moves tasks into
+ *   overdue as days pass.
+ */
+public class DueTasksWidget extends AppWidgetProvider {
+
+    static final int ROWS = 5;
+    static final int DAYS_AHEAD = 30;
+
+    private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "task-widget");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Ids on the widget now; null until the first refresh of this process
+    private static volatile Set<Long> shown;
+
+    @Override
+    public void onUpdate(Context context, AppWidgetManager manager, int[] widgetIds) {
+        PendingResult result = goAsync();
+        Context app = context.getApplicationContext();
+        WORKER.execute(() -> {
+            try {
+                refresh(app, manager, widgetIds);
+            } finally {
+                result.finish();
+            }
+        });
+    }
+
+    /** Called by the SQLite store after it applied {@code changes}, on the writer's thread. */
+    static void onTasksChanged(Context context, TaskChangeSet changes) {
+        if (!affects(changes, shown)) {
+            return;
+        }
+        AppWidgetManager manager = AppWidgetManager.getInstance(context);
+        if (manager == null) {
+            return;
+        }
+        int[] widgetIds = manager.getAppWidgetIds(new ComponentName(context, DueTasksWidget.class));
+        if (widgetIds.length > 0) {
+            Context app = context.getApplicationContext();
+            WORKER.execute(() -> refresh(app, manager, widgetIds));
+        }
+    }
+
+    /** False only when {@code changes} can neither remove a shown task nor add one. */
+    static boolean affects(TaskChangeSet changes, Set<Long> shown) {
+        if (shown == null) {
+            return true;
+        }
+        for (long id : TaskProvider.touchedIds(changes)) {
+            if (shown.contains(id)) {
+                return true;
+            }
+        }
+        for (Task t : changes.inserted()) {
+            if (canShow(t)) {
+                return true;
+            }
+        }
+        for (Task t : changes.updated()) {
+            if (canShow(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean canShow(Task t) {
+        return TaskDbHelper.statusCode(t.status) == TaskDbHelper.STATUS_PENDING
+                && TaskDates.toEpochDay(t.deadline) != null;
+    }
+
+    /** What the widget shows on {@code today}, through the provider. */
+    static List<Task> nextDue(ContentResolver resolver, long today) {
+        List<Task> out = new ArrayList<>(ROWS);
+        try (Cursor c = resolver.query(TaskProvider.CONTENT_URI.buildUpon()
+                        .appendQueryParameter(TaskProvider.PARAM_STATUS, "pending")
+                        .appendQueryParameter(TaskProvider.PARAM_DUE_TO, String.valueOf(today + DAYS_AHEAD))
+                        .appendQueryParameter(TaskProvider.PARAM_LIMIT, String.valueOf(ROWS))
+                        .build(),
+                new String[] { TaskProvider.COLUMN_ID, TaskProvider.COLUMN_TITLE, TaskProvider.COLUMN_DEADLINE },
+                null, null, null)) {
+            while (c != null && c.moveToNext()) {
+                out.add(Task.row(c.getLong(0), c.getString(1), c.getString(2),
+                        TaskDbHelper.statusText(TaskDbHelper.STATUS_PENDING)));
+            }
+        }
+        return out;
+    }
+
+    private static void refresh(Context context, AppWidgetManager manager, int[] widgetIds) {
+        long today = TaskDates.today();
+        List<Task> due;
+        try {
+            due = nextDue(context.getContentResolver(), today);
+        } catch (RuntimeException e) {
+            return; // keep what the widget shows
+        }
+        Set<Long> ids = new HashSet<>();
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_due_tasks);
+        views.removeAllViews(R.id.widgetRows);
+        for (Task t : due) {
+            ids.add(t.id);
+            RemoteViews row = new RemoteViews(context.getPackageName(), R.layout.widget_due_row);
+            row.setTextViewText(R.id.widgetRowTitle, t.title);
+            Long day = TaskDates.toEpochDay(t.deadline);
+            row.setTextViewText(R.id.widgetRowDeadline, day != null && day < today
+                    ? context.getString(R.string.widget_overdue, t.deadline) : t.deadline);
+            views.addView(R.id.widgetRows, row);
+        }
+        views.setViewVisibility(R.id.widgetEmpty, due.isEmpty() ? View.VISIBLE : View.GONE);
+        Intent open = new Intent(context, MainActivity.class).addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        views.setOnClickPendingIntent(R.id.widgetRoot, PendingIntent.getActivity(context, 0, open,
+                PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT));
+        manager.updateAppWidget(widgetIds, views);
+        shown = ids;
+    }
+}
@@ -1,15 +1,27 @@
 package com.example.eecs4443lab3;
 
-import android.content.Context;
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.app.DatePickerDialog;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteOpenHelper;
+import android.graphics.Color;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.OpenableColumns;
+import android.text.InputType;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.EditText;
 import android.widget.TextView;
 
 import androidx.activity.result.ActivityResultLauncher;
@@ -17,6 +29,11 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
+import androidx.appcompat.widget.SearchView;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -25,24 +42,59 @@ import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.materialswitch.MaterialSwitch;
+import com.google.android.material.progressindicator.LinearProgressIndicator;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.Serializable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.DateFormat;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Main screen: Task list with dual persistence options
  * ---------------------------------------------------
  * - Displays a list of tasks
- * - Tap: opens read-only detail screen
- * - Long-press: edit or delete dialog
+ * - Tap: opens read-only detail screen (by task id; see TaskCache)
+ * - Long-press: edit, delete or select dialog. Selecting starts an action mode
+ *   where taps pick rows; mark done, set deadline and delete then run on all of
+ *   them as one save ({@link BulkEdit})
  * - FloatingActionButton: add new task (via AddEditTaskActivity)
- * - MaterialSwitch: toggle between SharedPreferences and SQLite storage
+ * - MaterialSwitch: toggle between SharedPreferences and SQLite storage; the
+ *   new store is brought in line with the old one in the background
+ * - Overflow menu: pick any storage mode, including the append-only journal file;
+ *   import tasks from / export them to a JSON or CSV file (streamed, cancellable)
+ * - Compact in-memory list (overflow menu): non-SQLite modes hold the list in a
+ *   columnar {@link TaskTable} instead of one object per task
+ * - Sort / filter (toolbar): a {@link TaskQuery}, remembered across launches.
+ *   SQLite pages it through an index; the other modes keep a {@link TaskIndex},
+ *   so an add or edit lands in place in O(log n) and switching order only
+ *   swaps the view
+ * - Search bar: full-text search over titles and notes; results replace the list
+ *   until the search is closed
+ * - Cold start: the first screen is drawn from a {@link StartupSnapshot}; the
+ *   store is opened and read in the background and reconciled into the list
+ * - Reminders: pending tasks with a deadline are reminded on the day, through
+ *   one alarm for the soonest ({@link ReminderScheduler})
+ * - Sync (overflow menu): with a server set, saved changes are pushed and other
+ *   devices' changes pulled in the background ({@link SyncEngine}); the list
+ *   is reloaded when something arrived
+ * - Views: the edit dialog and a screen of rows are inflated in the
+ *   background once the screen is idle ({@link ViewPrewarmer}), so the first
+ *   edit and the first fling do not inflate
+ * - Rotation: the loaded list, the persist queue and sync are kept in a
+ *   {@link TaskListViewModel}, so the new activity shows the same list with no
+ *   storage read; saves and edits from other screens go through the shared
+ *   {@link TaskRepository}
  */
 public class MainActivity extends AppCompatActivity {
 
@@ -51,10 +103,13 @@ public class MainActivity extends AppCompatActivity {
     public static final String EXTRA_DEADLINE = "extra_deadline";
     public static final String EXTRA_NOTES = "extra_notes";
     public static final String EXTRA_STATUS = "extra_status";
+    // Detail/edit screens get only these; the task itself goes through TaskCache
+    public static final String EXTRA_TASK_ID = "extra_task_id";
+    public static final String EXTRA_MODE = "extra_mode";
 
-    // Storage mode toggle
-    private enum Mode {
-        SHARED_PREFS, SQLITE
+    // Storage mode toggle; each mode has its own TaskStore
+    enum Mode {
+        SHARED_PREFS, SQLITE, JOURNAL, MAPPED
     }
 
     private Mode currentMode = Mode.SQLITE; // default matches initial switch state
@@ -63,15 +118,79 @@ public class MainActivity extends AppCompatActivity {
     private RecyclerView recyclerView;
     private MaterialSwitch switchMode;
     private FloatingActionButton fab;
+    private LinearProgressIndicator migrationProgress;
+    private boolean syncingSwitch; // true while the switch is set from code
 
-    // Adapter + backing data
-    private final List<Task> tasks = new ArrayList<>();
+    // Adapter + backing data (a keyset-paged view of the table in SQLite mode)
+    private List<Task> tasks = new ArrayList<>();
+    private PagedTaskList pagedTasks;
     private TaskAdapter adapter;
 
-    // Persistence helpers
-    private static final String PREFS_NAME = "tasks_prefs";
-    private static final String PREFS_KEY = "tasks_json";
-    private TaskDbHelper dbHelper;
+    // Rows touched since the last save, plus the next stable id to hand out
+    private final TaskChangeSet changes = new TaskChangeSet();
+    private long nextId = 1;
+    private int writesSubmitted; // change sets handed to the persist queue so far
+
+    // Background loads; only the latest one for the current mode is shown
+    private int loadGeneration;
+    private boolean compactTable; // in-memory modes load into a columnar TaskTable
+    private StartupSnapshot lastSnapshot; // last first-screen snapshot queued for writing
+
+    // List order + filter; non-default queries keep in-memory lists in a TaskIndex
+    private TaskQuery query = TaskQuery.DEFAULT;
+    private boolean scrollToTop; // set when the order changes, cleared by the next load
+    private static final String PREFS_SORT = "sort";
+    private static final String PREFS_FILTER = "filter";
+    private static final int[] SORT_ITEMS = { // by TaskQuery.Sort ordinal
+            R.id.action_sort_added, R.id.action_sort_deadline,
+            R.id.action_sort_title, R.id.action_sort_status };
+    private static final int[] FILTER_ITEMS = { // by TaskQuery.Filter ordinal
+            R.id.action_filter_all, R.id.action_filter_pending,
+            R.id.action_filter_done, R.id.action_filter_overdue };
+
+    // Survives configuration changes; hands out the process's persist queue and sync
+    private TaskListViewModel viewModel;
+    private TaskRepository repository;
+    private final TaskRepository.Listener repositoryListener = this::onTasksChanged;
+    private int appliedGeneration; // load generation the list shows
+
+    // Background writer; mutations within one frame are handed over together
+    private PersistQueue persistQueue;
+    private final Runnable persistIdleListener = () -> recyclerView.post(this::onPersistIdle);
+    private boolean persistScheduled;
+    private static final long FLUSH_TIMEOUT_MS = 5_000;
+
+    // Store-to-store copies started by mode switches and not finished yet
+    private int migrationsRunning;
+
+    // The running import/export, if any (set the flag to cancel it)
+    private AtomicBoolean transferCancel;
+    private Snackbar transferBar;
+    private boolean importing; // the import hands out ids, so adding waits for it
+
+    // Multi-select action mode; ids of the picked rows (SQLite's may not be paged in)
+    private ActionMode selectionMode;
+    private final Set<Long> selected = new HashSet<>();
+
+    // Edit dialog and rows inflated while idle, before they are first needed
+    private ViewPrewarmer prewarmer;
+
+    // Search-as-you-type; while searching, `tasks` holds the current results
+    private TaskSearch search;
+    private MenuItem searchItem;
+    private boolean searching;
+
+    // Background sync with a REST server; off while no endpoint is set
+    private SyncEngine sync;
+    private final SyncEngine.Listener syncListener = (run, error) -> runOnUiThread(() -> onSyncDone(run, error));
+    private boolean syncAsked; // the user tapped "Sync now" and waits for the result
+    private static final String PREFS_SYNC_ENDPOINT = "sync_endpoint";
+
+    // Deadline reminders (process-wide; kept in step with every save)
+    private ReminderScheduler reminders;
+    private boolean notificationsAsked;
+    private final ActivityResultLauncher<String> notificationPermission = registerForActivityResult(
+            new ActivityResultContracts.RequestPermission(), granted -> { });
 
     // Receive results from AddEditTaskActivity
     private final ActivityResultLauncher<Intent> addEditLauncher = registerForActivityResult(
@@ -79,17 +198,57 @@ public class MainActivity extends AppCompatActivity {
                 if (result.getResultCode() == RESULT_OK && result.getData() != null) {
                     Intent data = result.getData();
                     Task t = new Task(
+                            newTaskId(),
                             data.getStringExtra(EXTRA_TITLE),
                             data.getStringExtra(EXTRA_DEADLINE),
                             data.getStringExtra(EXTRA_NOTES),
                             data.getStringExtra(EXTRA_STATUS));
-                    tasks.add(t);
-                    adapter.notifyItemInserted(tasks.size() - 1);
+                    insertRow(t);
+                    changes.markInserted(t);
+                    search.putTask(t);
                     persist();
+                    askForNotifications(t);
                     Snackbar.make(recyclerView, "Task saved", Snackbar.LENGTH_SHORT).show();
                 }
             });
 
+    // System file picker for bulk import / export
+    private final ActivityResultLauncher<String[]> importLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), uri -> {
+                if (uri != null) {
+                    startImport(uri);
+                }
+            });
+    private final ActivityResultLauncher<String> exportJsonLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("application/json"), uri -> {
+                if (uri != null) {
+                    startExport(uri, TaskTransfer.Format.JSON);
+                }
+            });
+    private final ActivityResultLauncher<String> exportCsvLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("text/csv"), uri -> {
+                if (uri != null) {
+                    startExport(uri, TaskTransfer.Format.CSV);
+                }
+            });
+
+    // Detail screen; returns the id of a task edited from there
+    private int detailPosition = RecyclerView.NO_POSITION;
+    private final ActivityResultLauncher<Intent> detailLauncher = registerForActivityResult(
+            new ActivityResultContracts.StartActivityForResult(), result -> {
+                Intent data = result.getData();
+                if (result.getResultCode() == RESULT_OK && data != null
+                        && currentMode.name().equals(data.getStringExtra(EXTRA_MODE))) {
+                    // Usually saved already, when the edit was published (onTasksChanged)
+                    Task edited = TaskCache.takeEdited(currentMode,
+                            data.getLongExtra(EXTRA_TASK_ID, -1));
+                    if (edited != null) {
+                        applyEdit(edited);
+                    }
+                    Snackbar.make(recyclerView, "Task updated", Snackbar.LENGTH_SHORT).show();
+                }
+            });
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -98,38 +257,99 @@ public class MainActivity extends AppCompatActivity {
         // Toolbar
         MaterialToolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
+        Metrics.init(this);
+        toolbar.setOnLongClickListener(v -> {
+            // Hidden debug screen
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
+        });
 
         // View bindings
         recyclerView = findViewById(R.id.recycler);
         switchMode = findViewById(R.id.switchMode);
         fab = findViewById(R.id.fabAdd);
+        migrationProgress = findViewById(R.id.migrationProgress);
+
+        // After a rotation the previous activity's settings and list are taken over
+        viewModel = new ViewModelProvider(this).get(TaskListViewModel.class);
+        persistQueue = viewModel.persistQueue;
+        repository = viewModel.repository;
+        boolean firstInstance = viewModel.mode == null;
+        if (firstInstance) {
+            currentMode = Mode.SQLITE;
+            query = savedQuery();
+        } else {
+            currentMode = viewModel.mode;
+            query = viewModel.query;
+            compactTable = viewModel.compactTable;
+            nextId = viewModel.nextId;
+        }
+        boolean restored = viewModel.tasks != null;
+        if (restored) {
+            tasks = viewModel.tasks;
+            pagedTasks = viewModel.pagedTasks;
+            lastSnapshot = viewModel.lastSnapshot;
+            viewModel.release();
+        } else {
+            // First screen from the last snapshot; the store itself is read in the background
+            showStartupSnapshot();
+            fab.setEnabled(false); // new ids come from the store, so wait for it
+        }
 
         // RecyclerView setup
         adapter = new TaskAdapter(tasks, new TaskAdapter.OnTaskInteraction() {
             @Override
             public void onClick(int position) {
-                MainActivity.this.openDetails(position);
+                if (selectionMode != null) {
+                    toggleSelected(position);
+                } else {
+                    MainActivity.this.openDetails(position);
+                }
             }
 
             @Override
             public void onLongPress(int position) {
-                MainActivity.this.showTaskOptions(position);
+                if (selectionMode != null) {
+                    toggleSelected(position);
+                } else {
+                    MainActivity.this.showTaskOptions(position);
+                }
             }
         });
+        adapter.mode = currentMode;
+        adapter.selectedColor = ContextCompat.getColor(this, R.color.selected_row);
+        if (pagedTasks != null) {
+            pagedTasks.setCallback((position, count) -> adapter.notifyItemRangeInserted(position, count));
+        }
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        recyclerView.setRecycledViewPool(ViewPrewarmer.sharedPool(this));
         recyclerView.setAdapter(adapter);
+        prewarmer = new ViewPrewarmer(this, R.layout.activity_add_edit_task, android.R.layout.simple_list_item_2);
+        adapter.views = prewarmer;
+        prewarmer.start(recyclerView);
         recyclerView.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
 
-        // DB helper
-        dbHelper = new TaskDbHelper(this);
+        // Stores are opened lazily through TaskStores
+        persistQueue.setOnIdle(persistIdleListener);
+        search = new TaskSearch(persistQueue, (query, results) -> showSearchResults(results));
+        sync = viewModel.sync(this);
+        Mode startMode = currentMode;
+        sync.setListener(syncListener);
+        if (firstInstance) {
+            persistQueue.submitWork(() -> sync.setStore(TaskStores.get(this, startMode)));
+            sync.setEndpoint(getPreferences(MODE_PRIVATE).getString(PREFS_SYNC_ENDPOINT, ""));
+            if (sync.isEnabled()) {
+                sync.start();
+            }
+        }
+        reminders = ReminderScheduler.get(this);
+        repository.subscribe(repositoryListener);
 
         // Switch toggles runtime storage (SharedPreferences <-> SQLite)
         switchMode.setOnCheckedChangeListener((buttonView, isChecked) -> {
-            currentMode = isChecked ? Mode.SHARED_PREFS : Mode.SQLITE;
-            Snackbar.make(buttonView,
-                    currentMode == Mode.SHARED_PREFS ? "Using SharedPreferences" : "Using SQLite",
-                    Snackbar.LENGTH_SHORT).show();
-            reloadFromStorage();
+            if (!syncingSwitch) {
+                setMode(isChecked ? Mode.SHARED_PREFS : Mode.SQLITE);
+            }
         });
 
         // Add new task
@@ -138,10 +358,222 @@ public class MainActivity extends AppCompatActivity {
             addEditLauncher.launch(i);
         });
 
-        // Initial load (defaults to SQLite)
-        currentMode = Mode.SQLITE;
-        switchMode.setChecked(false);
-        reloadFromStorage();
+        // Initial load (defaults to SQLite); a retained list is shown as it was
+        syncingSwitch = true;
+        switchMode.setChecked(currentMode != Mode.SQLITE);
+        syncingSwitch = false;
+        if (restored) {
+            fab.setEnabled(true);
+        } else {
+            reloadFromStorage();
+        }
+
+        // Reminder queue, once per process; queued behind the first screen's read
+        if (firstInstance) {
+            persistQueue.submitWork(() -> {
+                try {
+                    reminders.ensureLoaded(TaskStores.get(this, startMode));
+                } catch (IOException ignored) {
+                }
+            });
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        flushNow();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        prewarmer.stop();
+        search.cancel();
+        persistQueue.clearOnIdle(persistIdleListener);
+        sync.clearListener(syncListener);
+        repository.unsubscribe(repositoryListener);
+        if (transferCancel != null && isFinishing()) {
+            transferCancel.set(true);
+        }
+        // The queue and sync outlive the screen; a rotation keeps the list too,
+        // unless it holds search results or a load, copy or import is still to land in it
+        boolean keepList = isChangingConfigurations() && !searching
+                && appliedGeneration == loadGeneration && migrationsRunning == 0
+                && transferCancel == null;
+        if (isChangingConfigurations()) {
+            viewModel.retain(currentMode, query, compactTable, nextId,
+                    keepList ? tasks : null, pagedTasks, lastSnapshot);
+        }
+        if (!keepList && pagedTasks != null) {
+            pagedTasks.close();
+        }
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_main, menu);
+
+        searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_tasks));
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(@NonNull MenuItem item) {
+                startSearch();
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(@NonNull MenuItem item) {
+                if (searching) {
+                    stopSearch();
+                    reloadFromStorage();
+                }
+                return true;
+            }
+        });
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String query) {
+                onSearchQueryChanged(query);
+                return true;
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        int checked = currentMode == Mode.SHARED_PREFS ? R.id.action_mode_prefs
+                : currentMode == Mode.JOURNAL ? R.id.action_mode_journal
+                : currentMode == Mode.MAPPED ? R.id.action_mode_mapped
+                : R.id.action_mode_sqlite;
+        menu.findItem(checked).setChecked(true);
+        menu.findItem(R.id.action_compact_table).setChecked(compactTable);
+        menu.findItem(SORT_ITEMS[query.sort.ordinal()]).setChecked(true);
+        menu.findItem(FILTER_ITEMS[query.filter.ordinal()]).setChecked(true);
+        menu.findItem(R.id.action_sync_now).setEnabled(sync.isEnabled());
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        int id = item.getItemId();
+        if (id == R.id.action_mode_sqlite) {
+            setMode(Mode.SQLITE);
+        } else if (id == R.id.action_mode_prefs) {
+            setMode(Mode.SHARED_PREFS);
+        } else if (id == R.id.action_mode_journal) {
+            setMode(Mode.JOURNAL);
+        } else if (id == R.id.action_mode_mapped) {
+            setMode(Mode.MAPPED);
+        } else if (id == R.id.action_compact_table) {
+            compactTable = !compactTable;
+            if (!searching) {
+                reloadFromStorage();
+            }
+        } else if (indexOf(SORT_ITEMS, id) >= 0) {
+            setQuery(query.withSort(TaskQuery.Sort.values()[indexOf(SORT_ITEMS, id)]));
+        } else if (indexOf(FILTER_ITEMS, id) >= 0) {
+            setQuery(query.withFilter(TaskQuery.Filter.values()[indexOf(FILTER_ITEMS, id)]));
+        } else if (id == R.id.action_import) {
+            importLauncher.launch(new String[] {
+                    "application/json", "text/csv", "text/comma-separated-values", "text/plain" });
+        } else if (id == R.id.action_export_json) {
+            exportJsonLauncher.launch("tasks.json");
+        } else if (id == R.id.action_export_csv) {
+            exportCsvLauncher.launch("tasks.csv");
+        } else if (id == R.id.action_sync_server) {
+            syncServerDialog();
+        } else if (id == R.id.action_sync_now) {
+            syncNow();
+        } else {
+            return super.onOptionsItemSelected(item);
+        }
+        return true;
+    }
+
+    /** Switches storage backend, keeping the switch in sync with the menu. */
+    private void setMode(Mode mode) {
+        if (mode == currentMode) {
+            return;
+        }
+        handOffChanges(); // pending edits belong to the store we are leaving
+        finishSelection();
+        Mode from = currentMode;
+        currentMode = mode;
+        lastSnapshot = null; // each mode keeps its own snapshot file
+        if (searching) {
+            // Results came from the old store; close the search without reloading it
+            stopSearch();
+            searchItem.collapseActionView();
+        }
+
+        // File-backed modes live on the non-SQLite side of the switch
+        syncingSwitch = true;
+        switchMode.setChecked(mode != Mode.SQLITE);
+        syncingSwitch = false;
+
+        String label = mode == Mode.SHARED_PREFS ? "Using SharedPreferences"
+                : mode == Mode.JOURNAL ? "Using journal file"
+                : mode == Mode.MAPPED ? "Using memory-mapped file"
+                : "Using SQLite";
+        Snackbar.make(recyclerView, label, Snackbar.LENGTH_SHORT).show();
+        invalidateOptionsMenu();
+        startMigration(from, mode);
+        // Pulled changes go to the new store from the point the copy has run
+        TaskStore target = store();
+        persistQueue.submitWork(() -> sync.setStore(target));
+    }
+
+    /**
+     * Mirrors the old store into the new one on the persist queue, after the
+     * edits handed off above and before any made from now on. The list keeps
+     * showing the old store's tasks (which the new store is becoming) and is
+     * reloaded from the new store once the copy is done.
+     */
+    private void startMigration(Mode from, Mode to) {
+        TaskStore source = TaskStores.get(this, from);
+        TaskStore target = TaskStores.get(this, to);
+        migrationsRunning++;
+        migrationProgress.setProgressCompat(0, false);
+        migrationProgress.setVisibility(View.VISIBLE);
+        persistQueue.submitWork(() -> {
+            StoreMigration.Result result = null;
+            try {
+                result = StoreMigration.mirror(source, target, (done, total) ->
+                        runOnUiThread(() -> migrationProgress.setProgressCompat(
+                                total == 0 ? 100 : (int) (100L * done / total), true)));
+            } catch (IOException ignored) {
+            }
+            StoreMigration.Result finished = result;
+            runOnUiThread(() -> onMigrationDone(to, finished));
+        });
+    }
+
+    private void onMigrationDone(Mode to, StoreMigration.Result result) {
+        repository.publishReloaded(to); // the copy rewrote rows behind the cache
+        if (--migrationsRunning == 0 && transferCancel == null) {
+            migrationProgress.setVisibility(View.GONE);
+        }
+        if (result == null) {
+            Snackbar.make(recyclerView, "Could not copy tasks to the new storage",
+                    Snackbar.LENGTH_LONG).show();
+        } else if (result.copied + result.removed > 0) {
+            Snackbar.make(recyclerView, "Synced " + result.copied + " tasks ("
+                    + result.unchanged + " unchanged, " + result.removed + " removed)",
+                    Snackbar.LENGTH_SHORT).show();
+        }
+        if (to == currentMode && migrationsRunning == 0 && !isFinishing()) {
+            reloadFromStorage(); // queued behind edits made during the copy
+        }
     }
 
     /*
@@ -150,16 +582,56 @@ public class MainActivity extends AppCompatActivity {
 
     private void openDetails(int position) {
         Task t = tasks.get(position);
+        if (t.notesLoaded) {
+            TaskCache.put(currentMode, t); // the detail screen reads it back by id
+        }
+        detailPosition = position;
         Intent i = new Intent(MainActivity.this, TaskDetailActivity.class);
-        i.putExtra(EXTRA_TITLE, t.title);
-        i.putExtra(EXTRA_DEADLINE, t.deadline);
-        i.putExtra(EXTRA_NOTES, t.notes);
-        i.putExtra(EXTRA_STATUS, t.status);
-        startActivity(i);
+        i.putExtra(EXTRA_TASK_ID, t.id);
+        i.putExtra(EXTRA_MODE, currentMode.name());
+        detailLauncher.launch(i);
+    }
+
+    /** Saves an edit made on another screen, updating its row if it is in the list. */
+    private void applyEdit(Task updated) {
+        int position = detailPosition;
+        if (position < 0 || position >= tasks.size() || tasks.get(position).id != updated.id) {
+            position = RecyclerView.NO_POSITION;
+            for (int i = 0; i < tasks.size(); i++) {
+                if (tasks.get(i).id == updated.id) {
+                    position = i;
+                    break;
+                }
+            }
+        }
+        if (position != RecyclerView.NO_POSITION) {
+            replaceRow(position, updated);
+        }
+        changes.markUpdated(updated);
+        search.putTask(updated);
+        persist();
+        askForNotifications(updated);
+    }
+
+    /**
+     * Edits made on other screens are saved as soon as they are published,
+     * even while this screen is stopped underneath them. Saves and reloads
+     * are this screen's own, so it ignores those.
+     */
+    private void onTasksChanged(TaskRepository.Change change) {
+        if (change.kind != TaskRepository.Kind.EDITED || change.mode != currentMode) {
+            return;
+        }
+        for (Task t : change.upserted) {
+            Task edited = TaskCache.takeEdited(currentMode, t.id);
+            if (edited != null) {
+                applyEdit(edited);
+            }
+        }
     }
 
     private void showTaskOptions(int position) {
-        CharSequence[] items = { "Edit", "Delete", "Cancel" };
+        CharSequence[] items = { "Edit", "Delete", "Select", "Cancel" };
         new AlertDialog.Builder(MainActivity.this)
                 .setTitle(tasks.get(position).title)
                 .setItems(items, (dialog, which) -> {
@@ -167,6 +639,8 @@ public class MainActivity extends AppCompatActivity {
                         editTaskDialog(position);
                     } else if (which == 1) { // Delete
                         confirmDelete(position);
+                    } else if (which == 2) { // Select
+                        startSelection(position);
                     } else { // Cancel
                         dialog.dismiss();
                     }
@@ -179,20 +653,40 @@ public class MainActivity extends AppCompatActivity {
                 .setTitle("Delete task?")
                 .setMessage("This cannot be undone.")
                 .setPositiveButton("Delete", (dialog, which) -> {
-                    tasks.remove(position);
+                    Task removed = tasks.remove(position);
                     adapter.notifyItemRemoved(position);
+                    changes.markDeleted(removed);
+                    search.removeTask(removed.id);
+                    TaskCache.remove(currentMode, removed.id);
                     persist();
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
     }
 
+    /** List rows come without notes; the dialog opens once they are read. */
     private void editTaskDialog(int position) {
-        Task t = tasks.get(position);
+        Task row = tasks.get(position);
+        if (row.notesLoaded) {
+            showEditDialog(position, row);
+            return;
+        }
+        TaskCache.resolve(this, currentMode, row.id, t -> {
+            // Skipped if the row moved or went away meanwhile
+            if (t != null && !isFinishing() && position < tasks.size()
+                    && tasks.get(position).id == t.id) {
+                showEditDialog(position, t);
+            }
+        });
+    }
 
-        // Reuse the Add/Edit layout inside a dialog
-        View view = LayoutInflater.from(MainActivity.this)
+    private void showEditDialog(int position, Task t) {
+        // Reuse the Add/Edit layout inside a dialog; usually warmed while idle
+        long t0 = Metrics.start();
+        View warm = prewarmer.takeEditView();
+        View view = warm != null ? warm : LayoutInflater.from(MainActivity.this)
                 .inflate(R.layout.activity_add_edit_task, null, false);
+        Metrics.stop(Metrics.Path.EDIT_INFLATE, currentMode, t0);
 
         TextView txtBanner = view.findViewById(R.id.txtBanner);
         TextInputEditText inputTitle = view.findViewById(R.id.inputTitle);
@@ -206,10 +700,12 @@ public class MainActivity extends AppCompatActivity {
         inputTitle.setText(t.title);
         inputDeadline.setText(t.deadline);
         inputNotes.setText(t.notes);
+        inputTitle.setError(null); // left over from the last edit in this view
 
         AlertDialog dialog = new AlertDialog.Builder(MainActivity.this)
                 .setView(view)
                 .create();
+        dialog.setOnDismissListener(d -> prewarmer.recycleEditView(view));
 
         btnSave.setOnClickListener(v -> {
             String newTitle = textOrEmpty(inputTitle);
@@ -221,13 +717,14 @@ public class MainActivity extends AppCompatActivity {
                 return;
             }
 
-            // Update in-memory model
-            t.title = newTitle;
-            t.deadline = newDeadline;
-            t.notes = newNotes;
+            // Update in-memory model (tasks are immutable, so swap in a new one)
+            Task updated = new Task(t.id, newTitle, newDeadline, newNotes, t.status);
 
             // Refresh UI + persist to current storage (Prefs/SQLite)
-            adapter.notifyItemChanged(position);
+            replaceRow(position, updated);
+            changes.markUpdated(updated);
+            search.putTask(updated);
+            TaskCache.put(currentMode, updated);
             persist();
 
             Snackbar.make(recyclerView, "Task updated", Snackbar.LENGTH_SHORT).show();
@@ -241,175 +738,1008 @@ public class MainActivity extends AppCompatActivity {
         return e.getText() == null ? "" : e.getText().toString().trim();
     }
 
+    /** Id for a task added here; skips ids sync gave to tasks pulled meanwhile. */
+    private long newTaskId() {
+        long id = TaskStores.newId(nextId);
+        nextId = id + 1;
+        return id;
+    }
+
+    /** Puts a new task where the current order puts it, unless the filter hides it. */
+    private void insertRow(Task t) {
+        int at;
+        if (tasks instanceof TaskIndex.View) {
+            at = ((TaskIndex.View) tasks).insert(t);
+        } else if (pagedTasks != null) {
+            // Newest-first by default; a sorted query shows it at the top until re-read
+            at = query.matches(t, TaskDates.today()) ? 0 : -1;
+            if (at == 0) {
+                tasks.add(0, t);
+            }
+        } else {
+            at = tasks.size();
+            tasks.add(at, t);
+        }
+        if (at >= 0) {
+            adapter.notifyItemInserted(at);
+        }
+    }
+
+    /** Swaps in an edited task; in a sorted view the row may move or drop out. */
+    private void replaceRow(int position, Task updated) {
+        if (tasks instanceof TaskIndex.View) {
+            int to = ((TaskIndex.View) tasks).replace(position, updated);
+            if (to < 0) {
+                adapter.notifyItemRemoved(position);
+            } else {
+                if (to != position) {
+                    adapter.notifyItemMoved(position, to);
+                }
+                adapter.notifyItemChanged(to);
+            }
+        } else if (pagedTasks != null && !query.matches(updated, TaskDates.today())) {
+            tasks.remove(position); // hidden until re-read; the table is updated as usual
+            adapter.notifyItemRemoved(position);
+        } else {
+            tasks.set(position, updated);
+            adapter.notifyItemChanged(position);
+        }
+    }
+
     /*
-     * ------------------------------ Data loading -------------------------------
+     * -------------------------------- Selection --------------------------------
      */
-    private void reloadFromStorage() {
-        tasks.clear();
-        if (currentMode == Mode.SHARED_PREFS) {
-            loadFromPrefs();
-        } else {
-            loadFromDb();
+
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.menu_selection, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            int id = item.getItemId();
+            if (id == R.id.action_select_all) {
+                selectAll();
+            } else if (id == R.id.action_mark_done) {
+                runBulk(BulkEdit.markDone());
+            } else if (id == R.id.action_set_deadline) {
+                pickBulkDeadline();
+            } else if (id == R.id.action_delete_selected) {
+                confirmBulkDelete();
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            selectionMode = null;
+            selected.clear();
+            if (adapter.selection != null) { // not already rebound by a bulk edit
+                adapter.selection = null;
+                adapter.notifyItemRangeChanged(0, adapter.getItemCount());
+            }
         }
-        adapter.notifyDataSetChanged();
+    };
+
+    private void startSelection(int position) {
+        if (selectionMode == null) {
+            selectionMode = startSupportActionMode(selectionCallback);
+            adapter.selection = selected;
+        }
+        toggleSelected(position);
     }
 
-    private void persist() {
-        if (currentMode == Mode.SHARED_PREFS) {
-            saveToPrefs();
+    private void toggleSelected(int position) {
+        long id = adapter.getItemId(position);
+        if (!selected.remove(id)) {
+            selected.add(id);
+        }
+        adapter.notifyItemChanged(position);
+        if (selected.isEmpty()) {
+            selectionMode.finish();
         } else {
-            saveToDb();
+            showSelectionCount();
+        }
+    }
+
+    private void showSelectionCount() {
+        selectionMode.setTitle(selected.size() + " selected");
+    }
+
+    private void finishSelection() {
+        if (selectionMode != null) {
+            selectionMode.finish();
+        }
+    }
+
+    /**
+     * Selects every row the list shows. In SQLite that includes rows not
+     * paged in yet: their ids are read on the persist queue, behind any
+     * write still queued.
+     */
+    private void selectAll() {
+        if (pagedTasks == null) {
+            for (int i = 0; i < tasks.size(); i++) {
+                selected.add(adapter.getItemId(i));
+            }
+            adapter.notifyItemRangeChanged(0, tasks.size());
+            showSelectionCount();
+            return;
+        }
+        handOffChanges();
+        SqliteTaskStore db = TaskStores.sqlite(this);
+        TaskQuery q = query;
+        long today = TaskDates.today();
+        ActionMode mode = selectionMode;
+        persistQueue.submitWork(() -> {
+            List<Long> ids = db.ids(q, today);
+            recyclerView.post(() -> {
+                if (selectionMode == mode) { // not finished, or finished by a mode switch, meanwhile
+                    selected.addAll(ids);
+                    adapter.notifyItemRangeChanged(0, tasks.size());
+                    showSelectionCount();
+                }
+            });
+        });
+    }
+
+    /** Picks one deadline for every selected task; "No deadline" clears it. */
+    private void pickBulkDeadline() {
+        Calendar picked = Calendar.getInstance();
+        DatePickerDialog dlg = new DatePickerDialog(this, (view, year, month, dayOfMonth) -> {
+            picked.set(year, month, dayOfMonth);
+            runBulk(BulkEdit.setDeadline(
+                    DateFormat.getDateInstance(DateFormat.MEDIUM).format(picked.getTime())));
+        }, picked.get(Calendar.YEAR), picked.get(Calendar.MONTH), picked.get(Calendar.DAY_OF_MONTH));
+        dlg.setButton(DialogInterface.BUTTON_NEUTRAL, "No deadline",
+                (d, which) -> runBulk(BulkEdit.setDeadline("")));
+        dlg.show();
+    }
+
+    private void confirmBulkDelete() {
+        int count = selected.size();
+        new AlertDialog.Builder(this)
+                .setTitle("Delete " + count + (count == 1 ? " task?" : " tasks?"))
+                .setMessage("This cannot be undone.")
+                .setPositiveButton("Delete", (dialog, which) -> runBulk(BulkEdit.delete()))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    /**
+     * Runs {@code edit} on the selected tasks as one change set: one apply on
+     * the persist queue (one transaction in SQLite) and one range update of
+     * the adapter, however many tasks are selected.
+     */
+    private void runBulk(BulkEdit edit) {
+        if (selectionMode == null) {
+            return;
+        }
+        Set<Long> ids = new HashSet<>(selected);
+        adapter.selection = null; // the update below rebinds the highlighted rows
+        selectionMode.finish();
+        if (pagedTasks != null) {
+            runBulkInTable(edit, ids);
+            return;
+        }
+        long t0 = Metrics.start();
+        TaskChangeSet bulk = new TaskChangeSet();
+        int oldSize = tasks.size();
+        int from = edit.applyTo(tasks, ids, bulk);
+        if (from >= 0) {
+            adapter.notifyRowsRewritten(from, oldSize);
+        }
+        Metrics.stop(Metrics.Path.BULK_EDIT, currentMode, t0);
+        onBulkRecorded(edit, ids.size(), bulk);
+    }
+
+    /**
+     * SQLite pages the list from the table, so the edit is made there: the
+     * selected rows are read on the persist queue (behind any write still
+     * queued), saved as one change set, and the list re-read once.
+     */
+    private void runBulkInTable(BulkEdit edit, Set<Long> ids) {
+        if (!edit.needsRows()) {
+            TaskChangeSet bulk = new TaskChangeSet();
+            for (long id : ids) {
+                bulk.markDeleted(id);
+            }
+            onBulkRecorded(edit, ids.size(), bulk);
+            return;
+        }
+        handOffChanges();
+        SqliteTaskStore db = TaskStores.sqlite(this);
+        Mode mode = currentMode;
+        persistQueue.submitWork(() -> {
+            List<Task> rows = db.rows(ids);
+            recyclerView.post(() -> {
+                if (mode != currentMode || isDestroyed()) {
+                    return; // the selection belonged to the store we left
+                }
+                TaskChangeSet bulk = new TaskChangeSet();
+                edit.record(rows, bulk);
+                onBulkRecorded(edit, ids.size(), bulk);
+            });
+        });
+    }
+
+    /** Saves a bulk edit's change set and keeps search and the paged list in step. */
+    private void onBulkRecorded(BulkEdit edit, int count, TaskChangeSet bulk) {
+        if (!bulk.isEmpty()) {
+            changes.addAll(bulk);
+            search.apply(bulk);
+            for (long id : bulk.deleted()) {
+                TaskCache.remove(currentMode, id);
+            }
+            persist();
+            if (pagedTasks != null) {
+                reloadFromStorage(); // queued behind the write; one range update when it lands
+            }
+            for (Task t : bulk.updated()) {
+                askForNotifications(t); // asks at most once
+                break;
+            }
+        } else if (pagedTasks != null) {
+            adapter.notifyItemRangeChanged(0, tasks.size()); // nothing to re-read; drop the highlights
         }
+        String done = edit.action == BulkEdit.Action.DONE ? "Marked " + count + " done"
+                : edit.action == BulkEdit.Action.DEADLINE ? "Set the deadline of " + count
+                : "Deleted " + count;
+        Snackbar.make(recyclerView, done + (count == 1 ? " task" : " tasks"), Snackbar.LENGTH_SHORT).show();
     }
 
     /*
-     * ---------------------- SharedPreferences (JSON array) ----------------------
+     * ------------------------------ Sort / filter ------------------------------
      */
-    private void loadFromPrefs() {
-        SharedPreferences sp = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        String json = sp.getString(PREFS_KEY, "[]");
+
+    private TaskQuery savedQuery() {
+        SharedPreferences prefs = getPreferences(MODE_PRIVATE);
         try {
-            JSONArray arr = new JSONArray(json);
-            for (int i = 0; i < arr.length(); i++) {
-                JSONObject o = arr.getJSONObject(i);
-                tasks.add(new Task(
-                        o.optString("title"),
-                        o.optString("deadline"),
-                        o.optString("notes"),
-                        o.optString("status", "Pending")));
+            return new TaskQuery(
+                    TaskQuery.Sort.valueOf(prefs.getString(PREFS_SORT, TaskQuery.Sort.ADDED.name())),
+                    TaskQuery.Filter.valueOf(prefs.getString(PREFS_FILTER, TaskQuery.Filter.ALL.name())));
+        } catch (IllegalArgumentException e) {
+            return TaskQuery.DEFAULT;
+        }
+    }
+
+    /**
+     * Shows the list in another order or filter. In memory with an index this
+     * is one view swap and a rebind of the visible rows; otherwise the store
+     * is re-read (an indexed first page in SQLite; the index is built once, in
+     * the background, for the other modes).
+     */
+    private void setQuery(TaskQuery q) {
+        if (q.equals(query)) {
+            return;
+        }
+        query = q;
+        finishSelection(); // the picked rows may no longer be shown
+        getPreferences(MODE_PRIVATE).edit()
+                .putString(PREFS_SORT, q.sort.name())
+                .putString(PREFS_FILTER, q.filter.name())
+                .apply();
+        invalidateOptionsMenu();
+        if (searching) {
+            return; // applied when the search closes and the list is reloaded
+        }
+        if (tasks instanceof TaskIndex.View) {
+            long t0 = Metrics.start();
+            tasks = ((TaskIndex.View) tasks).withQuery(q, TaskDates.today());
+            adapter.replaceList(tasks);
+            recyclerView.scrollToPosition(0);
+            Metrics.stop(Metrics.Path.REORDER, currentMode, t0);
+            saveStartupSnapshot();
+        } else {
+            scrollToTop = true;
+            reloadFromStorage();
+        }
+    }
+
+    private static int indexOf(int[] ids, int id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                return i;
             }
-        } catch (Exception ignored) {
         }
+        return -1;
     }
 
-    private void saveToPrefs() {
-        JSONArray arr = new JSONArray();
+    /*
+     * ----------------------------- Import / export -----------------------------
+     */
+
+    /** Streams a picked file into the current store on the persist queue. */
+    private void startImport(Uri uri) {
+        if (transferCancel != null) {
+            return;
+        }
+        InputStream in;
         try {
-            for (Task t : tasks) {
-                JSONObject o = new JSONObject();
-                o.put("title", t.title);
-                o.put("deadline", t.deadline);
-                o.put("notes", t.notes);
-                o.put("status", t.status);
-                arr.put(o);
+            in = getContentResolver().openInputStream(uri);
+        } catch (IOException | SecurityException e) {
+            in = null;
+        }
+        if (in == null) {
+            Snackbar.make(recyclerView, "Could not open file", Snackbar.LENGTH_SHORT).show();
+            return;
+        }
+        long size = fileSize(uri);
+        handOffChanges(); // imported rows get ids after everything handed out so far
+        TaskStore store = store();
+        Mode mode = currentMode;
+        long firstId = nextId;
+        importing = true;
+        fab.setEnabled(false);
+        AtomicBoolean cancel = beginTransfer("Importing tasks…");
+        InputStream input = in;
+        persistQueue.submitWork(() -> {
+            String message;
+            try (InputStream stream = input) {
+                int rows = TaskTransfer.importTasks(stream, size, store, firstId, cancel,
+                        this::postTransferProgress);
+                message = "Imported " + rows + " tasks";
+            } catch (TaskTransfer.CancelledException e) {
+                message = "Import cancelled after " + e.rows + " tasks";
+            } catch (IOException | RuntimeException e) {
+                message = "Import stopped: the file is not a task list";
             }
-            getSharedPreferences(PREFS_NAME, MODE_PRIVATE)
-                    .edit().putString(PREFS_KEY, arr.toString()).apply();
-        } catch (Exception ignored) {
+            String done = message;
+            runOnUiThread(() -> onTransferDone(done, mode));
+        });
+    }
+
+    /** Streams the current store into a picked file on the persist queue. */
+    private void startExport(Uri uri, TaskTransfer.Format format) {
+        if (transferCancel != null) {
+            return;
         }
+        OutputStream out;
+        try {
+            out = getContentResolver().openOutputStream(uri, "wt");
+        } catch (IOException | SecurityException e) {
+            out = null;
+        }
+        if (out == null) {
+            Snackbar.make(recyclerView, "Could not create file", Snackbar.LENGTH_SHORT).show();
+            return;
+        }
+        handOffChanges(); // export what the list shows
+        TaskStore store = store();
+        AtomicBoolean cancel = beginTransfer("Exporting tasks…");
+        OutputStream output = out;
+        persistQueue.submitWork(() -> {
+            String message;
+            try (OutputStream stream = output) {
+                int rows = TaskTransfer.exportTasks(store, format, stream, cancel,
+                        this::postTransferProgress);
+                message = "Exported " + rows + " tasks";
+            } catch (TaskTransfer.CancelledException e) {
+                message = "Export cancelled; the file is incomplete";
+            } catch (IOException | RuntimeException e) {
+                message = "Could not write the file";
+            }
+            String done = message;
+            runOnUiThread(() -> onTransferDone(done, null));
+        });
+    }
+
+    /** Shows the progress bar and a Cancel snackbar; returns the cancel flag. */
+    private AtomicBoolean beginTransfer(String label) {
+        AtomicBoolean cancel = new AtomicBoolean();
+        transferCancel = cancel;
+        migrationProgress.setProgressCompat(0, false);
+        migrationProgress.setVisibility(View.VISIBLE);
+        transferBar = Snackbar.make(recyclerView, label, Snackbar.LENGTH_INDEFINITE)
+                .setAction("Cancel", v -> cancel.set(true));
+        transferBar.show();
+        return cancel;
+    }
+
+    /** Called on the persist queue after each batch. */
+    private void postTransferProgress(long done, long total) {
+        if (total > 0) {
+            int percent = (int) Math.min(100, 100 * done / total);
+            runOnUiThread(() -> migrationProgress.setProgressCompat(percent, true));
+        }
+    }
+
+    /** {@code imported} is the mode rows were imported into, or null after an export. */
+    private void onTransferDone(String message, Mode imported) {
+        transferCancel = null;
+        importing = false;
+        transferBar.dismiss();
+        if (migrationsRunning == 0) {
+            migrationProgress.setVisibility(View.GONE);
+        }
+        Snackbar.make(recyclerView, message, Snackbar.LENGTH_LONG).show();
+        if (imported == null || isFinishing()) {
+            return;
+        }
+        sync.rescan(); // imported rows never went through handOffChanges
+        repository.publishReloaded(imported);
+        if (imported != currentMode) {
+            fab.setEnabled(true); // the next load of that mode picks the rows up
+            return;
+        }
+        reloadReminders();
+        if (searching) {
+            stopSearch();
+            searchItem.collapseActionView();
+        }
+        reloadFromStorage(); // re-enables adding once the new last id is known
+    }
+
+    /** Size of a picked document in bytes, or -1 if the provider does not say. */
+    private long fileSize(Uri uri) {
+        try (Cursor c = getContentResolver().query(uri,
+                new String[] { OpenableColumns.SIZE }, null, null, null)) {
+            if (c != null && c.moveToFirst() && !c.isNull(0)) {
+                return c.getLong(0);
+            }
+        } catch (RuntimeException ignored) {
+        }
+        return -1;
     }
 
     /*
-     * -------------------------------- SQLite -----------------------------------
+     * -------------------------------- Reminders --------------------------------
      */
-    private void loadFromDb() {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        tasks.clear();
-        try (Cursor c = db.rawQuery(
-                "SELECT title, deadline, notes, status FROM tasks ORDER BY _id DESC",
-                null)) {
-            while (c.moveToNext()) {
-                tasks.add(new Task(
-                        c.getString(0),
-                        c.getString(1),
-                        c.getString(2),
-                        c.getString(3)));
+
+    /** Rebuilds the reminder queue after rows were written behind handOffChanges. */
+    private void reloadReminders() {
+        TaskStore store = store();
+        persistQueue.submitWork(() -> {
+            try {
+                reminders.load(store);
+            } catch (IOException ignored) {
             }
+        });
+    }
+
+    /** From Android 13 reminders need a permission; asked the first time a task gets one. */
+    private void askForNotifications(Task t) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU && !notificationsAsked
+                && ReminderScheduler.remindAt(t) >= 0
+                && checkSelfPermission(Manifest.permission.POST_NOTIFICATIONS)
+                        != PackageManager.PERMISSION_GRANTED) {
+            notificationsAsked = true;
+            notificationPermission.launch(Manifest.permission.POST_NOTIFICATIONS);
         }
     }
 
-    private void saveToDb() {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        db.beginTransaction();
-        try {
-            db.delete("tasks", null, null);
-            for (Task t : tasks) {
-                db.execSQL("INSERT INTO tasks(title, deadline, notes, status) VALUES(?,?,?,?)",
-                        new Object[] { t.title, t.deadline, t.notes, t.status });
+    /*
+     * ---------------------------------- Sync -----------------------------------
+     */
+
+    /** Asks for the server URL; an empty one turns sync off. */
+    private void syncServerDialog() {
+        EditText input = new EditText(this);
+        input.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_URI);
+        input.setHint("https://example.com/api");
+        input.setText(sync.endpoint());
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.sync_server)
+                .setView(input)
+                .setPositiveButton("Save", (d, which) -> {
+                    String endpoint = input.getText().toString().trim();
+                    getPreferences(MODE_PRIVATE).edit()
+                            .putString(PREFS_SYNC_ENDPOINT, endpoint)
+                            .apply();
+                    sync.setEndpoint(endpoint);
+                    invalidateOptionsMenu();
+                    if (!endpoint.isEmpty()) {
+                        syncNow();
+                    }
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void syncNow() {
+        handOffChanges(); // send what was just edited too
+        syncAsked = true;
+        sync.syncNow();
+    }
+
+    /** On the main thread after each sync attempt. */
+    private void onSyncDone(SyncEngine.Stats run, IOException error) {
+        if (isDestroyed()) {
+            return;
+        }
+        if (syncAsked) {
+            syncAsked = false;
+            String message = error != null ? "Sync failed; will retry"
+                    : "Synced: " + run.pushed + " sent, " + run.pulled + " received";
+            Snackbar.make(recyclerView, message, Snackbar.LENGTH_SHORT).show();
+        }
+        if (run.pulled > 0) {
+            repository.publishReloaded(currentMode); // rows changed behind the cache
+            reloadReminders();
+            if (!searching && transferCancel == null && migrationsRunning == 0) {
+                reloadFromStorage();
             }
-            db.setTransactionSuccessful();
-        } finally {
-            db.endTransaction();
         }
     }
 
     /*
-     * --------------------------- Data & UI helpers -----------------------------
+     * --------------------------------- Search ----------------------------------
      */
-    public static class Task implements Serializable {
-        public String title;
-        public String deadline;
-        public String notes;
-        public String status; // "Pending" or "Done"
 
-        public Task(String title, String deadline, String notes, String status) {
-            this.title = title;
-            this.deadline = deadline;
-            this.notes = notes;
-            this.status = (status == null || status.isEmpty()) ? "Pending" : status;
+    /** Points the search at the current store: the FTS index, or a copy of the list. */
+    private void startSearch() {
+        finishSelection();
+        searching = true;
+        if (currentMode == Mode.SQLITE) {
+            search.useDatabase(TaskStores.sqlite(this));
+        } else if (tasks instanceof TaskIndex.View) {
+            search.useSnapshot(((TaskIndex.View) tasks).all(), store()); // not just what the filter shows
+        } else {
+            search.useSnapshot(tasks, store());
         }
     }
 
-    private static class TaskDbHelper extends SQLiteOpenHelper {
-        public TaskDbHelper(@NonNull Context ctx) {
-            super(ctx, "tasks.db", null, 1);
+    private void stopSearch() {
+        finishSelection(); // the picked rows were search results
+        searching = false;
+        search.cancel();
+    }
+
+    private void onSearchQueryChanged(String query) {
+        if (!searching) {
+            return;
+        }
+        if (TaskSearch.matchExpression(query).isEmpty()) {
+            // Cleared: back to the full list, keeping the search open
+            search.clearQuery();
+            reloadFromStorage();
+            return;
         }
+        search.onQueryChanged(query);
+    }
 
-        @Override
-        public void onCreate(SQLiteDatabase db) {
-            db.execSQL("CREATE TABLE IF NOT EXISTS tasks (" +
-                    "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "title TEXT NOT NULL," +
-                    "deadline TEXT," +
-                    "notes TEXT," +
-                    "status TEXT)");
+    /** Shows ranked results; edits made on them are saved like any other edit. */
+    private void showSearchResults(List<Task> results) {
+        if (!searching) {
+            return;
+        }
+        loadGeneration++; // a load still in flight must not replace the results
+        List<Task> fresh = new ArrayList<>(results);
+        adapter.submitList(fresh, () -> {
+            if (pagedTasks != null) {
+                pagedTasks.close();
+                pagedTasks = null;
+            }
+            tasks = fresh;
+        }, () -> {
+            if (searching) {
+                search.refresh(); // a row was edited meanwhile; search again with it saved
+            }
+        });
+    }
+
+    /*
+     * ------------------------------ Data loading -------------------------------
+     */
+    /** Shows the saved first screen, if any, before the store has been opened. */
+    private void showStartupSnapshot() {
+        StartupSnapshot snap = StartupSnapshot.read(StartupSnapshot.file(getFilesDir(), currentMode));
+        if (snap != null) {
+            tasks = new ArrayList<>(snap.rows);
+            nextId = snap.lastId + 1;
+            lastSnapshot = snap;
         }
+    }
 
-        @Override
-        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-            db.execSQL("DROP TABLE IF EXISTS tasks");
-            onCreate(db);
+    /** What one background load read, handed to the main thread in one piece. */
+    private static final class Loaded {
+        final List<Task> tasks;
+        final PagedTaskList paged;
+        final long lastId;
+
+        Loaded(List<Task> tasks, PagedTaskList paged, long lastId) {
+            this.tasks = tasks;
+            this.paged = paged;
+            this.lastId = lastId;
         }
     }
 
+    /**
+     * Re-reads the current store off the main thread. The read is queued on
+     * the persist queue, so it sees every write handed off before it.
+     */
+    private void reloadFromStorage() {
+        handOffChanges();
+        changes.clear();
+        Mode mode = currentMode;
+        int generation = ++loadGeneration;
+        int writes = writesSubmitted;
+        boolean compact = compactTable;
+        TaskQuery q = query;
+        long t0 = Metrics.start();
+        persistQueue.submitWork(() -> {
+            Loaded loaded = load(mode, compact, q);
+            recyclerView.post(() -> onLoaded(generation, writes, mode, loaded, t0));
+        });
+    }
+
+    /** Opens and reads the store for {@code mode}; runs on the persist queue thread. */
+    private Loaded load(Mode mode, boolean compact, TaskQuery q) {
+        TaskStore store = TaskStores.get(this, mode);
+        Metrics.count(Metrics.Counter.STORE_READS, mode, 1);
+        PagedTaskList paged = null;
+        List<Task> fresh;
+        long today = TaskDates.today();
+        if (mode == Mode.SQLITE) {
+            // Only the first page is read here; the rest streams in while scrolling
+            paged = new PagedTaskList(TaskStores.sqlite(this).getReadableDatabase(), q, today,
+                    (position, count) -> adapter.notifyItemRangeInserted(position, count));
+            paged.loadInitial();
+            fresh = paged;
+        } else {
+            List<Task> all;
+            try {
+                all = store.loadAll();
+            } catch (IOException e) {
+                all = new ArrayList<>();
+            }
+            if (!q.isDefault()) {
+                fresh = TaskIndex.of(all, today).view(q); // holds Tasks, compact or not
+            } else {
+                fresh = compact ? TaskTable.of(all) : new ArrayList<>(all);
+            }
+        }
+        long lastId;
+        try {
+            lastId = store.lastId();
+        } catch (IOException e) {
+            lastId = 0;
+            for (Task t : fresh) {
+                lastId = Math.max(lastId, t.id);
+            }
+        }
+        return new Loaded(fresh, paged, lastId);
+    }
+
+    private void onLoaded(int generation, int writes, Mode mode, Loaded loaded, long t0) {
+        if (generation != loadGeneration || mode != currentMode || isDestroyed()) {
+            if (loaded.paged != null) {
+                loaded.paged.close();
+            }
+            return; // superseded by a newer load, a mode switch or search results
+        }
+        if (writes != writesSubmitted) {
+            // Edits saved while reading are not in what was read; read again behind them
+            if (loaded.paged != null) {
+                loaded.paged.close();
+            }
+            reloadFromStorage();
+            return;
+        }
+        nextId = Math.max(nextId, loaded.lastId + 1);
+        fab.setEnabled(!importing);
+
+        // Diffed off the main thread; only changed rows are rebound. The
+        // activity keeps using the old list until the adapter switches over.
+        adapter.mode = mode;
+        adapter.submitList(loaded.tasks, () -> {
+            if (pagedTasks != null) {
+                pagedTasks.close();
+            }
+            pagedTasks = loaded.paged;
+            tasks = loaded.tasks;
+            appliedGeneration = generation;
+            if (scrollToTop) {
+                scrollToTop = false;
+                recyclerView.scrollToPosition(0);
+            }
+            saveStartupSnapshot();
+        }, () -> {
+            if (generation == loadGeneration) {
+                reloadFromStorage(); // rows were edited meanwhile; read again behind their save
+            }
+        });
+        Metrics.stop(Metrics.Path.RELOAD, mode, t0);
+    }
+
+    /** Queues a rewrite of the first-screen snapshot when what it holds has changed. */
+    private void saveStartupSnapshot() {
+        if (searching) {
+            return; // the list holds search results, not the first screen
+        }
+        StartupSnapshot snap = StartupSnapshot.of(tasks, nextId - 1);
+        if (snap.sameAs(lastSnapshot)) {
+            return;
+        }
+        lastSnapshot = snap;
+        File file = StartupSnapshot.file(getFilesDir(), currentMode);
+        persistQueue.submitWork(() -> {
+            try {
+                snap.write(file);
+            } catch (IOException ignored) {
+            }
+        });
+    }
+
+    /**
+     * Once the persist queue has caught up, the table matches what the paged
+     * list shows, so its unsaved-edit overlay can be dropped.
+     */
+    private void onPersistIdle() {
+        if (pagedTasks != null && !persistScheduled && !persistQueue.isBusy()
+                && migrationsRunning == 0) {
+            if (pagedTasks.invalidate() && query.sort != TaskQuery.Sort.ADDED) {
+                adapter.notifyItemRangeChanged(0, tasks.size()); // edited rows move to their sorted place
+            }
+        }
+    }
+
+    /**
+     * Schedules a write-behind save. The actual hand-off happens once per frame
+     * so a burst of mutations produces a single change set.
+     */
+    private void persist() {
+        if (persistScheduled) {
+            return;
+        }
+        persistScheduled = true;
+        recyclerView.post(this::handOffChanges);
+    }
+
+    /** Hands the pending changes to the writer for the current store. */
+    private void handOffChanges() {
+        if (!persistScheduled) {
+            return;
+        }
+        persistScheduled = false;
+        if (!changes.isEmpty()) {
+            persistQueue.submit(store(), changes);
+            // The queue copied the changes; reminders and sync read their own copy after the write
+            TaskChangeSet saved = new TaskChangeSet();
+            saved.addAll(changes);
+            boolean syncing = sync.isEnabled();
+            persistQueue.submitWork(() -> {
+                reminders.onChanges(saved);
+                if (syncing) {
+                    sync.record(saved);
+                }
+            });
+            if (syncing) {
+                sync.requestSync();
+            }
+            repository.publishSaved(currentMode, saved);
+            changes.clear();
+            writesSubmitted++;
+            saveStartupSnapshot();
+        }
+    }
+
+    private TaskStore store() {
+        return TaskStores.get(this, currentMode);
+    }
+
+    /** Hands off anything pending and waits until it is written. */
+    private void flushNow() {
+        handOffChanges();
+        persistQueue.awaitIdle(FLUSH_TIMEOUT_MS);
+    }
+
+    /*
+     * --------------------------- Data & UI helpers -----------------------------
+     */
     /** RecyclerView adapter for the simple two-line list items. */
-    private static class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskVH> {
+    static class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskVH> {
         interface OnTaskInteraction {
             void onClick(int position);
 
             void onLongPress(int position);
         }
 
-        private final List<Task> data;
+        // One background thread for list diffs, shared by all adapters
+        static final ExecutorService DIFF_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "task-diff");
+            t.setDaemon(true);
+            return t;
+        });
+
+        private static final DiffUtil.ItemCallback<Task> DIFF = new DiffUtil.ItemCallback<Task>() {
+            @Override
+            public boolean areItemsTheSame(@NonNull Task a, @NonNull Task b) {
+                return a.id == b.id;
+            }
+
+            @Override
+            public boolean areContentsTheSame(@NonNull Task a, @NonNull Task b) {
+                return a.equals(b);
+            }
+        };
+
+        private List<Task> data;
         private final OnTaskInteraction listener;
+        private final Handler main = new Handler(Looper.getMainLooper());
+        private int submitGeneration;
+        private int listEvents; // notifications so far; a diff is stale if any came while it ran
+        MainActivity.Mode mode = MainActivity.Mode.SQLITE; // tags bind timings
+        Set<Long> selection; // ids to highlight while the selection mode is up, else null
+        int selectedColor;
+        ViewPrewarmer views; // pre-inflated rows, or null to inflate each one
 
         TaskAdapter(List<Task> data, OnTaskInteraction listener) {
             this.data = data;
             this.listener = listener;
+            setHasStableIds(true);
+            registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+                @Override
+                public void onChanged() {
+                    listEvents++;
+                }
+
+                @Override
+                public void onItemRangeChanged(int positionStart, int itemCount) {
+                    listEvents++;
+                }
+
+                @Override
+                public void onItemRangeInserted(int positionStart, int itemCount) {
+                    listEvents++;
+                }
+
+                @Override
+                public void onItemRangeRemoved(int positionStart, int itemCount) {
+                    listEvents++;
+                }
+
+                @Override
+                public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                    listEvents++;
+                }
+            });
+        }
+
+        /**
+         * Swaps in a new list and runs {@code onCommitted} once the adapter
+         * shows it. In-memory lists are diffed on a background
+         * thread and only granular insert/remove/move/change events are
+         * dispatched. Paged lists are not diffed (that would page in the whole
+         * table); the visible range is rebound instead.
+         *
+         * If the shown list is edited (and the adapter told) while the diff
+         * runs, the diff no longer fits it and {@code newList} lacks the edit:
+         * nothing is swapped and {@code onStale} runs instead, to fetch a
+         * list that has it.
+         */
+        void submitList(List<Task> newList, Runnable onCommitted, Runnable onStale) {
+            int generation = ++submitGeneration;
+            int eventsAtSubmit = listEvents;
+            List<Task> oldList = data;
+            if (oldList instanceof PagedTaskList || newList instanceof PagedTaskList) {
+                onCommitted.run();
+                swapWithRangeEvents(newList);
+                return;
+            }
+            List<Task> oldSnapshot = oldList instanceof TaskTable // UI may keep mutating oldList
+                    ? ((TaskTable) oldList).copy() : new ArrayList<>(oldList);
+            DIFF_EXECUTOR.execute(() -> {
+                DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                    @Override
+                    public int getOldListSize() {
+                        return oldSnapshot.size();
+                    }
+
+                    @Override
+                    public int getNewListSize() {
+                        return newList.size();
+                    }
+
+                    @Override
+                    public boolean areItemsTheSame(int o, int n) {
+                        return idAt(oldSnapshot, o) == idAt(newList, n);
+                    }
+
+                    @Override
+                    public boolean areContentsTheSame(int o, int n) {
+                        return DIFF.areContentsTheSame(oldSnapshot.get(o), newList.get(n));
+                    }
+                }, true);
+                main.post(() -> {
+                    if (generation != submitGeneration) {
+                        return; // superseded by a newer submit
+                    }
+                    if (listEvents != eventsAtSubmit) {
+                        onStale.run();
+                        return;
+                    }
+                    data = newList;
+                    onCommitted.run();
+                    result.dispatchUpdatesTo(this);
+                });
+            });
+        }
+
+        /** Shows another view of the same rows at once (no diff); only bound rows rebind. */
+        @SuppressLint("NotifyDataSetChanged")
+        void replaceList(List<Task> newList) {
+            submitGeneration++; // a diff still in flight is for the old list
+            data = newList;
+            notifyDataSetChanged();
+        }
+
+        private void swapWithRangeEvents(List<Task> newList) {
+            int oldSize = data.size();
+            data = newList;
+            notifyRowsRewritten(0, oldSize);
+        }
+
+        /**
+         * One range update for a list rewritten in place from {@code from} on
+         * (a bulk edit) that had {@code oldSize} rows: the rows both sizes
+         * share are rebound, the difference inserted or removed at the end.
+         */
+        void notifyRowsRewritten(int from, int oldSize) {
+            int newSize = data.size();
+            int common = Math.min(oldSize, newSize);
+            if (common > from) {
+                notifyItemRangeChanged(from, common - from);
+            }
+            if (newSize > oldSize) {
+                notifyItemRangeInserted(oldSize, newSize - oldSize);
+            } else if (oldSize > newSize) {
+                notifyItemRangeRemoved(newSize, oldSize - newSize);
+            }
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return idAt(data, position);
+        }
+
+        /** Id without building a Task when the list is a {@link TaskTable}. */
+        private static long idAt(List<Task> list, int position) {
+            return list instanceof TaskTable ? ((TaskTable) list).id(position) : list.get(position).id;
         }
 
         @NonNull
         @Override
         public TaskVH onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-            View v = LayoutInflater.from(parent.getContext())
-                    .inflate(android.R.layout.simple_list_item_2, parent, false);
-            return new TaskVH(v);
+            View v = views != null ? views.takeRow() : null;
+            if (v == null) {
+                long t0 = Metrics.start();
+                v = LayoutInflater.from(parent.getContext())
+                        .inflate(android.R.layout.simple_list_item_2, parent, false);
+                Metrics.stop(Metrics.Path.ROW_INFLATE, mode, t0);
+            }
+            return new TaskVH(v, listener);
         }
 
+        /**
+         * Allocation-free outside the selection mode: views and listeners live
+         * on the holder, text on the Task or table.
+         */
         @Override
         public void onBindViewHolder(@NonNull TaskVH h, int position) {
-            Task t = data.get(position);
-            TextView line1 = h.itemView.findViewById(android.R.id.text1);
-            TextView line2 = h.itemView.findViewById(android.R.id.text2);
-            line1.setText(t.title);
-            line2.setText((t.deadline == null || t.deadline.isEmpty() ? "No deadline" : t.deadline)
-                    + " • " + t.status);
-
-            h.itemView.setOnClickListener(v -> listener.onClick(h.getBindingAdapterPosition()));
-            h.itemView.setOnLongClickListener(v -> {
-                listener.onLongPress(h.getBindingAdapterPosition());
-                return true;
-            });
+            long t0 = Metrics.start();
+            boolean picked = selection != null && selection.contains(idAt(data, position));
+            h.itemView.setBackgroundColor(picked ? selectedColor : Color.TRANSPARENT);
+            if (data instanceof TaskTable) {
+                // Columnar rows: a slice of the shared text array and a shared subtitle
+                TaskTable table = (TaskTable) data;
+                h.line1.setText(table.chars(), table.titleStart(position), table.titleLength(position));
+                h.line2.setText(table.subtitle(position));
+            } else {
+                Task t = data.get(position);
+                h.line1.setText(t.title);
+                h.line2.setText(t.subtitle());
+            }
+            Metrics.stop(Metrics.Path.BIND, mode, t0);
         }
 
         @Override
@@ -418,8 +1748,28 @@ public class MainActivity extends AppCompatActivity {
         }
 
         static class TaskVH extends RecyclerView.ViewHolder {
-            TaskVH(@NonNull View itemView) {
+            final TextView line1;
+            final TextView line2;
+
+            TaskVH(@NonNull View itemView, OnTaskInteraction listener) {
                 super(itemView);
+                line1 = itemView.findViewById(android.R.id.text1);
+                line2 = itemView.findViewById(android.R.id.text2);
+
+                // One listener pair per holder, reading the position at click time
+                itemView.setOnClickListener(v -> {
+                    int position = getBindingAdapterPosition();
+                    if (position != RecyclerView.NO_POSITION) {
+                        listener.onClick(position);
+                    }
+                });
+                itemView.setOnLongClickListener(v -> {
+                    int position = getBindingAdapterPosition();
+                    if (position != RecyclerView.NO_POSITION) {
+                        listener.onLongPress(position);
+                    }
+                    return true;
+                });
             }
         }
     }
@@ -0,0 +1,369 @@
+package com.example.eecs4443lab3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Memory-mapped binary store
+ * ---------------------------------
+ * Two memory-mapped files: a fixed-size-entry offset index and a data file of
+ * length-prefixed UTF-8 records. Tasks are decoded straight from the mapping,
+ * with no parse step, and both point reads and appends are O(1).
+ *
+ * Index file (tasks.idx):
+ * - header: magic "TMAP", version, slots used, live slots, data end, data generation,
+ *   highest id ever stored
+ * - entries: id (long), record offset (long), record length (int), flags (int)
+ *
+ * Data file (tasks.dat.&lt;generation&gt;):
+ * - records: for title, deadline, notes, status: byte length (int, -1 = null) + UTF-8 bytes
+ *
+ * An update appends a new record and repoints the entry; a delete flags the
+ * entry. When more than half the files are dead space, live tasks are copied
+ * into a new data generation and the index is swapped in by an atomic rename.
+ */
+final class MappedTaskStore implements TaskStore {
+
+    private static final int MAGIC = 0x544D4150; // "TMAP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 48;
+    private static final int ENTRY_BYTES = 24;
+    private static final int FLAG_DELETED = 1;
+
+    private static final int INITIAL_SLOTS = 1_024;
+    private static final long INITIAL_DATA_BYTES = 64 * 1024;
+    private static final long COMPACT_MIN_DEAD_BYTES = 256 * 1024;
+
+    // Header field offsets
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_SLOTS = 8;
+    private static final int H_LIVE = 12;
+    private static final int H_DATA_END = 16;
+    private static final int H_GENERATION = 24;
+    private static final int H_MAX_ID = 32;
+
+    private final File dir;
+    private final String name;
+
+    private RandomAccessFile indexRaf;
+    private RandomAccessFile dataRaf;
+    private MappedByteBuffer index;
+    private MappedByteBuffer data;
+
+    private int slots;
+    private int live;
+    private long dataEnd;
+    private long deadBytes;
+    private int generation;
+    private long maxId;
+    private final HashMap<Long, Integer> slotById = new HashMap<>();
+
+    MappedTaskStore(File dir, String name) {
+        this.dir = dir;
+        this.name = name;
+    }
+
+    /*
+     * ------------------------------- TaskStore ---------------------------------
+     */
+
+    @Override
+    public synchronized List<Task> loadAll() throws IOException {
+        open();
+        List<Task> out = new ArrayList<>(live);
+        for (int slot = 0; slot < slots; slot++) {
+            if ((index.getInt(entry(slot) + 20) & FLAG_DELETED) == 0) {
+                out.add(read(slot));
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public synchronized Task get(long id) throws IOException {
+        open();
+        Integer slot = slotById.get(id);
+        return slot == null ? null : read(slot);
+    }
+
+    @Override
+    public synchronized void apply(TaskChangeSet changes) throws IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        open();
+        for (Task t : changes.inserted()) {
+            put(t);
+        }
+        for (Task t : changes.updated()) {
+            if (!t.notesLoaded) {
+                Task old = get(t.id);
+                t = t.withNotes(old != null ? old.notes : "");
+            }
+            put(t);
+        }
+        for (long id : changes.deleted()) {
+            Integer slot = slotById.remove(id);
+            if (slot != null) {
+                int e = entry(slot);
+                index.putInt(e + 20, index.getInt(e + 20) | FLAG_DELETED);
+                deadBytes += index.getInt(e + 16) + ENTRY_BYTES;
+                live--;
+            }
+        }
+        writeHeader();
+        data.force();
+        index.force();
+
+        if (deadBytes > COMPACT_MIN_DEAD_BYTES
+                && deadBytes > (dataEnd + (long) slots * ENTRY_BYTES) / 2) {
+            compact();
+        }
+    }
+
+    @Override
+    public synchronized long lastId() throws IOException {
+        open();
+        return maxId;
+    }
+
+    @Override
+    public synchronized int count() throws IOException {
+        open();
+        return live;
+    }
+
+    /** Decodes one slot at a time straight from the mapping. */
+    @Override
+    public synchronized void scan(Visitor visitor) throws IOException {
+        open();
+        for (int slot = 0; slot < slots; slot++) {
+            if ((index.getInt(entry(slot) + 20) & FLAG_DELETED) == 0) {
+                visitor.visit(read(slot));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (indexRaf != null) {
+            index.force();
+            data.force();
+            indexRaf.close();
+            dataRaf.close();
+            indexRaf = null;
+            dataRaf = null;
+            index = null;
+            data = null;
+            slotById.clear();
+        }
+    }
+
+    /*
+     * ------------------------------ Reads/writes -------------------------------
+     */
+
+    /** Decodes the record of one slot in place from the data mapping. */
+    private Task read(int slot) {
+        int e = entry(slot);
+        long id = index.getLong(e);
+        int pos = (int) index.getLong(e + 8);
+        String[] fields = new String[4];
+        for (int i = 0; i < 4; i++) {
+            int len = data.getInt(pos);
+            pos += 4;
+            if (len >= 0) {
+                byte[] b = new byte[len];
+                data.position(pos);
+                data.get(b);
+                fields[i] = new String(b, StandardCharsets.UTF_8);
+                pos += len;
+            }
+        }
+        return new Task(id, fields[0], fields[1], fields[2], fields[3]);
+    }
+
+    /** Appends a record for {@code t} and points its slot (new or existing) at it. */
+    private void put(Task t) throws IOException {
+        long offset = appendRecord(t);
+        int length = (int) (dataEnd - offset);
+        Integer slot = slotById.get(t.id);
+        if (slot == null) {
+            ensureIndexCapacity(slots + 1);
+            slot = slots++;
+            live++;
+            slotById.put(t.id, slot);
+        } else {
+            deadBytes += index.getInt(entry(slot) + 16);
+        }
+        int e = entry(slot);
+        index.putLong(e, t.id);
+        index.putLong(e + 8, offset);
+        index.putInt(e + 16, length);
+        index.putInt(e + 20, 0);
+        maxId = Math.max(maxId, t.id);
+    }
+
+    private long appendRecord(Task t) throws IOException {
+        byte[][] fields = {
+                utf8(t.title), utf8(t.deadline), utf8(t.notes), utf8(t.status) };
+        int length = 0;
+        for (byte[] f : fields) {
+            length += 4 + (f == null ? 0 : f.length);
+        }
+        ensureDataCapacity(dataEnd + length);
+        long offset = dataEnd;
+        data.position((int) offset);
+        for (byte[] f : fields) {
+            if (f == null) {
+                data.putInt(-1);
+            } else {
+                data.putInt(f.length);
+                data.put(f);
+            }
+        }
+        dataEnd += length;
+        return offset;
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /*
+     * ------------------------------ Files/mapping ------------------------------
+     */
+
+    private void open() throws IOException {
+        if (indexRaf != null) {
+            return;
+        }
+        File indexFile = new File(dir, name + ".idx");
+        boolean fresh = !indexFile.exists() || indexFile.length() < HEADER_BYTES;
+        indexRaf = new RandomAccessFile(indexFile, "rw");
+        if (fresh) {
+            index = indexRaf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + (long) INITIAL_SLOTS * ENTRY_BYTES);
+            index.putInt(H_MAGIC, MAGIC);
+            index.putInt(H_VERSION, VERSION);
+            slots = live = 0;
+            dataEnd = 0;
+            generation = 0;
+            maxId = 0;
+            writeHeader();
+        } else {
+            index = indexRaf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, indexFile.length());
+            if (index.getInt(H_MAGIC) != MAGIC || index.getInt(H_VERSION) != VERSION) {
+                throw new IOException("Not a task index: " + indexFile);
+            }
+            slots = index.getInt(H_SLOTS);
+            live = index.getInt(H_LIVE);
+            dataEnd = index.getLong(H_DATA_END);
+            generation = index.getInt(H_GENERATION);
+            maxId = index.getLong(H_MAX_ID);
+        }
+
+        File dataFile = dataFile(generation);
+        dataRaf = new RandomAccessFile(dataFile, "rw");
+        long mapped = Math.max(INITIAL_DATA_BYTES, Math.max(dataFile.length(), dataEnd));
+        data = dataRaf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, mapped);
+
+        // Rebuild the id lookup (and the dead-space estimate) from the index
+        slotById.clear();
+        long liveBytes = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            int e = entry(slot);
+            long id = index.getLong(e);
+            maxId = Math.max(maxId, id);
+            if ((index.getInt(e + 20) & FLAG_DELETED) == 0) {
+                slotById.put(id, slot);
+                liveBytes += index.getInt(e + 16);
+            }
+        }
+        deadBytes = (dataEnd - liveBytes) + (long) (slots - live) * ENTRY_BYTES;
+    }
+
+    private void writeHeader() {
+        index.putInt(H_SLOTS, slots);
+        index.putInt(H_LIVE, live);
+        index.putLong(H_DATA_END, dataEnd);
+        index.putInt(H_GENERATION, generation);
+        index.putLong(H_MAX_ID, maxId);
+    }
+
+    private void ensureIndexCapacity(int wantedSlots) throws IOException {
+        long needed = HEADER_BYTES + (long) wantedSlots * ENTRY_BYTES;
+        if (needed > index.capacity()) {
+            long size = Math.max(needed, index.capacity() * 2L);
+            index.force();
+            index = indexRaf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private void ensureDataCapacity(long needed) throws IOException {
+        if (needed > data.capacity()) {
+            if (needed > Integer.MAX_VALUE) {
+                throw new IOException("Task data file is full");
+            }
+            long size = Math.min(Integer.MAX_VALUE, Math.max(needed, data.capacity() * 2L));
+            data.force();
+            data = dataRaf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Copies live tasks into a fresh data generation and index, then renames
+     * the new index over the old one; the rename is the commit point.
+     */
+    private void compact() throws IOException {
+        List<Task> keep = loadAll();
+        int oldGeneration = generation;
+        int nextGeneration = generation + 1;
+        File stagedIndex = new File(dir, name + ".compact.idx");
+        File stagedData = new File(dir, name + ".compact.dat.0");
+        File nextData = dataFile(nextGeneration);
+        stagedIndex.delete();
+        stagedData.delete();
+        nextData.delete();
+
+        MappedTaskStore staged = new MappedTaskStore(dir, name + ".compact");
+        try {
+            TaskChangeSet all = new TaskChangeSet();
+            for (Task t : keep) {
+                all.markInserted(t);
+            }
+            staged.open();
+            staged.generation = nextGeneration;
+            staged.maxId = maxId;
+            staged.apply(all);
+        } finally {
+            staged.close();
+        }
+        if (!stagedData.renameTo(nextData)) {
+            throw new IOException("Could not stage compacted task data");
+        }
+
+        close();
+        if (!stagedIndex.renameTo(new File(dir, name + ".idx"))) {
+            throw new IOException("Could not swap in compacted task index");
+        }
+        dataFile(oldGeneration).delete();
+        open();
+    }
+
+    private File dataFile(int gen) {
+        return new File(dir, name + ".dat." + gen);
+    }
+
+    private static int entry(int slot) {
+        return HEADER_BYTES + slot * ENTRY_BYTES;
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hot-path metrics
+ * ---------------------------------
+ * Latency histograms and counters for the paths that decide how the list
+ * feels, one set per storage {@link MainActivity.Mode}.
+ *
+ * - Lock-free: every histogram is a fixed AtomicLongArray of log-linear
+ *   buckets (8 per power of two, so percentiles are within ~12%), plus an
+ *   atomic max.
+ * - Disabled, {@link #start()} is one volatile read returning 0 and
+ *   {@link #stop} returns straight away; nothing is allocated either way.
+ * - Enabled by default in debuggable builds; toggled from the hidden metrics
+ *   screen (long-press the toolbar).
+ * - While enabled, {@link #report()} is appended to files/metrics/metrics.log
+ *   every {@link #DUMP_PERIOD_S} seconds, rolling over to metrics.log.1..N.
+ */
+final class Metrics {
+
+    /** Timed paths. */
+    enum Path {
+        RELOAD,          // MainActivity.reloadFromStorage, request to rows delivered
+        PERSIST,         // one change set written by the persist queue
+        BIND,            // TaskAdapter.onBindViewHolder
+        EDIT_INFLATE,    // getting the edit dialog view: warm from ViewPrewarmer, else inflated
+        REORDER,         // switching list order/filter in memory, request to list swapped
+        BULK_EDIT,       // a selection action on an in-memory list, rows rewritten and adapter told
+        ROW_INFLATE      // a list row inflated on demand because none was pre-inflated
+    }
+
+    /** Counted events. */
+    enum Counter {
+        ROWS_WRITTEN,
+        WRITE_ERRORS,
+        STORE_READS // full list loads; a rotation should not add one
+    }
+
+    static final long DUMP_PERIOD_S = 60;
+    private static final long ROLL_BYTES = 256 * 1024;
+    private static final int KEEP_FILES = 4;
+    private static final String PREFS_NAME = "metrics_prefs";
+    private static final String PREFS_ENABLED = "enabled";
+
+    private static final MainActivity.Mode[] MODES = MainActivity.Mode.values();
+    private static final Histogram[] HISTOGRAMS = new Histogram[Path.values().length * MODES.length];
+    private static final AtomicLongArray COUNTERS =
+            new AtomicLongArray(Counter.values().length * MODES.length);
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new Histogram();
+        }
+    }
+
+    private static volatile boolean enabled;
+    private static ScheduledExecutorService dumper;
+
+    private Metrics() {
+    }
+
+    /*
+     * -------------------------------- Recording --------------------------------
+     */
+
+    /** Start timestamp for {@link #stop}, or 0 when metrics are off. */
+    static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    static void stop(Path path, MainActivity.Mode mode, long start) {
+        if (start != 0) {
+            HISTOGRAMS[path.ordinal() * MODES.length + mode.ordinal()]
+                    .record(System.nanoTime() - start);
+        }
+    }
+
+    static void count(Counter counter, MainActivity.Mode mode, long delta) {
+        if (enabled) {
+            COUNTERS.addAndGet(counter.ordinal() * MODES.length + mode.ordinal(), delta);
+        }
+    }
+
+    /*
+     * ------------------------------ Control/report ------------------------------
+     */
+
+    /** Reads the saved switch (default: on in debuggable builds) and starts dumping. */
+    static synchronized void init(Context context) {
+        Context app = context.getApplicationContext();
+        boolean debuggable = (app.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        enabled = prefs(app).getBoolean(PREFS_ENABLED, debuggable);
+        if (enabled) {
+            startDumps(new File(app.getFilesDir(), "metrics"));
+        }
+    }
+
+    static synchronized void setEnabled(Context context, boolean on) {
+        Context app = context.getApplicationContext();
+        prefs(app).edit().putBoolean(PREFS_ENABLED, on).apply();
+        enabled = on;
+        if (on) {
+            startDumps(new File(app.getFilesDir(), "metrics"));
+        } else if (dumper != null) {
+            dumper.shutdown();
+            dumper = null;
+        }
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    static void reset() {
+        for (Histogram h : HISTOGRAMS) {
+            h.reset();
+        }
+        for (int i = 0; i < COUNTERS.length(); i++) {
+            COUNTERS.set(i, 0);
+        }
+    }
+
+    /** Text table of every path/mode with samples, then the non-zero counters. */
+    static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%-13s %-12s %8s %10s %10s %10s%n",
+                "path", "mode", "count", "p50 us", "p99 us", "max us"));
+        for (Path path : Path.values()) {
+            for (MainActivity.Mode mode : MODES) {
+                Histogram h = HISTOGRAMS[path.ordinal() * MODES.length + mode.ordinal()];
+                long n = h.count();
+                if (n > 0) {
+                    sb.append(String.format(Locale.US, "%-13s %-12s %8d %10.1f %10.1f %10.1f%n",
+                            path, mode, n,
+                            h.percentile(0.50) / 1e3, h.percentile(0.99) / 1e3, h.max() / 1e3));
+                }
+            }
+        }
+        for (Counter counter : Counter.values()) {
+            for (MainActivity.Mode mode : MODES) {
+                long v = COUNTERS.get(counter.ordinal() * MODES.length + mode.ordinal());
+                if (v != 0) {
+                    sb.append(String.format(Locale.US, "%-13s %-12s %8d%n", counter, mode, v));
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Histogram of one path/mode (tests and the benchmark harness). */
+    static Histogram histogram(Path path, MainActivity.Mode mode) {
+        return HISTOGRAMS[path.ordinal() * MODES.length + mode.ordinal()];
+    }
+
+    static long counter(Counter counter, MainActivity.Mode mode) {
+        return COUNTERS.get(counter.ordinal() * MODES.length + mode.ordinal());
+    }
+
+    private static SharedPreferences prefs(Context app) {
+        return app.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /*
+     * ------------------------------- Rolling dump -------------------------------
+     */
+
+    private static void startDumps(File dir) {
+        if (dumper != null) {
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleWithFixedDelay(() -> dump(dir), DUMP_PERIOD_S, DUMP_PERIOD_S, TimeUnit.SECONDS);
+    }
+
+    /** Appends one timestamped report; rolls metrics.log over once it is big enough. */
+    static void dump(File dir) {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return;
+        }
+        File log = new File(dir, "metrics.log");
+        if (log.length() > ROLL_BYTES) {
+            new File(dir, "metrics.log." + KEEP_FILES).delete();
+            for (int i = KEEP_FILES - 1; i >= 1; i--) {
+                new File(dir, "metrics.log." + i).renameTo(new File(dir, "metrics.log." + (i + 1)));
+            }
+            log.renameTo(new File(dir, "metrics.log.1"));
+        }
+        try (Writer w = new FileWriter(log, true)) {
+            w.write("== " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date())
+                    + " ==\n");
+            w.write(report());
+            w.write('\n');
+        } catch (IOException ignored) {
+        }
+    }
+
+    /*
+     * -------------------------------- Histogram ---------------------------------
+     */
+
+    /** Log-linear histogram of nanosecond values; all operations are lock-free. */
+    static final class Histogram {
+        private static final int SUB_BITS = 3;
+        private static final int SUB = 1 << SUB_BITS;
+        private static final int BUCKETS = index(Long.MAX_VALUE) + 1;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            long v = Math.max(0, nanos);
+            buckets.incrementAndGet(index(v));
+            long m = max.get();
+            while (v > m && !max.compareAndSet(m, v)) {
+                m = max.get();
+            }
+        }
+
+        long count() {
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                n += buckets.get(i);
+            }
+            return n;
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        /** Upper edge of the bucket holding the {@code q} quantile (capped at max). */
+        long percentile(double q) {
+            long n = count();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(q * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    long upper = i + 1 < BUCKETS ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                    return Math.min(upper, max.get());
+                }
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            max.set(0);
+        }
+
+        /** Values below 2*SUB get their own bucket; above, SUB buckets per power of two. */
+        static int index(long v) {
+            if (v < 2 * SUB) {
+                return (int) v;
+            }
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) ((v >>> (exp - SUB_BITS)) & (SUB - 1));
+            return 2 * SUB + (exp - SUB_BITS - 1) * SUB + sub;
+        }
+
+        static long lowerBound(int index) {
+            if (index < 2 * SUB) {
+                return index;
+            }
+            int k = index - 2 * SUB;
+            int exp = k / SUB + SUB_BITS + 1;
+            return (1L << exp) | ((long) (k % SUB) << (exp - SUB_BITS));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.eecs4443lab3;
+
+import android.os.Bundle;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.google.android.material.appbar.MaterialToolbar;
+import com.google.android.material.button.MaterialButton;
+import com.google.android.material.materialswitch.MaterialSwitch;
+
+/**
+ * Metrics screen (debug)
+ * ---------------------------------
+ * Hidden screen, opened by long-pressing the list screen's toolbar. Shows the
+ * {@link Metrics} report: p50/p99/max per hot path and storage mode, plus
+ * write counters.
+ *
+ * - Switch: turns recording (and the rolling file dump) on or off.
+ * - Refresh / Reset: re-reads or clears the histograms.
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    private TextView txtReport;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+
+        // Top app bar + back arrow
+        MaterialToolbar toolbar = findViewById(R.id.metricsToolbar);
+        setSupportActionBar(toolbar);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        }
+        toolbar.setNavigationOnClickListener(v -> finish());
+
+        // View bindings
+        txtReport = findViewById(R.id.txtReport);
+        MaterialSwitch switchEnabled = findViewById(R.id.switchMetrics);
+        MaterialButton btnRefresh = findViewById(R.id.btnRefresh);
+        MaterialButton btnReset = findViewById(R.id.btnReset);
+
+        switchEnabled.setChecked(Metrics.isEnabled());
+        switchEnabled.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            Metrics.setEnabled(this, isChecked);
+            showReport();
+        });
+        btnRefresh.setOnClickListener(v -> showReport());
+        btnReset.setOnClickListener(v -> {
+            Metrics.reset();
+            showReport();
+        });
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        showReport();
+    }
+
+    private void showReport() {
+        txtReport.setText(Metrics.isEnabled() ? Metrics.report() : getString(R.string.metrics_off));
+    }
+}
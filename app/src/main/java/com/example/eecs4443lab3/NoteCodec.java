@@ -0,0 +1,97 @@
+package com.example.eecs4443lab3;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stored form of task notes
+ * ---------------------------------
+ * Notes are kept apart from the list rows (the task_notes table in SQLite,
+ * one file per task in SharedPreferences mode) as one blob each: a format
+ * byte, then UTF-8 text, deflated when it is longer than
+ * {@link #COMPRESS_ABOVE} bytes and deflating actually saves space.
+ *
+ * Plain Java, so the benchmarks module can compile it without the Android SDK.
+ */
+final class NoteCodec {
+
+    /** Shorter notes are stored as they are; deflate gains little on a few lines. */
+    static final int COMPRESS_ABOVE = 1_024;
+
+    private static final byte PLAIN = 0;
+    private static final byte DEFLATED = 1;
+
+    private NoteCodec() {
+    }
+
+    /** The blob for {@code notes}; null for empty notes, which are not stored at all. */
+    static byte[] encode(String notes) {
+        if (notes == null || notes.isEmpty()) {
+            return null;
+        }
+        byte[] utf8 = notes.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length > COMPRESS_ABOVE) {
+            byte[] packed = deflate(utf8);
+            if (packed.length < utf8.length) {
+                return packed;
+            }
+        }
+        byte[] out = new byte[utf8.length + 1];
+        out[0] = PLAIN;
+        System.arraycopy(utf8, 0, out, 1, utf8.length);
+        return out;
+    }
+
+    /** Notes from a blob written by {@link #encode}; "" for none or an unreadable blob. */
+    static String decode(byte[] blob) {
+        if (blob == null || blob.length < 2) {
+            return "";
+        }
+        if (blob[0] == PLAIN) {
+            return new String(blob, 1, blob.length - 1, StandardCharsets.UTF_8);
+        }
+        if (blob[0] != DEFLATED) {
+            return "";
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(blob, 1, blob.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(blob.length * 4);
+            byte[] buf = new byte[8 * 1024];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return ""; // truncated
+                }
+                out.write(buf, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            return "";
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] deflate(byte[] utf8) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(utf8);
+            deflater.finish();
+            byte[] out = new byte[utf8.length + 1];
+            out[0] = DEFLATED;
+            int used = 1;
+            while (!deflater.finished() && used < out.length) {
+                used += deflater.deflate(out, used, out.length - used);
+            }
+            // Did not fit in the plain size: not worth it (the caller keeps it plain)
+            return deflater.finished() ? Arrays.copyOf(out, used) : utf8;
+        } finally {
+            deflater.end();
+        }
+    }
+}
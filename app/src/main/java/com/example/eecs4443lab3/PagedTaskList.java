@@ -0,0 +1,407 @@
+package com.example.eecs4443lab3;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keyset-paged view of the SQLite tasks table
+ * -------------------------------------------
+ * Backs the list in SQLite mode without copying the table into memory.
+ *
+ * - Rows are fetched in pages of {@link #PAGE_SIZE} in the {@link TaskQuery}'s
+ *   order and filter (newest first by default), using the last row of the
+ *   previous page as the cursor (e.g. WHERE _id < ?), so every page is an
+ *   index range scan regardless of table size. Rows are read without their
+ *   notes ({@link SqliteTaskStore#ROW_COLUMNS}).
+ * - The list grows as the user scrolls: pages ahead of the bound position are
+ *   prefetched on a background thread and appended on the main thread.
+ * - Pages further than {@link #KEEP_PAGES} from the bound position are evicted
+ *   and re-read by cursor if the user scrolls back. Every page read leaves a
+ *   cursor behind, so a read never starts further back than the page before.
+ * - Local edits that the persist queue has not written yet are layered on top
+ *   (new rows at the head, hidden rows, replaced rows) until {@link #invalidate()};
+ *   in a sorted query they only take their real place once re-read. The
+ *   cursors outlive the overlay: each is moved to where the saved edits put it.
+ *
+ * All state is touched on the main thread only; the executor just runs queries.
+ */
+final class PagedTaskList extends AbstractList<Task> {
+
+    static final int PAGE_SIZE = 50;
+    private static final int PREFETCH_PAGES = 2;
+    private static final int KEEP_PAGES = 4;
+
+    /** Told about rows appended at the end of the list (main thread). */
+    interface Callback {
+        void onRowsAppended(int position, int count);
+    }
+
+    private final SQLiteDatabase db;
+    private final TaskQuery taskQuery;
+    private final long today; // overdue is relative to this epoch day
+    private Callback callback;
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "task-pager");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Underlying rows (as stored in the table)
+    private final Map<Integer, List<Task>> pages = new HashMap<>();
+    private final Set<Integer> inFlight = new HashSet<>();
+    private final TreeMap<Integer, Task> cursors = new TreeMap<>(); // table position -> row before it
+    private int loadedRows; // rows known to exist, all of them loaded at least once
+    private boolean exhausted;
+    private int generation;
+
+    // Unsaved local edits layered on top of the underlying rows
+    private final ArrayList<Task> head = new ArrayList<>();
+    private final ArrayList<Integer> hidden = new ArrayList<>(); // sorted underlying positions
+    private final Map<Long, Task> replaced = new HashMap<>();
+    private final Map<Long, Integer> replacedAt = new HashMap<>(); // underlying position of each
+
+    /** Overdue in {@code query} is relative to {@code today} (an epoch day). */
+    PagedTaskList(SQLiteDatabase db, TaskQuery query, long today, Callback callback) {
+        this.db = db;
+        this.taskQuery = query;
+        this.today = today;
+        this.callback = callback;
+    }
+
+    /** Points appends at another adapter (the list outlived the activity that loaded it). */
+    void setCallback(Callback callback) {
+        this.callback = callback;
+    }
+
+    /** Loads the first page on the calling thread so the first frame has rows. */
+    void loadInitial() {
+        List<Task> rows = query(0);
+        storePage(0, rows);
+        loadedRows = rows.size();
+        exhausted = rows.size() < PAGE_SIZE;
+    }
+
+    /**
+     * Folds local overlays into the underlying rows after the persist queue
+     * has caught up, so the table again matches what the list shows. Cursors
+     * are kept, moved past the rows saved before them; cached pages are kept
+     * unless a sorted query may now show edited rows elsewhere, in which case
+     * they are re-read by cursor. Returns true if there were local edits.
+     */
+    boolean invalidate() {
+        int visible = size();
+        boolean edited = !head.isEmpty() || !hidden.isEmpty() || !replaced.isEmpty();
+        generation++;
+        inFlight.clear();
+        Map<Integer, List<Task>> shown = new HashMap<>();
+        if (!edited || taskQuery.sort == TaskQuery.Sort.ADDED) {
+            // Rows keep their place: the list as shown is the table
+            for (int page : visiblePages()) {
+                List<Task> rows = peekPage(page, visible);
+                if (rows != null) {
+                    shown.put(page, rows);
+                }
+            }
+        }
+        TreeMap<Integer, Task> moved = new TreeMap<>();
+        for (Map.Entry<Integer, Task> e : cursors.entrySet()) {
+            moved.put(savedPosition(e.getKey(), e.getValue()), e.getValue());
+        }
+        cursors.clear();
+        cursors.putAll(moved);
+        pages.clear();
+        head.clear();
+        hidden.clear();
+        replaced.clear();
+        replacedAt.clear();
+        loadedRows = visible;
+        for (Map.Entry<Integer, List<Task>> e : shown.entrySet()) {
+            storePage(e.getKey(), e.getValue());
+        }
+        return edited;
+    }
+
+    /** Stops paging; reads still under way or posted are dropped. */
+    void close() {
+        generation++;
+        callback = null;
+        loader.shutdownNow();
+    }
+
+    /*
+     * ------------------------------- List API ----------------------------------
+     */
+
+    @Override
+    public Task get(int index) {
+        if (index < head.size()) {
+            return head.get(index);
+        }
+        int u = underlying(index - head.size());
+        int page = u / PAGE_SIZE;
+        List<Task> rows = pages.get(page);
+        if (rows == null) {
+            rows = query(page); // cache miss: one small read from the nearest cursor
+            storePage(page, rows);
+            int end = page * PAGE_SIZE + rows.size();
+            if (end > loadedRows) {
+                // Never resize the list mid-bind; let the adapter hear about it next frame
+                int gen = generation;
+                boolean last = rows.size() < PAGE_SIZE;
+                main.post(() -> growTo(gen, end, last));
+            }
+        }
+        onPageAccessed(page);
+        Task t = rows.get(u % PAGE_SIZE);
+        Task newer = replaced.get(t.id);
+        return newer != null ? newer : t;
+    }
+
+    @Override
+    public int size() {
+        return head.size() + loadedRows - hidden.size();
+    }
+
+    /**
+     * Only inserting at the top is supported: new ids sort first by default,
+     * and a sorted query shows the row there until {@link #invalidate()}.
+     * Callers leave out rows the query's filter does not match.
+     */
+    @Override
+    public void add(int index, Task t) {
+        if (index != 0) {
+            throw new UnsupportedOperationException("PagedTaskList only inserts at the head");
+        }
+        head.add(0, t);
+        modCount++;
+    }
+
+    @Override
+    public Task set(int index, Task t) {
+        if (index < head.size()) {
+            return head.set(index, t);
+        }
+        Task old = get(index);
+        replaced.put(t.id, t);
+        replacedAt.put(t.id, underlying(index - head.size()));
+        return old;
+    }
+
+    @Override
+    public Task remove(int index) {
+        if (index < head.size()) {
+            modCount++;
+            return head.remove(index);
+        }
+        Task old = get(index);
+        int u = underlying(index - head.size());
+        int at = 0;
+        while (at < hidden.size() && hidden.get(at) < u) {
+            at++;
+        }
+        hidden.add(at, u);
+        replaced.remove(old.id);
+        replacedAt.remove(old.id);
+        modCount++;
+        return old;
+    }
+
+    /*
+     * ------------------------------- Paging ------------------------------------
+     */
+
+    /** Maps a visible position (below the head) to a table position. */
+    private int underlying(int visible) {
+        int u = visible;
+        for (int i = 0; i < hidden.size(); i++) {
+            if (hidden.get(i) <= u) {
+                u++;
+            } else {
+                break;
+            }
+        }
+        return u;
+    }
+
+    /** Underlying rows hidden before table position {@code u}. */
+    private int hiddenBefore(int u) {
+        int n = 0;
+        while (n < hidden.size() && hidden.get(n) < u) {
+            n++;
+        }
+        return n;
+    }
+
+    /** Pages of the visible list that cached rows fall on. */
+    private Set<Integer> visiblePages() {
+        Set<Integer> visiblePages = new HashSet<>();
+        for (int i = 0; i < head.size(); i += PAGE_SIZE) {
+            visiblePages.add(i / PAGE_SIZE);
+        }
+        for (Map.Entry<Integer, List<Task>> e : pages.entrySet()) {
+            int first = e.getKey() * PAGE_SIZE;
+            int last = first + e.getValue().size() - 1;
+            visiblePages.add((head.size() + first - hiddenBefore(first)) / PAGE_SIZE);
+            visiblePages.add((head.size() + last - hiddenBefore(last)) / PAGE_SIZE);
+        }
+        return visiblePages;
+    }
+
+    /**
+     * Page {@code page} of the list as shown, if every row of it is cached;
+     * a short page only if it is the table's last.
+     */
+    private List<Task> peekPage(int page, int visible) {
+        int from = page * PAGE_SIZE;
+        int to = Math.min(from + PAGE_SIZE, visible);
+        if (from >= to || (to - from < PAGE_SIZE && !exhausted)) {
+            return null;
+        }
+        List<Task> rows = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            Task t;
+            if (i < head.size()) {
+                t = head.get(i);
+            } else {
+                int u = underlying(i - head.size());
+                List<Task> cached = pages.get(u / PAGE_SIZE);
+                if (cached == null || u % PAGE_SIZE >= cached.size()) {
+                    return null;
+                }
+                t = cached.get(u % PAGE_SIZE);
+                Task newer = replaced.get(t.id);
+                t = newer != null ? newer : t;
+            }
+            rows.add(t);
+        }
+        return rows;
+    }
+
+    /**
+     * Where the rows after {@code cursor} (at underlying position {@code at})
+     * start once the overlay is saved: past the new rows and edited rows that
+     * now sort before it, less the hidden rows and edited rows that left.
+     */
+    private int savedPosition(int at, Task cursor) {
+        int position = at - hiddenBefore(at);
+        for (Task t : head) {
+            if (taskQuery.compare(t, cursor) <= 0) {
+                position++;
+            }
+        }
+        if (taskQuery.sort != TaskQuery.Sort.ADDED) {
+            for (Map.Entry<Long, Task> e : replaced.entrySet()) {
+                boolean wasBefore = replacedAt.get(e.getKey()) < at;
+                boolean isBefore = taskQuery.compare(e.getValue(), cursor) <= 0;
+                if (wasBefore != isBefore) {
+                    position += isBefore ? 1 : -1;
+                }
+            }
+        }
+        return position;
+    }
+
+    private void onPageAccessed(int page) {
+        // Prefetch ahead: evicted pages, plus the next unseen one while rows remain
+        for (int p = page + 1; p <= page + PREFETCH_PAGES; p++) {
+            boolean known = (long) p * PAGE_SIZE < loadedRows;
+            boolean next = !exhausted && (long) (p - 1) * PAGE_SIZE < loadedRows;
+            if ((known || next) && !pages.containsKey(p) && !inFlight.contains(p)) {
+                prefetch(p);
+            }
+        }
+        // Evict pages far from the bound position
+        Iterator<Integer> it = pages.keySet().iterator();
+        while (it.hasNext()) {
+            if (Math.abs(it.next() - page) > KEEP_PAGES) {
+                it.remove();
+            }
+        }
+    }
+
+    private void prefetch(int page) {
+        inFlight.add(page);
+        int gen = generation;
+        Map.Entry<Integer, Task> from = cursors.floorEntry(page * PAGE_SIZE);
+        loader.execute(() -> {
+            List<Task> rows = read(page, from);
+            main.post(() -> {
+                if (gen == generation && callback != null) {
+                    inFlight.remove(page);
+                    storePage(page, rows);
+                    growTo(gen, page * PAGE_SIZE + rows.size(), rows.size() < PAGE_SIZE);
+                }
+            });
+        });
+    }
+
+    /** Caches a page and records the cursor for the rows after it. */
+    private void storePage(int page, List<Task> rows) {
+        pages.put(page, rows);
+        if (!rows.isEmpty()) {
+            cursors.put(page * PAGE_SIZE + rows.size(), rows.get(rows.size() - 1));
+        }
+    }
+
+    /** Extends the list to {@code end} table rows and tells the adapter. */
+    private void growTo(int gen, int end, boolean lastPage) {
+        if (gen != generation || callback == null) {
+            return; // invalidated or closed since the read
+        }
+        if (lastPage) {
+            exhausted = true;
+        }
+        if (end > loadedRows) {
+            int visibleBefore = size();
+            loadedRows = end;
+            callback.onRowsAppended(visibleBefore, size() - visibleBefore);
+        }
+    }
+
+    private List<Task> query(int page) {
+        return read(page, cursors.floorEntry(page * PAGE_SIZE));
+    }
+
+    /**
+     * Reads one page by keyset from {@code from}, the nearest cursor at or
+     * before it (null: the top of the list), stepping over the few rows in
+     * between. Cursors are at most a page apart plus rows added since the last
+     * {@link #invalidate()}, so no read walks the table up to the page.
+     */
+    private List<Task> read(int page, Map.Entry<Integer, Task> from) {
+        int skip = page * PAGE_SIZE - (from != null ? from.getKey() : 0);
+        int limit = skip + PAGE_SIZE;
+        Cursor c;
+        if (from != null) {
+            Task after = from.getValue();
+            c = db.rawQuery(taskQuery.pageAfterSql(today, after), taskQuery.pageAfterArgs(after, limit));
+        } else {
+            c = db.rawQuery(taskQuery.pageSql(today), new String[] { String.valueOf(limit), "0" });
+        }
+        List<Task> rows = new ArrayList<>(PAGE_SIZE);
+        try {
+            c.moveToPosition(skip - 1);
+            while (c.moveToNext()) {
+                rows.add(SqliteTaskStore.readRow(c));
+            }
+        } finally {
+            c.close();
+        }
+        return rows;
+    }
+}
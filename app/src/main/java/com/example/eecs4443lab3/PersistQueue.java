@@ -0,0 +1,157 @@
+package com.example.eecs4443lab3;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Write-behind persistence queue
+ * ---------------------------------
+ * Runs storage writes on a single background thread so the UI thread only
+ * hands over work. Each job carries the rows changed since the previous job,
+ * as immutable tasks; it never touches the live list the UI is mutating.
+ *
+ * - Back-to-back jobs for the same store are merged while they wait, so a
+ *   burst of edits costs a single flush.
+ * - Bulk jobs ({@link #submitWork(Runnable)}) run in submission order with the
+ *   saves around them, never merged.
+ * - {@link #awaitIdle(long)} blocks until everything submitted so far is on
+ *   disk (used from onStop and before switching storage modes).
+ */
+final class PersistQueue {
+
+    private static final class Job {
+        final TaskStore store;
+        final TaskChangeSet changes = new TaskChangeSet();
+        final Runnable work; // bulk job (e.g. a store migration) instead of changes
+
+        Job(TaskStore store, Runnable work) {
+            this.store = store;
+            this.work = work;
+        }
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "persist-queue");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Job> waiting = new ArrayDeque<>();
+    private boolean draining;
+    private volatile Runnable onIdle;
+
+    /** Queues a write; {@code changes} is copied, so the caller may clear it right away. */
+    void submit(TaskStore store, TaskChangeSet changes) {
+        synchronized (lock) {
+            Job job = waiting.peekLast();
+            if (job == null || job.work != null || job.store != store) {
+                job = new Job(store, null);
+                waiting.addLast(job);
+            }
+            job.changes.addAll(changes);
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        executor.execute(this::drain);
+    }
+
+    /**
+     * Queues a bulk job that must be ordered with saves: it runs after every
+     * write submitted before it and before every write submitted after it.
+     */
+    void submitWork(Runnable work) {
+        synchronized (lock) {
+            waiting.addLast(new Job(null, work));
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        executor.execute(this::drain);
+    }
+
+    /** Runs on the queue thread each time the last waiting job has been written. */
+    void setOnIdle(Runnable onIdle) {
+        this.onIdle = onIdle;
+    }
+
+    /** Unsets {@code onIdle}, unless a newer screen has set its own since. */
+    void clearOnIdle(Runnable onIdle) {
+        synchronized (lock) {
+            if (this.onIdle == onIdle) {
+                this.onIdle = null;
+            }
+        }
+    }
+
+    /** True while a job is waiting or being written. */
+    boolean isBusy() {
+        synchronized (lock) {
+            return draining;
+        }
+    }
+
+    /** Blocks until every job submitted before this call has been written. */
+    void awaitIdle(long timeoutMs) {
+        try {
+            executor.submit(() -> { }).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ignored) {
+        }
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /** One change set, timed and counted against the store's mode. */
+    private static void write(Job job) throws IOException {
+        MainActivity.Mode mode = TaskStores.modeOf(job.store);
+        long t0 = Metrics.start();
+        try {
+            job.store.apply(job.changes);
+        } catch (IOException | RuntimeException e) {
+            Metrics.count(Metrics.Counter.WRITE_ERRORS, mode, 1);
+            throw e;
+        }
+        Metrics.stop(Metrics.Path.PERSIST, mode, t0);
+        Metrics.count(Metrics.Counter.ROWS_WRITTEN, mode, job.changes.size());
+    }
+
+    private void drain() {
+        while (true) {
+            Job job;
+            synchronized (lock) {
+                job = waiting.pollFirst();
+                if (job == null) {
+                    draining = false;
+                }
+            }
+            if (job == null) {
+                Runnable idle = onIdle;
+                if (idle != null) {
+                    idle.run();
+                }
+                return;
+            }
+            try {
+                if (job.work != null) {
+                    job.work.run();
+                } else {
+                    write(job);
+                }
+            } catch (IOException | RuntimeException ignored) {
+                // a failed write must not stall later ones
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * SharedPreferences store (JSON array)
+ * ---------------------------------
+ * Keeps all tasks as one JSON array string under {@link #PREFS_KEY}. The
+ * format cannot be patched in place, so every apply rewrites the whole array
+ * from an in-memory mirror of the stored tasks. The array format lives in
+ * {@link TaskJson}.
+ *
+ * - The array holds list rows only. Each task's notes are a file of their own
+ *   under {@link #NOTES_DIR} ({@link NoteCodec}), read by {@link #get} and
+ *   {@link #scan} and written only when they change, so loading and
+ *   rewriting the array do not grow with the notes.
+ * - An array written before that still has notes inline; the first load
+ *   moves them out.
+ * - {@link #PREFS_MAX_ID} is the highest id ever stored, written with the
+ *   array, so deleting the newest task does not free its id for reuse.
+ */
+final class PrefsTaskStore implements TaskStore {
+
+    static final String PREFS_NAME = "tasks_prefs";
+    static final String PREFS_KEY = "tasks_json";
+    static final String PREFS_MAX_ID = "tasks_max_id";
+    static final String NOTES_DIR = "prefs_notes";
+    static final int WRITE_BATCH = 10_000;
+
+    private final SharedPreferences prefs;
+    private final File notesDir;
+    private LinkedHashMap<Long, Task> mirror; // what is on disk, in array order (rows)
+    private long maxId;                       // high-water mark, never lowered by a delete
+
+    PrefsTaskStore(Context ctx) {
+        prefs = ctx.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        notesDir = new File(ctx.getFilesDir(), NOTES_DIR);
+    }
+
+    /** Every task as a list row, without notes. */
+    @Override
+    public synchronized List<Task> loadAll() throws IOException {
+        mirror = new LinkedHashMap<>();
+        maxId = prefs.getLong(PREFS_MAX_ID, 0); // absent before the mark was kept
+        boolean inline = false;
+        for (Task t : TaskJson.decode(prefs.getString(PREFS_KEY, "[]"))) {
+            if (t.notesLoaded) {
+                writeNotes(t.id, t.notes); // older format
+                inline = true;
+            }
+            mirror.put(t.id, t.asRow());
+            maxId = Math.max(maxId, t.id);
+        }
+        if (inline) {
+            writeArray();
+        }
+        return new ArrayList<>(mirror.values());
+    }
+
+    @Override
+    public synchronized Task get(long id) throws IOException {
+        ensureLoaded();
+        Task row = mirror.get(id);
+        return row == null ? null : row.withNotes(readNotes(id));
+    }
+
+    /** Notes are written before the array that refers to them. */
+    @Override
+    public synchronized void apply(TaskChangeSet changes) throws IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        ensureLoaded();
+        for (Task t : changes.inserted()) {
+            writeNotes(t.id, t.notes);
+            mirror.put(t.id, t.asRow());
+            maxId = Math.max(maxId, t.id);
+        }
+        for (Task t : changes.updated()) {
+            if (t.notesLoaded) {
+                writeNotes(t.id, t.notes);
+            }
+            mirror.put(t.id, t.asRow());
+            maxId = Math.max(maxId, t.id);
+        }
+        for (long id : changes.deleted()) {
+            mirror.remove(id);
+        }
+        writeArray();
+        for (long id : changes.deleted()) {
+            notesFile(id).delete();
+        }
+    }
+
+    @Override
+    public synchronized long lastId() throws IOException {
+        ensureLoaded();
+        return maxId;
+    }
+
+    @Override
+    public synchronized int count() throws IOException {
+        ensureLoaded();
+        return mirror.size();
+    }
+
+    @Override
+    public synchronized void scan(Visitor visitor) throws IOException {
+        ensureLoaded();
+        for (Task t : mirror.values()) {
+            visitor.visit(t.withNotes(readNotes(t.id)));
+        }
+    }
+
+    /**
+     * Every apply rewrites the whole array, so bulk writes come in large
+     * pieces; capped so an import holds at most this many rows on top of the
+     * array itself (n imported rows cost n / WRITE_BATCH rewrites).
+     */
+    @Override
+    public int writeBatchSize() {
+        return WRITE_BATCH;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (mirror == null) {
+            loadAll();
+        }
+    }
+
+    private void writeArray() {
+        prefs.edit()
+                .putString(PREFS_KEY, TaskJson.encode(mirror.values()))
+                .putLong(PREFS_MAX_ID, maxId)
+                .commit();
+    }
+
+    /*
+     * ---------------------------------- Notes ----------------------------------
+     */
+
+    private File notesFile(long id) {
+        return new File(notesDir, id + ".note");
+    }
+
+    private String readNotes(long id) throws IOException {
+        File file = notesFile(id);
+        if (!file.isFile()) {
+            return "";
+        }
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            byte[] blob = new byte[(int) in.length()];
+            in.readFully(blob);
+            return NoteCodec.decode(blob);
+        }
+    }
+
+    /** Replaces the notes file through a rename; empty notes have none. */
+    private void writeNotes(long id, String notes) throws IOException {
+        File file = notesFile(id);
+        byte[] blob = NoteCodec.encode(notes);
+        if (blob == null) {
+            file.delete();
+            return;
+        }
+        if (!notesDir.isDirectory() && !notesDir.mkdirs()) {
+            throw new IOException("Could not create " + notesDir);
+        }
+        File tmp = new File(notesDir, id + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(blob);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+    }
+}
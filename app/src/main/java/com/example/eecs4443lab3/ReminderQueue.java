@@ -0,0 +1,181 @@
+package com.example.eecs4443lab3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Upcoming reminders, soonest first
+ * ---------------------------------
+ * An indexed binary min-heap of (time, task id, title) in parallel arrays,
+ * with a map from task id to heap slot.
+ *
+ * - {@link #put} and {@link #remove} are O(log n) by id, so an edit moves
+ *   one entry instead of rebuilding anything.
+ * - {@link #peekTime} is O(1): the one wake-up the alarm needs.
+ * - {@link #pollUntil} takes every entry due by a time, so reminders that
+ *   fall due together come out as one batch.
+ *
+ * Not thread-safe; {@link ReminderScheduler} serialises access.
+ */
+final class ReminderQueue {
+
+    /** Entries taken by one {@link #pollUntil}, soonest first. */
+    static final class Due {
+        final long[] ids;
+        final String[] titles;
+
+        Due(long[] ids, String[] titles) {
+            this.ids = ids;
+            this.titles = titles;
+        }
+    }
+
+    private long[] times = new long[16];
+    private long[] ids = new long[16];
+    private String[] titles = new String[16];
+    private int size;
+    private long moves; // entries moved between slots, for the cost tests
+    private final Map<Long, Integer> slots = new HashMap<>();
+
+    int size() {
+        return size;
+    }
+
+    /** Entries moved between heap slots so far. */
+    long moves() {
+        return moves;
+    }
+
+    boolean contains(long id) {
+        return slots.containsKey(id);
+    }
+
+    /** Time of the soonest entry, or -1 when empty. */
+    long peekTime() {
+        return size == 0 ? -1 : times[0];
+    }
+
+    /** Adds {@code id}, or moves it to {@code time} if it is already queued. */
+    void put(long id, long time, String title) {
+        Integer slot = slots.get(id);
+        if (slot != null) {
+            titles[slot] = title;
+            long old = times[slot];
+            times[slot] = time;
+            if (time < old) {
+                up(slot);
+            } else if (time > old) {
+                down(slot);
+            }
+            return;
+        }
+        if (size == times.length) {
+            int n = size * 2;
+            times = Arrays.copyOf(times, n);
+            ids = Arrays.copyOf(ids, n);
+            titles = Arrays.copyOf(titles, n);
+        }
+        times[size] = time;
+        ids[size] = id;
+        titles[size] = title;
+        slots.put(id, size);
+        up(size++);
+    }
+
+    /** Drops {@code id}; no-op if it is not queued. */
+    void remove(long id) {
+        Integer slot = slots.remove(id);
+        if (slot == null) {
+            return;
+        }
+        int last = --size;
+        if (slot != last) {
+            move(last, slot);
+            if (slot > 0 && less(slot, (slot - 1) / 2)) {
+                up(slot);
+            } else {
+                down(slot);
+            }
+        }
+        titles[last] = null;
+    }
+
+    /** Removes and returns every entry due at or before {@code time}. */
+    Due pollUntil(long time) {
+        List<Long> outIds = new ArrayList<>();
+        List<String> outTitles = new ArrayList<>();
+        while (size > 0 && times[0] <= time) {
+            outIds.add(ids[0]);
+            outTitles.add(titles[0]);
+            remove(ids[0]);
+        }
+        long[] dueIds = new long[outIds.size()];
+        for (int i = 0; i < dueIds.length; i++) {
+            dueIds[i] = outIds.get(i);
+        }
+        return new Due(dueIds, outTitles.toArray(new String[0]));
+    }
+
+    void clear() {
+        Arrays.fill(titles, 0, size, null);
+        size = 0;
+        slots.clear();
+    }
+
+    /*
+     * ----------------------------------- Heap -----------------------------------
+     */
+
+    private boolean less(int a, int b) {
+        return times[a] < times[b] || times[a] == times[b] && ids[a] < ids[b];
+    }
+
+    private void up(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!less(i, parent)) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void down(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            int child = left + 1 < size && less(left + 1, left) ? left + 1 : left;
+            if (!less(child, i)) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long t = times[a];
+        long id = ids[a];
+        String title = titles[a];
+        move(b, a);
+        times[b] = t;
+        ids[b] = id;
+        titles[b] = title;
+        slots.put(id, b);
+    }
+
+    /** Copies slot {@code from} into slot {@code to}, updating the id map. */
+    private void move(int from, int to) {
+        moves++;
+        times[to] = times[from];
+        ids[to] = ids[from];
+        titles[to] = titles[from];
+        slots.put(ids[to], to);
+    }
+}
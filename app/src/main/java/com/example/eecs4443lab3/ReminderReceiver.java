@@ -0,0 +1,47 @@
+package com.example.eecs4443lab3;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reminder alarm + boot receiver
+ * ---------------------------------
+ * Wakes {@link ReminderScheduler} when its alarm fires, and after a reboot
+ * (which drops every alarm) so it can set the next one. The process may have
+ * just been started for this, so the queue is loaded from the store first
+ * (SQLite, the mode the app starts in), off the main thread.
+ */
+public class ReminderReceiver extends BroadcastReceiver {
+
+    static final String ACTION_FIRE = "com.example.eecs4443lab3.action.REMINDER";
+
+    private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "task-reminders");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        PendingResult result = goAsync();
+        Context app = context.getApplicationContext();
+        boolean fire = ACTION_FIRE.equals(intent.getAction());
+        WORKER.execute(() -> {
+            try {
+                ReminderScheduler reminders = ReminderScheduler.get(app);
+                reminders.ensureLoaded(TaskStores.get(app, MainActivity.Mode.SQLITE));
+                if (fire) {
+                    reminders.fire();
+                }
+            } catch (IOException | RuntimeException ignored) {
+            } finally {
+                result.finish();
+            }
+        });
+    }
+}
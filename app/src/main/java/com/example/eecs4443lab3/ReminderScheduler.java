@@ -0,0 +1,220 @@
+package com.example.eecs4443lab3;
+
+import android.app.AlarmManager;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+
+import java.io.IOException;
+
+/**
+ * Deadline reminders
+ * ---------------------------------
+ * Every pending task with a picker deadline is reminded at
+ * {@link #REMINDER_HOUR}:00 on its day. The upcoming reminders live in one
+ * in-process {@link ReminderQueue}; the system only ever holds a single
+ * alarm, for the soonest one.
+ *
+ * - {@link #onChanges} runs on the persist queue after each save and moves
+ *   only the tasks in the change set; the alarm is re-set only when the
+ *   soonest reminder changed.
+ * - The alarm is inexact within {@link #COALESCE_MS}; when it fires, every
+ *   reminder due by then is posted as one notification (all tasks due the
+ *   same day share a reminder time anyway).
+ * - The queue is rebuilt from the store once per process ({@link #load}),
+ *   including when the alarm or a reboot starts the process
+ *   ({@link ReminderReceiver}). Reminders already posted are remembered as
+ *   a time ("fired until"), so none is posted twice.
+ */
+final class ReminderScheduler {
+
+    static final int REMINDER_HOUR = 9;
+    static final long COALESCE_MS = 15 * 60_000;
+    static final String CHANNEL_ID = "reminders";
+    static final int NOTIFICATION_ID = 4443;
+    private static final int MAX_LINES = 5; // titles listed in a batched notification
+
+    private static final String PREFS = "reminders";
+    private static final String PREFS_FIRED_UNTIL = "fired_until";
+
+    /** Wall clock; replaced by a fake one in tests. */
+    interface Clock {
+        long now();
+    }
+
+    private static ReminderScheduler instance;
+
+    private final Context context;
+    private final Clock clock;
+    private final AlarmManager alarms;
+    private final NotificationManager notifications;
+    private final SharedPreferences prefs;
+    private final ReminderQueue queue = new ReminderQueue();
+    private boolean loaded;
+    private long firedUntil;
+    private long armedAt = -1; // trigger time of the alarm we hold, -1 for none
+
+    /** The process-wide scheduler. */
+    static synchronized ReminderScheduler get(Context context) {
+        if (instance == null) {
+            instance = new ReminderScheduler(context, System::currentTimeMillis);
+        }
+        return instance;
+    }
+
+    ReminderScheduler(Context context, Clock clock) {
+        this.context = context.getApplicationContext();
+        this.clock = clock;
+        alarms = (AlarmManager) this.context.getSystemService(Context.ALARM_SERVICE);
+        notifications = (NotificationManager) this.context.getSystemService(Context.NOTIFICATION_SERVICE);
+        prefs = this.context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    /** When {@code t} should be reminded, or -1 if it should not. */
+    static long remindAt(Task t) {
+        if (TaskDbHelper.statusCode(t.status) != TaskDbHelper.STATUS_PENDING) {
+            return -1;
+        }
+        Long day = TaskDates.toEpochDay(t.deadline);
+        return day == null ? -1 : TaskDates.atHour(day, REMINDER_HOUR);
+    }
+
+    synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /** Number of reminders waiting. */
+    synchronized int pending() {
+        return queue.size();
+    }
+
+    /** Trigger time of the alarm held, or -1 for none. */
+    synchronized long armedAt() {
+        return armedAt;
+    }
+
+    /** Rebuilds the queue from every task in {@code store}, then re-sets the alarm. */
+    synchronized void load(TaskStore store) throws IOException {
+        firedUntil = prefs.getLong(PREFS_FIRED_UNTIL, -1);
+        if (firedUntil < 0) {
+            // First run: deadlines already passed are not news
+            firedUntil = clock.now();
+            prefs.edit().putLong(PREFS_FIRED_UNTIL, firedUntil).apply();
+        }
+        queue.clear();
+        store.scan(this::track);
+        loaded = true;
+        rearm();
+    }
+
+    /** {@link #load} unless this process already has. */
+    synchronized void ensureLoaded(TaskStore store) throws IOException {
+        if (!loaded) {
+            load(store);
+        }
+    }
+
+    /** Applies a saved change set; runs on the persist queue after the write. */
+    synchronized void onChanges(TaskChangeSet changes) {
+        if (!loaded) {
+            return; // the load reads the store after this write
+        }
+        for (Task t : changes.inserted()) {
+            track(t);
+        }
+        for (Task t : changes.updated()) {
+            track(t);
+        }
+        for (long id : changes.deleted()) {
+            queue.remove(id);
+        }
+        rearm();
+    }
+
+    /** The alarm went off: posts everything due within the coalescing window. */
+    synchronized void fire() {
+        armedAt = -1; // the system dropped the alarm when it fired
+        long until = clock.now() + COALESCE_MS;
+        ReminderQueue.Due due = queue.pollUntil(until);
+        firedUntil = Math.max(firedUntil, until);
+        prefs.edit().putLong(PREFS_FIRED_UNTIL, firedUntil).apply();
+        if (due.ids.length > 0) {
+            post(due);
+        }
+        rearm();
+    }
+
+    private void track(Task t) {
+        long at = remindAt(t);
+        if (at > firedUntil) {
+            queue.put(t.id, at, t.title);
+        } else {
+            queue.remove(t.id); // done, no deadline, or already reminded
+        }
+    }
+
+    /** Holds one alarm for the soonest reminder; talks to the system only when that changes. */
+    private void rearm() {
+        long next = queue.peekTime();
+        if (next == armedAt) {
+            return;
+        }
+        PendingIntent pi = alarmIntent();
+        if (next < 0) {
+            alarms.cancel(pi);
+        } else {
+            alarms.setWindow(AlarmManager.RTC_WAKEUP, Math.max(next, clock.now()), COALESCE_MS, pi);
+        }
+        armedAt = next;
+    }
+
+    private PendingIntent alarmIntent() {
+        Intent i = new Intent(context, ReminderReceiver.class).setAction(ReminderReceiver.ACTION_FIRE);
+        return PendingIntent.getBroadcast(context, 0, i,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    /** One notification for the whole batch; a later batch replaces it. */
+    private void post(ReminderQueue.Due due) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            notifications.createNotificationChannel(new NotificationChannel(CHANNEL_ID,
+                    "Deadline reminders", NotificationManager.IMPORTANCE_DEFAULT));
+        }
+        Intent open = new Intent(context, MainActivity.class)
+                .setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        PendingIntent content = PendingIntent.getActivity(context, 0, open, PendingIntent.FLAG_IMMUTABLE);
+
+        int n = due.ids.length;
+        Notification.Builder b = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                ? new Notification.Builder(context, CHANNEL_ID)
+                : new Notification.Builder(context);
+        b.setSmallIcon(android.R.drawable.ic_popup_reminder)
+                .setContentIntent(content)
+                .setAutoCancel(true)
+                .setNumber(n);
+        if (n == 1) {
+            b.setContentTitle("Task due").setContentText(due.titles[0]);
+        } else {
+            Notification.InboxStyle inbox = new Notification.InboxStyle();
+            for (int i = 0; i < Math.min(n, MAX_LINES); i++) {
+                inbox.addLine(due.titles[i]);
+            }
+            if (n > MAX_LINES) {
+                inbox.setSummaryText("+" + (n - MAX_LINES) + " more");
+            }
+            b.setContentTitle(n + " tasks due")
+                    .setContentText(due.titles[0] + ", " + due.titles[1] + (n > 2 ? ", …" : ""))
+                    .setStyle(inbox);
+        }
+        try {
+            notifications.notify(NOTIFICATION_ID, b.build());
+        } catch (SecurityException ignored) {
+            // notification permission not granted
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQLite store (tasks.db)
+ * ---------------------------------
+ * Row-level writes through {@link TaskDbHelper}. The list screen does not call
+ * {@link #loadAll()}; it pages the table through {@link PagedTaskList} using
+ * {@link #getReadableDatabase()}. Search goes through the tasks_fts index.
+ *
+ * List reads ({@link #ROW_COLUMNS}) never touch task_notes; {@link #get} and
+ * {@link #scan} add the notes.
+ *
+ * Every applied change set is announced to {@link TaskProvider} clients,
+ * whichever screen or job wrote it.
+ */
+final class SqliteTaskStore implements TaskStore {
+
+    /** What a list row shows: everything but the notes. */
+    static final String ROW_COLUMNS = "_id, title, deadline_day, deadline_text, status";
+
+    /** Most matches a search ranks; the newest ones win when there are more. */
+    static final int SEARCH_LIMIT = 500;
+
+    // Ids bound per IN (...) list; older SQLite builds allow at most 999 arguments
+    private static final int IDS_PER_QUERY = 500;
+
+    // matchinfo weights per FTS column: a title hit counts more than a notes hit
+    private static final double[] COLUMN_WEIGHTS = { 4.0, 1.0 };
+
+    private final Context context;
+    private final TaskDbHelper helper;
+
+    SqliteTaskStore(Context ctx) {
+        context = ctx.getApplicationContext();
+        helper = new TaskDbHelper(ctx);
+    }
+
+    SQLiteDatabase getReadableDatabase() {
+        return helper.getReadableDatabase();
+    }
+
+    /** Every task as a list row, without notes. */
+    @Override
+    public List<Task> loadAll() {
+        List<Task> out = new ArrayList<>();
+        try (Cursor c = helper.getReadableDatabase().rawQuery(
+                "SELECT " + ROW_COLUMNS + " FROM tasks ORDER BY _id DESC", null)) {
+            while (c.moveToNext()) {
+                out.add(readRow(c));
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public Task get(long id) {
+        Task row;
+        try (Cursor c = helper.getReadableDatabase().rawQuery(
+                "SELECT " + ROW_COLUMNS + " FROM tasks WHERE _id = ?",
+                new String[] { String.valueOf(id) })) {
+            row = c.moveToFirst() ? readRow(c) : null;
+        }
+        return row == null ? null : row.withNotes(helper.notes(id));
+    }
+
+    @Override
+    public void apply(TaskChangeSet changes) {
+        if (!changes.isEmpty()) {
+            helper.apply(changes);
+            TaskProvider.notifyApplied(context, changes);
+        }
+    }
+
+    @Override
+    public long lastId() {
+        return helper.lastId();
+    }
+
+    @Override
+    public int count() {
+        return (int) DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), "tasks");
+    }
+
+    /** Streams the table, notes included, through one cursor; only a cursor window is held at a time. */
+    @Override
+    public void scan(Visitor visitor) throws IOException {
+        try (Cursor c = helper.getReadableDatabase().rawQuery(
+                "SELECT t._id, t.title, t.deadline_day, t.deadline_text, t.status, n.body"
+                        + " FROM tasks t LEFT JOIN task_notes n ON n._id = t._id ORDER BY t._id",
+                null)) {
+            while (c.moveToNext()) {
+                visitor.visit(readRow(c).withNotes(NoteCodec.decode(c.isNull(5) ? null : c.getBlob(5))));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        helper.close();
+    }
+
+    /**
+     * Ranked full-text search. {@code match} is an FTS4 MATCH expression
+     * (see {@link TaskSearch#matchExpression(String)}). The newest {@code limit}
+     * matches are read, as list rows, and ordered by {@link #score(byte[])}; ties
+     * stay newest first.
+     */
+    List<Task> search(String match, int limit) {
+        List<Task> hits = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        try (Cursor c = helper.getReadableDatabase().rawQuery(
+                "SELECT t._id, t.title, t.deadline_day, t.deadline_text, t.status,"
+                        + " matchinfo(tasks_fts, 'pcx')"
+                        + " FROM tasks_fts JOIN tasks t ON t._id = tasks_fts.docid"
+                        + " WHERE tasks_fts MATCH ? ORDER BY tasks_fts.docid DESC LIMIT ?",
+                new String[] { match, String.valueOf(limit) })) {
+            while (c.moveToNext()) {
+                hits.add(readRow(c));
+                scores.add(score(c.getBlob(5)));
+            }
+        }
+        Integer[] order = new Integer[hits.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores.get(b), scores.get(a)));
+        List<Task> out = new ArrayList<>(order.length);
+        for (Integer i : order) {
+            out.add(hits.get(i));
+        }
+        return out;
+    }
+
+    /**
+     * Relevance of one row from matchinfo('pcx'): for every phrase and column,
+     * hits in this row, weighted by column and damped by how many rows contain
+     * the phrase at all (rare terms count more).
+     */
+    static double score(byte[] matchinfo) {
+        ByteBuffer b = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder());
+        int phrases = b.getInt(0);
+        int columns = b.getInt(4);
+        double score = 0;
+        for (int p = 0; p < phrases; p++) {
+            for (int col = 0; col < columns; col++) {
+                int at = 8 + 12 * (p * columns + col);
+                int hitsHere = b.getInt(at);
+                int rowsWithHits = b.getInt(at + 8);
+                if (hitsHere > 0) {
+                    double weight = col < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[col] : 1.0;
+                    score += weight * hitsHere / (1.0 + Math.log1p(rowsWithHits));
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Tasks due between two epoch days (inclusive), soonest first, optionally
+     * only those with one status code, as list rows. Served by the composite
+     * deadline indexes.
+     */
+    List<Task> queryDue(long fromDay, long toDay, Integer status) {
+        String sql = "SELECT " + ROW_COLUMNS + " FROM tasks WHERE "
+                + (status != null ? "status = ? AND " : "")
+                + "deadline_day BETWEEN ? AND ? ORDER BY deadline_day, _id";
+        String[] args = status != null
+                ? new String[] { String.valueOf(status), String.valueOf(fromDay), String.valueOf(toDay) }
+                : new String[] { String.valueOf(fromDay), String.valueOf(toDay) };
+        List<Task> out = new ArrayList<>();
+        try (Cursor c = helper.getReadableDatabase().rawQuery(sql, args)) {
+            while (c.moveToNext()) {
+                out.add(readRow(c));
+            }
+        }
+        return out;
+    }
+
+    /** The tasks in {@code ids} that exist, as list rows; for bulk edits of rows not paged in. */
+    List<Task> rows(Collection<Long> ids) {
+        List<Task> out = new ArrayList<>(ids.size());
+        Long[] all = ids.toArray(new Long[0]);
+        for (int from = 0; from < all.length; from += IDS_PER_QUERY) {
+            int n = Math.min(IDS_PER_QUERY, all.length - from);
+            try (Cursor c = helper.getReadableDatabase().rawQuery(
+                    "SELECT " + ROW_COLUMNS + " FROM tasks WHERE _id IN (" + placeholders(n) + ")",
+                    idArgs(all, from, n))) {
+                while (c.moveToNext()) {
+                    out.add(readRow(c));
+                }
+            }
+        }
+        return out;
+    }
+
+    /** One page of list rows from {@code sql}, which binds LIMIT and OFFSET last. */
+    List<Task> page(String sql, int limit, int offset) {
+        List<Task> out = new ArrayList<>(limit);
+        try (Cursor c = helper.getReadableDatabase().rawQuery(sql,
+                new String[] { String.valueOf(limit), String.valueOf(offset) })) {
+            while (c.moveToNext()) {
+                out.add(readRow(c));
+            }
+        }
+        return out;
+    }
+
+    /** Notes of the tasks in {@code ids} that have any; one read per {@link #IDS_PER_QUERY} ids. */
+    Map<Long, String> notes(Collection<Long> ids) {
+        Map<Long, String> out = new HashMap<>();
+        Long[] all = ids.toArray(new Long[0]);
+        for (int from = 0; from < all.length; from += IDS_PER_QUERY) {
+            int n = Math.min(IDS_PER_QUERY, all.length - from);
+            try (Cursor c = helper.getReadableDatabase().rawQuery(
+                    "SELECT _id, body FROM task_notes WHERE _id IN (" + placeholders(n) + ")",
+                    idArgs(all, from, n))) {
+                while (c.moveToNext()) {
+                    out.put(c.getLong(0), NoteCodec.decode(c.getBlob(1)));
+                }
+            }
+        }
+        return out;
+    }
+
+    /** Ids of every row {@code query} shows on {@code today}, paged in or not. */
+    List<Long> ids(TaskQuery query, long today) {
+        List<Long> out = new ArrayList<>();
+        try (Cursor c = helper.getReadableDatabase().rawQuery(query.pageSql(today),
+                new String[] { "-1", "0" })) { // LIMIT -1: no limit
+            while (c.moveToNext()) {
+                out.add(c.getLong(0));
+            }
+        }
+        return out;
+    }
+
+    /** Pending tasks due in the seven days starting today. */
+    List<Task> pendingDueThisWeek() {
+        long today = TaskDates.today();
+        return queryDue(today, today + 6, TaskDbHelper.STATUS_PENDING);
+    }
+
+    private static String placeholders(int n) {
+        StringBuilder b = new StringBuilder(2 * n);
+        for (int i = 0; i < n; i++) {
+            b.append(i == 0 ? "?" : ",?");
+        }
+        return b.toString();
+    }
+
+    private static String[] idArgs(Long[] ids, int from, int n) {
+        String[] args = new String[n];
+        for (int i = 0; i < n; i++) {
+            args[i] = String.valueOf(ids[from + i]);
+        }
+        return args;
+    }
+
+    /** Maps a row selected with {@link #ROW_COLUMNS} to a list row. */
+    static Task readRow(Cursor c) {
+        String deadline = c.isNull(2) ? c.getString(3) : TaskDates.format(c.getLong(2));
+        return Task.row(
+                c.getLong(0),
+                c.getString(1),
+                deadline,
+                TaskDbHelper.statusText(c.getInt(4)));
+    }
+}
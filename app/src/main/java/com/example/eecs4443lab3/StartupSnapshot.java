@@ -0,0 +1,115 @@
+package com.example.eecs4443lab3;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * First-screen snapshot
+ * ---------------------------------
+ * A small file per storage mode holding the first {@link #ROWS} rows of the
+ * list as last shown, plus the id high-water mark. MainActivity draws it in
+ * onCreate and loads the real store in the background, so the first frame
+ * costs the same for 10 tasks or 100k.
+ *
+ * - Rewritten (on the persist queue, after the writes it reflects) whenever
+ *   the first screen or the last id changes.
+ * - Layout: magic "TSNP" + version + last id + row count, then per row the
+ *   id and title, deadline and status in {@link TaskJournal}'s string
+ *   encoding. Rows are kept without notes, like the list that shows them.
+ * - Replaced by an atomic rename; a missing or unreadable file means no
+ *   snapshot, and the list simply starts empty until the load arrives.
+ */
+final class StartupSnapshot {
+
+    /** More than a tall phone shows, well under one SQLite page of rows. */
+    static final int ROWS = 40;
+
+    private static final int MAGIC = 0x54534E50; // "TSNP"
+    private static final int VERSION = 2;
+
+    final List<Task> rows;
+    final long lastId;
+
+    StartupSnapshot(List<Task> rows, long lastId) {
+        this.rows = Collections.unmodifiableList(new ArrayList<>(rows));
+        this.lastId = lastId;
+    }
+
+    /** First {@link #ROWS} of {@code tasks} (by index, so a paged list stays paged). */
+    static StartupSnapshot of(List<Task> tasks, long lastId) {
+        int n = Math.min(ROWS, tasks.size());
+        List<Task> rows = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            rows.add(tasks.get(i).asRow());
+        }
+        return new StartupSnapshot(rows, lastId);
+    }
+
+    static File file(File dir, MainActivity.Mode mode) {
+        return new File(dir, "first_screen_" + mode.name().toLowerCase(Locale.ROOT) + ".bin");
+    }
+
+    /** The saved snapshot, or null if there is none or it cannot be read. */
+    static StartupSnapshot read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long lastId = in.readLong();
+            int n = in.readInt();
+            if (n < 0 || n > ROWS) {
+                return null;
+            }
+            List<Task> rows = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                long id = in.readLong();
+                rows.add(Task.row(id,
+                        TaskJournal.readString(in),
+                        TaskJournal.readString(in),
+                        TaskJournal.readString(in)));
+            }
+            return new StartupSnapshot(rows, lastId);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    void write(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lastId);
+            out.writeInt(rows.size());
+            for (Task t : rows) {
+                out.writeLong(t.id);
+                TaskJournal.writeString(out, t.title);
+                TaskJournal.writeString(out, t.deadline);
+                TaskJournal.writeString(out, t.status);
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    /** Same rows and last id; used to skip rewriting an unchanged snapshot. */
+    boolean sameAs(StartupSnapshot other) {
+        return other != null && lastId == other.lastId && rows.equals(other.rows);
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.eecs4443lab3;
+
+import java.io.IOException;
+
+/**
+ * Store-to-store mirror
+ * ---------------------------------
+ * Makes one {@link TaskStore} hold exactly the tasks of another, writing only
+ * what differs. Used when the storage mode changes, so every mode sees the
+ * same list.
+ *
+ * - The target is scanned once into an id -> content hash table of primitive
+ *   arrays (about 17 bytes per task; no Task objects are kept).
+ * - The source is streamed with {@link TaskStore#scan}; a task whose hash
+ *   matches the target's is skipped, others become inserts or updates.
+ * - Changes are applied in batches of {@link TaskStore#writeBatchSize()}, and
+ *   target tasks the source does not have are deleted at the end.
+ *
+ * Runs on the calling thread; MainActivity runs it on the persist queue so
+ * it is ordered with ordinary saves.
+ */
+final class StoreMigration {
+
+    /** Progress callback, invoked on the migrating thread after each batch. */
+    interface Progress {
+        void onProgress(int done, int total);
+    }
+
+    /** What a mirror wrote. */
+    static final class Result {
+        final int copied;
+        final int unchanged;
+        final int removed;
+
+        Result(int copied, int unchanged, int removed) {
+            this.copied = copied;
+            this.unchanged = unchanged;
+            this.removed = removed;
+        }
+    }
+
+    private StoreMigration() {
+    }
+
+    static Result mirror(TaskStore from, TaskStore to, Progress progress) throws IOException {
+        // 1. What the target already has
+        HashIndex existing = new HashIndex(to.count());
+        to.scan(t -> existing.put(t.id, contentHash(t)));
+
+        // 2. Stream the source, writing only what differs
+        int total = from.count();
+        int batchSize = Math.max(1, to.writeBatchSize());
+        TaskChangeSet batch = new TaskChangeSet();
+        int[] counts = new int[3]; // done, copied, unchanged
+        from.scan(t -> {
+            int slot = existing.find(t.id);
+            if (slot >= 0 && existing.hashes[slot] == contentHash(t)) {
+                counts[2]++;
+            } else if (slot >= 0) {
+                batch.markUpdated(t);
+            } else {
+                batch.markInserted(t);
+            }
+            if (slot >= 0) {
+                existing.seen[slot] = true;
+            }
+            counts[0]++;
+            if (batch.size() >= batchSize) {
+                counts[1] += batch.size();
+                to.apply(batch);
+                batch.clear();
+                progress.onProgress(counts[0], total);
+            }
+        });
+
+        // 3. Drop what the source does not have
+        int removed = 0;
+        for (int slot = 0; slot < existing.ids.length; slot++) {
+            if (existing.used[slot] && !existing.seen[slot]) {
+                batch.markDeleted(existing.ids[slot]);
+                removed++;
+            }
+        }
+        counts[1] += batch.size() - removed;
+        to.apply(batch);
+        batch.clear();
+        progress.onProgress(counts[0], total);
+        return new Result(counts[1], counts[2], removed);
+    }
+
+    /** 64-bit FNV-1a over the content fields; null and "" hash differently. */
+    static long contentHash(Task t) {
+        long h = 0xcbf29ce484222325L;
+        h = mix(h, t.title);
+        h = mix(h, t.deadline);
+        h = mix(h, t.notes);
+        h = mix(h, t.status);
+        return h;
+    }
+
+    private static long mix(long h, String s) {
+        if (s == null) {
+            return (h ^ 0xff) * 0x100000001b3L;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        return (h ^ 0xfe) * 0x100000001b3L; // field separator
+    }
+
+    /** Open-addressing id -> hash table with a "seen in source" flag per slot. */
+    private static final class HashIndex {
+        long[] ids;
+        long[] hashes;
+        boolean[] used;
+        boolean[] seen;
+        private int size;
+
+        HashIndex(int expected) {
+            allocate(Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1);
+        }
+
+        private void allocate(int capacity) {
+            ids = new long[capacity];
+            hashes = new long[capacity];
+            used = new boolean[capacity];
+            seen = new boolean[capacity];
+        }
+
+        void put(long id, long hash) {
+            int slot = probe(id);
+            if (slot < 0) {
+                if ((size + 1) * 4 > ids.length * 3) {
+                    grow();
+                    slot = probe(id);
+                }
+                slot = ~slot;
+                used[slot] = true;
+                ids[slot] = id;
+                size++;
+            }
+            hashes[slot] = hash;
+        }
+
+        /** Slot of {@code id}, or -1. */
+        int find(long id) {
+            int slot = probe(id);
+            return slot >= 0 ? slot : -1;
+        }
+
+        /** Slot holding {@code id}, or ~(free slot) where it would go. */
+        private int probe(long id) {
+            int mask = ids.length - 1;
+            long h = id * 0x9E3779B97F4A7C15L;
+            int slot = (int) ((h ^ (h >>> 32)) & mask);
+            while (used[slot]) {
+                if (ids[slot] == id) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return ~slot;
+        }
+
+        private void grow() {
+            long[] oldIds = ids;
+            long[] oldHashes = hashes;
+            boolean[] oldUsed = used;
+            allocate(oldIds.length * 2);
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = ~probe(oldIds[i]);
+                    used[slot] = true;
+                    ids[slot] = oldIds[i];
+                    hashes[slot] = oldHashes[i];
+                }
+            }
+        }
+    }
+}
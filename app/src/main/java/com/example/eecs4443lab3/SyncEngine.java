@@ -0,0 +1,579 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local-first delta sync
+ * ---------------------------------
+ * The task store stays the source of truth for the UI; this engine keeps a
+ * remote copy in step in the background. Off until an endpoint is set.
+ *
+ * - {@link #record} runs on the persist queue after each save and turns the
+ *   change set into per-field stamps and tombstones in {@link SyncState}, by
+ *   comparing field hashes, so only fields that really changed are sent.
+ * - A sync is a series of POSTs to {endpoint}/sync, each pushing up to
+ *   {@link #BATCH} changed tasks and pulling other devices' changes since the
+ *   cursor, gzip both ways ({@link SyncWire}). A sync with nothing to send
+ *   and nothing new is one small round trip.
+ * - Merge is last-writer-wins per field: an incoming field replaces the local
+ *   one unless the local one changed later; equal stamps go to the greater
+ *   device id, as on the server. A delete wins over any edit.
+ * - Reading and applying changes run on the persist queue, ordered with the
+ *   UI's saves; only the network waits on the "task-sync" thread.
+ * - Scheduling: {@link #requestSync} after edits (debounced), every
+ *   {@link #PERIOD_MS}, and with jittered exponential backoff after failures.
+ */
+final class SyncEngine {
+
+    static final int BATCH = 500;
+    static final long DEBOUNCE_MS = 2_000;
+    static final long PERIOD_MS = 15 * 60_000;
+    static final long BACKOFF_BASE_MS = 5_000;
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+
+    /** Called on the sync thread after each sync attempt. */
+    interface Listener {
+        /** {@code error} is null on success; {@code run.pulled > 0} means the store changed. */
+        void onSyncDone(Stats run, IOException error);
+    }
+
+    /** What one sync cost. */
+    static final class Stats {
+        int roundTrips;
+        long bytesSent; // request bodies, compressed
+        long bytesReceived; // response bodies, compressed
+        int pushed; // tasks sent
+        int pulled; // tasks changed here by other devices
+    }
+
+    /** One request and the stamps it carried, to acknowledge once the server has them. */
+    private static final class Outgoing {
+        final SyncWire.Batch batch = new SyncWire.Batch();
+        final List<Long> localIds = new ArrayList<>();
+        boolean full; // more rows may be waiting
+    }
+
+    private final SyncState state;
+    private final PersistQueue queue;
+    private volatile TaskStore store;
+    private volatile Listener listener;
+    private volatile String endpoint = "";
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "task-sync");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Random jitter = new Random();
+    private final Object lock = new Object();
+    private ScheduledFuture<?> next;
+    private long nextAt; // uptime of the scheduled run
+    private int failures;
+
+    SyncEngine(Context context, PersistQueue queue) {
+        this(new SyncState(context.getApplicationContext()), queue);
+    }
+
+    SyncEngine(SyncState state, PersistQueue queue) {
+        this.state = state;
+        this.queue = queue;
+    }
+
+    /** Store that receives other devices' changes: the one the UI is using. */
+    void setStore(TaskStore store) {
+        this.store = store;
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Unsets {@code listener}, unless a newer screen has set its own since. */
+    void clearListener(Listener listener) {
+        synchronized (lock) {
+            if (this.listener == listener) {
+                this.listener = null;
+            }
+        }
+    }
+
+    /*
+     * -------------------------------- Scheduling --------------------------------
+     */
+
+    boolean isEnabled() {
+        return !endpoint.isEmpty();
+    }
+
+    String endpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Sets the server (empty turns sync off); called with the saved value at
+     * startup too. A different server than last time starts over with it.
+     */
+    void setEndpoint(String url) {
+        String trimmed = url.trim();
+        endpoint = trimmed;
+        queue.submitWork(() -> state.setEndpoint(trimmed));
+    }
+
+    /** Starts the periodic sync; the first one runs once startup has settled. */
+    void start() {
+        syncSoon(DEBOUNCE_MS);
+    }
+
+    /** After a local edit: syncs once the edits have settled, unless backing off. */
+    void requestSync() {
+        syncSoon(DEBOUNCE_MS);
+    }
+
+    /** Syncs now, even while backing off (the user asked). */
+    void syncNow() {
+        synchronized (lock) {
+            failures = 0;
+        }
+        syncSoon(0);
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /** Moves the next run earlier; never later, and never inside a backoff. */
+    private void syncSoon(long delayMs) {
+        synchronized (lock) {
+            long at = now() + delayMs;
+            if (next != null && !next.isDone() && (nextAt <= at || failures > 0)) {
+                return;
+            }
+            schedule(delayMs);
+        }
+    }
+
+    private void schedule(long delayMs) {
+        if (next != null) {
+            next.cancel(false);
+        }
+        nextAt = now() + delayMs;
+        try {
+            next = scheduler.schedule(this::runScheduled, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException ignored) {
+            next = null; // shut down
+        }
+    }
+
+    private void runScheduled() {
+        synchronized (lock) {
+            next = null; // a request from now on queues another run
+        }
+        Stats run = new Stats();
+        IOException error = null;
+        try {
+            sync(run);
+        } catch (IOException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            error = new IOException(e);
+        }
+        synchronized (lock) {
+            failures = error == null ? 0 : failures + 1;
+            if (error != null) {
+                schedule(backoffMs(failures, jitter));
+            } else if (next == null) {
+                schedule(PERIOD_MS); // unless an edit already asked for an earlier run
+            }
+        }
+        Listener l = listener;
+        if (l != null && (run.roundTrips > 0 || error != null)) {
+            l.onSyncDone(run, error);
+        }
+    }
+
+    /**
+     * Delay before retry number {@code failures}: doubling from
+     * {@link #BACKOFF_BASE_MS} up to {@link #PERIOD_MS}, then a random point in
+     * the upper half of that, so devices that failed together do not retry together.
+     */
+    static long backoffMs(int failures, Random random) {
+        long cap = BACKOFF_BASE_MS << Math.min(failures - 1, 20);
+        cap = Math.min(cap, PERIOD_MS);
+        return cap / 2 + (long) (random.nextDouble() * (cap / 2));
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    /*
+     * ----------------------------------- Sync -----------------------------------
+     */
+
+    /** Runs one full sync on the calling thread (the sync thread, or a test). */
+    Stats syncOnce() throws IOException {
+        Stats run = new Stats();
+        sync(run);
+        return run;
+    }
+
+    private void sync(Stats run) throws IOException {
+        String endpoint = this.endpoint;
+        if (endpoint.isEmpty() || store == null) {
+            return;
+        }
+        URL url = new URL(endpoint.replaceAll("/+$", "") + "/sync");
+        while (true) {
+            Outgoing out = onQueue(this::collect);
+            SyncWire.Batch in = post(url, out.batch, run);
+            run.pushed += out.batch.deltas.size();
+            run.pulled += onQueue(() -> merge(out, in));
+            if (!out.full && !in.more) {
+                return;
+            }
+        }
+    }
+
+    /** One request/response; counts compressed bytes both ways. */
+    private static SyncWire.Batch post(URL url, SyncWire.Batch batch, Stats run) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        SyncWire.write(batch, body);
+        HttpURLConnection http = (HttpURLConnection) url.openConnection();
+        try {
+            http.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            http.setReadTimeout(READ_TIMEOUT_MS);
+            http.setRequestMethod("POST");
+            http.setDoOutput(true);
+            http.setFixedLengthStreamingMode(body.size());
+            http.setRequestProperty("Content-Type", "application/json");
+            http.setRequestProperty("Content-Encoding", "gzip");
+            // Set by hand, so the connection hands the gzip body over as-is
+            http.setRequestProperty("Accept-Encoding", "gzip");
+            try (OutputStream os = http.getOutputStream()) {
+                body.writeTo(os);
+            }
+            run.roundTrips++;
+            run.bytesSent += body.size();
+            int code = http.getResponseCode();
+            if (code / 100 != 2) {
+                throw new IOException("Sync server answered HTTP " + code);
+            }
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            try (InputStream is = http.getInputStream()) {
+                byte[] buf = new byte[8192];
+                for (int n; (n = is.read(buf)) > 0; ) {
+                    response.write(buf, 0, n);
+                }
+            }
+            run.bytesReceived += response.size();
+            return SyncWire.read(new ByteArrayInputStream(response.toByteArray()));
+        } finally {
+            http.disconnect();
+        }
+    }
+
+    /** Runs {@code work} on the persist queue, after every save handed off before it, and waits. */
+    private <T> T onQueue(Callable<T> work) throws IOException {
+        FutureTask<T> task = new FutureTask<>(work);
+        queue.submitWork(task);
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw cause instanceof RuntimeException ? (RuntimeException) cause
+                    : new IllegalStateException(cause);
+        }
+    }
+
+    /*
+     * ------------------------- Local side (persist queue) -----------------------
+     */
+
+    /** Records a saved change set; runs on the persist queue right after it was written. */
+    void record(TaskChangeSet changes) {
+        if (!state.isTracking()) {
+            return; // off, or a full scan is due anyway
+        }
+        SQLiteDatabase db = state.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Task t : changes.inserted()) {
+                track(t);
+            }
+            for (Task t : changes.updated()) {
+                track(t);
+            }
+            for (long id : changes.deleted()) {
+                tombstone(state.byLocalId(id));
+            }
+            state.saveClock();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Marks the store as changed behind {@link #record} (an import, say): the
+     * next sync compares every stored task with what was last recorded.
+     */
+    void rescan() {
+        queue.submitWork(() -> state.setTracking(false));
+        requestSync();
+    }
+
+    /** Full scan: records every field that differs from sync.db, and deletes of missing tasks. */
+    private void reconcile(TaskStore store) throws IOException {
+        SQLiteDatabase db = state.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            Set<Long> missing = new HashSet<>();
+            try (Cursor c = state.liveIds()) {
+                while (c.moveToNext()) {
+                    missing.add(c.getLong(0));
+                }
+            }
+            store.scan(t -> {
+                missing.remove(t.id);
+                track(t);
+            });
+            for (long id : missing) {
+                tombstone(state.byLocalId(id));
+            }
+            state.setTracking(true);
+            state.saveClock();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Stamps every field of {@code t} whose value changed since it was last recorded. */
+    private void track(Task t) {
+        SyncState.Row row = state.byLocalId(t.id);
+        String[] values = valuesOf(t);
+        if (row == null) {
+            row = new SyncState.Row();
+            row.localId = t.id;
+            row.gid = state.gidFor(t.id);
+            long stamp = state.tick();
+            for (int f = 0; f < SyncState.FIELD_COUNT; f++) {
+                row.stamps[f] = stamp;
+                row.hashes[f] = SyncState.hash(values[f]);
+            }
+            row.dirty = SyncState.ALL_FIELDS;
+            state.put(row);
+            return;
+        }
+        if (row.deletedAt != 0) {
+            return; // deleted elsewhere; the delete wins
+        }
+        boolean changed = false;
+        for (int f = 0; f < SyncState.FIELD_COUNT; f++) {
+            if (f == SyncWire.NOTES && !t.notesLoaded) {
+                continue; // a list row (a bulk edit) leaves the notes as they were
+            }
+            long h = SyncState.hash(values[f]);
+            if (h != row.hashes[f]) {
+                row.hashes[f] = h;
+                row.stamps[f] = state.tick();
+                row.writers[f] = null;
+                row.dirty |= 1 << f;
+                changed = true;
+            }
+        }
+        if (changed) {
+            state.put(row);
+        }
+    }
+
+    private void tombstone(SyncState.Row row) {
+        if (row == null || row.deletedAt != 0) {
+            return;
+        }
+        row.deletedAt = state.tick();
+        row.dirty = SyncState.DELETED_BIT; // field edits no longer matter
+        state.put(row);
+    }
+
+    /** Up to {@link #BATCH} unsent tasks, only their unsent fields. */
+    private Outgoing collect() throws IOException {
+        TaskStore store = this.store;
+        if (!state.isTracking()) {
+            reconcile(store);
+        }
+        Outgoing out = new Outgoing();
+        out.batch.device = state.device();
+        out.batch.cursor = state.cursor();
+        try (Cursor c = state.dirty(BATCH)) {
+            out.full = c.getCount() == BATCH;
+            while (c.moveToNext()) {
+                SyncState.Row row = SyncState.read(c);
+                SyncWire.Delta d = new SyncWire.Delta(row.gid);
+                if ((row.dirty & SyncState.DELETED_BIT) != 0) {
+                    d.deletedAt = row.deletedAt;
+                } else {
+                    Task t = store.get(row.localId);
+                    if (t == null) {
+                        tombstone(row); // removed behind sync
+                        d.deletedAt = row.deletedAt;
+                        out.batch.deltas.add(d);
+                        out.localIds.add(row.localId);
+                        continue;
+                    }
+                    String[] values = valuesOf(t);
+                    for (int f = 0; f < SyncState.FIELD_COUNT; f++) {
+                        if ((row.dirty & (1 << f)) != 0) {
+                            d.set(f, values[f], row.stamps[f]);
+                        }
+                    }
+                }
+                out.batch.deltas.add(d);
+                out.localIds.add(row.localId);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Acknowledges what {@code out} pushed and applies what {@code in} pulled,
+     * in one sync.db transaction around one store write. Returns the number of
+     * tasks changed here.
+     */
+    private int merge(Outgoing out, SyncWire.Batch in) throws IOException {
+        TaskStore store = this.store;
+        SQLiteDatabase db = state.getWritableDatabase();
+        TaskChangeSet applied = new TaskChangeSet();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < out.localIds.size(); i++) {
+                long id = out.localIds.get(i);
+                SyncWire.Delta d = out.batch.deltas.get(i);
+                for (int f = 0; f < SyncState.FIELD_COUNT; f++) {
+                    if (d.stamps[f] != 0) {
+                        state.acknowledge(id, f, d.stamps[f]);
+                    }
+                }
+                if (d.deletedAt != 0) {
+                    state.acknowledge(id, SyncState.FIELD_COUNT, d.deletedAt);
+                }
+            }
+            for (SyncWire.Delta d : in.deltas) {
+                apply(d, store, applied);
+            }
+            store.apply(applied);
+            state.setCursor(in.cursor);
+            state.saveClock();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return applied.size();
+    }
+
+    /** Merges one incoming task into sync.db and {@code applied}. */
+    private void apply(SyncWire.Delta d, TaskStore store, TaskChangeSet applied) throws IOException {
+        for (int f = 0; f < SyncState.FIELD_COUNT; f++) {
+            state.observe(d.stamps[f]);
+        }
+        state.observe(d.deletedAt);
+        SyncState.Row row = state.byGid(d.gid);
+        boolean isNew = row == null;
+        if (isNew) {
+            row = new SyncState.Row();
+            row.localId = TaskStores.newId(store.lastId() + 1); // past rows this merge has not written yet
+            row.gid = d.gid;
+        } else if (row.deletedAt != 0) {
+            return; // already deleted here
+        }
+        if (d.deletedAt != 0) {
+            row.deletedAt = d.deletedAt;
+            row.dirty = 0;
+            state.put(row);
+            if (!isNew) {
+                applied.markDeleted(row.localId);
+            }
+            return;
+        }
+        Task current = isNew ? null : store.get(row.localId);
+        String[] values = current != null ? valuesOf(current) : new String[SyncState.FIELD_COUNT];
+        boolean changed = false;
+        for (int f = 0; f < SyncState.FIELD_COUNT; f++) {
+            if (d.stamps[f] != 0 && newer(d, f, row)) {
+                row.stamps[f] = d.stamps[f];
+                row.writers[f] = d.writers[f] != null ? d.writers[f] : "";
+                row.hashes[f] = SyncState.hash(d.values[f]);
+                row.dirty &= ~(1 << f);
+                values[f] = d.values[f];
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return; // every field changed here since
+        }
+        state.put(row);
+        Task t = new Task(row.localId, orEmpty(values[SyncWire.TITLE]), orEmpty(values[SyncWire.DEADLINE]),
+                orEmpty(values[SyncWire.NOTES]), values[SyncWire.STATUS]);
+        if (current == null) {
+            applied.markInserted(t);
+        } else {
+            applied.markUpdated(t);
+        }
+    }
+
+    /**
+     * True if the incoming field {@code f} beats the local one: a later stamp,
+     * or an equal one from a device whose id is not smaller. The server breaks
+     * ties the same way, so every device keeps the same value.
+     */
+    private boolean newer(SyncWire.Delta d, int f, SyncState.Row row) {
+        if (d.stamps[f] != row.stamps[f]) {
+            return d.stamps[f] > row.stamps[f];
+        }
+        String incoming = d.writers[f] != null ? d.writers[f] : "";
+        String local = row.writers[f] != null ? row.writers[f] : state.device();
+        return incoming.compareTo(local) >= 0;
+    }
+
+    private static String[] valuesOf(Task t) {
+        String[] values = new String[SyncState.FIELD_COUNT];
+        values[SyncWire.TITLE] = orEmpty(t.title);
+        values[SyncWire.DEADLINE] = orEmpty(t.deadline);
+        values[SyncWire.NOTES] = orEmpty(t.notes);
+        values[SyncWire.STATUS] = t.status;
+        return values;
+    }
+
+    private static String orEmpty(String s) {
+        return s != null ? s : "";
+    }
+}
@@ -0,0 +1,312 @@
+package com.example.eecs4443lab3;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import androidx.annotation.NonNull;
+
+import java.util.UUID;
+
+/**
+ * Sync bookkeeping
+ * ---------------------------------
+ * Owns sync.db, kept apart from every task store so it works the same in
+ * each storage mode (a mode switch copies tasks with their ids).
+ *
+ * - sync_rows: one row per task ever seen, by local id. gid is the task's
+ *   global id; per field, the stamp of its last change, the device that
+ *   made it (null for this one) and a hash of the value that stamp belongs
+ *   to; deleted_ts is the tombstone. dirty is a
+ *   bitmask of what the server has not acknowledged yet (one bit per
+ *   {@link SyncWire#FIELDS} entry, plus {@link #DELETED_BIT}).
+ * - meta: this device's id, the pull cursor and the clock.
+ *
+ * Tasks created on other devices get an ordinary local id when first pulled
+ * ({@link TaskStores#newId}); their sync_rows row maps it to the global id.
+ *
+ * Stamps come from a hybrid clock: wall-clock milliseconds, but always past
+ * every stamp seen so far, so a later change always wins over one it saw.
+ * Used from the persist queue thread only.
+ */
+final class SyncState extends SQLiteOpenHelper {
+    private static final int DB_VERSION = 2;
+
+    static final int FIELD_COUNT = SyncWire.FIELDS.length;
+    static final int ALL_FIELDS = (1 << FIELD_COUNT) - 1;
+    static final int DELETED_BIT = 1 << FIELD_COUNT;
+
+    static final String[] STAMP_COLUMNS = { "title_ts", "deadline_ts", "notes_ts", "status_ts" };
+    static final String[] HASH_COLUMNS = { "title_hash", "deadline_hash", "notes_hash", "status_hash" };
+    static final String[] WRITER_COLUMNS = { "title_by", "deadline_by", "notes_by", "status_by" };
+
+    private static final String KEY_DEVICE = "device";
+    private static final String KEY_CURSOR = "cursor";
+    private static final String KEY_CLOCK = "clock";
+    private static final String KEY_TRACKING = "tracking";
+    private static final String KEY_ENDPOINT = "endpoint";
+
+    /** One sync_rows row. */
+    static final class Row {
+        long localId;
+        String gid;
+        final long[] stamps = new long[FIELD_COUNT];
+        final long[] hashes = new long[FIELD_COUNT];
+        final String[] writers = new String[FIELD_COUNT]; // null = this device
+        long deletedAt;
+        int dirty;
+    }
+
+    private String device;
+    private long clock = -1; // loaded on first use
+
+    SyncState(@NonNull Context ctx) {
+        this(ctx, "sync.db");
+    }
+
+    /** {@code name} lets tests run several devices in one process. */
+    SyncState(@NonNull Context ctx, String name) {
+        super(ctx, name, null, DB_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        StringBuilder sql = new StringBuilder("CREATE TABLE sync_rows ("
+                + "local_id INTEGER PRIMARY KEY,"
+                + " gid TEXT NOT NULL UNIQUE,");
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            sql.append(' ').append(STAMP_COLUMNS[f]).append(" INTEGER NOT NULL DEFAULT 0,")
+                    .append(' ').append(HASH_COLUMNS[f]).append(" INTEGER NOT NULL DEFAULT 0,")
+                    .append(' ').append(WRITER_COLUMNS[f]).append(" TEXT,");
+        }
+        sql.append(" deleted_ts INTEGER NOT NULL DEFAULT 0,"
+                + " dirty INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL(sql.toString());
+        // Only unsent rows are indexed, so collecting a batch never walks the table
+        db.execSQL("CREATE INDEX sync_rows_dirty ON sync_rows(dirty) WHERE dirty != 0");
+        db.execSQL("CREATE TABLE meta (key TEXT PRIMARY KEY, value TEXT NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            // Writers of earlier changes are unknown: "" loses every tie, as all did before
+            for (String column : WRITER_COLUMNS) {
+                db.execSQL("ALTER TABLE sync_rows ADD COLUMN " + column + " TEXT DEFAULT ''");
+            }
+        }
+    }
+
+    /*
+     * ----------------------------------- Meta -----------------------------------
+     */
+
+    /** This install's id; picked on first use and never changed. */
+    String device() {
+        if (device == null) {
+            String d = meta(KEY_DEVICE);
+            if (d == null) {
+                UUID u = UUID.randomUUID();
+                d = Long.toHexString(u.getMostSignificantBits() ^ u.getLeastSignificantBits());
+                putMeta(KEY_DEVICE, d);
+            }
+            device = d;
+        }
+        return device;
+    }
+
+    /** Global id of a task created on this device. */
+    String gidFor(long localId) {
+        return device() + ":" + localId;
+    }
+
+    long cursor() {
+        return metaLong(KEY_CURSOR, 0);
+    }
+
+    void setCursor(long cursor) {
+        putMeta(KEY_CURSOR, String.valueOf(cursor));
+    }
+
+    /** True once every stored task has rows here; cleared when changes bypassed {@link SyncEngine#record}. */
+    boolean isTracking() {
+        return metaLong(KEY_TRACKING, 0) != 0;
+    }
+
+    void setTracking(boolean tracking) {
+        putMeta(KEY_TRACKING, tracking ? "1" : "0");
+    }
+
+    String endpoint() {
+        String e = meta(KEY_ENDPOINT);
+        return e != null ? e : "";
+    }
+
+    /**
+     * Points sync at another server (empty turns it off). The new server has
+     * none of this device's changes, so every row is sent again and the pull
+     * starts over; global ids are kept, so nothing is duplicated.
+     */
+    void setEndpoint(String endpoint) {
+        if (endpoint.equals(endpoint())) {
+            return;
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            putMeta(KEY_ENDPOINT, endpoint);
+            putMeta(KEY_CURSOR, "0");
+            if (endpoint.isEmpty()) {
+                setTracking(false); // edits made while off are found by the next full scan
+            }
+            db.execSQL("UPDATE sync_rows SET dirty = CASE WHEN deleted_ts != 0 THEN "
+                    + DELETED_BIT + " ELSE " + ALL_FIELDS + " END");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Next stamp: past the wall clock and every stamp seen so far. */
+    long tick() {
+        loadClock();
+        clock = Math.max(clock + 1, System.currentTimeMillis());
+        return clock;
+    }
+
+    /** Moves the clock past a stamp received from another device. */
+    void observe(long stamp) {
+        loadClock();
+        clock = Math.max(clock, stamp);
+    }
+
+    /** Persists the clock; called at the end of every transaction that ticked it. */
+    void saveClock() {
+        if (clock >= 0) {
+            putMeta(KEY_CLOCK, String.valueOf(clock));
+        }
+    }
+
+    private void loadClock() {
+        if (clock < 0) {
+            clock = metaLong(KEY_CLOCK, 0);
+        }
+    }
+
+    private String meta(String key) {
+        try (Cursor c = getReadableDatabase().rawQuery(
+                "SELECT value FROM meta WHERE key = ?", new String[] { key })) {
+            return c.moveToFirst() ? c.getString(0) : null;
+        }
+    }
+
+    private long metaLong(String key, long fallback) {
+        String v = meta(key);
+        try {
+            return v != null ? Long.parseLong(v) : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private void putMeta(String key, String value) {
+        ContentValues cv = new ContentValues(2);
+        cv.put("key", key);
+        cv.put("value", value);
+        getWritableDatabase().insertWithOnConflict("meta", null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /*
+     * ----------------------------------- Rows -----------------------------------
+     */
+
+    Row byLocalId(long localId) {
+        return first("local_id = ?", String.valueOf(localId));
+    }
+
+    Row byGid(String gid) {
+        return first("gid = ?", gid);
+    }
+
+    /** Inserts or replaces {@code row}. */
+    void put(Row row) {
+        ContentValues cv = new ContentValues(4 + 3 * FIELD_COUNT);
+        cv.put("local_id", row.localId);
+        cv.put("gid", row.gid);
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            cv.put(STAMP_COLUMNS[f], row.stamps[f]);
+            cv.put(HASH_COLUMNS[f], row.hashes[f]);
+            cv.put(WRITER_COLUMNS[f], row.writers[f]);
+        }
+        cv.put("deleted_ts", row.deletedAt);
+        cv.put("dirty", row.dirty);
+        getWritableDatabase().insertWithOnConflict("sync_rows", null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /** Open cursor over up to {@code limit} unsent rows; read with {@link #read}. */
+    Cursor dirty(int limit) {
+        return getReadableDatabase().rawQuery(
+                "SELECT * FROM sync_rows WHERE dirty != 0 LIMIT " + limit, null);
+    }
+
+    /** Open cursor over the local ids of every task not deleted. */
+    Cursor liveIds() {
+        return getReadableDatabase().rawQuery(
+                "SELECT local_id FROM sync_rows WHERE deleted_ts = 0", null);
+    }
+
+    /** Number of rows with anything unsent. */
+    long dirtyCount() {
+        return DatabaseUtils.longForQuery(getReadableDatabase(),
+                "SELECT COUNT(*) FROM sync_rows WHERE dirty != 0", null);
+    }
+
+    /**
+     * Clears the dirty bit of field {@code f} (or {@link #DELETED_BIT} when f is
+     * {@link #FIELD_COUNT}) unless the row changed again after {@code stamp} was sent.
+     */
+    void acknowledge(long localId, int f, long stamp) {
+        String column = f < FIELD_COUNT ? STAMP_COLUMNS[f] : "deleted_ts";
+        int bit = f < FIELD_COUNT ? 1 << f : DELETED_BIT;
+        getWritableDatabase().execSQL("UPDATE sync_rows SET dirty = dirty & ~" + bit
+                        + " WHERE local_id = ? AND " + column + " = ?",
+                new Object[] { localId, stamp });
+    }
+
+    static Row read(Cursor c) {
+        Row row = new Row();
+        row.localId = c.getLong(c.getColumnIndexOrThrow("local_id"));
+        row.gid = c.getString(c.getColumnIndexOrThrow("gid"));
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            row.stamps[f] = c.getLong(c.getColumnIndexOrThrow(STAMP_COLUMNS[f]));
+            row.hashes[f] = c.getLong(c.getColumnIndexOrThrow(HASH_COLUMNS[f]));
+            int by = c.getColumnIndexOrThrow(WRITER_COLUMNS[f]);
+            row.writers[f] = c.isNull(by) ? null : c.getString(by);
+        }
+        row.deletedAt = c.getLong(c.getColumnIndexOrThrow("deleted_ts"));
+        row.dirty = c.getInt(c.getColumnIndexOrThrow("dirty"));
+        return row;
+    }
+
+    private Row first(String where, String arg) {
+        try (Cursor c = getReadableDatabase().rawQuery(
+                "SELECT * FROM sync_rows WHERE " + where, new String[] { arg })) {
+            return c.moveToFirst() ? read(c) : null;
+        }
+    }
+
+    /** 64-bit FNV-1a of a field value; null and "" are the same value. */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                h ^= value.charAt(i);
+                h *= 0x100000001b3L;
+            }
+        }
+        return h;
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.eecs4443lab3;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sync wire format
+ * ---------------------------------
+ * One gzip-compressed JSON object per request and per response:
+ *
+ * <pre>
+ * {"device": "…", "cursor": 42, "more": false,
+ *  "changes": [{"id": "device:7", "title": ["Buy milk", 1718000000123, "device"],
+ *               "deleted": 1718000000456}, …]}
+ * </pre>
+ *
+ * - A change carries only the fields that changed, each as [value, stamp],
+ *   plus in responses the device that made the change; "deleted" is the
+ *   tombstone's stamp. Stamps are hybrid clock values (wall-clock
+ *   milliseconds, never going backwards; see {@link SyncState}); equal
+ *   stamps go to the greater device id.
+ * - "id" is the task's global id: the creating device and its local id.
+ * - Requests push local changes and give the cursor of the last pull;
+ *   responses carry other devices' changes since it, the new cursor, and
+ *   whether more are waiting.
+ *
+ * Streamed both ways; used by {@link SyncEngine} and by test servers.
+ */
+final class SyncWire {
+
+    static final String[] FIELDS = { "title", "deadline", "notes", "status" };
+    static final int TITLE = 0;
+    static final int DEADLINE = 1;
+    static final int NOTES = 2;
+    static final int STATUS = 3;
+
+    /** Field-level changes to one task. */
+    static final class Delta {
+        final String gid;
+        final String[] values = new String[FIELDS.length];
+        final long[] stamps = new long[FIELDS.length]; // 0 = field not included
+        final String[] writers = new String[FIELDS.length]; // null = the sender
+        long deletedAt; // 0 = not deleted
+
+        Delta(String gid) {
+            this.gid = gid;
+        }
+
+        void set(int field, String value, long stamp) {
+            set(field, value, stamp, null);
+        }
+
+        void set(int field, String value, long stamp, String writer) {
+            values[field] = value;
+            stamps[field] = stamp;
+            writers[field] = writer;
+        }
+    }
+
+    /** One request or response. */
+    static final class Batch {
+        String device = "";
+        long cursor;
+        boolean more;
+        final List<Delta> deltas = new ArrayList<>();
+    }
+
+    private SyncWire() {
+    }
+
+    static void write(Batch batch, OutputStream out) throws IOException {
+        GZIPOutputStream zip = new GZIPOutputStream(out, 1 << 13);
+        JsonWriter json = new JsonWriter(new BufferedWriter(
+                new OutputStreamWriter(zip, StandardCharsets.UTF_8), 1 << 13));
+        json.beginObject();
+        json.name("device").value(batch.device);
+        json.name("cursor").value(batch.cursor);
+        json.name("more").value(batch.more);
+        json.name("changes").beginArray();
+        for (Delta d : batch.deltas) {
+            json.beginObject();
+            json.name("id").value(d.gid);
+            for (int f = 0; f < FIELDS.length; f++) {
+                if (d.stamps[f] != 0) {
+                    json.name(FIELDS[f]).beginArray().value(d.values[f]).value(d.stamps[f]);
+                    if (d.writers[f] != null) {
+                        json.value(d.writers[f]);
+                    }
+                    json.endArray();
+                }
+            }
+            if (d.deletedAt != 0) {
+                json.name("deleted").value(d.deletedAt);
+            }
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+        zip.finish();
+    }
+
+    static Batch read(InputStream in) throws IOException {
+        JsonReader json = new JsonReader(new BufferedReader(
+                new InputStreamReader(new GZIPInputStream(in, 1 << 13), StandardCharsets.UTF_8)));
+        Batch batch = new Batch();
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "device":
+                    batch.device = json.nextString();
+                    break;
+                case "cursor":
+                    batch.cursor = json.nextLong();
+                    break;
+                case "more":
+                    batch.more = json.nextBoolean();
+                    break;
+                case "changes":
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        batch.deltas.add(readDelta(json));
+                    }
+                    json.endArray();
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+        return batch;
+    }
+
+    private static Delta readDelta(JsonReader json) throws IOException {
+        String gid = null;
+        String[] values = new String[FIELDS.length];
+        long[] stamps = new long[FIELDS.length];
+        String[] writers = new String[FIELDS.length];
+        long deletedAt = 0;
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            int field = fieldIndex(name);
+            if (field >= 0) {
+                json.beginArray();
+                if (json.peek() == JsonToken.NULL) {
+                    json.nextNull();
+                } else {
+                    values[field] = json.nextString();
+                }
+                stamps[field] = json.nextLong();
+                if (json.hasNext()) {
+                    writers[field] = json.nextString();
+                }
+                json.endArray();
+            } else if (name.equals("id")) {
+                gid = json.nextString();
+            } else if (name.equals("deleted")) {
+                deletedAt = json.nextLong();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        if (gid == null) {
+            throw new IOException("Change without an id");
+        }
+        Delta d = new Delta(gid);
+        System.arraycopy(values, 0, d.values, 0, FIELDS.length);
+        System.arraycopy(stamps, 0, d.stamps, 0, FIELDS.length);
+        System.arraycopy(writers, 0, d.writers, 0, FIELDS.length);
+        d.deletedAt = deletedAt;
+        return d;
+    }
+
+    private static int fieldIndex(String name) {
+        for (int f = 0; f < FIELDS.length; f++) {
+            if (FIELDS[f].equals(name)) {
+                return f;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.eecs4443lab3;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Task model
+ * ---------------------------------
+ * One to-do item. Immutable so list snapshots and change sets can be handed
+ * to background writers as-is; an edit replaces the Task with a new one that
+ * keeps the same id.
+ *
+ * A list row may come without its notes ({@link #row}); the detail and edit
+ * screens read the whole task by id when they open.
+ */
+public class Task implements Serializable {
+    public final long id; // stable row id, same as the tasks._id column
+    public final String title;
+    public final String deadline;
+    public final String notes;
+    public final String status; // "Pending" or "Done"
+    public final boolean notesLoaded; // false for a row read without notes (notes is null)
+
+    // Row model: list subtitle, built on first bind and reused until the task is replaced
+    private transient String subtitle;
+
+    public Task(long id, String title, String deadline, String notes, String status) {
+        this(id, title, deadline, notes, status, true);
+    }
+
+    private Task(long id, String title, String deadline, String notes, String status,
+            boolean notesLoaded) {
+        this.id = id;
+        this.title = title;
+        this.deadline = deadline;
+        this.notes = notes;
+        this.status = (status == null || status.isEmpty()) ? "Pending" : status;
+        this.notesLoaded = notesLoaded;
+    }
+
+    /** A list row: every field but the notes, which stay in storage until asked for. */
+    public static Task row(long id, String title, String deadline, String status) {
+        return new Task(id, title, deadline, null, status, false);
+    }
+
+    /** This task with its notes filled in. */
+    public Task withNotes(String notes) {
+        return new Task(id, title, deadline, notes, status, true);
+    }
+
+    /** This task with another status; a list row stays a row. */
+    public Task withStatus(String status) {
+        return new Task(id, title, deadline, notes, status, notesLoaded);
+    }
+
+    /** This task with another deadline; a list row stays a row. */
+    public Task withDeadline(String deadline) {
+        return new Task(id, title, deadline, notes, status, notesLoaded);
+    }
+
+    /** This task as a list row (itself if it already is one). */
+    public Task asRow() {
+        return notesLoaded ? row(id, title, deadline, status) : this;
+    }
+
+    /** Second line of the list row, e.g. "Oct 20, 2025 • Pending". */
+    public String subtitle() {
+        String s = subtitle;
+        if (s == null) {
+            s = (deadline == null || deadline.isEmpty() ? "No deadline" : deadline)
+                    + " • " + status;
+            subtitle = s;
+        }
+        return s;
+    }
+
+    /** Content equality: same id and same field values. */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Task)) {
+            return false;
+        }
+        Task t = (Task) o;
+        return id == t.id
+                && Objects.equals(title, t.title)
+                && Objects.equals(deadline, t.deadline)
+                && Objects.equals(notes, t.notes)
+                && Objects.equals(status, t.status);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, title, deadline, notes, status);
+    }
+}
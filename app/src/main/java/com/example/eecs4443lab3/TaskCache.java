@@ -0,0 +1,118 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide task cache
+ * ---------------------------------
+ * Lets screens pass a task id instead of the task itself, so an Intent stays
+ * a few bytes whatever the size of the notes.
+ *
+ * - An LRU of recently shown tasks, keyed by storage mode + id and bounded by
+ *   the approximate heap size of their strings ({@link #MAX_BYTES}).
+ * - {@link #resolve} answers from the cache, or reads the single row on a
+ *   background thread and delivers it on the main thread. A cached list row
+ *   without notes counts as a miss: resolved tasks always have their notes.
+ * - Edits made on another screen are parked with {@link #putEdited} until the
+ *   list screen takes them; those are never evicted.
+ */
+final class TaskCache {
+
+    /** One eighth of the heap; a task weighs about two bytes per character. */
+    static final int MAX_BYTES = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8);
+    private static final int TASK_OVERHEAD_BYTES = 96;
+
+    /** Receives a resolved task (null if the store has none) on the main thread. */
+    interface Callback {
+        void onTask(Task t);
+    }
+
+    private static final LruCache<Long, Task> CACHE = new LruCache<Long, Task>(MAX_BYTES) {
+        @Override
+        protected int sizeOf(Long key, Task t) {
+            return sizeOfTask(t);
+        }
+    };
+    private static final Map<Long, Task> EDITED = new HashMap<>();
+
+    private static final Handler MAIN = new Handler(Looper.getMainLooper());
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "task-cache");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private TaskCache() {
+    }
+
+    static void put(MainActivity.Mode mode, Task t) {
+        CACHE.put(key(mode, t.id), t);
+    }
+
+    static Task get(MainActivity.Mode mode, long id) {
+        return CACHE.get(key(mode, id));
+    }
+
+    static void remove(MainActivity.Mode mode, long id) {
+        CACHE.remove(key(mode, id));
+    }
+
+    /** Drops every cached task, e.g. after a bulk copy rewrote a store. Parked edits stay. */
+    static void clear() {
+        CACHE.evictAll();
+    }
+
+    /** Cached task now; otherwise one row read off the main thread. */
+    static void resolve(Context context, MainActivity.Mode mode, long id, Callback callback) {
+        Task cached = get(mode, id);
+        if (cached != null && cached.notesLoaded) {
+            callback.onTask(cached);
+            return;
+        }
+        TaskStore store = TaskStores.get(context, mode);
+        LOADER.execute(() -> {
+            Task t = null;
+            try {
+                t = store.get(id);
+            } catch (IOException | RuntimeException ignored) {
+            }
+            if (t != null) {
+                put(mode, t);
+            }
+            Task found = t;
+            MAIN.post(() -> callback.onTask(found));
+        });
+    }
+
+    /** Parks an edit for the list screen, which saves it (see {@link #takeEdited}). */
+    static synchronized void putEdited(MainActivity.Mode mode, Task t) {
+        EDITED.put(key(mode, t.id), t);
+        put(mode, t);
+    }
+
+    static synchronized Task takeEdited(MainActivity.Mode mode, long id) {
+        return EDITED.remove(key(mode, id));
+    }
+
+    static int sizeOfTask(Task t) {
+        return TASK_OVERHEAD_BYTES
+                + 2 * (length(t.title) + length(t.deadline) + length(t.notes) + length(t.status));
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    private static long key(MainActivity.Mode mode, long id) {
+        return (id << 2) | mode.ordinal(); // four modes fit in two bits
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.eecs4443lab3;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dirty-tracking change set
+ * ---------------------------------
+ * Records which tasks were inserted, updated or deleted since the last save,
+ * keyed by their stable id, so persistence only writes the rows that changed.
+ *
+ * - Updating a task that is still pending insert keeps it an insert.
+ * - Deleting a task that was never saved cancels its insert entirely.
+ * - A list row (no notes) marked over a pending edit keeps that edit's notes,
+ *   which storage has not seen yet.
+ */
+final class TaskChangeSet {
+
+    private final Map<Long, Task> inserted = new LinkedHashMap<>();
+    private final Map<Long, Task> updated = new LinkedHashMap<>();
+    private final Set<Long> deleted = new LinkedHashSet<>();
+
+    void markInserted(Task t) {
+        inserted.put(t.id, t);
+    }
+
+    void markUpdated(Task t) {
+        if (inserted.containsKey(t.id)) {
+            inserted.put(t.id, withPendingNotes(t, inserted.get(t.id)));
+        } else {
+            updated.put(t.id, withPendingNotes(t, updated.get(t.id)));
+        }
+    }
+
+    private static Task withPendingNotes(Task t, Task pending) {
+        return t.notesLoaded || pending == null || !pending.notesLoaded ? t : t.withNotes(pending.notes);
+    }
+
+    void markDeleted(Task t) {
+        markDeleted(t.id);
+    }
+
+    void markDeleted(long id) {
+        if (inserted.remove(id) != null) {
+            return; // never reached storage, nothing to delete
+        }
+        updated.remove(id);
+        deleted.add(id);
+    }
+
+    /** Replays another change set on top of this one. */
+    void addAll(TaskChangeSet other) {
+        for (Task t : other.inserted.values()) {
+            markInserted(t);
+        }
+        for (Task t : other.updated.values()) {
+            markUpdated(t);
+        }
+        for (long id : other.deleted) {
+            markDeleted(id);
+        }
+    }
+
+    Collection<Task> inserted() {
+        return inserted.values();
+    }
+
+    Collection<Task> updated() {
+        return updated.values();
+    }
+
+    List<Long> deleted() {
+        return new ArrayList<>(deleted);
+    }
+
+    /** Number of row writes this change set will cost when applied. */
+    int size() {
+        return inserted.size() + updated.size() + deleted.size();
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    void clear() {
+        inserted.clear();
+        updated.clear();
+        deleted.clear();
+    }
+}
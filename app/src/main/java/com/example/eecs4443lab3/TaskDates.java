@@ -0,0 +1,89 @@
+package com.example.eecs4443lab3;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Deadline text <-> epoch day
+ * ---------------------------------
+ * Tasks carry their deadline as the DateFormat.MEDIUM text the date picker
+ * produces; SQLite stores it as days since 1970-01-01 so it can be indexed,
+ * sorted and range-queried.
+ *
+ * - A string converts only if formatting the day gives back the exact same
+ *   string, so a round trip through the database never changes what the user
+ *   sees. Anything else (blank, typed by hand, another locale) is kept as text.
+ * - Formatters and calendars are per thread; DateFormat is not thread-safe and
+ *   rows are read on the pager and search threads.
+ */
+final class TaskDates {
+
+    private static final long MS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private static final ThreadLocal<DateFormat> MEDIUM =
+            ThreadLocal.withInitial(() -> DateFormat.getDateInstance(DateFormat.MEDIUM));
+    private static final ThreadLocal<Calendar> LOCAL =
+            ThreadLocal.withInitial(Calendar::getInstance);
+    private static final ThreadLocal<Calendar> UTC =
+            ThreadLocal.withInitial(() -> Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+
+    private TaskDates() {
+    }
+
+    /** Epoch day of a deadline string, or null if it does not round-trip. */
+    static Long toEpochDay(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        Date parsed;
+        try {
+            parsed = MEDIUM.get().parse(text);
+        } catch (ParseException e) {
+            return null;
+        }
+        Calendar local = LOCAL.get();
+        local.setTime(parsed);
+        long day = epochDay(local.get(Calendar.YEAR), local.get(Calendar.MONTH),
+                local.get(Calendar.DAY_OF_MONTH));
+        return text.equals(format(day)) ? day : null;
+    }
+
+    /** DateFormat.MEDIUM text for an epoch day, as the date picker would show it. */
+    static String format(long epochDay) {
+        Calendar utc = UTC.get();
+        utc.setTimeInMillis(epochDay * MS_PER_DAY);
+        Calendar local = LOCAL.get();
+        local.clear();
+        local.set(utc.get(Calendar.YEAR), utc.get(Calendar.MONTH), utc.get(Calendar.DAY_OF_MONTH));
+        return MEDIUM.get().format(local.getTime());
+    }
+
+    /** Today's epoch day in the device time zone. */
+    static long today() {
+        Calendar local = LOCAL.get();
+        local.setTimeInMillis(System.currentTimeMillis());
+        return epochDay(local.get(Calendar.YEAR), local.get(Calendar.MONTH),
+                local.get(Calendar.DAY_OF_MONTH));
+    }
+
+    /** Wall-clock time of {@code hour}:00 on an epoch day in the device time zone. */
+    static long atHour(long epochDay, int hour) {
+        Calendar utc = UTC.get();
+        utc.setTimeInMillis(epochDay * MS_PER_DAY);
+        Calendar local = LOCAL.get();
+        local.clear();
+        local.set(utc.get(Calendar.YEAR), utc.get(Calendar.MONTH), utc.get(Calendar.DAY_OF_MONTH),
+                hour, 0);
+        return local.getTimeInMillis();
+    }
+
+    private static long epochDay(int year, int month, int dayOfMonth) {
+        Calendar utc = UTC.get();
+        utc.clear();
+        utc.set(year, month, dayOfMonth);
+        return Math.floorDiv(utc.getTimeInMillis(), MS_PER_DAY);
+    }
+}
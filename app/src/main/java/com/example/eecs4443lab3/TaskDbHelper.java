@@ -0,0 +1,410 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.NonNull;
+
+/**
+ * SQLite schema + row writer
+ * ---------------------------------
+ * Owns tasks.db. Writes go through statements compiled once per connection.
+ *
+ * - v2: tasks_fts, an external-content FTS4 index over title and notes. Triggers
+ *   on the tasks table keep it in step with every write, so the index is never
+ *   maintained from Java.
+ * - v3: typed columns. deadline_day is the deadline as an epoch day (NULL when
+ *   there is none); deadline_text keeps a deadline that is not a picker date,
+ *   so nothing is lost; status is a small code ({@link #STATUS_PENDING},
+ *   {@link #STATUS_DONE}). Composite indexes serve "pending, due in range, by
+ *   deadline" and "due in range, by deadline".
+ * - v4: one index per list order of {@link TaskQuery} (deadline, title,
+ *   status; newest first is the rowid itself), so every sorted page is an
+ *   index range scan.
+ * - v5: notes move to task_notes, one {@link NoteCodec} blob per task that
+ *   has any, so list pages read short rows whatever the notes weigh.
+ *   tasks.notes stays but is always NULL (SQLite before 3.35 cannot drop a
+ *   column). tasks_fts becomes a regular FTS4 table written along with each
+ *   change: triggers cannot read compressed notes.
+ * - v6: tasks_fts keeps only the searched start of the notes
+ *   ({@link TaskSearch#indexedNotes}), so its copy of the text is bounded per
+ *   task instead of repeating every note in full.
+ *
+ * Upgrades run step by step from the installed version and never drop data.
+ */
+final class TaskDbHelper extends SQLiteOpenHelper {
+    private static final int DB_VERSION = 6;
+
+    static final int STATUS_PENDING = 0;
+    static final int STATUS_DONE = 1;
+
+    // Rows copied per read during migrations
+    private static final int MIGRATION_BATCH = 500;
+
+    // Compiled once per connection and reused for every save
+    private SQLiteStatement insertStmt;
+    private SQLiteStatement updateStmt;
+    private SQLiteStatement deleteStmt;
+    private SQLiteStatement putNotesStmt;
+    private SQLiteStatement deleteNotesStmt;
+    private SQLiteStatement indexInsertStmt;
+    private SQLiteStatement indexUpdateStmt;
+    private SQLiteStatement indexTitleStmt;
+    private SQLiteStatement indexDeleteStmt;
+
+    TaskDbHelper(@NonNull Context ctx) {
+        super(ctx, "tasks.db", null, DB_VERSION);
+        // Lets the UI thread read while the persist queue is writing
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /** Highest id ever used, so new ids never collide with deleted rows. */
+    long lastId() {
+        return DatabaseUtils.longForQuery(getReadableDatabase(),
+                "SELECT MAX(IFNULL((SELECT seq FROM sqlite_sequence WHERE name = 'tasks'), 0),"
+                        + " IFNULL((SELECT MAX(_id) FROM tasks), 0))",
+                null);
+    }
+
+    /** Notes of task {@code id}; "" when it has none. */
+    String notes(long id) {
+        try (Cursor c = getReadableDatabase().rawQuery(
+                "SELECT body FROM task_notes WHERE _id = ?", new String[] { String.valueOf(id) })) {
+            return c.moveToFirst() ? NoteCodec.decode(c.getBlob(0)) : "";
+        }
+    }
+
+    /**
+     * Applies inserts, updates and deletes in one transaction. An updated task
+     * whose notes were never loaded ({@link Task#notesLoaded}) keeps its notes.
+     */
+    void apply(TaskChangeSet changes) {
+        SQLiteDatabase db = getWritableDatabase();
+        if (insertStmt == null) {
+            insertStmt = db.compileStatement(
+                    "INSERT INTO tasks(_id, title, deadline_day, deadline_text, status)"
+                            + " VALUES(?,?,?,?,?)");
+            updateStmt = db.compileStatement(
+                    "UPDATE tasks SET title = ?, deadline_day = ?, deadline_text = ?, status = ?"
+                            + " WHERE _id = ?");
+            deleteStmt = db.compileStatement("DELETE FROM tasks WHERE _id = ?");
+            putNotesStmt = db.compileStatement("INSERT OR REPLACE INTO task_notes(_id, body) VALUES(?,?)");
+            deleteNotesStmt = db.compileStatement("DELETE FROM task_notes WHERE _id = ?");
+            indexInsertStmt = db.compileStatement("INSERT INTO tasks_fts(docid, title, notes) VALUES(?,?,?)");
+            indexUpdateStmt = db.compileStatement("UPDATE tasks_fts SET title = ?, notes = ? WHERE docid = ?");
+            indexTitleStmt = db.compileStatement("UPDATE tasks_fts SET title = ? WHERE docid = ?");
+            indexDeleteStmt = db.compileStatement("DELETE FROM tasks_fts WHERE docid = ?");
+        }
+        db.beginTransaction();
+        try {
+            for (Task t : changes.inserted()) {
+                insertStmt.clearBindings();
+                insertStmt.bindLong(1, t.id);
+                bindFields(insertStmt, 2, t);
+                insertStmt.executeInsert();
+                putNotes(t.id, t.notes);
+                indexInsertStmt.bindLong(1, t.id);
+                indexInsertStmt.bindString(2, t.title);
+                bindNullable(indexInsertStmt, 3, TaskSearch.indexedNotes(t.notes));
+                indexInsertStmt.executeInsert();
+            }
+            for (Task t : changes.updated()) {
+                updateStmt.clearBindings();
+                bindFields(updateStmt, 1, t);
+                updateStmt.bindLong(5, t.id);
+                updateStmt.executeUpdateDelete();
+                if (t.notesLoaded) {
+                    putNotes(t.id, t.notes);
+                    indexUpdateStmt.bindString(1, t.title);
+                    bindNullable(indexUpdateStmt, 2, TaskSearch.indexedNotes(t.notes));
+                    indexUpdateStmt.bindLong(3, t.id);
+                    indexUpdateStmt.executeUpdateDelete();
+                } else {
+                    indexTitleStmt.bindString(1, t.title);
+                    indexTitleStmt.bindLong(2, t.id);
+                    indexTitleStmt.executeUpdateDelete();
+                }
+            }
+            for (long id : changes.deleted()) {
+                deleteStmt.bindLong(1, id);
+                deleteStmt.executeUpdateDelete();
+                deleteNotesStmt.bindLong(1, id);
+                deleteNotesStmt.executeUpdateDelete();
+                indexDeleteStmt.bindLong(1, id);
+                indexDeleteStmt.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Binds title, deadline_day, deadline_text, status starting at {@code first}. */
+    private static void bindFields(SQLiteStatement s, int first, Task t) {
+        s.bindString(first, t.title);
+        bindDeadline(s, first + 1, t.deadline);
+        s.bindLong(first + 3, statusCode(t.status));
+    }
+
+    /** Stores {@code notes} for task {@code id}; empty notes have no row. */
+    private void putNotes(long id, String notes) {
+        byte[] blob = NoteCodec.encode(notes);
+        if (blob == null) {
+            deleteNotesStmt.bindLong(1, id);
+            deleteNotesStmt.executeUpdateDelete();
+        } else {
+            putNotesStmt.bindLong(1, id);
+            putNotesStmt.bindBlob(2, blob);
+            putNotesStmt.executeInsert();
+        }
+    }
+
+    /** A picker date goes into deadline_day; any other text is kept in deadline_text. */
+    private static void bindDeadline(SQLiteStatement s, int index, String deadline) {
+        Long day = TaskDates.toEpochDay(deadline);
+        if (day != null) {
+            s.bindLong(index, day);
+            s.bindNull(index + 1);
+        } else {
+            s.bindNull(index);
+            bindNullable(s, index + 1, deadline);
+        }
+    }
+
+    static int statusCode(String status) {
+        return "Done".equalsIgnoreCase(status) ? STATUS_DONE : STATUS_PENDING;
+    }
+
+    static String statusText(int code) {
+        return code == STATUS_DONE ? "Done" : "Pending";
+    }
+
+    private static void bindNullable(SQLiteStatement s, int index, String value) {
+        if (value == null) {
+            s.bindNull(index);
+        } else {
+            s.bindString(index, value);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (insertStmt != null) {
+            for (SQLiteStatement s : new SQLiteStatement[] { insertStmt, updateStmt, deleteStmt,
+                    putNotesStmt, deleteNotesStmt, indexInsertStmt, indexUpdateStmt,
+                    indexTitleStmt, indexDeleteStmt }) {
+                s.close();
+            }
+            insertStmt = updateStmt = deleteStmt = putNotesStmt = deleteNotesStmt = null;
+            indexInsertStmt = indexUpdateStmt = indexTitleStmt = indexDeleteStmt = null;
+        }
+        super.close();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        createTasksTable(db, "tasks");
+        createIndexes(db);
+        createSortIndexes(db);
+        createNotesTable(db);
+        createSearchIndex(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // SQLiteOpenHelper runs this in one transaction: a failed step leaves v(old) intact
+        if (oldVersion < 3) {
+            // v2 only added tasks_fts; the v3 copy (re)creates and fills it either way
+            migrateToTypedColumns(db);
+        }
+        if (oldVersion < 4) {
+            createSortIndexes(db);
+        }
+        if (oldVersion < 5) {
+            moveNotesOut(db);
+        }
+        if (oldVersion < 6) {
+            rebuildSearchIndex(db);
+        }
+    }
+
+    private static void createTasksTable(SQLiteDatabase db, String name) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + name + " (" +
+                "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "title TEXT NOT NULL," +
+                "deadline_day INTEGER," +
+                "deadline_text TEXT," +
+                "notes TEXT," +
+                "status INTEGER NOT NULL DEFAULT " + STATUS_PENDING + ")");
+    }
+
+    /** Notes as {@link NoteCodec} blobs, keyed by task _id; only tasks with notes have a row. */
+    private static void createNotesTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS task_notes (" +
+                "_id INTEGER PRIMARY KEY," +
+                "body BLOB NOT NULL)");
+    }
+
+    private static void createIndexes(SQLiteDatabase db) {
+        // WHERE status = ? AND deadline_day BETWEEN ? AND ? ORDER BY deadline_day
+        db.execSQL("CREATE INDEX IF NOT EXISTS tasks_status_deadline ON tasks(status, deadline_day)");
+        // WHERE deadline_day BETWEEN ? AND ? ORDER BY deadline_day (any status)
+        db.execSQL("CREATE INDEX IF NOT EXISTS tasks_deadline_status ON tasks(deadline_day, status)");
+    }
+
+    /** Indexes matching {@link TaskQuery#orderBy()}, expression for expression. */
+    private static void createSortIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS tasks_by_deadline ON tasks(IFNULL(deadline_day, "
+                + TaskQuery.NO_DAY + "), _id)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS tasks_by_title ON tasks(title COLLATE NOCASE, _id)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS tasks_by_status ON tasks(status, _id DESC)");
+    }
+
+    /**
+     * v2 -> v3: copies every row into the typed table, {@link #MIGRATION_BATCH}
+     * rows per read (keyset on _id), parsing the legacy deadline and status
+     * strings, then swaps the tables and rebuilds the indexes. The search index
+     * is rebuilt by the v6 step, which always follows.
+     */
+    private static void migrateToTypedColumns(SQLiteDatabase db) {
+        long sequence = DatabaseUtils.longForQuery(db,
+                "SELECT IFNULL((SELECT seq FROM sqlite_sequence WHERE name = 'tasks'), 0)", null);
+
+        db.execSQL("DROP TABLE IF EXISTS tasks_v3");
+        createTasksTable(db, "tasks_v3");
+        SQLiteStatement insert = db.compileStatement(
+                "INSERT INTO tasks_v3(_id, title, deadline_day, deadline_text, notes, status)"
+                        + " VALUES(?,?,?,?,?,?)");
+        try {
+            long after = Long.MIN_VALUE;
+            while (true) {
+                int copied = 0;
+                try (Cursor c = db.rawQuery(
+                        "SELECT _id, title, deadline, notes, status FROM tasks"
+                                + " WHERE _id > ? ORDER BY _id LIMIT " + MIGRATION_BATCH,
+                        new String[] { String.valueOf(after) })) {
+                    while (c.moveToNext()) {
+                        after = c.getLong(0);
+                        insert.clearBindings();
+                        insert.bindLong(1, after);
+                        insert.bindString(2, c.isNull(1) ? "" : c.getString(1));
+                        bindDeadline(insert, 3, c.getString(2));
+                        bindNullable(insert, 5, c.getString(3));
+                        insert.bindLong(6, statusCode(c.getString(4)));
+                        insert.executeInsert();
+                        copied++;
+                    }
+                }
+                if (copied < MIGRATION_BATCH) {
+                    break;
+                }
+            }
+        } finally {
+            insert.close();
+        }
+
+        // Dropping the old table drops its FTS triggers too
+        db.execSQL("DROP TABLE tasks");
+        db.execSQL("ALTER TABLE tasks_v3 RENAME TO tasks");
+
+        // Keep the id high-water mark, so ids of deleted rows stay retired
+        db.execSQL("DELETE FROM sqlite_sequence WHERE name IN ('tasks', 'tasks_v3')");
+        db.execSQL("INSERT INTO sqlite_sequence(name, seq) VALUES('tasks',"
+                + " MAX(?, IFNULL((SELECT MAX(_id) FROM tasks), 0)))",
+                new Object[] { sequence });
+
+        createIndexes(db);
+    }
+
+    /**
+     * v4 -> v5: drops the trigger-maintained search index (the v6 step, which
+     * always follows, builds its replacement), then moves every non-empty note
+     * into task_notes, {@link #MIGRATION_BATCH} rows per read, and clears
+     * tasks.notes.
+     */
+    private static void moveNotesOut(SQLiteDatabase db) {
+        for (String trigger : new String[] { "tasks_fts_bu", "tasks_fts_bd", "tasks_fts_au", "tasks_fts_ai" }) {
+            db.execSQL("DROP TRIGGER IF EXISTS " + trigger);
+        }
+        db.execSQL("DROP TABLE IF EXISTS tasks_fts");
+
+        createNotesTable(db);
+        SQLiteStatement insert = db.compileStatement("INSERT INTO task_notes(_id, body) VALUES(?,?)");
+        try {
+            long after = Long.MIN_VALUE;
+            while (true) {
+                int read = 0;
+                try (Cursor c = db.rawQuery(
+                        "SELECT _id, notes FROM tasks WHERE _id > ? AND notes <> ''"
+                                + " ORDER BY _id LIMIT " + MIGRATION_BATCH,
+                        new String[] { String.valueOf(after) })) {
+                    while (c.moveToNext()) {
+                        after = c.getLong(0);
+                        insert.bindLong(1, after);
+                        insert.bindBlob(2, NoteCodec.encode(c.getString(1)));
+                        insert.executeInsert();
+                        read++;
+                    }
+                }
+                if (read < MIGRATION_BATCH) {
+                    break;
+                }
+            }
+        } finally {
+            insert.close();
+        }
+        db.execSQL("UPDATE tasks SET notes = NULL WHERE notes IS NOT NULL");
+    }
+
+    /**
+     * v5 -> v6: refills the search index with titles and the searched start of
+     * each note, decoded from task_notes {@link #MIGRATION_BATCH} rows per read.
+     */
+    private static void rebuildSearchIndex(SQLiteDatabase db) {
+        db.execSQL("DROP TABLE IF EXISTS tasks_fts");
+        createSearchIndex(db);
+        SQLiteStatement insert = db.compileStatement("INSERT INTO tasks_fts(docid, title, notes) VALUES(?,?,?)");
+        try {
+            long after = Long.MIN_VALUE;
+            while (true) {
+                int read = 0;
+                try (Cursor c = db.rawQuery(
+                        "SELECT t._id, t.title, n.body FROM tasks t LEFT JOIN task_notes n ON n._id = t._id"
+                                + " WHERE t._id > ? ORDER BY t._id LIMIT " + MIGRATION_BATCH,
+                        new String[] { String.valueOf(after) })) {
+                    while (c.moveToNext()) {
+                        after = c.getLong(0);
+                        insert.clearBindings();
+                        insert.bindLong(1, after);
+                        insert.bindString(2, c.getString(1));
+                        if (!c.isNull(2)) {
+                            insert.bindString(3, TaskSearch.indexedNotes(NoteCodec.decode(c.getBlob(2))));
+                        }
+                        insert.executeInsert();
+                        read++;
+                    }
+                }
+                if (read < MIGRATION_BATCH) {
+                    break;
+                }
+            }
+        } finally {
+            insert.close();
+        }
+    }
+
+    /**
+     * Full-text index over title + the searched start of the notes
+     * ({@link TaskSearch#indexedNotes}). The docid is the task _id; prefix
+     * indexes for 1-3 characters keep search-as-you-type queries (term*) cheap.
+     * It keeps its own copy of that text and is written by {@link #apply}.
+     */
+    private static void createSearchIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS tasks_fts USING fts4(" +
+                "title, notes, prefix=\"1,2,3\")");
+    }
+}
@@ -1,8 +1,14 @@
 package com.example.eecs4443lab3;
 
+import android.content.Intent;
 import android.os.Bundle;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.widget.TextView;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.google.android.material.appbar.MaterialToolbar;
@@ -10,8 +16,16 @@ import com.google.android.material.appbar.MaterialToolbar;
 /**
  * Task Detail screen (read-only)
  * ---------------------------------
- * Displays a task's Title, Deadline, Status, and Notes passed via Intent extras
- * from the caller. Empty values are rendered as an em dash (—).
+ * Displays a task's Title, Deadline, Status, and Notes. The caller passes only
+ * the task id and storage mode; the task itself comes from {@link TaskCache}
+ * (or one background row read), so the Intent stays small and the screen
+ * shows the latest version each time it starts. Empty values are rendered as
+ * an em dash (—).
+ *
+ * - Edit (toolbar): opens AddEditTaskActivity for the same id; the edit is
+ *   handed back to the list screen through this screen's result.
+ * - While shown it follows {@link TaskRepository}: a save, sync pull or
+ *   import touching the task rebinds it without another read.
  */
 public class TaskDetailActivity extends AppCompatActivity {
 
@@ -20,6 +34,21 @@ public class TaskDetailActivity extends AppCompatActivity {
     private TextView txtStatus;
     private TextView txtNotes;
 
+    private long taskId;
+    private MainActivity.Mode mode;
+    private final TaskRepository.Listener repositoryListener = this::onTasksChanged;
+
+    // An edit made from here is returned to MainActivity as just the id
+    private final ActivityResultLauncher<Intent> editLauncher = registerForActivityResult(
+            new ActivityResultContracts.StartActivityForResult(), result -> {
+                if (result.getResultCode() == RESULT_OK) {
+                    Intent data = new Intent();
+                    data.putExtra(MainActivity.EXTRA_TASK_ID, taskId);
+                    data.putExtra(MainActivity.EXTRA_MODE, mode.name());
+                    setResult(RESULT_OK, data);
+                }
+            });
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -31,17 +60,9 @@ public class TaskDetailActivity extends AppCompatActivity {
         txtStatus = findViewById(R.id.txtStatus);
         txtNotes = findViewById(R.id.txtNotes);
 
-        // Pull values from intent
-        String title = getIntent().getStringExtra(MainActivity.EXTRA_TITLE);
-        String deadline = getIntent().getStringExtra(MainActivity.EXTRA_DEADLINE);
-        String status = getIntent().getStringExtra(MainActivity.EXTRA_STATUS);
-        String notes = getIntent().getStringExtra(MainActivity.EXTRA_NOTES);
-
-        // Populate UI (fallback to em dash for empty)
-        txtTitle.setText(nullToDash(title));
-        txtDeadline.setText(isNullOrEmpty(deadline) ? "—" : deadline);
-        txtStatus.setText(nullToDash(status));
-        txtNotes.setText(isNullOrEmpty(notes) ? "—" : notes);
+        // Which task (the values themselves are looked up in onStart)
+        taskId = getIntent().getLongExtra(MainActivity.EXTRA_TASK_ID, -1);
+        mode = MainActivity.Mode.valueOf(getIntent().getStringExtra(MainActivity.EXTRA_MODE));
 
         // Top app bar + back arrow
         MaterialToolbar toolbar = findViewById(R.id.detailToolbar);
@@ -52,6 +73,70 @@ public class TaskDetailActivity extends AppCompatActivity {
         toolbar.setNavigationOnClickListener(v -> finish());
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        TaskCache.resolve(this, mode, taskId, this::bind);
+        TaskRepository.get().subscribe(repositoryListener);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        TaskRepository.get().unsubscribe(repositoryListener);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_task_detail, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.action_edit) {
+            Intent i = new Intent(this, AddEditTaskActivity.class);
+            i.putExtra(MainActivity.EXTRA_TASK_ID, taskId);
+            i.putExtra(MainActivity.EXTRA_MODE, mode.name());
+            editLauncher.launch(i);
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void onTasksChanged(TaskRepository.Change change) {
+        if (change.mode != mode) {
+            return;
+        }
+        if (change.kind == TaskRepository.Kind.RELOADED) {
+            TaskCache.resolve(this, mode, taskId, this::bind); // the cache was dropped; read it again
+        } else if (change.isDeleted(taskId)) {
+            bind(null);
+        } else {
+            Task t = change.find(taskId);
+            if (t != null && t.notesLoaded) {
+                bind(t);
+            } else if (t != null) {
+                TaskCache.resolve(this, mode, taskId, this::bind); // saved as a row; notes are in storage
+            }
+        }
+    }
+
+    /** Populate UI (fallback to em dash for empty). */
+    private void bind(Task t) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        if (t == null) {
+            txtTitle.setText("Task not found");
+            return;
+        }
+        txtTitle.setText(nullToDash(t.title));
+        txtDeadline.setText(isNullOrEmpty(t.deadline) ? "—" : t.deadline);
+        txtStatus.setText(nullToDash(t.status));
+        txtNotes.setText(isNullOrEmpty(t.notes) ? "—" : t.notes);
+    }
+
     private static boolean isNullOrEmpty(String s) {
         return s == null || s.trim().isEmpty();
     }
@@ -0,0 +1,540 @@
+package com.example.eecs4443lab3;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Sorted, filtered views of an in-memory task list
+ * ---------------------------------
+ * Keeps every task in one treap per {@link TaskQuery.Sort}, so a view in any
+ * order and filter is ready without sorting, and one edit costs O(log n).
+ *
+ * - Nodes are slots in parallel arrays (no object per node); all treaps share
+ *   the slot, its cached sort keys (deadline day, status code, storage order)
+ *   and one random priority.
+ * - Each node counts the rows below it per filter (all, pending, overdue;
+ *   done is all minus pending), so position -> task ({@link View#get}) and
+ *   task -> position are O(log n) for every sort/filter pair.
+ * - Switching view is O(1): a {@link View} is a sort + filter over the same
+ *   trees. Overdue is relative to {@link #setToday}; moving to a new day
+ *   recounts in O(n).
+ * - ADDED is storage order: loaded rows in the order read, new rows after them.
+ *
+ * Not thread-safe; built on the loader thread, then owned by the main thread.
+ */
+final class TaskIndex {
+
+    private static final int NIL = -1;
+    private static final TaskQuery.Sort[] SORTS = TaskQuery.Sort.values();
+
+    // Per-slot filter bits
+    private static final byte PENDING = 1;
+    private static final byte OVERDUE = 2;
+
+    // Slots
+    private Task[] tasks;
+    private long[] seqs;      // storage order
+    private int[] days;       // TaskQuery.dayKey
+    private byte[] statuses;  // TaskDbHelper status code
+    private byte[] flags;
+    private int[] priorities;
+    private int[] free = new int[16];
+    private int freeCount;
+    private int used;         // slots ever handed out
+    private long nextSeq;
+
+    // Per sort: children and subtree counts
+    private final int[] roots = new int[SORTS.length];
+    private final int[][] lefts = new int[SORTS.length][];
+    private final int[][] rights = new int[SORTS.length][];
+    private final int[][] counts = new int[SORTS.length][];
+    private final int[][] pendingCounts = new int[SORTS.length][];
+    private final int[][] overdueCounts = new int[SORTS.length][];
+
+    private long today;
+    private long comparisons; // compare() calls so far, for the cost tests
+    private final Random random = new Random();
+    private final Map<String, Integer> dayKeys = new HashMap<>(); // deadline text -> day key
+
+    // Results of split(), which has two
+    private int splitLeft;
+    private int splitRight;
+
+    private TaskIndex(int capacity, long today) {
+        this.today = today;
+        allocate(Math.max(16, capacity));
+        Arrays.fill(roots, NIL);
+    }
+
+    /** Index over {@code all} in storage order; O(n log n). */
+    static TaskIndex of(List<Task> all, long today) {
+        TaskIndex index = new TaskIndex(all.size(), today);
+        for (Task t : all) {
+            index.write(index.used++, t, index.nextSeq++);
+        }
+        Integer[] order = new Integer[index.used];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (TaskQuery.Sort sort : SORTS) {
+            int s = sort.ordinal();
+            Arrays.sort(order, (a, b) -> index.compare(s, a, b));
+            index.build(s, order);
+        }
+        index.comparisons = 0;
+        return index;
+    }
+
+    /** View in {@code query}'s order and filter; O(1). */
+    View view(TaskQuery query) {
+        return new View(query);
+    }
+
+    int size() {
+        return used - freeCount;
+    }
+
+    /** Key comparisons made since the index was built (not counting the build). */
+    long comparisons() {
+        return comparisons;
+    }
+
+    /** Moves "overdue" to a new day; a no-op unless the day changed. */
+    void setToday(long day) {
+        if (day == today) {
+            return;
+        }
+        today = day;
+        for (int slot = 0; slot < used; slot++) {
+            if (tasks[slot] != null) {
+                flags[slot] = flagsOf(statuses[slot], days[slot]);
+            }
+        }
+        for (int s = 0; s < SORTS.length; s++) {
+            recount(s, roots[s]);
+        }
+    }
+
+    /*
+     * ------------------------------- Views -------------------------------------
+     */
+
+    /**
+     * The tasks in one order and filter. Edits go through {@link #insert},
+     * {@link #replace} and {@link #remove(int)}, which keep every view of the
+     * index sorted and return where the row ended up, or {@link #rewrite}
+     * for many tasks at once.
+     */
+    final class View extends AbstractList<Task> {
+        final TaskQuery query;
+        private final int sort;
+        private final TaskQuery.Filter filter;
+
+        View(TaskQuery query) {
+            this.query = query;
+            this.sort = query.sort.ordinal();
+            this.filter = query.filter;
+        }
+
+        @Override
+        public Task get(int index) {
+            return tasks[select(sort, filter, index)];
+        }
+
+        @Override
+        public int size() {
+            return count(sort, filter, roots[sort]);
+        }
+
+        /** Adds a new task; returns its position here, or -1 if the filter hides it. */
+        int insert(Task t) {
+            int slot = allocateSlot();
+            write(slot, t, nextSeq++);
+            link(slot);
+            modCount++;
+            return positionOf(slot);
+        }
+
+        /** Replaces the task at {@code index}; returns its new position, or -1 if now hidden. */
+        int replace(int index, Task t) {
+            int slot = select(sort, filter, index);
+            unlink(slot);
+            write(slot, t, seqs[slot]);
+            link(slot);
+            return positionOf(slot);
+        }
+
+        /** Same as {@link #replace}, returning the old task; the row may move or leave the view. */
+        @Override
+        public Task set(int index, Task t) {
+            Task old = get(index);
+            replace(index, t);
+            return old;
+        }
+
+        @Override
+        public boolean add(Task t) {
+            insert(t);
+            return true;
+        }
+
+        @Override
+        public Task remove(int index) {
+            int slot = select(sort, filter, index);
+            Task old = tasks[slot];
+            unlink(slot);
+            tasks[slot] = null;
+            releaseSlot(slot);
+            modCount++;
+            return old;
+        }
+
+        /**
+         * Passes every task whose id is in {@code ids} through {@code edit},
+         * removing the ones it maps to null: one pass over the slots plus
+         * O(log n) per task changed, in every view of the index at once.
+         * Tasks {@code edit} returns unchanged are left where they are.
+         */
+        void rewrite(Set<Long> ids, UnaryOperator<Task> edit) {
+            for (int slot = 0; slot < used; slot++) {
+                Task old = tasks[slot];
+                if (old == null || !ids.contains(old.id)) {
+                    continue;
+                }
+                Task updated = edit.apply(old);
+                if (updated == old) {
+                    continue;
+                }
+                unlink(slot);
+                if (updated == null) {
+                    tasks[slot] = null;
+                    releaseSlot(slot);
+                } else {
+                    write(slot, updated, seqs[slot]);
+                    link(slot);
+                }
+            }
+            modCount++;
+        }
+
+        /** Another order/filter over the same trees, with overdue as of {@code today}; O(1) unless the day changed. */
+        View withQuery(TaskQuery q, long today) {
+            setToday(today);
+            return new View(q);
+        }
+
+        /** Every task in storage order, whatever this view filters. */
+        List<Task> all() {
+            return view(TaskQuery.DEFAULT);
+        }
+
+        private int positionOf(int slot) {
+            return matches(filter, slot) ? rank(sort, filter, slot) : -1;
+        }
+    }
+
+    /*
+     * ------------------------------- Slots -------------------------------------
+     */
+
+    private void write(int slot, Task t, long seq) {
+        tasks[slot] = t;
+        seqs[slot] = seq;
+        days[slot] = dayKey(t);
+        statuses[slot] = (byte) TaskDbHelper.statusCode(t.status);
+        flags[slot] = flagsOf(statuses[slot], days[slot]);
+        priorities[slot] = random.nextInt();
+    }
+
+    private byte flagsOf(byte status, int day) {
+        if (status != TaskDbHelper.STATUS_PENDING) {
+            return 0;
+        }
+        return (byte) (day < today ? PENDING | OVERDUE : PENDING);
+    }
+
+    /** Day key, parsed once per distinct deadline text. */
+    private int dayKey(Task t) {
+        Integer day = dayKeys.get(t.deadline);
+        if (day == null) {
+            day = TaskQuery.dayKey(t);
+            dayKeys.put(t.deadline, day);
+        }
+        return day;
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return free[--freeCount];
+        }
+        if (used == tasks.length) {
+            grow(used * 2);
+        }
+        return used++;
+    }
+
+    private void releaseSlot(int slot) {
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = slot;
+    }
+
+    private void link(int slot) {
+        for (int s = 0; s < SORTS.length; s++) {
+            lefts[s][slot] = NIL;
+            rights[s][slot] = NIL;
+            pull(s, slot);
+            roots[s] = insert(s, roots[s], slot);
+        }
+    }
+
+    private void unlink(int slot) {
+        for (int s = 0; s < SORTS.length; s++) {
+            roots[s] = remove(s, roots[s], slot);
+        }
+    }
+
+    /*
+     * ------------------------------- Treaps ------------------------------------
+     */
+
+    /** Sort order of two slots; ties (and ADDED) fall back to id / storage order. */
+    private int compare(int s, int a, int b) {
+        comparisons++;
+        int c;
+        switch (SORTS[s]) {
+            case DEADLINE:
+                c = Integer.compare(days[a], days[b]);
+                break;
+            case TITLE:
+                c = String.CASE_INSENSITIVE_ORDER.compare(titleOf(a), titleOf(b));
+                break;
+            case STATUS:
+                c = Byte.compare(statuses[a], statuses[b]);
+                return c != 0 ? c : Long.compare(tasks[b].id, tasks[a].id);
+            default:
+                return Long.compare(seqs[a], seqs[b]);
+        }
+        return c != 0 ? c : Long.compare(tasks[a].id, tasks[b].id);
+    }
+
+    private String titleOf(int slot) {
+        String title = tasks[slot].title;
+        return title == null ? "" : title;
+    }
+
+    private int insert(int s, int node, int slot) {
+        if (node == NIL) {
+            return slot;
+        }
+        if (priorities[slot] > priorities[node]) {
+            split(s, node, slot);
+            lefts[s][slot] = splitLeft;
+            rights[s][slot] = splitRight;
+            pull(s, slot);
+            return slot;
+        }
+        if (compare(s, slot, node) < 0) {
+            lefts[s][node] = insert(s, lefts[s][node], slot);
+        } else {
+            rights[s][node] = insert(s, rights[s][node], slot);
+        }
+        pull(s, node);
+        return node;
+    }
+
+    /** Splits {@code node}'s tree into rows before {@code slot} and rows after it. */
+    private void split(int s, int node, int slot) {
+        if (node == NIL) {
+            splitLeft = splitRight = NIL;
+        } else if (compare(s, node, slot) < 0) {
+            split(s, rights[s][node], slot);
+            rights[s][node] = splitLeft;
+            pull(s, node);
+            splitLeft = node;
+        } else {
+            split(s, lefts[s][node], slot);
+            lefts[s][node] = splitRight;
+            pull(s, node);
+            splitRight = node;
+        }
+    }
+
+    private int remove(int s, int node, int slot) {
+        if (node == slot) {
+            return merge(s, lefts[s][slot], rights[s][slot]);
+        }
+        if (compare(s, slot, node) < 0) {
+            lefts[s][node] = remove(s, lefts[s][node], slot);
+        } else {
+            rights[s][node] = remove(s, rights[s][node], slot);
+        }
+        pull(s, node);
+        return node;
+    }
+
+    private int merge(int s, int a, int b) {
+        if (a == NIL) {
+            return b;
+        }
+        if (b == NIL) {
+            return a;
+        }
+        if (priorities[a] > priorities[b]) {
+            rights[s][a] = merge(s, rights[s][a], b);
+            pull(s, a);
+            return a;
+        }
+        lefts[s][b] = merge(s, a, lefts[s][b]);
+        pull(s, b);
+        return b;
+    }
+
+    /** The {@code k}-th slot (0-based) that {@code filter} shows, in sort {@code s}. */
+    private int select(int s, TaskQuery.Filter filter, int k) {
+        if (k < 0) {
+            throw new IndexOutOfBoundsException("Index " + k);
+        }
+        int node = roots[s];
+        while (node != NIL) {
+            int left = lefts[s][node];
+            int before = count(s, filter, left);
+            if (k < before) {
+                node = left;
+                continue;
+            }
+            k -= before;
+            if (matches(filter, node)) {
+                if (k == 0) {
+                    return node;
+                }
+                k--;
+            }
+            node = rights[s][node];
+        }
+        throw new IndexOutOfBoundsException("Index past the end of the view");
+    }
+
+    /** How many slots {@code filter} shows before {@code slot} in sort {@code s}. */
+    private int rank(int s, TaskQuery.Filter filter, int slot) {
+        int before = 0;
+        int node = roots[s];
+        while (node != slot) {
+            if (compare(s, slot, node) < 0) {
+                node = lefts[s][node];
+            } else {
+                before += count(s, filter, lefts[s][node]) + (matches(filter, node) ? 1 : 0);
+                node = rights[s][node];
+            }
+        }
+        return before + count(s, filter, lefts[s][slot]);
+    }
+
+    private boolean matches(TaskQuery.Filter filter, int slot) {
+        switch (filter) {
+            case PENDING:
+                return (flags[slot] & PENDING) != 0;
+            case DONE:
+                return (flags[slot] & PENDING) == 0;
+            case OVERDUE:
+                return (flags[slot] & OVERDUE) != 0;
+            default:
+                return true;
+        }
+    }
+
+    private int count(int s, TaskQuery.Filter filter, int node) {
+        if (node == NIL) {
+            return 0;
+        }
+        switch (filter) {
+            case PENDING:
+                return pendingCounts[s][node];
+            case DONE:
+                return counts[s][node] - pendingCounts[s][node];
+            case OVERDUE:
+                return overdueCounts[s][node];
+            default:
+                return counts[s][node];
+        }
+    }
+
+    /** Recomputes {@code node}'s counts from its children. */
+    private void pull(int s, int node) {
+        int l = lefts[s][node];
+        int r = rights[s][node];
+        int f = flags[node];
+        counts[s][node] = 1 + (l == NIL ? 0 : counts[s][l]) + (r == NIL ? 0 : counts[s][r]);
+        pendingCounts[s][node] = (f & PENDING)
+                + (l == NIL ? 0 : pendingCounts[s][l]) + (r == NIL ? 0 : pendingCounts[s][r]);
+        overdueCounts[s][node] = ((f & OVERDUE) >> 1)
+                + (l == NIL ? 0 : overdueCounts[s][l]) + (r == NIL ? 0 : overdueCounts[s][r]);
+    }
+
+    private void recount(int s, int node) {
+        if (node != NIL) {
+            recount(s, lefts[s][node]);
+            recount(s, rights[s][node]);
+            pull(s, node);
+        }
+    }
+
+    /** Treap over slots already sorted by key, in O(n) (right spine on a stack). */
+    private void build(int s, Integer[] order) {
+        int[] spine = new int[order.length];
+        int top = 0;
+        for (int slot : order) {
+            int last = NIL;
+            while (top > 0 && priorities[spine[top - 1]] < priorities[slot]) {
+                last = spine[--top];
+            }
+            lefts[s][slot] = last;
+            rights[s][slot] = NIL;
+            if (top > 0) {
+                rights[s][spine[top - 1]] = slot;
+            }
+            spine[top++] = slot;
+        }
+        roots[s] = top > 0 ? spine[0] : NIL;
+        recount(s, roots[s]);
+    }
+
+    private void allocate(int capacity) {
+        tasks = new Task[capacity];
+        seqs = new long[capacity];
+        days = new int[capacity];
+        statuses = new byte[capacity];
+        flags = new byte[capacity];
+        priorities = new int[capacity];
+        for (int s = 0; s < SORTS.length; s++) {
+            lefts[s] = new int[capacity];
+            rights[s] = new int[capacity];
+            counts[s] = new int[capacity];
+            pendingCounts[s] = new int[capacity];
+            overdueCounts[s] = new int[capacity];
+        }
+    }
+
+    private void grow(int capacity) {
+        tasks = Arrays.copyOf(tasks, capacity);
+        seqs = Arrays.copyOf(seqs, capacity);
+        days = Arrays.copyOf(days, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        for (int s = 0; s < SORTS.length; s++) {
+            lefts[s] = Arrays.copyOf(lefts[s], capacity);
+            rights[s] = Arrays.copyOf(rights[s], capacity);
+            counts[s] = Arrays.copyOf(counts[s], capacity);
+            pendingCounts[s] = Arrays.copyOf(pendingCounts[s], capacity);
+            overdueCounts[s] = Arrays.copyOf(overdueCounts[s], capacity);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.eecs4443lab3;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only task journal
+ * ---------------------------------
+ * File-backed store that records every insert/update as a PUT record and every
+ * delete as a DEL record, so a save only appends the rows that changed.
+ *
+ * File layout:
+ * - header: magic "TJNL" + format version (int)
+ * - records: payload length (int) + CRC32 of payload (int) + payload
+ * - payload: op (byte) + task id (long) [+ title, deadline, notes, status]
+ *
+ * Loading replays the log record by record. A torn or corrupt tail left by a
+ * crash is cut off at the last valid record. When dead records outnumber live
+ * tasks the log is compacted into a fresh file and atomically renamed over
+ * the old one.
+ */
+final class TaskJournal implements TaskStore {
+
+    private static final int MAGIC = 0x544A4E4C; // "TJNL"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DEL = 2;
+
+    // Compact once the log holds this many more records than live tasks
+    private static final int COMPACT_SLACK = 1_000;
+
+    private final File file;
+    private final LinkedHashMap<Long, Task> live = new LinkedHashMap<>();
+    private DataOutputStream out;
+    private FileOutputStream outFile;
+    private long records;
+    private boolean loaded;
+    private long maxId;
+
+    TaskJournal(File file) {
+        this.file = file;
+    }
+
+    /** Replays the log and returns the live tasks in insertion order. */
+    @Override
+    public synchronized List<Task> loadAll() throws IOException {
+        closeOutput();
+        live.clear();
+        records = 0;
+        maxId = 0;
+        long goodLength = replay();
+        if (goodLength < file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(goodLength); // drop the torn tail
+            }
+        }
+        loaded = true;
+        return new ArrayList<>(live.values());
+    }
+
+    @Override
+    public synchronized Task get(long id) throws IOException {
+        ensureLoaded();
+        return live.get(id);
+    }
+
+    @Override
+    public synchronized long lastId() throws IOException {
+        ensureLoaded();
+        return maxId;
+    }
+
+    @Override
+    public synchronized int count() throws IOException {
+        ensureLoaded();
+        return live.size();
+    }
+
+    @Override
+    public synchronized void scan(Visitor visitor) throws IOException {
+        ensureLoaded();
+        for (Task t : live.values()) {
+            visitor.visit(t);
+        }
+    }
+
+    /** Appends one record per changed row and syncs the file. */
+    @Override
+    public synchronized void apply(TaskChangeSet changes) throws IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        ensureLoaded();
+        DataOutputStream o = output();
+        for (Task t : changes.inserted()) {
+            writeRecord(o, OP_PUT, t.id, t);
+            live.put(t.id, t);
+            maxId = Math.max(maxId, t.id);
+        }
+        for (Task t : changes.updated()) {
+            if (!t.notesLoaded) {
+                Task old = live.get(t.id);
+                t = t.withNotes(old != null ? old.notes : "");
+            }
+            writeRecord(o, OP_PUT, t.id, t);
+            live.put(t.id, t);
+        }
+        for (long id : changes.deleted()) {
+            writeRecord(o, OP_DEL, id, null);
+            live.remove(id);
+        }
+        o.flush();
+        outFile.getFD().sync();
+
+        if (records > 2L * live.size() + COMPACT_SLACK) {
+            compact();
+        }
+    }
+
+    /** Rewrites the log with one PUT per live task. */
+    synchronized void compact() throws IOException {
+        closeOutput();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+                DataOutputStream o = new DataOutputStream(new BufferedOutputStream(fos))) {
+            o.writeInt(MAGIC);
+            o.writeInt(VERSION);
+            long liveMax = 0;
+            for (Task t : live.values()) {
+                writeRecord(o, OP_PUT, t.id, t);
+                liveMax = Math.max(liveMax, t.id);
+            }
+            if (maxId > liveMax) {
+                writeRecord(o, OP_DEL, maxId, null); // keeps the id high-water mark
+            }
+            o.flush();
+            fos.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+        records = live.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeOutput();
+    }
+
+    /*
+     * ------------------------------ Internals ----------------------------------
+     */
+
+    private void ensureLoaded() throws IOException {
+        if (!loaded) {
+            loadAll();
+        }
+    }
+
+    /** Streams the file into {@link #live}; returns the length of the valid prefix. */
+    private long replay() throws IOException {
+        if (!file.exists() || file.length() < HEADER_BYTES) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return 0;
+            }
+            long offset = HEADER_BYTES;
+            CRC32 crc = new CRC32();
+            byte[] buf = new byte[256];
+            while (true) {
+                int len;
+                int expected;
+                try {
+                    len = in.readInt();
+                    expected = in.readInt();
+                    if (len <= 0 || len > file.length() - offset) {
+                        return offset;
+                    }
+                    if (buf.length < len) {
+                        buf = new byte[Math.max(len, buf.length * 2)];
+                    }
+                    in.readFully(buf, 0, len);
+                } catch (EOFException torn) {
+                    return offset;
+                }
+                crc.reset();
+                crc.update(buf, 0, len);
+                if ((int) crc.getValue() != expected) {
+                    return offset;
+                }
+                applyPayload(new DataInputStream(new ByteArrayInputStream(buf, 0, len)));
+                records++;
+                offset += 8 + len;
+            }
+        }
+    }
+
+    private void applyPayload(DataInputStream p) throws IOException {
+        byte op = p.readByte();
+        long id = p.readLong();
+        maxId = Math.max(maxId, id);
+        if (op == OP_DEL) {
+            live.remove(id);
+        } else {
+            live.put(id, new Task(id,
+                    readString(p), readString(p), readString(p), readString(p)));
+        }
+    }
+
+    private void writeRecord(DataOutputStream o, byte op, long id, Task t)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream p = new DataOutputStream(bytes);
+        p.writeByte(op);
+        p.writeLong(id);
+        if (t != null) {
+            writeString(p, t.title);
+            writeString(p, t.deadline);
+            writeString(p, t.notes);
+            writeString(p, t.status);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        o.writeInt(bytes.size());
+        o.writeInt((int) crc.getValue());
+        bytes.writeTo(o);
+        records++;
+    }
+
+    static void writeString(DataOutputStream p, String s) throws IOException {
+        if (s == null) {
+            p.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        p.writeInt(b.length);
+        p.write(b);
+    }
+
+    static String readString(DataInputStream p) throws IOException {
+        int len = p.readInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] b = new byte[len];
+        p.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private DataOutputStream output() throws IOException {
+        if (out == null) {
+            boolean fresh = file.length() < HEADER_BYTES;
+            outFile = new FileOutputStream(file, !fresh);
+            out = new DataOutputStream(new BufferedOutputStream(outFile));
+            if (fresh) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+        }
+        return out;
+    }
+
+    private void closeOutput() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            outFile = null;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.eecs4443lab3;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JSON array codec
+ * ---------------------------------
+ * The format {@link PrefsTaskStore} keeps under its preferences key:
+ * [{"id", "title", "deadline", "notes", "status"}, ...]. "notes" is left out
+ * for list rows ({@link Task#row}) and read back as one. Plain Java + org.json,
+ * so the benchmarks module can compile it without the Android SDK.
+ */
+final class TaskJson {
+
+    private TaskJson() {
+    }
+
+    static String encode(Collection<Task> tasks) {
+        JSONArray arr = new JSONArray();
+        try {
+            for (Task t : tasks) {
+                JSONObject o = new JSONObject();
+                o.put("id", t.id);
+                o.put("title", t.title);
+                o.put("deadline", t.deadline);
+                if (t.notesLoaded) {
+                    o.put("notes", t.notes != null ? t.notes : "");
+                }
+                o.put("status", t.status);
+                arr.put(o);
+            }
+        } catch (JSONException ignored) {
+        }
+        return arr.toString();
+    }
+
+    /** Tasks in array order; entries written before ids existed get their position + 1. */
+    static List<Task> decode(String json) {
+        List<Task> out = new ArrayList<>();
+        try {
+            JSONArray arr = new JSONArray(json);
+            for (int i = 0; i < arr.length(); i++) {
+                JSONObject o = arr.getJSONObject(i);
+                long id = o.optLong("id", i + 1);
+                if (o.has("notes")) {
+                    out.add(new Task(id, o.optString("title"), o.optString("deadline"),
+                            o.optString("notes"), o.optString("status", "Pending")));
+                } else {
+                    out.add(Task.row(id, o.optString("title"), o.optString("deadline"),
+                            o.optString("status", "Pending")));
+                }
+            }
+        } catch (JSONException ignored) {
+        }
+        return out;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+
+import androidx.lifecycle.ViewModel;
+
+import java.util.List;
+
+/**
+ * List screen state across configuration changes
+ * ---------------------------------
+ * Holds what MainActivity loaded, and the background machinery that goes
+ * with it, for as long as the screen exists rather than one activity
+ * instance: a rotation adopts the list, its paging cursor and the next id
+ * as they were, with no storage read.
+ *
+ * - The persist queue and the sync engine are the process's own
+ *   ({@link TaskStores}); every view model shares them, so writes queued by a
+ *   screen that finished are still ordered before the next screen's.
+ * - Changes reach other screens through {@link TaskRepository}.
+ */
+public class TaskListViewModel extends ViewModel {
+
+    final PersistQueue persistQueue = TaskStores.persistQueue();
+    final TaskRepository repository = TaskRepository.get();
+
+    // Screen settings as the last activity left them (mode is null before the first one ends)
+    MainActivity.Mode mode;
+    TaskQuery query;
+    boolean compactTable;
+    long nextId;
+
+    // Its loaded list, when that was complete and current (otherwise null: load again)
+    List<Task> tasks;
+    PagedTaskList pagedTasks;
+    StartupSnapshot lastSnapshot;
+
+    SyncEngine sync(Context context) {
+        return TaskStores.sync(context);
+    }
+
+    /** Keeps an activity's settings, and its list if {@code tasks} is not null, for the next one. */
+    void retain(MainActivity.Mode mode, TaskQuery query, boolean compactTable, long nextId,
+            List<Task> tasks, PagedTaskList pagedTasks, StartupSnapshot lastSnapshot) {
+        this.mode = mode;
+        this.query = query;
+        this.compactTable = compactTable;
+        this.nextId = nextId;
+        this.tasks = tasks;
+        this.pagedTasks = tasks != null ? pagedTasks : null;
+        this.lastSnapshot = tasks != null ? lastSnapshot : null;
+    }
+
+    /** Hands the retained list over once; the activity owns it from then on. */
+    void release() {
+        tasks = null;
+        pagedTasks = null;
+        lastSnapshot = null;
+    }
+
+    @Override
+    protected void onCleared() {
+        if (pagedTasks != null) {
+            pagedTasks.close();
+        }
+        release();
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.eecs4443lab3;
+
+import android.content.ContentProvider;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.UriMatcher;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only task provider
+ * ---------------------------------
+ * Other processes (the home-screen widget, companion apps holding
+ * {@code READ_TASKS}) read the SQLite store here without starting
+ * {@link MainActivity}. Like the reminders, it serves SQLite, the mode the
+ * app starts in.
+ *
+ * - content://AUTHORITY/tasks is one page of list rows; tasks/# is one task
+ *   with its notes.
+ * - Filtering is by parameters, not SQL: {@link #PARAM_STATUS} (pending or
+ *   done), {@link #PARAM_DUE_FROM} / {@link #PARAM_DUE_TO} (epoch days,
+ *   inclusive). The sort order is a {@link TaskQuery.Sort} name (added,
+ *   deadline, title, status). Every combination is one of
+ *   {@link TaskQuery}'s indexed page queries.
+ * - Pages are {@link #PARAM_LIMIT} rows (at most {@link #MAX_LIMIT}) from
+ *   {@link #PARAM_OFFSET}, so a cursor never holds more than one bounded
+ *   window, however large the table.
+ * - Notes are read only when projected, for the rows of the page.
+ * - Writes stay in the app, so its list, reminders and sync see them; each
+ *   applied change set notifies only the tasks it touched
+ *   ({@link #notifyApplied}).
+ */
+public class TaskProvider extends ContentProvider {
+
+    static final String AUTHORITY = "com.example.eecs4443lab3.tasks";
+    static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/tasks");
+
+    static final String COLUMN_ID = "_id";
+    static final String COLUMN_TITLE = "title";
+    static final String COLUMN_DEADLINE = "deadline";         // as shown, picker date or typed text
+    static final String COLUMN_DEADLINE_DAY = "deadline_day"; // epoch day, null without a picker date
+    static final String COLUMN_STATUS = "status";             // "Pending" or "Done"
+    static final String COLUMN_NOTES = "notes";
+
+    static final String PARAM_STATUS = "status";
+    static final String PARAM_DUE_FROM = "due_from";
+    static final String PARAM_DUE_TO = "due_to";
+    static final String PARAM_LIMIT = "limit";
+    static final String PARAM_OFFSET = "offset";
+
+    static final int DEFAULT_LIMIT = 50;
+    static final int MAX_LIMIT = 200;
+
+    /** Change sets touching more tasks than this notify the whole table once. */
+    static final int MAX_ITEM_NOTIFICATIONS = 32;
+
+    private static final String[] ROW_PROJECTION = {
+            COLUMN_ID, COLUMN_TITLE, COLUMN_DEADLINE, COLUMN_DEADLINE_DAY, COLUMN_STATUS
+    };
+    private static final Set<String> COLUMNS = new LinkedHashSet<>(List.of(
+            COLUMN_ID, COLUMN_TITLE, COLUMN_DEADLINE, COLUMN_DEADLINE_DAY, COLUMN_STATUS, COLUMN_NOTES));
+
+    private static final int TASKS = 1;
+    private static final int TASK_ID = 2;
+    private static final UriMatcher MATCHER = new UriMatcher(UriMatcher.NO_MATCH);
+
+    static {
+        MATCHER.addURI(AUTHORITY, "tasks", TASKS);
+        MATCHER.addURI(AUTHORITY, "tasks/#", TASK_ID);
+    }
+
+    /** The store is opened on the first query, not at process start. */
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder) {
+        if (selection != null) {
+            throw new IllegalArgumentException("Filter with the status and due_* parameters: " + uri);
+        }
+        String[] columns = projection != null ? checkColumns(projection) : ROW_PROJECTION;
+        SqliteTaskStore store = TaskStores.sqlite(getContext());
+        List<Task> rows;
+        switch (MATCHER.match(uri)) {
+            case TASKS:
+                TaskQuery query = new TaskQuery(sortOf(sortOrder, uri), filterOf(uri));
+                Long from = dayParam(uri, PARAM_DUE_FROM);
+                Long to = dayParam(uri, PARAM_DUE_TO);
+                long today = TaskDates.today();
+                String sql = from == null && to == null
+                        ? query.pageSql(today) : query.duePageSql(today, from, to);
+                rows = store.page(sql,
+                        Math.min(intParam(uri, PARAM_LIMIT, DEFAULT_LIMIT), MAX_LIMIT),
+                        intParam(uri, PARAM_OFFSET, 0));
+                break;
+            case TASK_ID:
+                Task t = store.get(ContentUris.parseId(uri));
+                rows = t == null ? Collections.emptyList() : Collections.singletonList(t);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown URI: " + uri);
+        }
+        Cursor c = toCursor(rows, columns, store);
+        c.setNotificationUri(getContext().getContentResolver(), uri);
+        return c;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        switch (MATCHER.match(uri)) {
+            case TASKS:
+                return ContentResolver.CURSOR_DIR_BASE_TYPE + "/vnd." + AUTHORITY + ".task";
+            case TASK_ID:
+                return ContentResolver.CURSOR_ITEM_BASE_TYPE + "/vnd." + AUTHORITY + ".task";
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException("Read-only: " + uri);
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Read-only: " + uri);
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Read-only: " + uri);
+    }
+
+    /*
+     * ------------------------------ Notifications ------------------------------
+     */
+
+    /**
+     * Tells observers what {@code changes}, just applied to the SQLite store,
+     * touched: tasks/# for each task, or the table once for a large change set
+     * (a bulk edit, an import). Observers of the table with descendants see
+     * both. Also refreshes {@link DueTasksWidget} if the change can show there.
+     */
+    static void notifyApplied(Context context, TaskChangeSet changes) {
+        ContentResolver resolver = context.getContentResolver();
+        if (changes.size() > MAX_ITEM_NOTIFICATIONS) {
+            resolver.notifyChange(CONTENT_URI, null);
+        } else {
+            for (long id : touchedIds(changes)) {
+                resolver.notifyChange(ContentUris.withAppendedId(CONTENT_URI, id), null);
+            }
+        }
+        DueTasksWidget.onTasksChanged(context, changes);
+    }
+
+    static List<Long> touchedIds(TaskChangeSet changes) {
+        List<Long> ids = new ArrayList<>(changes.size());
+        for (Task t : changes.inserted()) {
+            ids.add(t.id);
+        }
+        for (Task t : changes.updated()) {
+            ids.add(t.id);
+        }
+        ids.addAll(changes.deleted());
+        return ids;
+    }
+
+    /*
+     * --------------------------------- Helpers ---------------------------------
+     */
+
+    private static String[] checkColumns(String[] projection) {
+        for (String column : projection) {
+            if (!COLUMNS.contains(column)) {
+                throw new IllegalArgumentException("Unknown column: " + column);
+            }
+        }
+        return projection;
+    }
+
+    private static TaskQuery.Sort sortOf(String sortOrder, Uri uri) {
+        if (sortOrder == null) {
+            // Due ranges read soonest first unless asked otherwise
+            return uri.getQueryParameter(PARAM_DUE_FROM) != null || uri.getQueryParameter(PARAM_DUE_TO) != null
+                    ? TaskQuery.Sort.DEADLINE : TaskQuery.Sort.ADDED;
+        }
+        try {
+            return TaskQuery.Sort.valueOf(sortOrder.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown sort order: " + sortOrder);
+        }
+    }
+
+    private static TaskQuery.Filter filterOf(Uri uri) {
+        String status = uri.getQueryParameter(PARAM_STATUS);
+        if (status == null) {
+            return TaskQuery.Filter.ALL;
+        }
+        switch (status.toLowerCase(Locale.ROOT)) {
+            case "pending":
+                return TaskQuery.Filter.PENDING;
+            case "done":
+                return TaskQuery.Filter.DONE;
+            default:
+                throw new IllegalArgumentException("Unknown status: " + status);
+        }
+    }
+
+    private static Long dayParam(Uri uri, String name) {
+        String value = uri.getQueryParameter(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is not an epoch day: " + value);
+        }
+    }
+
+    private static int intParam(Uri uri, String name, int fallback) {
+        String value = uri.getQueryParameter(name);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            int n = Integer.parseInt(value);
+            if (n < 0) {
+                throw new IllegalArgumentException(name + " is negative: " + value);
+            }
+            return n;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is not a number: " + value);
+        }
+    }
+
+    /** The page as a cursor over {@code columns}; notes are read only if asked for. */
+    private static Cursor toCursor(List<Task> rows, String[] columns, SqliteTaskStore store) {
+        Map<Long, String> notes = null;
+        for (String column : columns) {
+            if (column.equals(COLUMN_NOTES)) {
+                List<Long> needed = new ArrayList<>();
+                for (Task t : rows) {
+                    if (!t.notesLoaded) {
+                        needed.add(t.id);
+                    }
+                }
+                notes = store.notes(needed);
+            }
+        }
+        MatrixCursor c = new MatrixCursor(columns, rows.size());
+        Object[] values = new Object[columns.length];
+        for (Task t : rows) {
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = value(t, columns[i], notes);
+            }
+            c.addRow(values);
+        }
+        return c;
+    }
+
+    private static Object value(Task t, String column, Map<Long, String> notes) {
+        switch (column) {
+            case COLUMN_ID:
+                return t.id;
+            case COLUMN_TITLE:
+                return t.title;
+            case COLUMN_DEADLINE:
+                return t.deadline;
+            case COLUMN_DEADLINE_DAY:
+                return TaskDates.toEpochDay(t.deadline);
+            case COLUMN_STATUS:
+                return t.status;
+            default:
+                if (t.notesLoaded) {
+                    return t.notes;
+                }
+                String n = notes.get(t.id);
+                return n != null ? n : "";
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.eecs4443lab3;
+
+/**
+ * List order + filter
+ * ---------------------------------
+ * What the main list shows: one {@link Sort} and one {@link Filter}.
+ *
+ * - SQLite: {@link #pageSql} and {@link #pageAfterSql} are the paged
+ *   queries; each order has a matching index (see {@link TaskDbHelper}), and
+ *   pages after the first continue from the last row shown (keyset), so no
+ *   page scans or sorts the table. {@link #duePageSql} adds a deadline range
+ *   for {@link TaskProvider}.
+ * - In-memory modes: {@link TaskIndex} keeps the same orders as sorted trees
+ *   and filters with {@link #matches}.
+ *
+ * Ties are broken by id, so every order is total and stable across pages.
+ */
+final class TaskQuery {
+
+    enum Sort {
+        ADDED,      // as stored: newest first in SQLite, append order elsewhere
+        DEADLINE,   // earliest first; no (or a typed) deadline last
+        TITLE,      // case-insensitive
+        STATUS      // pending first
+    }
+
+    enum Filter {
+        ALL, PENDING, DONE, OVERDUE
+    }
+
+    static final TaskQuery DEFAULT = new TaskQuery(Sort.ADDED, Filter.ALL);
+
+    /** Sort key of a task without a picker date; sorts after every real day. */
+    static final int NO_DAY = Integer.MAX_VALUE;
+
+    // Same expression as the tasks_by_deadline index, so the planner can use it
+    private static final String DAY_KEY = "IFNULL(deadline_day, " + NO_DAY + ")";
+
+    final Sort sort;
+    final Filter filter;
+
+    TaskQuery(Sort sort, Filter filter) {
+        this.sort = sort;
+        this.filter = filter;
+    }
+
+    TaskQuery withSort(Sort s) {
+        return new TaskQuery(s, filter);
+    }
+
+    TaskQuery withFilter(Filter f) {
+        return new TaskQuery(sort, f);
+    }
+
+    boolean isDefault() {
+        return sort == Sort.ADDED && filter == Filter.ALL;
+    }
+
+    /*
+     * ---------------------------------- SQL ------------------------------------
+     */
+
+    /**
+     * One page by offset: the first page, or one whose cursor is unknown.
+     * Binds LIMIT, OFFSET.
+     */
+    String pageSql(long today) {
+        String where = where(today);
+        return "SELECT " + SqliteTaskStore.ROW_COLUMNS + " FROM tasks"
+                + (where != null ? " WHERE " + where : "")
+                + " ORDER BY " + orderBy() + " LIMIT ? OFFSET ?";
+    }
+
+    /**
+     * The page after {@code last}, by keyset; binds {@link #pageAfterArgs}.
+     * Sorted orders read the rest of {@code last}'s key and the keys after it
+     * as two index range scans: one "key >= k AND (key > k OR _id > ?)" range
+     * would walk every row with key k first, and there are few statuses and
+     * many tasks without a deadline. Numeric keys are written inline: bound
+     * arguments are text, and IFNULL(...) has no affinity to convert them.
+     */
+    String pageAfterSql(long today, Task last) {
+        String where = where(today);
+        String filter = where != null ? where + " AND " : "";
+        String select = "SELECT " + SqliteTaskStore.ROW_COLUMNS + " FROM tasks WHERE " + filter;
+        if (sort == Sort.ADDED) {
+            return select + "_id < ? ORDER BY _id DESC LIMIT ?";
+        }
+        String key = keyExpression();
+        String value = sort == Sort.TITLE ? "?" : String.valueOf(numericKey(last));
+        String idAfter = sort == Sort.STATUS ? "_id < ?" : "_id > ?";
+        return "SELECT * FROM ("
+                + "SELECT * FROM (" + select + key + " = " + value + " AND " + idAfter
+                + " ORDER BY " + orderBy() + " LIMIT ?)"
+                + " UNION ALL "
+                + "SELECT * FROM (" + select + key + " > " + value
+                + " ORDER BY " + orderBy() + " LIMIT ?)"
+                + ") ORDER BY " + orderBy() + " LIMIT ?";
+    }
+
+    /**
+     * One page, by offset, of the rows due between two epoch days (inclusive;
+     * null for an open end), for {@link TaskProvider}; tasks without a picker
+     * deadline never match. Binds LIMIT, OFFSET. In deadline order the range
+     * is on the index key, so the page is one index range scan; other orders
+     * walk their own index and test the range per row, like the filters.
+     */
+    String duePageSql(long today, Long fromDay, Long toDay) {
+        String where = where(today);
+        long from = fromDay != null ? fromDay : Integer.MIN_VALUE;
+        long to = toDay != null ? Math.min(toDay, NO_DAY - 1L) : NO_DAY - 1L;
+        String day = sort == Sort.DEADLINE ? DAY_KEY : "+deadline_day";
+        return "SELECT " + SqliteTaskStore.ROW_COLUMNS + " FROM tasks WHERE "
+                + (where != null ? where + " AND " : "")
+                + day + " BETWEEN " + from + " AND " + to
+                + " ORDER BY " + orderBy() + " LIMIT ? OFFSET ?";
+    }
+
+    String[] pageAfterArgs(Task last, int limit) {
+        String id = String.valueOf(last.id);
+        String n = String.valueOf(limit);
+        if (sort == Sort.ADDED) {
+            return new String[] { id, n };
+        }
+        if (sort == Sort.TITLE) {
+            return new String[] { last.title, id, n, last.title, n, n };
+        }
+        return new String[] { id, n, n, n };
+    }
+
+    String orderBy() {
+        switch (sort) {
+            case DEADLINE:
+                return DAY_KEY + ", _id";
+            case TITLE:
+                return "title COLLATE NOCASE, _id";
+            case STATUS:
+                return "status, _id DESC";
+            default:
+                return "_id DESC";
+        }
+    }
+
+    private String keyExpression() {
+        switch (sort) {
+            case DEADLINE:
+                return DAY_KEY;
+            case TITLE:
+                return "title COLLATE NOCASE";
+            default:
+                return "status";
+        }
+    }
+
+    private int numericKey(Task t) {
+        return sort == Sort.DEADLINE ? dayKey(t) : TaskDbHelper.statusCode(t.status);
+    }
+
+    /**
+     * WHERE clause (without the keyword) for the filter, or null for every row.
+     * A unary + keeps a column out of index selection, so the planner walks
+     * the sort order's index and stops after one page instead of sorting every
+     * match; the sort's own key is left bare, so it also bounds that walk.
+     */
+    private String where(long today) {
+        String status = sort == Sort.STATUS ? "status" : "+status";
+        String day = sort == Sort.DEADLINE ? DAY_KEY : "+deadline_day";
+        switch (filter) {
+            case PENDING:
+                return status + " = " + TaskDbHelper.STATUS_PENDING;
+            case DONE:
+                return status + " = " + TaskDbHelper.STATUS_DONE;
+            case OVERDUE:
+                return status + " = " + TaskDbHelper.STATUS_PENDING + " AND " + day + " < " + today;
+            default:
+                return null;
+        }
+    }
+
+    /*
+     * -------------------------------- In memory --------------------------------
+     */
+
+    /** True if the filter shows {@code t} on {@code today}. */
+    boolean matches(Task t, long today) {
+        boolean pending = TaskDbHelper.statusCode(t.status) == TaskDbHelper.STATUS_PENDING;
+        switch (filter) {
+            case PENDING:
+                return pending;
+            case DONE:
+                return !pending;
+            case OVERDUE:
+                return pending && dayKey(t) < today;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Compares two tasks in the SQL order ({@link #orderBy}), so keyset
+     * cursors can be placed among rows edited in memory. Titles fold ASCII
+     * case only and compare by code point, as NOCASE does on UTF-8.
+     */
+    int compare(Task a, Task b) {
+        int c;
+        switch (sort) {
+            case DEADLINE:
+                c = Integer.compare(dayKey(a), dayKey(b));
+                break;
+            case TITLE:
+                c = compareNoCase(a.title, b.title);
+                break;
+            case STATUS:
+                c = Integer.compare(TaskDbHelper.statusCode(a.status), TaskDbHelper.statusCode(b.status));
+                return c != 0 ? c : Long.compare(b.id, a.id);
+            default:
+                return Long.compare(b.id, a.id);
+        }
+        return c != 0 ? c : Long.compare(a.id, b.id);
+    }
+
+    private static int compareNoCase(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (x != y) {
+                x = x >= 'A' && x <= 'Z' ? x + 32 : x;
+                y = y >= 'A' && y <= 'Z' ? y + 32 : y;
+                if (x != y) {
+                    return Integer.compare(x, y);
+                }
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    /** Epoch day of the deadline, or {@link #NO_DAY}; as the deadline_day column stores it. */
+    static int dayKey(Task t) {
+        Long day = TaskDates.toEpochDay(t.deadline);
+        return day == null || day >= NO_DAY || day < Integer.MIN_VALUE ? NO_DAY : (int) (long) day;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TaskQuery && ((TaskQuery) o).sort == sort && ((TaskQuery) o).filter == filter;
+    }
+
+    @Override
+    public int hashCode() {
+        return sort.hashCode() * 31 + filter.hashCode();
+    }
+}
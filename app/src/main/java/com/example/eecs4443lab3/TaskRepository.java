@@ -0,0 +1,135 @@
+package com.example.eecs4443lab3;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Shared task repository
+ * ---------------------------------
+ * One per process. Screens subscribe to it instead of re-reading storage:
+ * every save, every edit made on another screen and every bulk rewrite of a
+ * store is published as an immutable {@link Change}, delivered on the main
+ * thread.
+ *
+ * - The list screen keeps its loaded list in {@link TaskListViewModel}, so a
+ *   configuration change reuses it instead of reading the store again.
+ * - Saved and edited tasks also go into {@link TaskCache}, where the detail
+ *   and edit screens look tasks up by id.
+ * - Listeners must unsubscribe when their screen stops; the repository
+ *   outlives every activity.
+ */
+final class TaskRepository {
+
+    enum Kind {
+        SAVED,      // the list screen handed a change set to storage
+        EDITED,     // another screen edited a task; the list screen saves it
+        RELOADED    // a store was rewritten in bulk (import, sync, mode copy): re-read what you show
+    }
+
+    /** One published event; never changes after it is built. */
+    static final class Change {
+        final Kind kind;
+        final MainActivity.Mode mode;
+        final List<Task> upserted; // inserted or updated tasks, as saved
+        final List<Long> deleted;
+
+        Change(Kind kind, MainActivity.Mode mode, List<Task> upserted, List<Long> deleted) {
+            this.kind = kind;
+            this.mode = mode;
+            this.upserted = Collections.unmodifiableList(upserted);
+            this.deleted = Collections.unmodifiableList(deleted);
+        }
+
+        /** The new version of task {@code id} in this change, or null. */
+        Task find(long id) {
+            for (Task t : upserted) {
+                if (t.id == id) {
+                    return t;
+                }
+            }
+            return null;
+        }
+
+        boolean isDeleted(long id) {
+            return deleted.contains(id);
+        }
+    }
+
+    interface Listener {
+        void onTasksChanged(Change change);
+    }
+
+    private static final TaskRepository INSTANCE = new TaskRepository();
+
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private TaskRepository() {
+    }
+
+    static TaskRepository get() {
+        return INSTANCE;
+    }
+
+    void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** A change set the list screen handed to storage ({@code changes} is copied). */
+    void publishSaved(MainActivity.Mode mode, TaskChangeSet changes) {
+        List<Task> upserted = new ArrayList<>(changes.inserted());
+        upserted.addAll(changes.updated());
+        List<Long> deleted = changes.deleted();
+        for (Task t : upserted) {
+            Task cached = TaskCache.get(mode, t.id);
+            if (cached != null) {
+                // Refresh, but do not fill the cache with every save; a saved row keeps the notes
+                TaskCache.put(mode, t.notesLoaded || !cached.notesLoaded ? t : t.withNotes(cached.notes));
+            }
+        }
+        for (long id : deleted) {
+            TaskCache.remove(mode, id);
+        }
+        dispatch(new Change(Kind.SAVED, mode, upserted, deleted));
+    }
+
+    /**
+     * An edit made outside the list screen. It is parked in {@link TaskCache}
+     * until the list screen takes and saves it, whether it hears this event
+     * or only gets the edit screen's result later.
+     */
+    void submitEdit(MainActivity.Mode mode, Task edited) {
+        TaskCache.putEdited(mode, edited);
+        dispatch(new Change(Kind.EDITED, mode, Collections.singletonList(edited),
+                Collections.emptyList()));
+    }
+
+    /** {@code mode}'s store changed behind the list (import, sync, copy); cached tasks are dropped. */
+    void publishReloaded(MainActivity.Mode mode) {
+        TaskCache.clear();
+        dispatch(new Change(Kind.RELOADED, mode, Collections.emptyList(), Collections.emptyList()));
+    }
+
+    private void dispatch(Change change) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            deliver(change);
+        } else {
+            main.post(() -> deliver(change));
+        }
+    }
+
+    private void deliver(Change change) {
+        for (Listener l : listeners) {
+            l.onTasksChanged(change);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.eecs4443lab3;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Search-as-you-type
+ * ---------------------------------
+ * - Keystrokes are debounced by {@link #DEBOUNCE_MS}; only the last query of a
+ *   burst runs, on a background thread.
+ * - Results of a query that has since been superseded are dropped.
+ * - SQLite mode asks the FTS index ({@link SqliteTaskStore#search}); the first
+ *   {@link #FIRST_BATCH} ranked rows are delivered before the full ranked set.
+ * - The other modes scan an immutable snapshot of the list, copied on write
+ *   when a result is edited, added or deleted. Rows without notes get them
+ *   from the store once, on the first query.
+ * - Both search the title and the first {@link #NOTES_INDEXED} characters of
+ *   the notes ({@link #indexedLength}), so the FTS index's copy of the text
+ *   stays small whatever the notes weigh.
+ */
+final class TaskSearch {
+
+    static final long DEBOUNCE_MS = 150;
+    static final int FIRST_BATCH = 50;
+    static final int NOTES_INDEXED = 1_024;
+    private static final long FLUSH_TIMEOUT_MS = 5_000;
+
+    /** Receives results on the main thread. */
+    interface Listener {
+        void onResults(String query, List<Task> results);
+    }
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "task-search");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final PersistQueue persistQueue;
+    private final Listener listener;
+    private final AtomicInteger latest = new AtomicInteger();
+    private final Runnable runPending = this::runPending;
+
+    // Exactly one source is set while searching
+    private SqliteTaskStore db;
+    private volatile List<Task> snapshot;
+    private volatile TaskStore notesSource; // fills in notes the snapshot's rows lack
+    private String pending = "";
+
+    TaskSearch(PersistQueue persistQueue, Listener listener) {
+        this.persistQueue = persistQueue;
+        this.listener = listener;
+    }
+
+    /** Searches the FTS index of {@code db}. */
+    void useDatabase(SqliteTaskStore db) {
+        this.db = db;
+        this.snapshot = null;
+    }
+
+    /** Searches a copy of {@code all}; {@code store} supplies notes for rows read without them. */
+    void useSnapshot(List<Task> all, TaskStore store) {
+        this.db = null;
+        this.snapshot = new ArrayList<>(all);
+        this.notesSource = store;
+    }
+
+    /** Restarts the debounce timer for {@code query}. */
+    void onQueryChanged(String query) {
+        pending = query;
+        main.removeCallbacks(runPending);
+        main.postDelayed(runPending, DEBOUNCE_MS);
+    }
+
+    /** Runs the latest query again now, e.g. when its results went stale before they were shown. */
+    void refresh() {
+        main.removeCallbacks(runPending);
+        runPending();
+    }
+
+    /** Drops the pending query and any result still in flight. */
+    void clearQuery() {
+        main.removeCallbacks(runPending);
+        latest.incrementAndGet();
+    }
+
+    /** Ends the search: {@link #clearQuery()} plus forgetting the source. */
+    void cancel() {
+        clearQuery();
+        db = null;
+        snapshot = null;
+        notesSource = null;
+    }
+
+    /*
+     * ------------------------------ Snapshot upkeep ------------------------------
+     */
+
+    /** Adds or replaces {@code t} in the snapshot. */
+    void putTask(Task t) {
+        List<Task> old = snapshot;
+        if (old == null) {
+            return;
+        }
+        List<Task> next = new ArrayList<>(old.size() + 1);
+        boolean found = false;
+        for (Task o : old) {
+            if (o.id == t.id) {
+                next.add(t);
+                found = true;
+            } else {
+                next.add(o);
+            }
+        }
+        if (!found) {
+            next.add(t);
+        }
+        snapshot = next;
+    }
+
+    void removeTask(long id) {
+        List<Task> old = snapshot;
+        if (old == null) {
+            return;
+        }
+        List<Task> next = new ArrayList<>(old.size());
+        for (Task o : old) {
+            if (o.id != id) {
+                next.add(o);
+            }
+        }
+        snapshot = next;
+    }
+
+    /**
+     * A bulk edit: {@link #putTask} and {@link #removeTask} for a whole change
+     * set in one copy of the snapshot. Rows without notes keep the notes the
+     * snapshot has for them.
+     */
+    void apply(TaskChangeSet changes) {
+        List<Task> old = snapshot;
+        if (old == null || changes.isEmpty()) {
+            return;
+        }
+        Map<Long, Task> updated = new HashMap<>();
+        for (Task t : changes.updated()) {
+            updated.put(t.id, t);
+        }
+        Set<Long> deleted = new HashSet<>(changes.deleted());
+        List<Task> next = new ArrayList<>(old.size() + changes.inserted().size());
+        for (Task o : old) {
+            Task t = updated.get(o.id);
+            if (deleted.contains(o.id)) {
+                continue;
+            }
+            next.add(t == null ? o : t.notesLoaded || !o.notesLoaded ? t : t.withNotes(o.notes));
+        }
+        next.addAll(changes.inserted());
+        snapshot = next;
+    }
+
+    /*
+     * --------------------------------- Queries -----------------------------------
+     */
+
+    private void runPending() {
+        int generation = latest.incrementAndGet();
+        String query = pending;
+        SqliteTaskStore source = db;
+        List<Task> snap = snapshot;
+        TaskStore notes = notesSource;
+        EXECUTOR.execute(() -> {
+            List<Task> all = snap;
+            if (all != null && notes != null) {
+                all = withNotes(all, notes);
+                if (all != snap && snapshot == snap) {
+                    snapshot = all; // once per search, unless an edit replaced it meanwhile
+                }
+            }
+            if (generation != latest.get()) {
+                return; // a newer query is already queued
+            }
+            String[] terms = terms(query);
+            String match = matchExpression(query);
+            if (match.isEmpty()) {
+                deliver(generation, query, new ArrayList<>());
+            } else if (source != null) {
+                persistQueue.awaitIdle(FLUSH_TIMEOUT_MS); // search what was just saved too
+                try {
+                    List<Task> first = source.search(match, FIRST_BATCH);
+                    deliver(generation, query, first);
+                    if (first.size() == FIRST_BATCH && generation == latest.get()) {
+                        deliver(generation, query, source.search(match, SqliteTaskStore.SEARCH_LIMIT));
+                    }
+                } catch (RuntimeException ignored) {
+                    // e.g. the database was closed by a mode switch; the next query retries
+                }
+            } else if (all != null) {
+                deliver(generation, query, scan(all, terms));
+            }
+        });
+    }
+
+    private void deliver(int generation, String query, List<Task> results) {
+        main.post(() -> {
+            if (generation == latest.get()) {
+                listener.onResults(query, results);
+            }
+        });
+    }
+
+    /** {@code all} with every row's notes read from {@code store} (itself if none is missing). */
+    static List<Task> withNotes(List<Task> all, TaskStore store) {
+        boolean missing = false;
+        for (Task t : all) {
+            if (!t.notesLoaded) {
+                missing = true;
+                break;
+            }
+        }
+        if (!missing) {
+            return all;
+        }
+        Map<Long, String> notes = new HashMap<>();
+        try {
+            store.scan(t -> notes.put(t.id, t.notes));
+        } catch (IOException | RuntimeException ignored) {
+            return all; // titles are still searched
+        }
+        List<Task> out = new ArrayList<>(all.size());
+        for (Task t : all) {
+            String n = notes.get(t.id);
+            out.add(t.notesLoaded ? t : t.withNotes(n != null ? n : ""));
+        }
+        return out;
+    }
+
+    /**
+     * How much of {@code notes} is searched: up to {@link #NOTES_INDEXED}
+     * characters, cut back to the end of the last whole word.
+     */
+    static int indexedLength(String notes) {
+        if (notes == null) {
+            return 0;
+        }
+        if (notes.length() <= NOTES_INDEXED) {
+            return notes.length();
+        }
+        int end = NOTES_INDEXED;
+        while (end > 0 && isWordChar(notes, end - 1) && isWordChar(notes, end)) {
+            end--;
+        }
+        return end > 0 ? end : NOTES_INDEXED; // one word longer than the limit
+    }
+
+    /** The searched start of {@code notes}; what the FTS index stores for them. */
+    static String indexedNotes(String notes) {
+        int end = indexedLength(notes);
+        return notes == null || end == notes.length() ? notes : notes.substring(0, end);
+    }
+
+    private static boolean isWordChar(String s, int i) {
+        return Character.isLetterOrDigit(s.charAt(i)) || Character.isSurrogate(s.charAt(i));
+    }
+
+    /** Lower-cased words of {@code query}; punctuation separates words. */
+    static String[] terms(String query) {
+        String trimmed = query.trim().toLowerCase(Locale.ROOT);
+        return trimmed.isEmpty() ? new String[0] : trimmed.split("[^\\p{L}\\p{N}]+");
+    }
+
+    /**
+     * FTS4 MATCH expression for typed text: every word must match as a
+     * prefix (so "gro mil" finds "Groceries: milk"), in title or notes.
+     */
+    static String matchExpression(String query) {
+        StringBuilder sb = new StringBuilder();
+        for (String term : terms(query)) {
+            if (!term.isEmpty()) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(term).append('*');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Linear scan for the in-memory modes, with the same rules as the FTS
+     * query: every term must occur; a title hit ranks above a notes-only hit.
+     */
+    static List<Task> scan(List<Task> all, String[] terms) {
+        List<Task> titleHits = new ArrayList<>();
+        List<Task> notesHits = new ArrayList<>();
+        for (Task t : all) {
+            boolean every = true;
+            boolean inTitle = false;
+            for (String term : terms) {
+                if (term.isEmpty()) {
+                    continue;
+                }
+                boolean title = containsIgnoreCase(t.title, term);
+                if (!title && !containsIgnoreCase(t.notes, indexedLength(t.notes), term)) {
+                    every = false;
+                    break;
+                }
+                inTitle |= title;
+            }
+            if (every) {
+                (inTitle ? titleHits : notesHits).add(t);
+            }
+        }
+        titleHits.addAll(notesHits);
+        return titleHits;
+    }
+
+    private static boolean containsIgnoreCase(String haystack, String needle) {
+        return haystack != null && containsIgnoreCase(haystack, haystack.length(), needle);
+    }
+
+    /** True if {@code needle} occurs in the first {@code length} chars of {@code haystack}. */
+    private static boolean containsIgnoreCase(String haystack, int length, String needle) {
+        if (haystack == null) {
+            return false;
+        }
+        int last = length - needle.length();
+        for (int i = 0; i <= last; i++) {
+            if (haystack.regionMatches(true, i, needle, 0, needle.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
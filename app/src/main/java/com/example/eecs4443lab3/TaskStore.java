@@ -0,0 +1,55 @@
+package com.example.eecs4443lab3;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Task storage backend
+ * ---------------------------------
+ * One implementation per storage mode (SharedPreferences, SQLite, journal
+ * file, memory-mapped file). MainActivity reads through it and the persist
+ * queue writes through it, so the activity no longer knows how tasks are
+ * stored.
+ *
+ * - Writes arrive as {@link TaskChangeSet}s of immutable tasks and are applied
+ *   on the persist queue thread.
+ * - Ids are handed out by the caller, starting after {@link #lastId()}.
+ * - {@link #scan(Visitor)} streams every task without building a list, for
+ *   bulk copies between stores (see {@link StoreMigration}).
+ * - {@link #loadAll()} feeds the list, which never shows notes; a store may
+ *   leave them out there ({@link Task#row}). {@link #get} and {@link #scan}
+ *   always include them.
+ */
+interface TaskStore extends Closeable {
+
+    /** Every stored task, in the store's display order; possibly as rows without notes. */
+    List<Task> loadAll() throws IOException;
+
+    /** One task by id, notes included, or null if there is none. */
+    Task get(long id) throws IOException;
+
+    /**
+     * Writes the inserted, updated and deleted rows of {@code changes}. An
+     * updated row without its notes ({@link Task#notesLoaded}) keeps the stored ones.
+     */
+    void apply(TaskChangeSet changes) throws IOException;
+
+    /** Highest id this store has ever seen (0 when empty). */
+    long lastId() throws IOException;
+
+    /** Number of stored tasks. */
+    int count() throws IOException;
+
+    /** Hands every stored task to {@code visitor}, in no particular order. */
+    void scan(Visitor visitor) throws IOException;
+
+    /** How many rows a bulk writer should put in one {@link #apply}. */
+    default int writeBatchSize() {
+        return 1_000;
+    }
+
+    interface Visitor {
+        void visit(Task t) throws IOException;
+    }
+}
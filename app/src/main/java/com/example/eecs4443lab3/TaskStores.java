@@ -0,0 +1,124 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide store registry
+ * ---------------------------------
+ * Opens each {@link TaskStore} once, against the application context, and
+ * hands the same instance to every caller for the life of the process.
+ * New task ids come from here too ({@link #newId}), and so do the one
+ * {@link PersistQueue} that writes to the stores and the {@link SyncEngine}
+ * that runs on it: a screen that is finished and opened again while its
+ * writes are still draining shares them, so there is only ever one writer.
+ */
+final class TaskStores {
+
+    static final String JOURNAL_FILE = "tasks.journal";
+    static final String MAPPED_NAME = "tasks";
+
+    private static final long CLOSE_TIMEOUT_MS = 10_000;
+
+    private static final Map<MainActivity.Mode, TaskStore> STORES =
+            new EnumMap<>(MainActivity.Mode.class);
+
+    // Highest task id handed out in this process, saved or not
+    private static final AtomicLong LAST_ID = new AtomicLong();
+
+    private static PersistQueue persistQueue;
+    private static SyncEngine sync;
+
+    private TaskStores() {
+    }
+
+    static synchronized TaskStore get(Context context, MainActivity.Mode mode) {
+        TaskStore store = STORES.get(mode);
+        if (store == null) {
+            Context app = context.getApplicationContext();
+            switch (mode) {
+                case SHARED_PREFS:
+                    store = new PrefsTaskStore(app);
+                    break;
+                case JOURNAL:
+                    store = new TaskJournal(new File(app.getFilesDir(), JOURNAL_FILE));
+                    break;
+                case MAPPED:
+                    store = new MappedTaskStore(app.getFilesDir(), MAPPED_NAME);
+                    break;
+                case SQLITE:
+                default:
+                    store = new SqliteTaskStore(app);
+                    break;
+            }
+            STORES.put(mode, store);
+        }
+        return store;
+    }
+
+    /** Mode an opened store was registered under (SQLITE if it is not one of ours). */
+    static synchronized MainActivity.Mode modeOf(TaskStore store) {
+        for (Map.Entry<MainActivity.Mode, TaskStore> e : STORES.entrySet()) {
+            if (e.getValue() == store) {
+                return e.getKey();
+            }
+        }
+        return MainActivity.Mode.SQLITE;
+    }
+
+    static synchronized PersistQueue persistQueue() {
+        if (persistQueue == null) {
+            persistQueue = new PersistQueue();
+        }
+        return persistQueue;
+    }
+
+    static synchronized SyncEngine sync(Context context) {
+        if (sync == null) {
+            sync = new SyncEngine(context.getApplicationContext(), persistQueue());
+        }
+        return sync;
+    }
+
+    /**
+     * A new task id: {@code atLeast} (one past the store's last id), or past
+     * every id handed out in this process if that is higher. The list and
+     * sync both take ids here, so neither reuses one the other has not saved.
+     */
+    static long newId(long atLeast) {
+        return LAST_ID.updateAndGet(last -> Math.max(atLeast, last + 1));
+    }
+
+    /**
+     * Stops sync, lets the queue finish, then closes and forgets every opened
+     * store (tests, between application instances).
+     */
+    static synchronized void closeAll() {
+        if (sync != null) {
+            sync.shutdown();
+            sync = null;
+        }
+        if (persistQueue != null) {
+            persistQueue.awaitIdle(CLOSE_TIMEOUT_MS);
+            persistQueue.shutdown();
+            persistQueue = null;
+        }
+        for (TaskStore store : STORES.values()) {
+            try {
+                store.close();
+            } catch (IOException ignored) {
+            }
+        }
+        STORES.clear();
+        LAST_ID.set(0);
+    }
+
+    static SqliteTaskStore sqlite(Context context) {
+        return (SqliteTaskStore) get(context, MainActivity.Mode.SQLITE);
+    }
+}
@@ -0,0 +1,439 @@
+package com.example.eecs4443lab3;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Columnar task list
+ * ---------------------------------
+ * A {@code List<Task>} that keeps its rows in parallel primitive arrays
+ * instead of one object graph per task, for in-memory modes with very large
+ * lists.
+ *
+ * - Ids in a long[]; status as a short[] code into a small dictionary.
+ * - Deadlines in an int[]: the epoch day for picker dates, or a dictionary
+ *   code for anything else (blank, typed text), so repeated strings are kept
+ *   once.
+ * - Titles and notes are slices of one shared char[]. Edits append, leaving
+ *   the old slice as garbage until a compaction copies live text into a new
+ *   array; a slice once written never changes, so it can be handed to
+ *   TextView.setText(char[], int, int).
+ * - {@link #get(int)} builds a Task on demand; the list rows read the columns
+ *   directly ({@link #chars()}, {@link #titleStart}, {@link #subtitle}).
+ *
+ * Not thread-safe; owned by one thread at a time like an ArrayList.
+ */
+final class TaskTable extends AbstractList<Task> {
+
+    private static final int TEXT_CODE_BASE = Integer.MIN_VALUE; // deadline codes below are text
+    private static final int TEXT_CODE_LIMIT = Integer.MIN_VALUE / 2;
+    private static final int NULL_LENGTH = -1;
+    private static final int NOT_LOADED = -2; // a list row read without its notes
+
+    private int size;
+    private long[] ids;
+    private short[] statuses;
+    private int[] deadlines;
+    private int[] textStarts;   // title chars, immediately followed by notes chars
+    private int[] titleLengths;
+    private int[] notesLengths; // NULL_LENGTH for null notes, NOT_LOADED for none read
+
+    private char[] chars;
+    private int charsUsed;
+    private int charsGarbage;
+
+    // Dictionaries shared by all rows of this table
+    private final Dictionary statusDict;
+    private final Dictionary deadlineDict;
+    private final Map<String, Integer> deadlineCodes; // deadline text -> column value
+    private final Map<Integer, String> dayTexts;      // epoch day -> picker text
+    private final Map<Long, String> subtitles;        // (deadline, status) -> row subtitle
+
+    TaskTable() {
+        this(16);
+    }
+
+    TaskTable(int capacity) {
+        this(capacity, capacity * 16);
+    }
+
+    private TaskTable(int capacity, int charCapacity) {
+        allocate(Math.max(1, capacity), Math.max(16, charCapacity));
+        statusDict = new Dictionary();
+        deadlineDict = new Dictionary();
+        deadlineCodes = new HashMap<>();
+        dayTexts = new HashMap<>();
+        subtitles = new HashMap<>();
+    }
+
+    private TaskTable(TaskTable from) {
+        size = from.size;
+        ids = from.ids.clone();
+        statuses = from.statuses.clone();
+        deadlines = from.deadlines.clone();
+        textStarts = from.textStarts.clone();
+        titleLengths = from.titleLengths.clone();
+        notesLengths = from.notesLengths.clone();
+        chars = Arrays.copyOf(from.chars, from.charsUsed);
+        charsUsed = from.charsUsed;
+        charsGarbage = from.charsGarbage;
+        statusDict = new Dictionary(from.statusDict);
+        deadlineDict = new Dictionary(from.deadlineDict);
+        deadlineCodes = new HashMap<>(from.deadlineCodes);
+        dayTexts = new HashMap<>(from.dayTexts);
+        subtitles = new HashMap<>(from.subtitles);
+    }
+
+    /** A table of {@code tasks}, with columns and text sized exactly. */
+    static TaskTable of(Collection<Task> tasks) {
+        long chars = 0;
+        for (Task t : tasks) {
+            chars += (t.title == null ? 0 : t.title.length()) + (t.notes == null ? 0 : t.notes.length());
+        }
+        TaskTable table = new TaskTable(tasks.size(), (int) Math.min(Integer.MAX_VALUE - 8, chars));
+        for (Task t : tasks) {
+            table.add(t);
+        }
+        return table;
+    }
+
+    /** Independent copy (e.g. for diffing on another thread); the arrays are cloned. */
+    TaskTable copy() {
+        return new TaskTable(this);
+    }
+
+    /*
+     * ------------------------------- List API ----------------------------------
+     */
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Task get(int index) {
+        checkIndex(index, size);
+        if (notesLengths[index] == NOT_LOADED) {
+            return Task.row(ids[index], title(index), deadline(index), statusDict.get(statuses[index]));
+        }
+        return new Task(ids[index], title(index), deadline(index), notes(index),
+                statusDict.get(statuses[index]));
+    }
+
+    @Override
+    public Task set(int index, Task t) {
+        Task old = get(index);
+        charsGarbage += textLength(index);
+        write(index, t);
+        compactIfWasteful();
+        return old;
+    }
+
+    @Override
+    public void add(int index, Task t) {
+        checkIndex(index, size + 1);
+        if (size == ids.length) {
+            grow(size * 2);
+        }
+        int tail = size - index;
+        if (tail > 0) {
+            System.arraycopy(ids, index, ids, index + 1, tail);
+            System.arraycopy(statuses, index, statuses, index + 1, tail);
+            System.arraycopy(deadlines, index, deadlines, index + 1, tail);
+            System.arraycopy(textStarts, index, textStarts, index + 1, tail);
+            System.arraycopy(titleLengths, index, titleLengths, index + 1, tail);
+            System.arraycopy(notesLengths, index, notesLengths, index + 1, tail);
+        }
+        size++;
+        write(index, t);
+        modCount++;
+    }
+
+    @Override
+    public Task remove(int index) {
+        Task old = get(index);
+        charsGarbage += textLength(index);
+        int tail = size - index - 1;
+        if (tail > 0) {
+            System.arraycopy(ids, index + 1, ids, index, tail);
+            System.arraycopy(statuses, index + 1, statuses, index, tail);
+            System.arraycopy(deadlines, index + 1, deadlines, index, tail);
+            System.arraycopy(textStarts, index + 1, textStarts, index, tail);
+            System.arraycopy(titleLengths, index + 1, titleLengths, index, tail);
+            System.arraycopy(notesLengths, index + 1, notesLengths, index, tail);
+        }
+        size--;
+        modCount++;
+        compactIfWasteful();
+        return old;
+    }
+
+    /**
+     * Passes every row whose id is in {@code selected} through {@code edit}
+     * and drops the rows it maps to null, in one pass over the columns;
+     * removing them one at a time would shift the columns once per row. A
+     * row {@code edit} returns unchanged (the same Task) is not rewritten.
+     * Returns the position of the first selected row (rows from there on
+     * may have changed or moved), or -1 if none was selected.
+     */
+    int rewrite(Set<Long> selected, UnaryOperator<Task> edit) {
+        int first = -1;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!selected.contains(ids[i])) {
+                if (kept != i) {
+                    moveRow(i, kept);
+                }
+                kept++;
+                continue;
+            }
+            if (first < 0) {
+                first = kept;
+            }
+            Task old = get(i);
+            Task updated = edit.apply(old);
+            if (updated == old) {
+                if (kept != i) {
+                    moveRow(i, kept);
+                }
+                kept++;
+                continue;
+            }
+            charsGarbage += textLength(i);
+            if (updated != null) {
+                write(kept++, updated);
+            }
+        }
+        if (kept != size) {
+            size = kept;
+            modCount++;
+        }
+        compactIfWasteful();
+        return first;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        charsUsed = 0;
+        charsGarbage = 0;
+        chars = new char[chars.length]; // slices may still be on screen
+        modCount++;
+    }
+
+    /*
+     * ------------------------------ Column reads -------------------------------
+     */
+
+    long id(int index) {
+        checkIndex(index, size);
+        return ids[index];
+    }
+
+    /** The shared text array; valid for slices read since the last structural change. */
+    char[] chars() {
+        return chars;
+    }
+
+    int titleStart(int index) {
+        checkIndex(index, size);
+        return textStarts[index];
+    }
+
+    int titleLength(int index) {
+        checkIndex(index, size);
+        return titleLengths[index];
+    }
+
+    String title(int index) {
+        return new String(chars, titleStart(index), titleLengths[index]);
+    }
+
+    String notes(int index) {
+        checkIndex(index, size);
+        int len = notesLengths[index];
+        return len < 0 ? null
+                : new String(chars, textStarts[index] + titleLengths[index], len);
+    }
+
+    /** Deadline text; one shared instance per distinct deadline. */
+    String deadline(int index) {
+        checkIndex(index, size);
+        int value = deadlines[index];
+        if (value < TEXT_CODE_LIMIT) {
+            return deadlineDict.get(value - TEXT_CODE_BASE);
+        }
+        String text = dayTexts.get(value);
+        if (text == null) {
+            text = TaskDates.format(value);
+            dayTexts.put(value, text);
+        }
+        return text;
+    }
+
+    String status(int index) {
+        checkIndex(index, size);
+        return statusDict.get(statuses[index]);
+    }
+
+    /** Same text as {@link Task#subtitle()}; one shared instance per deadline/status pair. */
+    String subtitle(int index) {
+        checkIndex(index, size);
+        long key = ((long) deadlines[index] << 16) | (statuses[index] & 0xffff);
+        String s = subtitles.get(key);
+        if (s == null) {
+            s = new Task(0, "", deadline(index), null, status(index)).subtitle();
+            subtitles.put(key, s);
+        }
+        return s;
+    }
+
+    /*
+     * ------------------------------- Internals ---------------------------------
+     */
+
+    private void moveRow(int from, int to) {
+        ids[to] = ids[from];
+        statuses[to] = statuses[from];
+        deadlines[to] = deadlines[from];
+        textStarts[to] = textStarts[from];
+        titleLengths[to] = titleLengths[from];
+        notesLengths[to] = notesLengths[from];
+    }
+
+    private void write(int index, Task t) {
+        ids[index] = t.id;
+        statuses[index] = statusCode(t.status);
+        deadlines[index] = deadlineCode(t.deadline);
+        int titleLen = t.title == null ? 0 : t.title.length();
+        int notesLen = t.notes == null ? 0 : t.notes.length();
+        ensureChars(titleLen + notesLen);
+        textStarts[index] = charsUsed;
+        titleLengths[index] = titleLen;
+        notesLengths[index] = !t.notesLoaded ? NOT_LOADED : t.notes == null ? NULL_LENGTH : notesLen;
+        if (t.title != null) {
+            t.title.getChars(0, titleLen, chars, charsUsed);
+        }
+        if (t.notes != null) {
+            t.notes.getChars(0, notesLen, chars, charsUsed + titleLen);
+        }
+        charsUsed += titleLen + notesLen;
+    }
+
+    private short statusCode(String status) {
+        int code = statusDict.code(status);
+        if (code > Short.MAX_VALUE) {
+            throw new IllegalStateException("Too many distinct statuses");
+        }
+        return (short) code;
+    }
+
+    private int deadlineCode(String deadline) {
+        Integer cached = deadlineCodes.get(deadline);
+        if (cached != null) {
+            return cached;
+        }
+        Long day = TaskDates.toEpochDay(deadline); // parsed once per distinct text
+        int value;
+        if (day != null && day >= TEXT_CODE_LIMIT && day <= Integer.MAX_VALUE) {
+            value = (int) (long) day;
+            dayTexts.put(value, deadline);
+        } else {
+            value = TEXT_CODE_BASE + deadlineDict.code(deadline);
+        }
+        deadlineCodes.put(deadline, value);
+        return value;
+    }
+
+    private int textLength(int index) {
+        return titleLengths[index] + Math.max(0, notesLengths[index]);
+    }
+
+    private void ensureChars(int extra) {
+        if (charsUsed + extra > chars.length) {
+            // Always a new array: slices already handed out must not change
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charsUsed + extra));
+        }
+    }
+
+    /** Copies live text into a fresh array once more than half of it is garbage. */
+    private void compactIfWasteful() {
+        if (charsGarbage < 4_096 || charsGarbage * 2 < charsUsed) {
+            return;
+        }
+        char[] live = new char[Math.max(16, (charsUsed - charsGarbage) * 2)];
+        int used = 0;
+        for (int i = 0; i < size; i++) {
+            int len = textLength(i);
+            System.arraycopy(chars, textStarts[i], live, used, len);
+            textStarts[i] = used;
+            used += len;
+        }
+        chars = live;
+        charsUsed = used;
+        charsGarbage = 0;
+    }
+
+    private void allocate(int rows, int charCapacity) {
+        ids = new long[rows];
+        statuses = new short[rows];
+        deadlines = new int[rows];
+        textStarts = new int[rows];
+        titleLengths = new int[rows];
+        notesLengths = new int[rows];
+        chars = new char[charCapacity];
+    }
+
+    private void grow(int rows) {
+        ids = Arrays.copyOf(ids, rows);
+        statuses = Arrays.copyOf(statuses, rows);
+        deadlines = Arrays.copyOf(deadlines, rows);
+        textStarts = Arrays.copyOf(textStarts, rows);
+        titleLengths = Arrays.copyOf(titleLengths, rows);
+        notesLengths = Arrays.copyOf(notesLengths, rows);
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + bound);
+        }
+    }
+
+    /** Append-only string <-> code table; null is a valid entry. */
+    private static final class Dictionary {
+        private final List<String> values;
+        private final Map<String, Integer> codes;
+
+        Dictionary() {
+            values = new ArrayList<>();
+            codes = new HashMap<>();
+        }
+
+        Dictionary(Dictionary from) {
+            values = new ArrayList<>(from.values);
+            codes = new HashMap<>(from.codes);
+        }
+
+        int code(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                values.add(value);
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        String get(int code) {
+            return values.get(code);
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package com.example.eecs4443lab3;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bulk import / export
+ * ---------------------------------
+ * Streams tasks between a file and a {@link TaskStore} without holding the
+ * file or the store in memory.
+ *
+ * - JSON: the array format of {@link TaskJson}, read token by token with
+ *   {@link JsonReader} and written with {@link JsonWriter}.
+ * - CSV: header row title,deadline,notes,status; RFC 4180 quoting (fields
+ *   may hold commas, quotes and line breaks).
+ * - Import detects the format from the first non-blank character, gives every
+ *   row a fresh id after the store's last one, and applies
+ *   {@link TaskStore#writeBatchSize()} rows per change set, so SQLite writes
+ *   each batch in one transaction through its compiled statements.
+ * - Export walks the store with {@link TaskStore#scan} (a cursor in SQLite).
+ * - Both report progress after each batch and stop at the next batch once
+ *   {@code cancel} is set; rows written before that stay written.
+ *
+ * Runs on the calling thread; MainActivity runs it on the persist queue.
+ */
+final class TaskTransfer {
+
+    enum Format {
+        JSON, CSV
+    }
+
+    /** Progress callback, invoked on the transferring thread. */
+    interface Progress {
+        void onProgress(long done, long total);
+    }
+
+    /** Thrown out of a transfer once {@code cancel} is seen. */
+    static final class CancelledException extends IOException {
+        final int rows;
+
+        CancelledException(int rows) {
+            super("Cancelled after " + rows + " rows");
+            this.rows = rows;
+        }
+    }
+
+    static final String[] CSV_HEADER = { "title", "deadline", "notes", "status" };
+    private static final int EXPORT_PROGRESS_ROWS = 1_000;
+
+    private TaskTransfer() {
+    }
+
+    /*
+     * --------------------------------- Import ----------------------------------
+     */
+
+    /**
+     * Appends every task in {@code in} to {@code store}, with ids from
+     * {@code firstId} (or after the store's last id, if higher). Progress is in
+     * bytes read out of {@code totalBytes} (-1 if unknown). Returns the rows added.
+     */
+    static int importTasks(InputStream in, long totalBytes, TaskStore store, long firstId,
+            AtomicBoolean cancel, Progress progress) throws IOException {
+        CountingInputStream counted = new CountingInputStream(in);
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(counted, StandardCharsets.UTF_8), 1 << 16);
+        Sink sink = new Sink(store, firstId, cancel, progress, counted, totalBytes);
+        if (detect(reader) == Format.JSON) {
+            readJson(reader, sink);
+        } else {
+            readCsv(reader, sink);
+        }
+        sink.flush();
+        progress.onProgress(counted.count, totalBytes);
+        return sink.rows;
+    }
+
+    /** JSON if the first non-blank character opens an array, else CSV. */
+    static Format detect(BufferedReader reader) throws IOException {
+        while (true) {
+            reader.mark(1);
+            int c = reader.read();
+            if (c == '\uFEFF' || (c != -1 && Character.isWhitespace(c))) {
+                continue; // BOM or leading blank
+            }
+            reader.reset();
+            return c == '[' ? Format.JSON : Format.CSV;
+        }
+    }
+
+    private static void readJson(Reader reader, Sink sink) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        json.setLenient(true);
+        json.beginArray();
+        while (json.hasNext()) {
+            String title = null, deadline = null, notes = null, status = null;
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (json.peek() == JsonToken.NULL) {
+                    json.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "title":
+                        title = json.nextString();
+                        break;
+                    case "deadline":
+                        deadline = json.nextString();
+                        break;
+                    case "notes":
+                        notes = json.nextString();
+                        break;
+                    case "status":
+                        status = json.nextString();
+                        break;
+                    default:
+                        json.skipValue(); // "id" and anything newer: ids are reassigned
+                        break;
+                }
+            }
+            json.endObject();
+            sink.add(title, deadline, notes, status);
+        }
+        json.endArray();
+    }
+
+    private static void readCsv(BufferedReader reader, Sink sink) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        String[] row = csv.next();
+        int[] columns = { 0, 1, 2, 3 }; // title, deadline, notes, status
+        if (row != null && isHeader(row)) {
+            for (int c = 0; c < CSV_HEADER.length; c++) {
+                columns[c] = indexOf(row, CSV_HEADER[c]);
+            }
+            row = csv.next();
+        }
+        for (; row != null; row = csv.next()) {
+            if (row.length == 1 && row[0].isEmpty()) {
+                continue; // blank line
+            }
+            sink.add(field(row, columns[0]), field(row, columns[1]),
+                    field(row, columns[2]), field(row, columns[3]));
+        }
+    }
+
+    private static boolean isHeader(String[] row) {
+        return indexOf(row, "title") >= 0;
+    }
+
+    private static int indexOf(String[] row, String name) {
+        for (int i = 0; i < row.length; i++) {
+            if (row[i].trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String field(String[] row, int index) {
+        return index >= 0 && index < row.length ? row[index] : null;
+    }
+
+    /** Collects parsed rows into change sets of the store's batch size. */
+    private static final class Sink {
+        final TaskStore store;
+        final AtomicBoolean cancel;
+        final Progress progress;
+        final CountingInputStream counted;
+        final long totalBytes;
+        final int batchSize;
+        final TaskChangeSet batch = new TaskChangeSet();
+        long nextId;
+        int rows;
+
+        Sink(TaskStore store, long firstId, AtomicBoolean cancel, Progress progress,
+                CountingInputStream counted, long totalBytes) throws IOException {
+            this.store = store;
+            this.cancel = cancel;
+            this.progress = progress;
+            this.counted = counted;
+            this.totalBytes = totalBytes;
+            this.batchSize = Math.max(1, store.writeBatchSize());
+            this.nextId = Math.max(firstId, store.lastId() + 1);
+        }
+
+        void add(String title, String deadline, String notes, String status) throws IOException {
+            if (title == null || title.trim().isEmpty()) {
+                return; // title is required, as in the add screen
+            }
+            batch.markInserted(new Task(nextId++, title.trim(), orEmpty(deadline), orEmpty(notes),
+                    status == null || status.isEmpty() ? "Pending" : status));
+            if (batch.size() >= batchSize) {
+                flush();
+                progress.onProgress(counted.count, totalBytes);
+            }
+        }
+
+        void flush() throws IOException {
+            if (cancel.get()) {
+                throw new CancelledException(rows);
+            }
+            if (!batch.isEmpty()) {
+                store.apply(batch);
+                rows += batch.size();
+                batch.clear();
+            }
+        }
+
+        private static String orEmpty(String s) {
+            return s == null ? "" : s;
+        }
+    }
+
+    /*
+     * --------------------------------- Export ----------------------------------
+     */
+
+    /** Writes every task in {@code store} to {@code out}. Progress is in rows. Returns the rows written. */
+    static int exportTasks(TaskStore store, Format format, OutputStream out,
+            AtomicBoolean cancel, Progress progress) throws IOException {
+        int total = store.count();
+        int[] rows = new int[1];
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        if (format == Format.JSON) {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginArray();
+            store.scan(t -> {
+                json.beginObject();
+                json.name("id").value(t.id);
+                json.name("title").value(t.title);
+                json.name("deadline").value(t.deadline);
+                json.name("notes").value(t.notes);
+                json.name("status").value(t.status);
+                json.endObject();
+                exported(++rows[0], total, cancel, progress);
+            });
+            json.endArray();
+            json.flush();
+        } else {
+            writeCsvRow(writer, CSV_HEADER);
+            String[] row = new String[CSV_HEADER.length];
+            store.scan(t -> {
+                row[0] = t.title;
+                row[1] = t.deadline;
+                row[2] = t.notes;
+                row[3] = t.status;
+                writeCsvRow(writer, row);
+                exported(++rows[0], total, cancel, progress);
+            });
+            writer.flush();
+        }
+        progress.onProgress(rows[0], total);
+        return rows[0];
+    }
+
+    private static void exported(int rows, int total, AtomicBoolean cancel, Progress progress)
+            throws IOException {
+        if (rows % EXPORT_PROGRESS_ROWS == 0) {
+            if (cancel.get()) {
+                throw new CancelledException(rows);
+            }
+            progress.onProgress(rows, total);
+        }
+    }
+
+    /*
+     * ----------------------------------- CSV -----------------------------------
+     */
+
+    static void writeCsvRow(Writer w, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                w.write(',');
+            }
+            String f = fields[i] == null ? "" : fields[i];
+            if (needsQuotes(f)) {
+                w.write('"');
+                for (int c = 0; c < f.length(); c++) {
+                    char ch = f.charAt(c);
+                    if (ch == '"') {
+                        w.write('"');
+                    }
+                    w.write(ch);
+                }
+                w.write('"');
+            } else {
+                w.write(f);
+            }
+        }
+        w.write("\r\n");
+    }
+
+    private static boolean needsQuotes(String f) {
+        for (int i = 0; i < f.length(); i++) {
+            char c = f.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return !f.isEmpty() && (f.charAt(0) == ' ' || f.charAt(f.length() - 1) == ' ');
+    }
+
+    /** Pull reader of RFC 4180 records over its own char buffer; no line splitting. */
+    static final class CsvReader {
+        private final Reader in;
+        private final char[] buf = new char[1 << 13];
+        private int pos;
+        private int len;
+        private final StringBuilder field = new StringBuilder();
+        private final ArrayList<String> fields = new ArrayList<>();
+
+        CsvReader(Reader in) {
+            this.in = in;
+        }
+
+        /** Next record, or null at end of input. */
+        String[] next() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted field");
+                    }
+                    if (c == '"') {
+                        int n = read();
+                        if (n == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            c = n;
+                            continue;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\r' || c == '\n' || c == -1) {
+                    if (c == '\r') {
+                        if (read() != '\n' && len > 0) {
+                            pos--; // not part of the line break
+                        }
+                    }
+                    fields.add(field.toString());
+                    return fields.toArray(new String[0]);
+                } else {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (pos == len) {
+                len = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (len <= 0) {
+                    len = 0;
+                    return -1;
+                }
+            }
+            return buf[pos++];
+        }
+    }
+
+    /** Counts bytes for progress; the reader on top buffers, so this is cheap. */
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.TypedValue;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Idle-time view pre-inflation
+ * ---------------------------------
+ * Inflates the views the list screen would otherwise inflate on the main
+ * thread the first time it needs them: the edit dialog (Material text fields
+ * and all) on the first long-press edit, and rows on the first fling.
+ *
+ * - Starts once the main thread first goes idle, so it never delays the first
+ *   frame. Inflation runs on a background thread through a clone of the
+ *   activity's inflater (same theme, same AppCompat view factory); a layout
+ *   that cannot be built off the main thread is inflated in a later idle pass
+ *   instead.
+ * - One edit-dialog view: taken with {@link #takeEditView}, handed back when
+ *   the dialog closes ({@link #recycleEditView}), so it is inflated once per
+ *   activity.
+ * - Rows become view holders (through the adapter, on the main thread) in the
+ *   list's {@link RecyclerView.RecycledViewPool}, which
+ *   {@link #sharedPool} sizes to hold a screen of rows; the adapter takes
+ *   the pre-inflated view in {@link #takeRow}.
+ *
+ * Main thread only, apart from the inflation itself; {@link #stop} drops
+ * everything with the activity.
+ */
+final class ViewPrewarmer {
+
+    static final int ROW_TYPE = 0;
+
+    // Rows kept in the pool beyond one screen: prefetch and a partly shown row at each edge
+    static final int EXTRA_ROWS = 3;
+
+    private static final ExecutorService INFLATER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "task-inflate");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Context context;
+    private final LayoutInflater inflater; // a clone: LayoutInflater is not thread-safe
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final int editLayout;
+    private final int rowLayout;
+
+    private RecyclerView list;
+    private View editView;  // warm and detached, or null while in use / not built yet
+    private View nextRow;   // handed to the adapter by takeRow
+    private boolean stopped;
+
+    ViewPrewarmer(Context activity, int editLayout, int rowLayout) {
+        this.context = activity;
+        this.inflater = LayoutInflater.from(activity).cloneInContext(activity);
+        this.editLayout = editLayout;
+        this.rowLayout = rowLayout;
+    }
+
+    /**
+     * A row pool for {@code list} that holds a screen of rows plus a few, so
+     * neither a fling nor a full rebind has to inflate once it is warm.
+     */
+    static RecyclerView.RecycledViewPool sharedPool(Context context) {
+        RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+        pool.setMaxRecycledViews(ROW_TYPE, rowsPerScreen(context) + EXTRA_ROWS);
+        return pool;
+    }
+
+    /** Rows of ?android:listPreferredItemHeight that fit the screen's height. */
+    static int rowsPerScreen(Context context) {
+        TypedValue value = new TypedValue();
+        float rowPx = 64 * context.getResources().getDisplayMetrics().density;
+        if (context.getTheme().resolveAttribute(android.R.attr.listPreferredItemHeight, value, true)) {
+            rowPx = value.getDimension(context.getResources().getDisplayMetrics());
+        }
+        int screenPx = context.getResources().getDisplayMetrics().heightPixels;
+        return Math.max(1, (int) Math.ceil(screenPx / Math.max(1f, rowPx)));
+    }
+
+    /** Warms the edit view and fills {@code list}'s pool the next time the main thread is idle. */
+    void start(RecyclerView list) {
+        this.list = list;
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if (!stopped) {
+                    inflateInBackground(rowsPerScreen(context) + EXTRA_ROWS);
+                }
+                return false;
+            }
+        });
+    }
+
+    private void inflateInBackground(int rows) {
+        ViewGroup parent = list;
+        INFLATER.execute(() -> {
+            View edit = tryInflate(editLayout, null);
+            List<View> rowViews = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                View row = tryInflate(rowLayout, parent);
+                if (row == null) {
+                    break;
+                }
+                rowViews.add(row);
+            }
+            int missing = rows - rowViews.size();
+            main.post(() -> deliver(edit, rowViews, missing));
+        });
+    }
+
+    private View tryInflate(int layout, ViewGroup parent) {
+        try {
+            return inflater.inflate(layout, parent, false);
+        } catch (RuntimeException e) {
+            return null; // e.g. a view that needs a Looper; built on the main thread instead
+        }
+    }
+
+    private void deliver(View edit, List<View> rows, int missing) {
+        if (stopped) {
+            return;
+        }
+        if (edit != null && editView == null) {
+            editView = edit;
+        }
+        for (View row : rows) {
+            pool(row);
+        }
+        if (edit == null || missing > 0) {
+            Looper.myQueue().addIdleHandler(() -> {
+                inflateOnMainThread(edit == null, missing);
+                return false;
+            });
+        }
+    }
+
+    private void inflateOnMainThread(boolean edit, int rows) {
+        if (stopped) {
+            return;
+        }
+        if (edit && editView == null) {
+            editView = inflater.inflate(editLayout, null, false);
+        }
+        for (int i = 0; i < rows; i++) {
+            pool(inflater.inflate(rowLayout, list, false));
+        }
+    }
+
+    /** Wraps {@code row} in a holder from the list's adapter and parks it in the pool. */
+    private void pool(View row) {
+        RecyclerView.Adapter<?> adapter = list.getAdapter();
+        if (adapter == null) {
+            return;
+        }
+        nextRow = row;
+        list.getRecycledViewPool().putRecycledView(adapter.createViewHolder(list, ROW_TYPE));
+        nextRow = null;
+    }
+
+    /** The pre-inflated row the adapter is being asked to wrap, or null to inflate one. */
+    View takeRow() {
+        View row = nextRow;
+        nextRow = null;
+        return row;
+    }
+
+    /** The warm edit-dialog view, or null if none is ready (inflate one then). */
+    View takeEditView() {
+        View v = editView;
+        editView = null;
+        return v;
+    }
+
+    /** Takes back an edit-dialog view whose dialog closed, for the next edit. */
+    void recycleEditView(View v) {
+        if (stopped || editView != null) {
+            return;
+        }
+        if (v.getParent() instanceof ViewGroup) {
+            ((ViewGroup) v.getParent()).removeView(v);
+        }
+        editView = v;
+    }
+
+    void stop() {
+        stopped = true;
+        editView = null;
+        list = null;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.eecs4443lab3;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link BulkEdit}: every kind of list the screen shows
+ * is rewritten in one pass to what editing each task alone would give, and
+ * the whole selection is one change set however large it is.
+ */
+public class BulkEditTest {
+
+    private static final long TODAY = 20_000;
+    private static final int LARGE = 10_000;
+
+    private static Task task(long id) {
+        String deadline = id % 3 == 0 ? "" : TaskDates.format(TODAY - 5 + id % 11);
+        return new Task(id, "Task " + id, deadline, "Notes " + id, id % 4 == 0 ? "Done" : "Pending");
+    }
+
+    private static List<Task> tasks(int n) {
+        List<Task> out = new ArrayList<>(n);
+        for (int i = 1; i <= n; i++) {
+            out.add(task(i));
+        }
+        return out;
+    }
+
+    /** Every other task, from {@code from} on. */
+    private static Set<Long> everyOther(int n, long from) {
+        Set<Long> out = new HashSet<>();
+        for (long id = from; id <= n; id += 2) {
+            out.add(id);
+        }
+        return out;
+    }
+
+    /** The list the edit should leave, one task at a time. */
+    private static List<Task> expected(List<Task> all, Set<Long> ids, BulkEdit edit) {
+        List<Task> out = new ArrayList<>();
+        for (Task t : all) {
+            Task updated = ids.contains(t.id) ? edit.apply(t) : t;
+            if (updated != null) {
+                out.add(updated);
+            }
+        }
+        return out;
+    }
+
+    private static List<List<Task>> everyKind(List<Task> all) {
+        List<List<Task>> out = new ArrayList<>();
+        out.add(new ArrayList<>(all));
+        out.add(TaskTable.of(all));
+        out.add(TaskIndex.of(all, TODAY).view(TaskQuery.DEFAULT));
+        return out;
+    }
+
+    @Test
+    public void delete_leavesTheOthersInOrder_onEveryKindOfList() {
+        List<Task> all = tasks(LARGE);
+        Set<Long> ids = everyOther(LARGE, 2);
+        for (List<Task> list : everyKind(all)) {
+            TaskChangeSet changes = new TaskChangeSet();
+            int from = BulkEdit.delete().applyTo(list, ids, changes);
+            assertEquals(list.getClass().getSimpleName(), expected(all, ids, BulkEdit.delete()), new ArrayList<>(list));
+            assertEquals(LARGE / 2, changes.size());
+            assertEquals(LARGE / 2, changes.deleted().size());
+            assertTrue(from == 0 || from == 1);
+        }
+    }
+
+    @Test
+    public void markDone_writesOnlyTasksItChanges() {
+        List<Task> all = tasks(LARGE);
+        Set<Long> ids = everyOther(LARGE, 1);
+        int pending = 0;
+        for (long id : ids) {
+            pending += id % 4 == 0 ? 0 : 1;
+        }
+        for (List<Task> list : everyKind(all)) {
+            TaskChangeSet changes = new TaskChangeSet();
+            BulkEdit.markDone().applyTo(list, ids, changes);
+            assertEquals(list.getClass().getSimpleName(), expected(all, ids, BulkEdit.markDone()), new ArrayList<>(list));
+            assertEquals(pending, changes.updated().size());
+            assertEquals(pending, changes.size());
+            for (Task t : changes.updated()) {
+                assertEquals("Done", t.status);
+            }
+        }
+    }
+
+    @Test
+    public void setDeadline_resortsTheIndexView() {
+        List<Task> all = tasks(2_000);
+        Set<Long> ids = everyOther(2_000, 1);
+        BulkEdit edit = BulkEdit.setDeadline(TaskDates.format(TODAY + 3));
+        TaskQuery byDeadline = new TaskQuery(TaskQuery.Sort.DEADLINE, TaskQuery.Filter.ALL);
+        TaskIndex.View view = TaskIndex.of(all, TODAY).view(byDeadline);
+        assertEquals(0, edit.applyTo(view, ids, new TaskChangeSet()));
+        List<Task> after = expected(all, ids, edit);
+        assertEquals(TaskIndex.of(after, TODAY).view(byDeadline), new ArrayList<>(view));
+    }
+
+    @Test
+    public void firstPosition_isWhereTheSelectionStarts() {
+        List<Task> all = tasks(100);
+        Set<Long> ids = new HashSet<>(List.of(40L, 41L, 90L));
+        assertEquals(39, BulkEdit.delete().applyTo(new ArrayList<>(all), ids, new TaskChangeSet()));
+        assertEquals(39, BulkEdit.markDone().applyTo(TaskTable.of(all), ids, new TaskChangeSet()));
+        assertEquals(-1, BulkEdit.delete().applyTo(new ArrayList<>(all), Set.of(500L), new TaskChangeSet()));
+        assertEquals(-1, BulkEdit.delete().applyTo(TaskIndex.of(all, TODAY).view(TaskQuery.DEFAULT),
+                Set.of(500L), new TaskChangeSet()));
+    }
+
+    @Test
+    public void rows_stayRows_andStoredNotesSurvive() {
+        Task full = task(7);
+        Task row = full.asRow();
+        List<Task> list = new ArrayList<>(List.of(row));
+        TaskChangeSet changes = new TaskChangeSet();
+        changes.markUpdated(full.withNotes("Edited notes"));
+        BulkEdit.markDone().applyTo(list, Set.of(7L), changes);
+        assertFalse(list.get(0).notesLoaded);
+        Task written = changes.updated().iterator().next();
+        assertEquals("Done", written.status);
+        assertTrue(written.notesLoaded);
+        assertEquals("Edited notes", written.notes);
+    }
+
+    @Test
+    public void unchangedTasks_areTheSameInstance() {
+        Task done = new Task(1, "a", "", "", "Done");
+        Task noDeadline = new Task(2, "b", "", "", "Pending");
+        assertSame(done, BulkEdit.markDone().apply(done));
+        assertSame(noDeadline, BulkEdit.setDeadline(null).apply(noDeadline));
+        assertNull(BulkEdit.delete().apply(done));
+        assertFalse(BulkEdit.delete().needsRows());
+        assertTrue(BulkEdit.markDone().needsRows());
+    }
+}
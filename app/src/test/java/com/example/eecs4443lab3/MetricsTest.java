@@ -0,0 +1,65 @@
+package com.example.eecs4443lab3;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bucket layout and percentiles of the lock-free latency histogram.
+ */
+public class MetricsTest {
+
+    @Test
+    public void buckets_coverEveryValueInOrder() {
+        for (long v : new long[]{0, 1, 15, 16, 17, 1_000, 123_456_789L, Long.MAX_VALUE}) {
+            int i = Metrics.Histogram.index(v);
+            assertTrue(Metrics.Histogram.lowerBound(i) <= v);
+            if (v < Long.MAX_VALUE) {
+                assertTrue(Metrics.Histogram.index(v + 1) >= i);
+            }
+        }
+        for (int i = 1; i < Metrics.Histogram.index(Long.MAX_VALUE); i++) {
+            assertEquals(i, Metrics.Histogram.index(Metrics.Histogram.lowerBound(i)));
+        }
+    }
+
+    @Test
+    public void percentiles_areWithinOneBucket() {
+        Metrics.Histogram h = new Metrics.Histogram();
+        for (long us = 1; us <= 1_000; us++) {
+            h.record(us * 1_000);
+        }
+        assertEquals(1_000, h.count());
+        assertEquals(1_000_000, h.max());
+        assertEquals(500_000, h.percentile(0.50), 500_000 / 8.0);
+        assertEquals(990_000, h.percentile(0.99), 990_000 / 8.0);
+        assertEquals(1_000_000, h.percentile(1.0));
+
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentile(0.99));
+    }
+
+    @Test
+    public void record_isSafeFromManyThreads() throws InterruptedException {
+        Metrics.Histogram h = new Metrics.Histogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int n = 0; n < 4; n++) {
+            Thread t = new Thread(() -> {
+                for (int i = 1; i <= 10_000; i++) {
+                    h.record(i);
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(40_000, h.count());
+        assertEquals(10_000, h.max());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.eecs4443lab3;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link NoteCodec}: notes come back exactly as written,
+ * and only long notes pay for compression.
+ */
+public class NoteCodecTest {
+
+    private static String repeat(String s, int times) {
+        StringBuilder b = new StringBuilder(s.length() * times);
+        for (int i = 0; i < times; i++) {
+            b.append(s);
+        }
+        return b.toString();
+    }
+
+    @Test
+    public void emptyNotes_areNotStored() {
+        assertNull(NoteCodec.encode(""));
+        assertNull(NoteCodec.encode(null));
+        assertEquals("", NoteCodec.decode(null));
+    }
+
+    @Test
+    public void shortNotes_stayPlain() {
+        String notes = "Bring the lab report";
+        byte[] blob = NoteCodec.encode(notes);
+        assertEquals(notes.length() + 1, blob.length);
+        assertEquals(notes, NoteCodec.decode(blob));
+    }
+
+    @Test
+    public void longNotes_shrink_andRoundTrip() {
+        String notes = repeat("Step 3: re-run the migration and compare the counts. ", 400);
+        byte[] blob = NoteCodec.encode(notes);
+        assertTrue("not compressed: " + blob.length, blob.length < notes.length() / 4);
+        assertEquals(notes, NoteCodec.decode(blob));
+    }
+
+    @Test
+    public void unicode_roundTrips_onBothSidesOfTheThreshold() {
+        String small = "Café ✓ 日本語 😀";
+        String large = repeat(small + "\n", 200);
+        assertEquals(small, NoteCodec.decode(NoteCodec.encode(small)));
+        assertEquals(large, NoteCodec.decode(NoteCodec.encode(large)));
+    }
+
+    @Test
+    public void storedForm_isNeverLargerThanPlain() {
+        StringBuilder b = new StringBuilder();
+        Random r = new Random(7);
+        for (int i = 0; i < 4_000; i++) {
+            b.append((char) (0x4E00 + r.nextInt(0x5000)));
+        }
+        String notes = b.toString();
+        byte[] blob = NoteCodec.encode(notes);
+        assertTrue(blob.length <= notes.getBytes(StandardCharsets.UTF_8).length + 1);
+        assertEquals(notes, NoteCodec.decode(blob));
+    }
+
+    @Test
+    public void damagedBlobs_readAsEmpty() {
+        byte[] blob = NoteCodec.encode(repeat("abc ", 1_000));
+        byte[] truncated = Arrays.copyOf(blob, blob.length / 2);
+        assertEquals("", NoteCodec.decode(truncated));
+        assertEquals("", NoteCodec.decode(new byte[] { 9, 1, 2, 3 }));
+        assertEquals("", NoteCodec.decode(new byte[] { 1, 5, 5, 5, 5 }));
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * {@link PagedTaskList} keeps its keyset cursors across saves: after rows are
+ * added, edited and deleted through the list and the write lands, paging on
+ * from the moved cursors shows exactly what a fresh read of the table does,
+ * in every order. Once closed, reads still under way never reach the adapter.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+public class PagedTaskListTest {
+
+    private static final int ROWS = 1_200;
+    private static final int SCROLL_TO = 700; // pages near the top are evicted by then
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{0} {1}")
+    public static Collection<Object[]> queries() {
+        List<Object[]> queries = new ArrayList<>();
+        for (TaskQuery.Sort sort : TaskQuery.Sort.values()) {
+            queries.add(new Object[] { sort, TaskQuery.Filter.ALL });
+            queries.add(new Object[] { sort, TaskQuery.Filter.PENDING });
+        }
+        return queries;
+    }
+
+    private final TaskQuery q;
+
+    private Context ctx;
+    private SqliteTaskStore store;
+    private SQLiteDatabase db;
+    private long today;
+
+    public PagedTaskListTest(TaskQuery.Sort sort, TaskQuery.Filter filter) {
+        q = new TaskQuery(sort, filter);
+    }
+
+    @Before
+    public void setUp() {
+        ctx = RuntimeEnvironment.getApplication();
+        store = TaskStores.sqlite(ctx);
+        db = store.getReadableDatabase();
+        today = TaskDates.today();
+        TaskChangeSet c = new TaskChangeSet();
+        for (long id = 1; id <= ROWS; id++) {
+            c.markInserted(new Task(id, "Task " + (id * 7919 % ROWS),
+                    id % 4 == 0 ? "" : TaskDates.format(today + id % 30 - 10),
+                    "", id % 3 == 0 ? "Done" : "Pending"));
+        }
+        store.apply(c);
+    }
+
+    @After
+    public void tearDown() {
+        TaskStores.closeAll();
+    }
+
+    @Test
+    public void editsThenSave_pageOnLikeAFreshRead() {
+        PagedTaskList list = new PagedTaskList(db, q, today, (position, count) -> { });
+        list.loadInitial();
+        readUpTo(list, SCROLL_TO);
+
+        // The same edits MainActivity makes, then the same change set saved
+        TaskChangeSet c = new TaskChangeSet();
+        for (int i = 0; i < 3; i++) {
+            Task t = new Task(ROWS + 1 + i, "Added " + i, TaskDates.format(today + i), "", "Pending");
+            if (q.matches(t, today)) {
+                list.add(0, t);
+            }
+            c.markInserted(t);
+        }
+        for (int at : new int[] { SCROLL_TO - 5, SCROLL_TO - 40, SCROLL_TO - 90 }) {
+            c.markDeleted(list.remove(at));
+        }
+        for (int at : new int[] { SCROLL_TO - 2, SCROLL_TO - 60, SCROLL_TO - 120 }) {
+            Task old = list.get(at);
+            Task updated = new Task(old.id, "a " + old.title, "", "",
+                    "Done".equals(old.status) ? "Pending" : "Done");
+            if (q.matches(updated, today)) {
+                list.set(at, updated);
+            } else {
+                list.remove(at);
+            }
+            c.markUpdated(updated);
+        }
+        store.apply(c);
+        list.invalidate();
+
+        List<Long> expected = freshIds();
+        assertEquals(expected, readUpTo(list, expected.size()));
+        assertEquals(expected.size(), list.size());
+        list.close();
+    }
+
+    @Test
+    public void close_dropsReadsStillUnderWay() {
+        int[] appended = new int[1];
+        PagedTaskList list = new PagedTaskList(db, TaskQuery.DEFAULT, today, (position, count) -> appended[0] += count);
+        list.loadInitial();
+        list.get(list.size() - 1); // prefetches the next pages
+        list.close();
+        for (int i = 0; i < 20; i++) {
+            waitForReads(); // time for the prefetches to be read and posted
+        }
+        assertEquals(0, appended[0]);
+    }
+
+    /*
+     * --------------------------------- Helpers ---------------------------------
+     */
+
+    /** Binds rows in order until {@code count} have been read, letting pages stream in. */
+    private static List<Long> readUpTo(PagedTaskList list, int count) {
+        List<Long> ids = new ArrayList<>(count);
+        long deadline = System.currentTimeMillis() + 10_000;
+        for (int i = 0; i < count; i++) {
+            while (i >= list.size()) {
+                assertTrue("timed out at row " + i, System.currentTimeMillis() < deadline);
+                waitForReads();
+            }
+            ids.add(list.get(i).id);
+        }
+        return ids;
+    }
+
+    private static void waitForReads() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    /** Every row id the query shows, read in one go. */
+    private List<Long> freshIds() {
+        List<Long> ids = new ArrayList<>();
+        try (Cursor c = db.rawQuery(q.pageSql(today), new String[] { String.valueOf(Integer.MAX_VALUE), "0" })) {
+            while (c.moveToNext()) {
+                ids.add(SqliteTaskStore.readRow(c).id);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.eecs4443lab3;
+
+import android.app.AlarmManager;
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowAlarmManager;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Deadline reminders against a fake clock: thousands of tasks hold a single
+ * alarm, reminders due together become one notification, edits move the
+ * alarm only when the soonest reminder changes (with one system call) and
+ * move O(log n) queue entries, and nothing is posted twice across a restart.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ReminderSchedulerTest {
+
+    private static final long DAY = 20_400; // an epoch day; "today" for the fake clock
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private Context ctx;
+    private TaskJournal store;
+    private long now = TaskDates.atHour(DAY, ReminderScheduler.REMINDER_HOUR - 1);
+    private ReminderScheduler reminders;
+
+    @Before
+    public void setUp() throws IOException {
+        ctx = RuntimeEnvironment.getApplication();
+        store = new TaskJournal(tmp.newFile("tasks.journal"));
+        reminders = new ReminderScheduler(ctx, () -> now);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+    private static Task task(long id, long day, String status) {
+        return new Task(id, "Task " + id, TaskDates.format(day), "", status);
+    }
+
+    private static long at(long day) {
+        return TaskDates.atHour(day, ReminderScheduler.REMINDER_HOUR);
+    }
+
+    /** Saves the way MainActivity does: the write, then the scheduler sees it. */
+    private void save(TaskChangeSet changes) throws IOException {
+        store.apply(changes);
+        reminders.onChanges(changes);
+    }
+
+    private void add(long from, long to, long day) throws IOException {
+        TaskChangeSet c = new TaskChangeSet();
+        for (long id = from; id <= to; id++) {
+            c.markInserted(task(id, day, "Pending"));
+        }
+        save(c);
+    }
+
+    private ShadowAlarmManager alarms() {
+        return shadowOf((AlarmManager) ctx.getSystemService(Context.ALARM_SERVICE));
+    }
+
+    private long nextAlarm() {
+        List<ShadowAlarmManager.ScheduledAlarm> scheduled = alarms().getScheduledAlarms();
+        assertEquals("alarms held", 1, scheduled.size());
+        return scheduled.get(0).getTriggerAtMs();
+    }
+
+    /** Moves the clock to the alarm and delivers it. */
+    private void ringAlarm() {
+        now = nextAlarm();
+        reminders.fire();
+    }
+
+    private List<Notification> notifications() {
+        return shadowOf((NotificationManager) ctx.getSystemService(Context.NOTIFICATION_SERVICE))
+                .getAllNotifications();
+    }
+
+    private static String title(Notification n) {
+        return String.valueOf(n.extras.getCharSequence(Notification.EXTRA_TITLE));
+    }
+
+    @Test
+    public void thousandsOfTasks_holdOneAlarm_forTheSoonest() throws IOException {
+        TaskChangeSet c = new TaskChangeSet();
+        for (long id = 1; id <= 5_000; id++) {
+            c.markInserted(task(id, DAY + 1 + id % 50, id % 7 == 0 ? "Done" : "Pending"));
+        }
+        c.markInserted(new Task(5_001, "No deadline", "", "", "Pending"));
+        c.markInserted(new Task(5_002, "Typed deadline", "after exams", "", "Pending"));
+        store.apply(c);
+
+        reminders.load(store);
+
+        assertEquals(5_000 - 5_000 / 7, reminders.pending());
+        assertEquals(at(DAY + 1), nextAlarm());
+    }
+
+    @Test
+    public void remindersDueTogether_postOneNotification() throws IOException {
+        reminders.load(store);
+        add(1, 3, DAY);
+        add(4, 4, DAY + 1);
+
+        ringAlarm();
+
+        assertEquals(1, notifications().size());
+        assertEquals("3 tasks due", title(notifications().get(0)));
+        assertEquals(1, reminders.pending());
+        assertEquals(at(DAY + 1), nextAlarm());
+
+        ringAlarm();
+
+        assertEquals("Task due", title(notifications().get(0))); // replaced the first one
+        assertEquals(0, reminders.pending());
+        assertTrue(alarms().getScheduledAlarms().isEmpty());
+    }
+
+    @Test
+    public void edits_moveTheAlarm_onlyWhenTheSoonestChanges() throws IOException {
+        reminders.load(store);
+        add(1, 1_000, DAY + 5);
+        assertEquals(at(DAY + 5), nextAlarm());
+
+        add(1_001, 1_001, DAY + 1);
+        assertEquals(at(DAY + 1), nextAlarm());
+
+        TaskChangeSet done = new TaskChangeSet();
+        done.markUpdated(task(1_001, DAY + 1, "Done"));
+        save(done);
+        assertEquals(at(DAY + 5), nextAlarm());
+
+        TaskChangeSet moved = new TaskChangeSet();
+        moved.markUpdated(task(500, DAY + 3, "Pending"));
+        save(moved);
+        assertEquals(at(DAY + 3), nextAlarm());
+
+        TaskChangeSet deleted = new TaskChangeSet();
+        deleted.markDeleted(500);
+        save(deleted);
+        assertEquals(at(DAY + 5), nextAlarm());
+        assertEquals(999, reminders.pending());
+    }
+
+    @Test
+    public void postedReminders_areNotPostedAgain_afterARestart() throws IOException {
+        reminders.load(store);
+        add(1, 2, DAY);
+        add(3, 3, DAY + 2);
+        ringAlarm();
+        assertEquals(1, notifications().size());
+
+        // A new process: the queue is rebuilt from the store
+        reminders = new ReminderScheduler(ctx, () -> now);
+        reminders.load(store);
+
+        assertEquals(1, reminders.pending());
+        assertEquals(at(DAY + 2), nextAlarm());
+    }
+
+    @Test
+    public void missedReminders_arePostedTogether_onTheNextLoad() throws IOException {
+        reminders.load(store);
+        add(1, 1, DAY);
+        add(2, 2, DAY + 1);
+        add(3, 3, DAY + 4);
+
+        // Off for two days: the alarm never rang
+        now = TaskDates.atHour(DAY + 2, 12);
+        reminders = new ReminderScheduler(ctx, () -> now);
+        reminders.load(store);
+        assertEquals(now, nextAlarm());
+        reminders.fire();
+
+        assertEquals(1, notifications().size());
+        assertEquals("2 tasks due", title(notifications().get(0)));
+        assertEquals(at(DAY + 4), nextAlarm());
+    }
+
+    @Test
+    public void edits_onALargeQueue_setTheAlarmAtMostOnce() throws IOException {
+        TaskChangeSet c = new TaskChangeSet();
+        for (long id = 1; id <= 100_000; id++) {
+            c.markInserted(task(id, DAY + 10 + id % 300, "Pending"));
+        }
+        store.apply(c);
+        reminders.load(store);
+        while (alarms().getNextScheduledAlarm() != null) {
+            // forget the load's alarm; from here each one is an edit's
+        }
+        Random random = new Random(4443);
+
+        int sets = 0;
+        for (int i = 0; i < 20_000; i++) {
+            TaskChangeSet edit = new TaskChangeSet();
+            long id = 1 + random.nextInt(100_000);
+            edit.markUpdated(task(id, DAY + 1 + random.nextInt(310), random.nextInt(4) == 0 ? "Done" : "Pending"));
+            long before = reminders.armedAt();
+            reminders.onChanges(edit);
+
+            int set = 0;
+            while (alarms().getNextScheduledAlarm() != null) {
+                set++;
+            }
+            assertEquals("alarms set by edit " + i, reminders.armedAt() != before ? 1 : 0, set);
+            sets += set;
+        }
+        assertTrue(sets > 0);
+    }
+
+    @Test
+    public void queue_movesLogNEntriesPerEdit_atAnySize() {
+        for (int n : new int[] { 1_000, 100_000 }) {
+            ReminderQueue queue = new ReminderQueue();
+            Random random = new Random(n);
+            for (long id = 1; id <= n; id++) {
+                queue.put(id, random.nextInt(1_000_000), "t" + id);
+            }
+            long start = queue.moves();
+            int edits = 20_000;
+            for (int i = 0; i < edits; i++) {
+                long id = 1 + random.nextInt(n);
+                if (i % 4 == 0) {
+                    queue.remove(id);
+                }
+                queue.put(id, random.nextInt(1_000_000), "t" + id);
+            }
+            // A put or remove moves at most one entry per heap level, plus one
+            // to fill a removed slot; a rebuild would move all n
+            int height = 32 - Integer.numberOfLeadingZeros(n);
+            long perEdit = (queue.moves() - start) / edits;
+            assertTrue(n + " tasks: one edit moved " + perEdit + " entries", perEdit <= 2L * height + 1);
+        }
+    }
+
+    @Test
+    public void queue_matchesASortedReference() {
+        ReminderQueue queue = new ReminderQueue();
+        TreeMap<Long, Long> byId = new TreeMap<>(); // id -> time
+        Random random = new Random(7);
+        for (int step = 0; step < 20_000; step++) {
+            long id = random.nextInt(500);
+            int op = random.nextInt(10);
+            if (op < 6) {
+                long time = random.nextInt(1_000);
+                queue.put(id, time, "t" + id);
+                byId.put(id, time);
+            } else if (op < 9) {
+                queue.remove(id);
+                byId.remove(id);
+            } else {
+                long until = random.nextInt(1_000);
+                ReminderQueue.Due due = queue.pollUntil(until);
+                long previous = Long.MIN_VALUE;
+                for (long dueId : due.ids) {
+                    long time = byId.remove(dueId);
+                    assertTrue(time <= until && time >= previous);
+                    previous = time;
+                }
+                for (long time : byId.values()) {
+                    assertTrue(time > until);
+                }
+            }
+            assertEquals(byId.size(), queue.size());
+            long min = byId.isEmpty() ? -1 : byId.values().stream().min(Long::compare).get();
+            assertEquals(min, queue.peekTime());
+        }
+    }
+}
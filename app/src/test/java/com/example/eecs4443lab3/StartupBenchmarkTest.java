@@ -0,0 +1,92 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Cold start: what MainActivity holds and binds by its first frame (created,
+ * resumed and visible, rows from the startup snapshot or the first page)
+ * must not grow with the number of stored tasks.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class StartupBenchmarkTest {
+
+    // The snapshot or the first page, plus the pages a first scroll may prefetch
+    private static final int MAX_FIRST_FRAME_ROWS = 3 * PagedTaskList.PAGE_SIZE;
+
+    private Context ctx;
+    private SqliteTaskStore store;
+    private int stored;
+
+    @Before
+    public void setUp() {
+        ctx = RuntimeEnvironment.getApplication();
+        store = TaskStores.sqlite(ctx);
+        Metrics.setEnabled(ctx, true);
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setEnabled(ctx, false);
+        TaskStores.closeAll();
+    }
+
+    @Test
+    public void firstFrame_doesNotGrowWithTaskCount() throws IOException {
+        // A screen from the snapshot, rebound once if the first page lands meanwhile
+        int maxBinds = 2 * (ViewPrewarmer.rowsPerScreen(ctx) + ViewPrewarmer.EXTRA_ROWS);
+        for (int total : new int[] { 10, 1_000, 100_000 }) {
+            growTo(total);
+            Metrics.reset();
+            ActivityController<MainActivity> controller = Robolectric.buildActivity(MainActivity.class).setup();
+            RecyclerView list = controller.get().findViewById(R.id.recycler);
+            int rows = list.getAdapter().getItemCount();
+            long binds = Metrics.histogram(Metrics.Path.BIND, MainActivity.Mode.SQLITE).count();
+            controller.pause().stop().destroy(); // onStop waits for the background load
+
+            assertTrue(total + " tasks: " + rows + " rows at the first frame",
+                    rows >= Math.min(StartupSnapshot.ROWS, total) && rows <= MAX_FIRST_FRAME_ROWS);
+            assertTrue(total + " tasks: " + binds + " rows bound by the first frame", binds <= maxBinds);
+        }
+    }
+
+    /** Adds tasks up to {@code total} and saves the first screen as the app would. */
+    private void growTo(int total) throws IOException {
+        TaskChangeSet batch = new TaskChangeSet();
+        while (stored < total) {
+            stored++;
+            batch.markInserted(task(stored));
+            if (batch.size() == 10_000 || stored == total) {
+                store.apply(batch);
+                batch.clear();
+            }
+        }
+        List<Task> firstScreen = new ArrayList<>();
+        for (int id = stored; id > 0 && firstScreen.size() < StartupSnapshot.ROWS; id--) {
+            firstScreen.add(task(id)); // SQLite mode lists newest first
+        }
+        new StartupSnapshot(firstScreen, stored)
+                .write(StartupSnapshot.file(ctx.getFilesDir(), MainActivity.Mode.SQLITE));
+    }
+
+    private static Task task(int id) {
+        return new Task(id, "Task " + id, id % 3 == 0 ? "Oct 20, 2025" : "",
+                "notes for task " + id, id % 4 == 0 ? "Done" : "Pending");
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.eecs4443lab3;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Mirrors between the two file-backed stores, which run on a plain JVM.
+ */
+public class StoreMigrationTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private TaskJournal journal;
+    private MappedTaskStore mapped;
+
+    @Before
+    public void setUp() throws IOException {
+        journal = new TaskJournal(tmp.newFile("tasks.journal"));
+        mapped = new MappedTaskStore(tmp.newFolder("mapped"), "tasks");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        journal.close();
+        mapped.close();
+    }
+
+    private static TaskChangeSet inserts(int from, int to) {
+        TaskChangeSet c = new TaskChangeSet();
+        for (int i = from; i <= to; i++) {
+            c.markInserted(new Task(i, "Task " + i, "Oct 20, 2025", "notes " + i,
+                    i % 4 == 0 ? "Done" : "Pending"));
+        }
+        return c;
+    }
+
+    private static Map<Long, Task> byId(List<Task> tasks) {
+        Map<Long, Task> m = new HashMap<>();
+        for (Task t : tasks) {
+            m.put(t.id, t);
+        }
+        return m;
+    }
+
+    @Test
+    public void mirror_copiesEverything_intoAnEmptyStore() throws IOException {
+        journal.apply(inserts(1, 2_500));
+
+        StoreMigration.Result r = StoreMigration.mirror(journal, mapped, (done, total) -> { });
+
+        assertEquals(2_500, r.copied);
+        assertEquals(0, r.unchanged);
+        assertEquals(byId(journal.loadAll()), byId(mapped.loadAll()));
+    }
+
+    @Test
+    public void mirror_writesOnlyDifferences_andRemovesExtras() throws IOException {
+        journal.apply(inserts(1, 1_000));
+        StoreMigration.mirror(journal, mapped, (done, total) -> { });
+
+        TaskChangeSet edits = new TaskChangeSet();
+        edits.markUpdated(new Task(5, "Five", null, "", "Done"));
+        edits.markDeleted(6);
+        edits.markInserted(new Task(1_001, "New", "", null, null));
+        journal.apply(edits);
+        TaskChangeSet stray = new TaskChangeSet();
+        stray.markInserted(new Task(2_000, "Only in target", "", "", "Pending"));
+        mapped.apply(stray);
+
+        StoreMigration.Result r = StoreMigration.mirror(journal, mapped, (done, total) -> { });
+
+        assertEquals(2, r.copied);
+        assertEquals(998, r.unchanged);
+        assertEquals(2, r.removed);
+        assertEquals(byId(journal.loadAll()), byId(mapped.loadAll()));
+    }
+
+    @Test
+    public void mirror_reportsProgress_upToTheSourceSize() throws IOException {
+        journal.apply(inserts(1, 3_000));
+        int[] last = new int[2];
+
+        StoreMigration.mirror(journal, mapped, (done, total) -> {
+            assertTrue(done >= last[0]);
+            last[0] = done;
+            last[1] = total;
+        });
+
+        assertEquals(3_000, last[0]);
+        assertEquals(3_000, last[1]);
+    }
+
+    @Test
+    public void contentHash_tellsNullFromEmpty() {
+        Task a = new Task(1, "T", null, "", "Pending");
+        Task b = new Task(1, "T", "", null, "Pending");
+        assertNotEquals(StoreMigration.contentHash(a), StoreMigration.contentHash(b));
+        assertEquals(StoreMigration.contentHash(a),
+                StoreMigration.contentHash(new Task(9, "T", null, "", "Pending")));
+    }
+
+    @Test
+    public void mirror_100kTasks_writesFullBatches_thenNothing() throws IOException {
+        journal.apply(inserts(1, 100_000));
+        CountingStore target = new CountingStore(mapped);
+        int batchSize = mapped.writeBatchSize();
+
+        StoreMigration.mirror(journal, target, (done, total) -> { });
+
+        assertEquals(100_000, target.rows);
+        assertTrue("largest batch " + target.largestBatch, target.largestBatch <= batchSize);
+        assertEquals(100_000 / batchSize + 1, target.applies); // full batches, then the deletes
+
+        target.rows = 0;
+        target.applies = 0;
+        StoreMigration.Result again = StoreMigration.mirror(journal, target, (done, total) -> { });
+
+        assertEquals(100_000, again.unchanged);
+        assertEquals(0, target.rows);
+        assertEquals(1, target.applies);
+    }
+
+    /** Passes everything to a real store, counting the writes. */
+    private static class CountingStore implements TaskStore {
+        final TaskStore store;
+        int applies;
+        int rows;
+        int largestBatch;
+
+        CountingStore(TaskStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public List<Task> loadAll() throws IOException {
+            return store.loadAll();
+        }
+
+        @Override
+        public Task get(long id) throws IOException {
+            return store.get(id);
+        }
+
+        @Override
+        public void apply(TaskChangeSet changes) throws IOException {
+            applies++;
+            rows += changes.size();
+            largestBatch = Math.max(largestBatch, changes.size());
+            store.apply(changes);
+        }
+
+        @Override
+        public long lastId() throws IOException {
+            return store.lastId();
+        }
+
+        @Override
+        public int count() throws IOException {
+            return store.count();
+        }
+
+        @Override
+        public void scan(Visitor visitor) throws IOException {
+            store.scan(visitor);
+        }
+
+        @Override
+        public int writeBatchSize() {
+            return store.writeBatchSize();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * End-to-end sync between two devices through a stand-in server on
+ * localhost: add, edit and delete converge; pulled tasks take the next
+ * local ids; concurrent edits merge per field, and equal stamps resolve the
+ * same way on both devices; a sync with nothing to do and
+ * a one-field edit among many tasks cost one small round trip.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SyncEngineTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private FakeServer server;
+    private Device a;
+    private Device b;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeServer();
+        a = new Device("a");
+        b = new Device("b");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        a.close();
+        b.close();
+        server.stop();
+    }
+
+    @Test
+    public void addEditDelete_converge() throws IOException {
+        a.add("Buy milk", "Oct 20, 2025", "2%");
+        a.add("Call mom", "", "");
+        a.add("Pay rent", "Nov 1, 2025", "");
+        a.sync();
+        b.sync();
+        assertEquals(a.contents(), b.contents());
+        assertEquals(3, b.contents().size());
+
+        b.edit("Buy milk", "Buy oat milk", null);
+        b.delete("Call mom");
+        b.sync();
+        a.sync();
+
+        assertEquals(List.of("Buy oat milk|Oct 20, 2025|2%|Pending", "Pay rent|Nov 1, 2025||Pending"),
+                a.contents());
+        assertEquals(a.contents(), b.contents());
+    }
+
+    @Test
+    public void pulledTasks_getTheNextLocalIds() throws IOException {
+        b.add("Own task", "", "");
+        a.add("Buy milk", "", "");
+        a.add("Call mom", "", "");
+        a.sync();
+        b.sync();
+
+        long own = b.find("Own task").id;
+        long milk = b.find("Buy milk").id;
+        long mom = b.find("Call mom").id;
+        assertTrue(milk > own && mom > own && milk != mom);
+        assertEquals(Math.max(milk, mom), b.store.lastId());
+
+        // The local id maps back to the same task on the other device
+        b.edit("Buy milk", "Buy oat milk", null);
+        b.sync();
+        a.sync();
+        assertEquals(List.of("Buy oat milk|||Pending", "Call mom|||Pending", "Own task|||Pending"),
+                a.contents());
+        assertEquals(a.contents(), b.contents());
+    }
+
+    @Test
+    public void concurrentEditsOfDifferentFields_areBothKept() throws IOException {
+        a.add("Essay", "", "");
+        a.sync();
+        b.sync();
+
+        a.edit("Essay", "Essay draft", null);
+        b.edit("Essay", null, "Done");
+        a.sync();
+        b.sync();
+        a.sync();
+
+        assertEquals(List.of("Essay draft|||Done"), a.contents());
+        assertEquals(a.contents(), b.contents());
+    }
+
+    @Test
+    public void concurrentEditsOfOneField_laterWins() throws IOException, InterruptedException {
+        a.add("Lab", "", "");
+        a.sync();
+        b.sync();
+
+        a.edit("Lab", "Lab 3", null);
+        Thread.sleep(5);
+        b.edit("Lab", "Lab 4", null);
+        b.sync(); // the later edit reaches the server first
+        a.sync();
+        b.sync();
+
+        assertEquals(List.of("Lab 4|||Pending"), a.contents());
+        assertEquals(a.contents(), b.contents());
+    }
+
+    @Test
+    public void concurrentEditsOfOneField_withEqualStamps_greaterDeviceWins() throws IOException {
+        a.add("Lab", "", "");
+        a.add("Essay", "", "");
+        a.sync();
+        b.sync();
+        String winner = a.state.device().compareTo(b.state.device()) > 0 ? "a" : "b";
+
+        // a's edit reaches the server first
+        a.edit("Lab", "Lab a", null);
+        b.edit("Lab", "Lab b", null);
+        b.stampTitleLike(a, "Lab b", "Lab a");
+        a.sync();
+        b.sync();
+        a.sync();
+
+        // b's edit reaches the server first
+        a.edit("Essay", "Essay a", null);
+        b.edit("Essay", "Essay b", null);
+        b.stampTitleLike(a, "Essay b", "Essay a");
+        b.sync();
+        a.sync();
+        b.sync();
+
+        assertEquals(List.of("Essay " + winner + "|||Pending", "Lab " + winner + "|||Pending"), a.contents());
+        assertEquals(a.contents(), b.contents());
+    }
+
+    @Test
+    public void delete_winsOverConcurrentEdit() throws IOException, InterruptedException {
+        a.add("Gym", "", "");
+        a.sync();
+        b.sync();
+
+        b.edit("Gym", null, "Done");
+        Thread.sleep(5);
+        a.delete("Gym");
+        b.sync();
+        a.sync();
+        b.sync();
+
+        assertTrue(a.contents().isEmpty());
+        assertTrue(b.contents().isEmpty());
+    }
+
+    @Test
+    public void syncWithNothingToDo_isOneSmallRoundTrip() throws IOException {
+        a.add("Read", "", "");
+        a.sync();
+        b.sync();
+
+        SyncEngine.Stats run = b.sync();
+
+        assertEquals(1, run.roundTrips);
+        assertEquals(0, run.pushed);
+        assertEquals(0, run.pulled);
+        assertTrue("sent " + run.bytesSent + " bytes", run.bytesSent < 128);
+        assertTrue("received " + run.bytesReceived + " bytes", run.bytesReceived < 128);
+    }
+
+    @Test
+    public void oneEditAmongManyTasks_sendsOnlyThatField() throws IOException {
+        TaskChangeSet many = new TaskChangeSet();
+        for (int i = 1; i <= 5_000; i++) {
+            many.markInserted(new Task(i, "Task " + i, "Oct 20, 2025", "notes for task " + i, "Pending"));
+        }
+        a.save(many);
+        SyncEngine.Stats seed = a.sync();
+        SyncEngine.Stats pull = b.sync();
+        assertEquals(5_000, seed.pushed);
+        assertEquals(5_000 / SyncEngine.BATCH + 1, seed.roundTrips);
+        assertEquals(5_000, pull.pulled);
+        assertEquals(5_000, b.contents().size());
+
+        a.edit("Task 1234", null, "Done");
+        SyncEngine.Stats push = a.sync();
+        SyncEngine.Stats get = b.sync();
+
+        assertEquals(1, push.roundTrips);
+        assertEquals(1, push.pushed);
+        assertTrue("sent " + push.bytesSent + " bytes", push.bytesSent < 200);
+        assertEquals(1, get.pulled);
+        assertTrue("received " + get.bytesReceived + " bytes", get.bytesReceived < 200);
+        assertEquals(a.contents(), b.contents());
+    }
+
+    @Test
+    public void failedSync_keepsChangesForTheNextOne() throws IOException {
+        a.add("Groceries", "", "");
+        server.failNext = true;
+        try {
+            a.sync();
+            fail("server error was not reported");
+        } catch (IOException expected) {
+        }
+
+        SyncEngine.Stats retry = a.sync();
+        b.sync();
+
+        assertEquals(1, retry.pushed);
+        assertEquals(List.of("Groceries|||Pending"), b.contents());
+    }
+
+    @Test
+    public void backoff_doublesUpToThePeriod_withJitter() {
+        Random random = new Random(1);
+        long previousCap = 0;
+        for (int failures = 1; failures <= 30; failures++) {
+            long cap = Math.min(SyncEngine.BACKOFF_BASE_MS << Math.min(failures - 1, 20), SyncEngine.PERIOD_MS);
+            long delay = SyncEngine.backoffMs(failures, random);
+            assertTrue(failures + ": " + delay, delay >= cap / 2 && delay <= cap);
+            assertTrue(cap >= previousCap);
+            previousCap = cap;
+        }
+        assertEquals(SyncEngine.PERIOD_MS, previousCap);
+    }
+
+    /*
+     * --------------------------------- Devices ----------------------------------
+     */
+
+    /** One install: a journal store, its persist queue and its sync engine. */
+    private final class Device {
+        final TaskJournal store;
+        final PersistQueue queue = new PersistQueue();
+        final SyncState state;
+        final SyncEngine engine;
+
+        Device(String name) throws IOException {
+            Context ctx = RuntimeEnvironment.getApplication();
+            ctx.deleteDatabase("sync-" + name + ".db");
+            store = new TaskJournal(tmp.newFile(name + ".journal"));
+            state = new SyncState(ctx, "sync-" + name + ".db");
+            engine = new SyncEngine(state, queue);
+            engine.setStore(store);
+            engine.setEndpoint(server.url());
+        }
+
+        /** Saves the way MainActivity does: the write, then sync records it. */
+        void save(TaskChangeSet changes) {
+            TaskChangeSet saved = new TaskChangeSet();
+            saved.addAll(changes);
+            queue.submit(store, changes);
+            queue.submitWork(() -> engine.record(saved));
+            queue.awaitIdle(10_000);
+        }
+
+        void add(String title, String deadline, String notes) throws IOException {
+            TaskChangeSet c = new TaskChangeSet();
+            c.markInserted(new Task(store.lastId() + 1, title, deadline, notes, "Pending"));
+            save(c);
+        }
+
+        /** Null leaves a field as it is. */
+        void edit(String title, String newTitle, String newStatus) throws IOException {
+            Task t = find(title);
+            TaskChangeSet c = new TaskChangeSet();
+            c.markUpdated(new Task(t.id, newTitle != null ? newTitle : t.title, t.deadline, t.notes,
+                    newStatus != null ? newStatus : t.status));
+            save(c);
+        }
+
+        void delete(String title) throws IOException {
+            TaskChangeSet c = new TaskChangeSet();
+            c.markDeleted(find(title));
+            save(c);
+        }
+
+        SyncEngine.Stats sync() throws IOException {
+            return engine.syncOnce();
+        }
+
+        /** Gives the unsent title edit of {@code title} the stamp {@code other} gave {@code otherTitle}. */
+        void stampTitleLike(Device other, String title, String otherTitle) throws IOException {
+            long stamp = other.state.byLocalId(other.find(otherTitle).id).stamps[SyncWire.TITLE];
+            long id = find(title).id;
+            queue.submitWork(() -> {
+                SyncState.Row row = state.byLocalId(id);
+                row.stamps[SyncWire.TITLE] = stamp;
+                state.put(row);
+            });
+            queue.awaitIdle(10_000);
+        }
+
+        /** Every task as "title|deadline|notes|status", sorted; ids differ between devices. */
+        List<String> contents() throws IOException {
+            List<String> out = new ArrayList<>();
+            for (Task t : store.loadAll()) {
+                out.add(t.title + "|" + t.deadline + "|" + (t.notes != null ? t.notes : "") + "|" + t.status);
+            }
+            Collections.sort(out);
+            return out;
+        }
+
+        private Task find(String title) throws IOException {
+            for (Task t : store.loadAll()) {
+                if (t.title.equals(title)) {
+                    return t;
+                }
+            }
+            throw new AssertionError("No task " + title);
+        }
+
+        void close() throws IOException {
+            engine.shutdown();
+            queue.awaitIdle(10_000);
+            queue.shutdown();
+            state.close();
+            store.close();
+        }
+    }
+
+    /*
+     * ---------------------------------- Server ----------------------------------
+     */
+
+    /**
+     * Stand-in for the sync backend: keeps every field with its stamp and the
+     * device that wrote it, resolves last-writer-wins per field (equal stamps
+     * go to the greater device id; a delete beats everything), and versions each accepted change so a pull returns
+     * what other devices changed after the caller's cursor, a page at a time.
+     */
+    private static final class FakeServer {
+        static final int PAGE = 500;
+
+        static final class Entry {
+            final String[] values = new String[SyncWire.FIELDS.length];
+            final long[] stamps = new long[SyncWire.FIELDS.length];
+            final String[] writers = new String[SyncWire.FIELDS.length];
+            final long[] versions = new long[SyncWire.FIELDS.length];
+            long deletedAt;
+            String deletedBy;
+            long deletedVersion;
+        }
+
+        final HttpServer http;
+        final Map<String, Entry> entries = new HashMap<>();
+        final List<String> log = new ArrayList<>(); // gid changed at version i + 1
+        volatile boolean failNext;
+
+        FakeServer() throws IOException {
+            http = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            http.createContext("/sync", this::handle);
+            http.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + http.getAddress().getPort() + "/";
+        }
+
+        void stop() {
+            http.stop(0);
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            if (failNext) {
+                failNext = false;
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            SyncWire.Batch request = SyncWire.read(exchange.getRequestBody());
+            SyncWire.Batch response;
+            synchronized (this) {
+                for (SyncWire.Delta d : request.deltas) {
+                    push(request.device, d);
+                }
+                response = pull(request.device, request.cursor);
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            SyncWire.write(response, body);
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, body.size());
+            try (OutputStream out = exchange.getResponseBody()) {
+                body.writeTo(out);
+            }
+        }
+
+        private void push(String device, SyncWire.Delta d) {
+            Entry e = entries.get(d.gid);
+            if (e == null) {
+                e = new Entry();
+                entries.put(d.gid, e);
+            }
+            if (e.deletedAt != 0) {
+                return;
+            }
+            if (d.deletedAt != 0) {
+                e.deletedAt = d.deletedAt;
+                e.deletedBy = device;
+                log.add(d.gid);
+                e.deletedVersion = log.size();
+                return;
+            }
+            for (int f = 0; f < SyncWire.FIELDS.length; f++) {
+                long stamp = d.stamps[f];
+                if (stamp != 0 && (stamp > e.stamps[f]
+                        || stamp == e.stamps[f] && device.compareTo(String.valueOf(e.writers[f])) > 0)) {
+                    e.values[f] = d.values[f];
+                    e.stamps[f] = stamp;
+                    e.writers[f] = device;
+                    log.add(d.gid);
+                    e.versions[f] = log.size();
+                }
+            }
+        }
+
+        private SyncWire.Batch pull(String device, long cursor) {
+            Set<String> page = new LinkedHashSet<>();
+            long upTo = cursor;
+            while (upTo < log.size() && page.size() < PAGE) {
+                page.add(log.get((int) upTo));
+                upTo++;
+            }
+            SyncWire.Batch out = new SyncWire.Batch();
+            out.device = "server";
+            out.cursor = upTo;
+            out.more = upTo < log.size();
+            for (String gid : page) {
+                Entry e = entries.get(gid);
+                SyncWire.Delta d = new SyncWire.Delta(gid);
+                boolean any = false;
+                if (e.deletedAt != 0) {
+                    if (e.deletedVersion > cursor && !device.equals(e.deletedBy)) {
+                        d.deletedAt = e.deletedAt;
+                        any = true;
+                    }
+                } else {
+                    for (int f = 0; f < SyncWire.FIELDS.length; f++) {
+                        if (e.versions[f] > cursor && e.versions[f] <= upTo && !device.equals(e.writers[f])) {
+                            d.set(f, e.values[f], e.stamps[f], e.writers[f]);
+                            any = true;
+                        }
+                    }
+                }
+                if (any) {
+                    out.deltas.add(d);
+                }
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+import android.content.DialogInterface;
+import android.os.Looper;
+import android.view.View;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.shadows.ShadowDialog;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Rows edited and deleted while a reload's diff is still running are neither
+ * lost nor allowed to break the list: the stale diff is dropped and the store
+ * read again.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TaskAdapterDiffTest {
+
+    private static final int STORED = 40;
+    private static final MainActivity.Mode MODE = MainActivity.Mode.SHARED_PREFS; // an in-memory list
+
+    private Context ctx;
+
+    @Before
+    public void setUp() {
+        ctx = RuntimeEnvironment.getApplication();
+        Metrics.setEnabled(ctx, true);
+        Metrics.reset();
+        TaskChangeSet c = new TaskChangeSet();
+        for (long id = 1; id <= STORED; id++) {
+            c.markInserted(new Task(id, "Task " + id, "", "notes " + id, "Pending"));
+        }
+        TaskStores.sqlite(ctx).apply(c);
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setEnabled(ctx, false);
+        TaskCache.clear();
+        TaskStores.closeAll();
+    }
+
+    /** Runs background work and main-thread messages until {@code done} holds. */
+    private static void settle(BooleanSupplier done) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!done.getAsBoolean()) {
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            shadowOf(Looper.getMainLooper()).idle();
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private static long reloads() {
+        return Metrics.histogram(Metrics.Path.RELOAD, MODE).count();
+    }
+
+    @Test
+    public void editsDuringPendingDiff_areKept() throws InterruptedException {
+        ActivityController<MainActivity> controller = Robolectric.buildActivity(MainActivity.class).setup();
+        MainActivity activity = controller.get();
+        RecyclerView list = activity.findViewById(R.id.recycler);
+        View progress = activity.findViewById(R.id.migrationProgress);
+        shadowOf(activity).clickMenuItem(R.id.action_mode_prefs);
+        settle(() -> progress.getVisibility() == View.GONE && reloads() > 0
+                && list.getAdapter().getItemCount() == STORED);
+
+        // Hold the diff thread, then start a reload whose diff queues behind it
+        CountDownLatch gate = new CountDownLatch(1);
+        MainActivity.TaskAdapter.DIFF_EXECUTOR.execute(() -> {
+            try {
+                gate.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        long before = reloads();
+        shadowOf(activity).clickMenuItem(R.id.action_compact_table);
+        settle(() -> reloads() > before);
+
+        long editedId = list.getAdapter().getItemId(0);
+        long deletedId = list.getAdapter().getItemId(1);
+        pickOption(list, 0, 0); // Edit
+        settle(() -> ShadowDialog.getLatestDialog().findViewById(R.id.btnSave) != null);
+        AlertDialog edit = (AlertDialog) ShadowDialog.getLatestDialog();
+        ((TextView) edit.findViewById(R.id.inputTitle)).setText("Edited during diff");
+        edit.findViewById(R.id.btnSave).performClick();
+        shadowOf(Looper.getMainLooper()).idle();
+        pickOption(list, 1, 1); // Delete
+        ((AlertDialog) ShadowDialog.getLatestDialog()).getButton(DialogInterface.BUTTON_POSITIVE).performClick();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        gate.countDown();
+        settle(() -> reloads() > before + 1 && list.getAdapter().getItemCount() == STORED - 1);
+        settle(() -> { // the second read's diff lands
+            RecyclerView.ViewHolder h = list.findViewHolderForItemId(editedId);
+            return h != null && "Edited during diff".equals(
+                    ((TextView) h.itemView.findViewById(android.R.id.text1)).getText().toString());
+        });
+        assertNull(list.findViewHolderForItemId(deletedId));
+        list.requestLayout(); // a stale diff would leave RecyclerView inconsistent here
+        shadowOf(Looper.getMainLooper()).idle();
+        controller.pause().stop().destroy();
+    }
+
+    /** Long-presses row {@code position} and picks item {@code which} of its options. */
+    private static void pickOption(RecyclerView list, int position, int which) {
+        list.findViewHolderForAdapterPosition(position).itemView.performLongClick();
+        shadowOf(Looper.getMainLooper()).idle();
+        ListView items = ((AlertDialog) ShadowDialog.getLatestDialog()).getListView();
+        items.performItemClick(items.getAdapter().getView(which, null, items), which, which);
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+}
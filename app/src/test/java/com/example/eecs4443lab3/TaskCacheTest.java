@@ -0,0 +1,72 @@
+package com.example.eecs4443lab3;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+
+/**
+ * Size-bounded LRU behaviour and the parked-edit hand-off of {@link TaskCache}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TaskCacheTest {
+
+    private static final MainActivity.Mode MODE = MainActivity.Mode.SQLITE;
+
+    @After
+    public void tearDown() {
+        TaskCache.clear();
+    }
+
+    private static String chars(int n) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) {
+            sb.append('x');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void entries_areKeptPerMode() {
+        Task t = new Task(7, "Seven", "", "", "Pending");
+        TaskCache.put(MODE, t);
+
+        assertSame(t, TaskCache.get(MODE, 7));
+        assertNull(TaskCache.get(MainActivity.Mode.JOURNAL, 7));
+    }
+
+    @Test
+    public void eviction_isBySize_leastRecentlyUsedFirst() {
+        String notes = chars(1 << 20); // 1M chars, ~2 MB each
+        int fits = TaskCache.MAX_BYTES / TaskCache.sizeOfTask(new Task(0, "", "", notes, ""));
+        for (long id = 1; id <= fits; id++) {
+            TaskCache.put(MODE, new Task(id, "T" + id, "", notes, "Pending"));
+        }
+        assertNotNull(TaskCache.get(MODE, 1)); // touch: now most recently used
+
+        TaskCache.put(MODE, new Task(fits + 1, "one more", "", notes, "Pending"));
+
+        assertNotNull(TaskCache.get(MODE, 1));
+        assertNull(TaskCache.get(MODE, 2));
+        assertNotNull(TaskCache.get(MODE, fits + 1));
+    }
+
+    @Test
+    public void parkedEdits_surviveEviction_andAreTakenOnce() {
+        Task edited = new Task(3, "Edited", "", chars(1_000), "Done");
+        TaskCache.putEdited(MODE, edited);
+        TaskCache.clear();
+
+        assertSame(edited, TaskCache.takeEdited(MODE, 3));
+        assertNull(TaskCache.takeEdited(MODE, 3));
+    }
+
+    @Test
+    public void sizeOfTask_growsWithNotes() {
+        int small = TaskCache.sizeOfTask(new Task(1, "T", "", "10 bytes..", "Pending"));
+        int large = TaskCache.sizeOfTask(new Task(1, "T", "", chars(1 << 20), "Pending"));
+        assertTrue(large - small >= 2 * ((1 << 20) - 10));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.eecs4443lab3;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TaskChangeSet}: a save should cost one row write
+ * per edited task, no matter how many tasks are in the table.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TaskChangeSetTest {
+
+    @Test
+    public void singleEdit_writesSameRows_asTableGrows() {
+        TaskDbHelper helper = new TaskDbHelper(RuntimeEnvironment.getApplication());
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            // Logs every row SQLite writes to the tasks and notes tables, on the writer's connection
+            db.execSQL("CREATE TEMP TABLE written(row INTEGER)");
+            for (String table : new String[] { "tasks", "task_notes" }) {
+                for (String op : new String[] { "INSERT", "UPDATE", "DELETE" }) {
+                    db.execSQL("CREATE TEMP TRIGGER log_" + table + "_" + op + " AFTER " + op
+                            + " ON main." + table + " BEGIN INSERT INTO written VALUES(1); END");
+                }
+            }
+
+            int stored = 0;
+            for (int n : new int[] { 100, 10_000, 100_000 }) {
+                TaskChangeSet fill = new TaskChangeSet();
+                for (long id = stored + 1; id <= n; id++) {
+                    fill.markInserted(new Task(id, "Task " + id, "", "notes " + id, "Pending"));
+                }
+                helper.apply(fill);
+                stored = n;
+
+                TaskChangeSet changes = new TaskChangeSet();
+                changes.markUpdated(new Task(n / 2, "Edited", "", "edited notes", "Pending"));
+                long before = rowsWritten(db);
+                helper.apply(changes);
+
+                // The task's row and its notes row
+                assertEquals("rows written for one edit, n=" + n, 2, rowsWritten(db) - before);
+            }
+        } finally {
+            helper.close();
+        }
+    }
+
+    /** Read in a transaction so it runs on the connection holding the temp table. */
+    private static long rowsWritten(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            return DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM written", null);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Test
+    public void updateAfterInsert_staysSingleInsert() {
+        TaskChangeSet changes = new TaskChangeSet();
+        Task t = new Task(7, "New", "", "", null);
+        changes.markInserted(t);
+        changes.markUpdated(t);
+
+        assertEquals(1, changes.inserted().size());
+        assertTrue(changes.updated().isEmpty());
+    }
+
+    @Test
+    public void deleteOfUnsavedInsert_cancelsIt() {
+        TaskChangeSet changes = new TaskChangeSet();
+        Task t = new Task(7, "New", "", "", null);
+        changes.markInserted(t);
+        changes.markDeleted(t);
+
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void deleteOfSavedRow_dropsPendingUpdate() {
+        TaskChangeSet changes = new TaskChangeSet();
+        Task t = new Task(3, "Old", "", "", null);
+        changes.markUpdated(t);
+        changes.markDeleted(t);
+
+        assertTrue(changes.updated().isEmpty());
+        assertEquals(1, changes.deleted().size());
+        assertEquals(Long.valueOf(3), changes.deleted().get(0));
+    }
+}
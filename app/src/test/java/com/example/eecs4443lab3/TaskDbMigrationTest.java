@@ -0,0 +1,162 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Upgrades a version 1 tasks.db (free-text deadline and status) to the typed
+ * schema and checks that every row survives with the same visible values.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TaskDbMigrationTest {
+
+    private static final int ROWS = 1_201; // spans several migration batches
+    private static final String PICKER_DATE = "Oct 20, 2025";
+
+    private Context ctx;
+    private SqliteTaskStore store;
+
+    @Before
+    public void createLegacyDatabase() {
+        ctx = RuntimeEnvironment.getApplication();
+        File path = ctx.getDatabasePath("tasks.db");
+        path.getParentFile().mkdirs();
+        SQLiteDatabase v1 = SQLiteDatabase.openOrCreateDatabase(path, null);
+        v1.execSQL("CREATE TABLE tasks (" +
+                "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "title TEXT NOT NULL," +
+                "deadline TEXT," +
+                "notes TEXT," +
+                "status TEXT)");
+        SQLiteStatement insert = v1.compileStatement(
+                "INSERT INTO tasks(title, deadline, notes, status) VALUES(?,?,?,?)");
+        for (int i = 1; i <= ROWS; i++) {
+            insert.bindString(1, "Task " + i);
+            insert.bindString(2, legacyDeadline(i));
+            insert.bindString(3, "notes " + i);
+            insert.bindString(4, i % 4 == 0 ? "Done" : "Pending");
+            insert.executeInsert();
+        }
+        insert.close();
+        v1.execSQL("DELETE FROM tasks WHERE _id = " + ROWS); // retired id
+        v1.setVersion(1);
+        v1.close();
+
+        store = new SqliteTaskStore(ctx);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    private static String legacyDeadline(int i) {
+        switch (i % 3) {
+            case 0: return PICKER_DATE;
+            case 1: return "";
+            default: return "after exams"; // typed by hand, not a picker date
+        }
+    }
+
+    @Test
+    public void upgrade_keepsEveryRowAndItsText() throws IOException {
+        List<Task> all = new ArrayList<>();
+        store.scan(all::add);
+        assertEquals(ROWS - 1, all.size());
+        for (Task t : all) {
+            int i = (int) t.id;
+            assertEquals("Task " + i, t.title);
+            assertEquals(legacyDeadline(i), t.deadline);
+            assertEquals("notes " + i, t.notes);
+            assertEquals(i % 4 == 0 ? "Done" : "Pending", t.status);
+        }
+    }
+
+    @Test
+    public void upgrade_keepsRetiredIds() {
+        assertEquals(ROWS, store.lastId());
+    }
+
+    @Test
+    public void upgrade_typesPickerDates_forRangeQueries() {
+        long day = TaskDates.toEpochDay(PICKER_DATE);
+        List<Task> due = store.queryDue(day, day, null);
+        assertEquals(ROWS / 3, due.size());
+
+        List<Task> pending = store.queryDue(day - 7, day + 7, TaskDbHelper.STATUS_PENDING);
+        for (Task t : pending) {
+            assertEquals("Pending", t.status);
+            assertEquals(PICKER_DATE, t.deadline);
+        }
+        assertTrue(pending.size() < due.size());
+    }
+
+    @Test
+    public void upgrade_rebuildsSearchIndex() {
+        List<Task> hits = store.search(TaskSearch.matchExpression("exams"), SqliteTaskStore.SEARCH_LIMIT);
+        assertTrue(hits.isEmpty()); // deadlines are not indexed
+        assertEquals(1, store.search(TaskSearch.matchExpression("task 1200"), 10).size());
+        assertEquals(1, store.search(TaskSearch.matchExpression("notes 1199"), 10).size());
+    }
+
+    @Test
+    public void upgrade_movesNotesOutOfTheListRows() {
+        for (Task t : store.loadAll()) {
+            assertFalse(t.notesLoaded);
+        }
+        assertEquals("notes 17", store.get(17).notes);
+        long inline = DatabaseUtils.longForQuery(store.getReadableDatabase(),
+                "SELECT COUNT(*) FROM tasks WHERE notes IS NOT NULL", null);
+        assertEquals(0, inline);
+    }
+
+    @Test
+    public void searchIndex_keepsOnlyTheStartOfLongNotes() throws IOException {
+        StringBuilder notes = new StringBuilder("umbrella");
+        while (notes.length() < 20 * TaskSearch.NOTES_INDEXED) {
+            notes.append(" filler").append(notes.length());
+        }
+        notes.append(" wellington");
+        TaskChangeSet c = new TaskChangeSet();
+        c.markUpdated(new Task(5, "Task 5", "", notes.toString(), "Pending"));
+        store.apply(c);
+
+        assertEquals(notes.toString(), store.get(5).notes);
+        assertEquals(1, store.search(TaskSearch.matchExpression("umbrella"), 10).size());
+        assertTrue(store.search(TaskSearch.matchExpression("wellington"), 10).isEmpty());
+        long longest = DatabaseUtils.longForQuery(store.getReadableDatabase(),
+                "SELECT MAX(LENGTH(notes)) FROM tasks_fts", null);
+        assertTrue("index keeps " + longest + " chars of notes", longest <= TaskSearch.NOTES_INDEXED);
+    }
+
+    @Test
+    public void searchIndex_followsEditsAfterUpgrade() throws IOException {
+        TaskChangeSet c = new TaskChangeSet();
+        c.markUpdated(new Task(5, "Task 5", "", "remember the umbrella", "Pending"));
+        c.markUpdated(Task.row(6, "Renamed six", "", "Pending"));
+        c.markDeleted(7);
+        store.apply(c);
+
+        assertEquals(1, store.search(TaskSearch.matchExpression("umbrella"), 10).size());
+        assertTrue(store.search(TaskSearch.matchExpression("notes 5"), 10).isEmpty());
+        assertEquals(1, store.search(TaskSearch.matchExpression("renamed"), 10).size());
+        assertEquals(1, store.search(TaskSearch.matchExpression("notes 6"), 10).size()); // notes kept
+        assertTrue(store.search(TaskSearch.matchExpression("task 7"), 10).isEmpty());
+    }
+}
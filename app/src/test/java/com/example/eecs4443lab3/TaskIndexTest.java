@@ -0,0 +1,180 @@
+package com.example.eecs4443lab3;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Every {@link TaskIndex} view matches filtering and sorting the list from
+ * scratch, through random adds, edits and deletes; on 100k tasks a switch of
+ * order or filter compares no keys, and an edit compares O(log n) of them
+ * instead of re-sorting.
+ */
+public class TaskIndexTest {
+
+    private static final long TODAY = 20_000;
+    private static final int LARGE = 100_000;
+
+    private final Random random = new Random(4443);
+    private final Map<Long, Long> seqs = new HashMap<>(); // id -> storage order
+    private final Map<String, Integer> days = new HashMap<>(); // deadline -> TaskQuery.dayKey
+    private long nextSeq;
+
+    private Task randomTask(long id) {
+        int kind = random.nextInt(6);
+        String deadline = kind == 0 ? "" : kind == 1 ? "after exams" : TaskDates.format(TODAY - 20 + random.nextInt(40));
+        String title = random.nextBoolean() ? "Task " + random.nextInt(50) : "task " + random.nextInt(50);
+        return new Task(id, title, deadline, null, random.nextInt(3) == 0 ? "Done" : "Pending");
+    }
+
+    private Task stored(Task t) {
+        seqs.put(t.id, nextSeq++);
+        return t;
+    }
+
+    /** The view the index should give, built the slow way. */
+    private List<Task> expected(List<Task> all, TaskQuery q) {
+        List<Task> out = new ArrayList<>();
+        for (Task t : all) {
+            if (q.matches(t, TODAY)) {
+                out.add(t);
+            }
+        }
+        out.sort(order(q.sort));
+        return out;
+    }
+
+    private Comparator<Task> order(TaskQuery.Sort sort) {
+        switch (sort) {
+            case DEADLINE:
+                return Comparator.comparingInt(this::dayKey).thenComparingLong(t -> t.id);
+            case TITLE:
+                return Comparator.comparing((Task t) -> t.title, String.CASE_INSENSITIVE_ORDER)
+                        .thenComparingLong(t -> t.id);
+            case STATUS:
+                return Comparator.comparingInt((Task t) -> TaskDbHelper.statusCode(t.status))
+                        .thenComparing(Comparator.comparingLong((Task t) -> t.id).reversed());
+            default:
+                return Comparator.comparingLong(t -> seqs.get(t.id));
+        }
+    }
+
+    private int dayKey(Task t) {
+        return days.computeIfAbsent(t.deadline, d -> TaskQuery.dayKey(t));
+    }
+
+    private static List<TaskQuery> allQueries() {
+        List<TaskQuery> out = new ArrayList<>();
+        for (TaskQuery.Sort s : TaskQuery.Sort.values()) {
+            for (TaskQuery.Filter f : TaskQuery.Filter.values()) {
+                out.add(new TaskQuery(s, f));
+            }
+        }
+        return out;
+    }
+
+    @Test
+    public void randomEdits_matchSortingFromScratch() {
+        List<Task> all = new ArrayList<>();
+        long nextId = 1;
+        for (; nextId <= 500; nextId++) {
+            all.add(stored(randomTask(nextId)));
+        }
+        TaskIndex index = TaskIndex.of(all, TODAY);
+        List<TaskQuery> queries = allQueries();
+
+        for (int step = 0; step < 2_000; step++) {
+            TaskQuery q = queries.get(random.nextInt(queries.size()));
+            TaskIndex.View view = index.view(q);
+            List<Task> before = expected(all, q);
+            int op = random.nextInt(10);
+            if (op < 4 || before.isEmpty()) {
+                Task t = stored(randomTask(nextId++));
+                all.add(t);
+                assertEquals(expected(all, q).indexOf(t), view.insert(t));
+            } else if (op < 8) {
+                int at = random.nextInt(before.size());
+                Task old = before.get(at);
+                Task t = randomTask(old.id);
+                all.set(all.indexOf(old), t);
+                assertEquals(expected(all, q).indexOf(t), view.replace(at, t));
+            } else {
+                int at = random.nextInt(before.size());
+                Task removed = view.remove(at);
+                assertSame(before.get(at), removed);
+                all.remove(removed);
+            }
+            if (step % 100 == 0) {
+                for (TaskQuery each : queries) {
+                    assertEquals(each.sort + "/" + each.filter, expected(all, each), index.view(each));
+                }
+            }
+        }
+        assertEquals(all.size(), index.size());
+        assertEquals(all, index.view(TaskQuery.DEFAULT).all());
+    }
+
+    @Test
+    public void newDay_movesTasksIntoOverdue() {
+        Task dueToday = stored(new Task(1, "a", TaskDates.format(TODAY), null, "Pending"));
+        Task dueTomorrow = stored(new Task(2, "b", TaskDates.format(TODAY + 1), null, "Pending"));
+        TaskIndex.View overdue = TaskIndex.of(List.of(dueToday, dueTomorrow), TODAY)
+                .view(new TaskQuery(TaskQuery.Sort.DEADLINE, TaskQuery.Filter.OVERDUE));
+        assertTrue(overdue.isEmpty());
+
+        overdue = overdue.withQuery(overdue.query, TODAY + 2);
+        assertEquals(List.of(dueToday, dueTomorrow), overdue);
+    }
+
+    @Test
+    public void switchingOrderOnLargeList_sortsNothing() {
+        TaskIndex index = TaskIndex.of(large(), TODAY);
+        TaskIndex.View view = index.view(TaskQuery.DEFAULT);
+        for (TaskQuery q : allQueries()) {
+            view = view.withQuery(q, TODAY);
+            firstScreen(view);
+        }
+        assertEquals("keys compared while switching", 0, index.comparisons());
+    }
+
+    @Test
+    public void editsOnLargeList_doNotResort() {
+        TaskIndex index = TaskIndex.of(large(), TODAY);
+        TaskIndex.View view = index.view(new TaskQuery(TaskQuery.Sort.TITLE, TaskQuery.Filter.PENDING));
+        int edits = 20_000;
+        for (int i = 0; i < edits; i++) {
+            if (i % 2 == 0) {
+                view.insert(randomTask(LARGE + i + 1));
+            } else {
+                int at = random.nextInt(view.size());
+                view.replace(at, randomTask(view.get(at).id));
+            }
+        }
+        // An edit walks a few treap paths (about 1.4 log2 n deep) in each of
+        // the four orders; a re-sort would compare n log n times
+        long perEdit = index.comparisons() / edits;
+        int log2 = 32 - Integer.numberOfLeadingZeros(index.size());
+        assertTrue("One edit compared " + perEdit + " keys", perEdit <= 48L * log2);
+    }
+
+    private List<Task> large() {
+        List<Task> all = new ArrayList<>(LARGE);
+        for (long id = 1; id <= LARGE; id++) {
+            all.add(stored(randomTask(id)));
+        }
+        return all;
+    }
+
+    private static void firstScreen(List<Task> view) {
+        for (int i = 0; i < Math.min(20, view.size()); i++) {
+            assertNotNull(view.get(i));
+        }
+    }
+}
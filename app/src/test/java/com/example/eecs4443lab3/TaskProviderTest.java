@@ -0,0 +1,317 @@
+package com.example.eecs4443lab3;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * {@link TaskProvider} pages match filtering and sorting the table by hand,
+ * every page query is an index walk with no sort step (the widget's a
+ * bounded range of the deadline index, on 100k tasks), and saves notify only
+ * the tasks they touched.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TaskProviderTest {
+
+    private static final int ROWS = 2_000;
+    private static final int LARGE = 100_000;
+
+    private Context ctx;
+    private ContentResolver resolver;
+    private SqliteTaskStore store;
+    private long today;
+
+    @Before
+    public void setUp() {
+        ctx = RuntimeEnvironment.getApplication();
+        Robolectric.setupContentProvider(TaskProvider.class, TaskProvider.AUTHORITY);
+        resolver = ctx.getContentResolver();
+        store = TaskStores.sqlite(ctx);
+        today = TaskDates.today();
+    }
+
+    @After
+    public void tearDown() {
+        TaskStores.closeAll();
+    }
+
+    /** Deadlines from two weeks ago to two weeks out, none, or typed; every fourth done. */
+    private Task task(long id) {
+        int kind = (int) (id % 7);
+        String deadline = kind == 0 ? "" : kind == 1 ? "after exams" : TaskDates.format(today - 14 + id % 29);
+        return new Task(id, (id % 2 == 0 ? "task " : "Task ") + id % 97, deadline,
+                id % 5 == 0 ? "notes " + id : "", id % 4 == 0 ? "Done" : "Pending");
+    }
+
+    private List<Task> fill(int n) {
+        List<Task> all = new ArrayList<>(n);
+        TaskChangeSet c = new TaskChangeSet();
+        for (long id = 1; id <= n; id++) {
+            Task t = task(id);
+            all.add(t);
+            c.markInserted(t);
+        }
+        store.apply(c);
+        return all;
+    }
+
+    private static Uri.Builder tasks() {
+        return TaskProvider.CONTENT_URI.buildUpon();
+    }
+
+    private List<Task> read(Uri uri, String sortOrder) {
+        List<Task> out = new ArrayList<>();
+        try (Cursor c = resolver.query(uri, null, null, null, sortOrder)) {
+            while (c.moveToNext()) {
+                out.add(Task.row(c.getLong(0), c.getString(1), c.getString(2), c.getString(4)));
+            }
+        }
+        return out;
+    }
+
+    /** Every page of {@code uri}, {@code pageSize} rows at a time. */
+    private List<Task> readAll(Uri uri, String sortOrder, int pageSize) {
+        List<Task> out = new ArrayList<>();
+        while (true) {
+            List<Task> page = read(uri.buildUpon()
+                    .appendQueryParameter(TaskProvider.PARAM_LIMIT, String.valueOf(pageSize))
+                    .appendQueryParameter(TaskProvider.PARAM_OFFSET, String.valueOf(out.size()))
+                    .build(), sortOrder);
+            assertTrue(page.size() <= pageSize);
+            out.addAll(page);
+            if (page.size() < pageSize) {
+                return out;
+            }
+        }
+    }
+
+    private static Comparator<Task> order(TaskQuery.Sort sort) {
+        switch (sort) {
+            case DEADLINE:
+                return Comparator.comparingInt(TaskQuery::dayKey).thenComparingLong(t -> t.id);
+            case TITLE:
+                return Comparator.comparing((Task t) -> t.title, String.CASE_INSENSITIVE_ORDER)
+                        .thenComparingLong(t -> t.id);
+            case STATUS:
+                return Comparator.comparingInt((Task t) -> TaskDbHelper.statusCode(t.status))
+                        .thenComparing((a, b) -> Long.compare(b.id, a.id));
+            default:
+                return (a, b) -> Long.compare(b.id, a.id);
+        }
+    }
+
+    @Test
+    public void pages_matchFilteringTheTable() {
+        List<Task> all = fill(ROWS);
+        String[] statuses = { null, "pending", "done" };
+        Long[][] ranges = { null, { today - 3, today + 10 }, { null, today }, { today, null } };
+        for (TaskQuery.Sort sort : TaskQuery.Sort.values()) {
+            for (String status : statuses) {
+                for (Long[] range : ranges) {
+                    Uri.Builder b = tasks();
+                    if (status != null) {
+                        b.appendQueryParameter(TaskProvider.PARAM_STATUS, status);
+                    }
+                    if (range != null && range[0] != null) {
+                        b.appendQueryParameter(TaskProvider.PARAM_DUE_FROM, String.valueOf(range[0]));
+                    }
+                    if (range != null && range[1] != null) {
+                        b.appendQueryParameter(TaskProvider.PARAM_DUE_TO, String.valueOf(range[1]));
+                    }
+                    List<Task> expected = new ArrayList<>();
+                    for (Task t : all) {
+                        boolean done = TaskDbHelper.statusCode(t.status) == TaskDbHelper.STATUS_DONE;
+                        if (status != null && done != status.equals("done")) {
+                            continue;
+                        }
+                        Long day = TaskDates.toEpochDay(t.deadline);
+                        if (range != null && (day == null
+                                || range[0] != null && day < range[0] || range[1] != null && day > range[1])) {
+                            continue;
+                        }
+                        expected.add(t.asRow());
+                    }
+                    expected.sort(order(sort));
+                    String what = sort + "/" + status + "/" + Arrays.toString(range);
+                    assertEquals(what, expected, readAll(b.build(), sort.name().toLowerCase(Locale.ROOT), 70));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pages_areBounded() {
+        fill(ROWS);
+        assertEquals(TaskProvider.DEFAULT_LIMIT, read(tasks().build(), null).size());
+        assertEquals(TaskProvider.MAX_LIMIT, read(tasks()
+                .appendQueryParameter(TaskProvider.PARAM_LIMIT, "100000").build(), null).size());
+        assertEquals(ROWS, readAll(tasks().build(), null, TaskProvider.MAX_LIMIT).size());
+    }
+
+    @Test
+    public void projection_readsNotesOnlyWhenAsked() {
+        fill(ROWS);
+        String[] rowColumns = { TaskProvider.COLUMN_ID, TaskProvider.COLUMN_DEADLINE_DAY };
+        try (Cursor c = resolver.query(tasks().build(), rowColumns, null, null, "deadline")) {
+            assertArrayEquals(rowColumns, c.getColumnNames());
+            assertTrue(c.moveToFirst());
+            assertEquals(today - 14, c.getLong(1));
+        }
+        try (Cursor c = resolver.query(tasks().build(),
+                new String[] { TaskProvider.COLUMN_ID, TaskProvider.COLUMN_NOTES }, null, null, null)) {
+            while (c.moveToNext()) {
+                assertEquals(task(c.getLong(0)).notes, c.getString(1));
+            }
+        }
+        try (Cursor c = resolver.query(ContentUris.withAppendedId(TaskProvider.CONTENT_URI, 10), null, null, null, null)) {
+            assertEquals(1, c.getCount());
+            assertEquals(-1, c.getColumnIndex(TaskProvider.COLUMN_NOTES));
+        }
+    }
+
+    @Test
+    public void sqlSelections_unknownColumns_andWrites_areRejected() {
+        fill(10);
+        for (Runnable bad : new Runnable[] {
+                () -> resolver.query(tasks().build(), null, "status = 0", null, null),
+                () -> resolver.query(tasks().build(), new String[] { "body" }, null, null, null),
+                () -> resolver.query(tasks().appendQueryParameter(TaskProvider.PARAM_STATUS, "late").build(),
+                        null, null, null, null),
+                () -> resolver.query(tasks().build(), null, null, null, "_id; DROP TABLE tasks"),
+                () -> resolver.delete(tasks().build(), null, null) }) {
+            try {
+                bad.run();
+                fail("accepted");
+            } catch (IllegalArgumentException | UnsupportedOperationException expected) {
+            }
+        }
+        assertEquals(10, store.count());
+    }
+
+    @Test
+    public void saves_notifyOnlyTheTasksTheyTouched() {
+        fill(100);
+        ShadowContentResolver shadow = shadowOf(resolver);
+        int before = shadow.getNotifiedUris().size();
+
+        TaskChangeSet c = new TaskChangeSet();
+        c.markUpdated(task(5).withStatus("Done"));
+        c.markDeleted(6);
+        store.apply(c);
+        Set<Uri> notified = new HashSet<>();
+        for (ShadowContentResolver.NotifiedUri n : shadow.getNotifiedUris().subList(before, shadow.getNotifiedUris().size())) {
+            notified.add(n.uri);
+        }
+        assertEquals(Set.of(ContentUris.withAppendedId(TaskProvider.CONTENT_URI, 5),
+                ContentUris.withAppendedId(TaskProvider.CONTENT_URI, 6)), notified);
+
+        before = shadow.getNotifiedUris().size();
+        TaskChangeSet bulk = new TaskChangeSet();
+        for (long id = 10; id < 10 + TaskProvider.MAX_ITEM_NOTIFICATIONS + 1; id++) {
+            bulk.markDeleted(id);
+        }
+        store.apply(bulk);
+        assertEquals(before + 1, shadow.getNotifiedUris().size());
+        assertEquals(TaskProvider.CONTENT_URI, shadow.getNotifiedUris().get(before).uri);
+    }
+
+    @Test
+    public void pageQueries_walkAnIndex_withoutSorting() {
+        fill(LARGE);
+        for (TaskQuery.Sort sort : TaskQuery.Sort.values()) {
+            for (TaskQuery.Filter filter : TaskQuery.Filter.values()) {
+                TaskQuery q = new TaskQuery(sort, filter);
+                for (String sql : new String[] { q.pageSql(today),
+                        q.duePageSql(today, today, today + 7), q.duePageSql(today, null, today + 30) }) {
+                    String plan = plan(sql);
+                    assertFalse(sort + "/" + filter + ": " + plan, plan.contains("TEMP B-TREE"));
+                }
+            }
+        }
+        // In deadline order a range bounds the walk itself
+        String plan = plan(new TaskQuery(TaskQuery.Sort.DEADLINE, TaskQuery.Filter.PENDING)
+                .duePageSql(today, today, today + 7));
+        assertTrue(plan, plan.contains("SEARCH") && plan.contains("tasks_by_deadline"));
+    }
+
+    private String plan(String sql) {
+        StringBuilder out = new StringBuilder();
+        try (Cursor c = store.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN " + sql, new String[] { "20", "0" })) {
+            while (c.moveToNext()) {
+                out.append(c.getString(c.getColumnCount() - 1)).append("; ");
+            }
+        }
+        return out.toString();
+    }
+
+    @Test
+    public void widgetPage_isAnIndexRangeWalk() {
+        fill(LARGE);
+        Uri widgetQuery = tasks().appendQueryParameter(TaskProvider.PARAM_STATUS, "pending")
+                .appendQueryParameter(TaskProvider.PARAM_DUE_TO, String.valueOf(today + 30))
+                .appendQueryParameter(TaskProvider.PARAM_LIMIT, "20").build();
+        assertEquals(20, read(widgetQuery, null).size());
+
+        // What the provider runs for it: pending, due by today + 30, soonest first
+        String plan = plan(new TaskQuery(TaskQuery.Sort.DEADLINE, TaskQuery.Filter.PENDING)
+                .duePageSql(today, null, today + 30));
+        assertTrue(plan, plan.contains("SEARCH") && plan.contains("tasks_by_deadline"));
+        assertFalse(plan, plan.contains("TEMP B-TREE") || plan.contains("SCAN"));
+    }
+
+    @Test
+    public void widget_showsTheNextPendingDeadlines() {
+        List<Task> all = fill(ROWS);
+        List<Task> expected = new ArrayList<>();
+        for (Task t : all) {
+            Long day = TaskDates.toEpochDay(t.deadline);
+            if (TaskDbHelper.statusCode(t.status) == TaskDbHelper.STATUS_PENDING
+                    && day != null && day <= today + DueTasksWidget.DAYS_AHEAD) {
+                expected.add(t.asRow());
+            }
+        }
+        expected.sort(order(TaskQuery.Sort.DEADLINE));
+        assertEquals(expected.subList(0, DueTasksWidget.ROWS), DueTasksWidget.nextDue(resolver, today));
+    }
+
+    @Test
+    public void widget_ignoresSavesThatCannotChangeIt() {
+        Set<Long> shown = Set.of(1L, 2L);
+        TaskChangeSet unrelated = new TaskChangeSet();
+        unrelated.markUpdated(new Task(9, "a", "", "", "Pending"));
+        unrelated.markInserted(new Task(10, "b", TaskDates.format(today), "", "Done"));
+        unrelated.markDeleted(11);
+        assertFalse(DueTasksWidget.affects(unrelated, shown));
+        assertTrue(DueTasksWidget.affects(unrelated, null));
+
+        TaskChangeSet shownDone = new TaskChangeSet();
+        shownDone.markUpdated(new Task(2, "c", TaskDates.format(today), "", "Done"));
+        assertTrue(DueTasksWidget.affects(shownDone, shown));
+
+        TaskChangeSet newDue = new TaskChangeSet();
+        newDue.markInserted(new Task(12, "d", TaskDates.format(today + 1), "", "Pending"));
+        assertTrue(DueTasksWidget.affects(newDue, shown));
+    }
+}
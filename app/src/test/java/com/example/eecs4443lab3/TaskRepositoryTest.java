@@ -0,0 +1,177 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Looper;
+import android.widget.TextView;
+
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+
+import java.io.IOException;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * The shared repository and the list screen's view model: a rotation shows
+ * the same list without reading the store, a screen opened again writes
+ * through the same queue as the one that finished, and an edit or save
+ * published on one screen reaches the others without a reload.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TaskRepositoryTest {
+
+    private static final int STORED = 30;
+    private static final MainActivity.Mode MODE = MainActivity.Mode.SQLITE;
+
+    private Context ctx;
+    private SqliteTaskStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        ctx = RuntimeEnvironment.getApplication();
+        Metrics.setEnabled(ctx, true);
+        Metrics.reset();
+        store = TaskStores.sqlite(ctx);
+        TaskChangeSet c = new TaskChangeSet();
+        for (long id = 1; id <= STORED; id++) {
+            c.markInserted(new Task(id, "Task " + id, "", "notes " + id, "Pending"));
+        }
+        store.apply(c);
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setEnabled(ctx, false);
+        TaskCache.clear();
+        TaskStores.closeAll();
+    }
+
+    /** Runs background work and main-thread messages until {@code done} holds. */
+    private static void settle(BooleanSupplier done) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!done.getAsBoolean()) {
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            shadowOf(Looper.getMainLooper()).idle();
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private static RecyclerView list(ActivityController<MainActivity> controller) {
+        return controller.get().findViewById(R.id.recycler);
+    }
+
+    private static ActivityController<MainActivity> startLoaded() {
+        ActivityController<MainActivity> controller = Robolectric.buildActivity(MainActivity.class).setup();
+        settle(() -> list(controller).getAdapter().getItemCount() == STORED);
+        return controller;
+    }
+
+    private static String rowTitle(RecyclerView list, int position) {
+        RecyclerView.ViewHolder h = list.findViewHolderForAdapterPosition(position);
+        assertNotNull("row " + position + " not laid out", h);
+        return ((TextView) h.itemView.findViewById(android.R.id.text1)).getText().toString();
+    }
+
+    private static long storeReads() {
+        return Metrics.counter(Metrics.Counter.STORE_READS, MODE);
+    }
+
+    @Test
+    public void rotation_showsTheSameList_withoutReadingTheStore() {
+        ActivityController<MainActivity> controller = startLoaded();
+        assertEquals(1, storeReads());
+        String top = rowTitle(list(controller), 0);
+
+        controller.recreate();
+        settle(() -> true);
+
+        assertEquals(STORED, list(controller).getAdapter().getItemCount());
+        assertEquals(top, rowTitle(list(controller), 0));
+        assertEquals("rotation read the store", 1, storeReads());
+
+        controller.pause().stop().destroy();
+    }
+
+    @Test
+    public void relaunch_sharesTheWriter() {
+        ActivityController<MainActivity> first = startLoaded();
+        first.get().finish();
+        first.pause().stop().destroy(); // clears its view model
+
+        ActivityController<MainActivity> second = startLoaded(); // loads through the queue
+        TaskListViewModel viewModel = new ViewModelProvider(second.get()).get(TaskListViewModel.class);
+        assertSame(TaskStores.persistQueue(), viewModel.persistQueue);
+        assertSame(TaskStores.sync(ctx), viewModel.sync(ctx));
+
+        second.pause().stop().destroy();
+    }
+
+    @Test
+    public void publishedEdit_updatesTheListRow_andIsSaved() throws IOException {
+        ActivityController<MainActivity> controller = startLoaded();
+        long id = STORED; // newest first: the top row
+
+        TaskRepository.get().submitEdit(MODE, new Task(id, "Renamed", "", "notes", "Pending"));
+        settle(() -> true);
+
+        assertEquals("Renamed", rowTitle(list(controller), 0));
+        assertNull("edit left parked", TaskCache.takeEdited(MODE, id));
+        controller.pause().stop(); // flushes the write
+        assertEquals("Renamed", store.get(id).title);
+        assertEquals(1, storeReads());
+
+        controller.destroy();
+    }
+
+    @Test
+    public void detailScreen_followsSavesAndDeletes() {
+        Task shown = new Task(7, "Task 7", "", "notes 7", "Pending");
+        TaskCache.put(MODE, shown);
+        Intent i = new Intent(ctx, TaskDetailActivity.class)
+                .putExtra(MainActivity.EXTRA_TASK_ID, 7L)
+                .putExtra(MainActivity.EXTRA_MODE, MODE.name());
+        ActivityController<TaskDetailActivity> controller =
+                Robolectric.buildActivity(TaskDetailActivity.class, i).setup();
+        TextView title = controller.get().findViewById(R.id.txtTitle);
+        assertEquals("Task 7", title.getText().toString());
+
+        TaskChangeSet other = new TaskChangeSet();
+        other.markUpdated(new Task(8, "Elsewhere", "", "", "Pending"));
+        TaskRepository.get().publishSaved(MODE, other);
+        assertEquals("Task 7", title.getText().toString());
+
+        TaskChangeSet saved = new TaskChangeSet();
+        saved.markUpdated(new Task(7, "Saved elsewhere", "", "", "Done"));
+        TaskRepository.get().publishSaved(MODE, saved);
+        assertEquals("Saved elsewhere", title.getText().toString());
+
+        TaskChangeSet deleted = new TaskChangeSet();
+        deleted.markDeleted(7);
+        TaskRepository.get().publishSaved(MODE, deleted);
+        assertEquals("Task not found", title.getText().toString());
+
+        controller.pause().stop();
+        TaskChangeSet afterStop = new TaskChangeSet();
+        afterStop.markUpdated(new Task(7, "Not shown", "", "", "Pending"));
+        TaskRepository.get().publishSaved(MODE, afterStop);
+        assertEquals("Task not found", title.getText().toString());
+        controller.destroy();
+    }
+}
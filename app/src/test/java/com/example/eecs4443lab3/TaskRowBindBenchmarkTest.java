@@ -0,0 +1,126 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Scroll benchmark for the list's bind path: once every row has been bound
+ * once, re-binding rows through {@code TaskAdapter.onBindViewHolder} (as a
+ * fling over recycled holders does) allocates nothing beyond what the
+ * TextViews themselves do when given text.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TaskRowBindBenchmarkTest {
+
+    private static final int ROWS = 2_000;
+    private static final int HOLDERS = 12; // about a screen of recycled rows
+    private static final int PASSES = 20;
+
+    private static List<Task> rows() {
+        List<Task> tasks = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            tasks.add(new Task(i + 1, "Task " + i,
+                    i % 3 == 0 ? "" : "Oct 20, 2025", "", i % 2 == 0 ? "Pending" : "Done"));
+        }
+        return tasks;
+    }
+
+    @Test
+    public void steadyStateBind_allocatesNothing() {
+        assertBindAllocatesNothing(rows());
+    }
+
+    @Test
+    public void steadyStateBind_fromTable_allocatesNothing() {
+        assertBindAllocatesNothing(TaskTable.of(rows()));
+    }
+
+    private static void assertBindAllocatesNothing(List<Task> tasks) {
+        com.sun.management.ThreadMXBean mx =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeAllocationCounting(mx);
+
+        Context ctx = RuntimeEnvironment.getApplication();
+        RecyclerView parent = new RecyclerView(ctx);
+        parent.setLayoutManager(new LinearLayoutManager(ctx));
+        MainActivity.TaskAdapter adapter = new MainActivity.TaskAdapter(tasks,
+                new MainActivity.TaskAdapter.OnTaskInteraction() {
+                    @Override
+                    public void onClick(int position) {
+                    }
+
+                    @Override
+                    public void onLongPress(int position) {
+                    }
+                });
+        List<MainActivity.TaskAdapter.TaskVH> holders = new ArrayList<>(HOLDERS);
+        for (int i = 0; i < HOLDERS; i++) {
+            holders.add(adapter.createViewHolder(parent, ViewPrewarmer.ROW_TYPE));
+        }
+
+        scroll(adapter, holders); // first pass builds each row's subtitle
+        scroll(adapter, holders); // warm up the JIT
+        boolean table = tasks instanceof TaskTable;
+        framework(holders, table);
+        framework(holders, table);
+
+        long tid = Thread.currentThread().getId();
+        long before = mx.getThreadAllocatedBytes(tid);
+        for (int p = 0; p < PASSES; p++) {
+            framework(holders, table);
+        }
+        long floor = mx.getThreadAllocatedBytes(tid) - before;
+
+        before = mx.getThreadAllocatedBytes(tid);
+        for (int p = 0; p < PASSES; p++) {
+            scroll(adapter, holders);
+        }
+        long allocated = mx.getThreadAllocatedBytes(tid) - before;
+
+        long binds = (long) ROWS * PASSES;
+        // Allow a little noise from the measurement itself, far below one object per bind
+        assertTrue("allocated " + allocated + " bytes over " + binds + " binds; setting the same"
+                        + " amount of text directly allocated " + floor,
+                allocated < floor + binds / 10);
+    }
+
+    /** Binds every row in order, cycling through the recycled holders. */
+    private static void scroll(MainActivity.TaskAdapter adapter, List<MainActivity.TaskAdapter.TaskVH> holders) {
+        for (int i = 0; i < ROWS; i++) {
+            adapter.onBindViewHolder(holders.get(i % holders.size()), i);
+        }
+    }
+
+    /** The views' own share of a bind: the same calls with text that already exists. */
+    private static void framework(List<MainActivity.TaskAdapter.TaskVH> holders, boolean table) {
+        char[] chars = "Task".toCharArray();
+        for (int i = 0; i < ROWS; i++) {
+            MainActivity.TaskAdapter.TaskVH h = holders.get(i % holders.size());
+            h.itemView.setBackgroundColor(0);
+            if (table) {
+                h.line1.setText(chars, 0, chars.length); // a slice of the table's text
+            } else {
+                h.line1.setText("Task");
+            }
+            h.line2.setText(i % 2 == 0 ? "Pending" : "Done");
+        }
+    }
+
+    private static void assumeAllocationCounting(com.sun.management.ThreadMXBean mx) {
+        org.junit.Assume.assumeTrue(mx.isThreadAllocatedMemorySupported());
+        mx.setThreadAllocatedMemoryEnabled(true);
+    }
+}
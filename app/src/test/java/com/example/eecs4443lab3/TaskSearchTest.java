@@ -0,0 +1,81 @@
+package com.example.eecs4443lab3;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Query parsing and ranking rules shared by the FTS and in-memory searches.
+ */
+public class TaskSearchTest {
+
+    private static Task task(long id, String title, String notes) {
+        return new Task(id, title, "", notes, "Pending");
+    }
+
+    @Test
+    public void matchExpression_prefixesEveryWord_andDropsPunctuation() {
+        assertEquals("gro* mil*", TaskSearch.matchExpression("  Gro, mil! "));
+        assertEquals("or* near*", TaskSearch.matchExpression("OR NEAR"));
+        assertEquals("", TaskSearch.matchExpression("!?"));
+        assertEquals("", TaskSearch.matchExpression(""));
+    }
+
+    @Test
+    public void scan_requiresEveryTerm_andRanksTitleHitsFirst() {
+        List<Task> all = Arrays.asList(
+                task(1, "Errands", "groceries: MILK"),
+                task(2, "Buy milk", null),
+                task(3, "Gym", ""));
+
+        List<Task> milk = TaskSearch.scan(all, TaskSearch.terms("milk"));
+        assertEquals(2, milk.size());
+        assertEquals(2, milk.get(0).id);
+        assertEquals(1, milk.get(1).id);
+
+        assertEquals(1, TaskSearch.scan(all, TaskSearch.terms("gro mil")).size());
+        assertTrue(TaskSearch.scan(all, TaskSearch.terms("milk gym")).isEmpty());
+    }
+
+    @Test
+    public void scan_searchesOnlyTheIndexedStartOfLongNotes() {
+        StringBuilder notes = new StringBuilder("umbrella");
+        while (notes.length() < TaskSearch.NOTES_INDEXED - 3) {
+            notes.append(" x");
+        }
+        notes.append(" wellington boots"); // straddles the limit
+        List<Task> all = Arrays.asList(task(1, "Trip", notes.toString()));
+
+        int end = TaskSearch.indexedLength(notes.toString());
+        assertTrue(end <= TaskSearch.NOTES_INDEXED);
+        assertTrue(TaskSearch.indexedNotes(notes.toString()).endsWith(" x "));
+        assertEquals(1, TaskSearch.scan(all, TaskSearch.terms("umbrella")).size());
+        assertTrue(TaskSearch.scan(all, TaskSearch.terms("wel")).isEmpty());
+        assertEquals("short", TaskSearch.indexedNotes("short"));
+        assertNull(TaskSearch.indexedNotes(null));
+    }
+
+    /** matchinfo('pcx') for one phrase over (title, notes). */
+    private static byte[] matchinfo(int titleHits, int titleRows, int notesHits, int notesRows) {
+        ByteBuffer b = ByteBuffer.allocate(4 * (2 + 6)).order(ByteOrder.nativeOrder());
+        b.putInt(1).putInt(2);
+        b.putInt(titleHits).putInt(titleHits).putInt(titleRows);
+        b.putInt(notesHits).putInt(notesHits).putInt(notesRows);
+        return b.array();
+    }
+
+    @Test
+    public void score_prefersTitleHits_andRareTerms() {
+        double inTitle = SqliteTaskStore.score(matchinfo(1, 10, 0, 10));
+        double inNotes = SqliteTaskStore.score(matchinfo(0, 10, 1, 10));
+        double rare = SqliteTaskStore.score(matchinfo(1, 1, 0, 0));
+        assertTrue(inTitle > inNotes);
+        assertTrue(rare > inTitle);
+        assertEquals(0.0, SqliteTaskStore.score(matchinfo(0, 0, 0, 0)), 0.0);
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the same conformance checks against every
+ * {@link TaskStore} backend on the local JVM (Robolectric provides the
+ * SharedPreferences and SQLite pieces).
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+public class TaskStoreConformanceTest {
+
+    interface Factory {
+        TaskStore open(Context ctx);
+    }
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{0}")
+    public static List<Object[]> stores() {
+        return Arrays.asList(
+                new Object[] { "prefs", (Factory) PrefsTaskStore::new },
+                new Object[] { "sqlite", (Factory) SqliteTaskStore::new },
+                new Object[] { "journal",
+                        (Factory) ctx -> new TaskJournal(new File(ctx.getFilesDir(), "test.journal")) },
+                new Object[] { "mapped",
+                        (Factory) ctx -> new MappedTaskStore(ctx.getFilesDir(), "test") });
+    }
+
+    private final String name;
+    private final Factory factory;
+    private Context ctx;
+    private TaskStore store;
+
+    public TaskStoreConformanceTest(String name, Factory factory) {
+        this.name = name;
+        this.factory = factory;
+    }
+
+    @Before
+    public void setUp() {
+        ctx = RuntimeEnvironment.getApplication();
+        store = factory.open(ctx);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+    private static Task task(long id, String title) {
+        return new Task(id, title, "Oct 20, 2025", "notes " + id, "Pending");
+    }
+
+    private static TaskChangeSet inserts(int from, int to) {
+        TaskChangeSet c = new TaskChangeSet();
+        for (int i = from; i <= to; i++) {
+            c.markInserted(task(i, "Task " + i));
+        }
+        return c;
+    }
+
+    private static Map<Long, Task> byId(List<Task> tasks) {
+        Map<Long, Task> m = new HashMap<>();
+        for (Task t : tasks) {
+            m.put(t.id, t);
+        }
+        return m;
+    }
+
+    /** loadAll may leave notes out, so list reads are compared as rows. */
+    private static Map<Long, Task> rowsById(Collection<Task> tasks) {
+        Map<Long, Task> m = new HashMap<>();
+        for (Task t : tasks) {
+            m.put(t.id, t.asRow());
+        }
+        return m;
+    }
+
+    private static String chars(int n, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(n);
+        while (sb.length() < n) {
+            sb.append("word").append(random.nextInt(1_000)).append(' ');
+        }
+        return sb.substring(0, n);
+    }
+
+    /*
+     * ------------------------------ Conformance --------------------------------
+     */
+
+    @Test
+    public void emptyStore_loadsNothing() throws IOException {
+        assertTrue(store.loadAll().isEmpty());
+        assertEquals(0, store.lastId());
+        assertNull(store.get(1));
+    }
+
+    @Test
+    public void inserts_areReadBack() throws IOException {
+        store.apply(inserts(1, 20));
+
+        Map<Long, Task> all = rowsById(store.loadAll());
+        assertEquals(20, all.size());
+        assertEquals(task(7, "Task 7").asRow(), all.get(7L));
+        assertEquals(task(13, "Task 13"), store.get(13));
+        assertEquals(20, store.lastId());
+    }
+
+    @Test
+    public void update_replacesOnlyThatRow() throws IOException {
+        store.apply(inserts(1, 5));
+        TaskChangeSet edit = new TaskChangeSet();
+        Task edited = new Task(3, "Renamed", "", "new notes ✓", "Done");
+        edit.markUpdated(edited);
+        store.apply(edit);
+
+        assertEquals(edited, store.get(3));
+        assertEquals(task(2, "Task 2"), store.get(2));
+        assertEquals(5, store.loadAll().size());
+    }
+
+    @Test
+    public void delete_removesRow_butKeepsLastId() throws IOException {
+        store.apply(inserts(1, 5));
+        TaskChangeSet del = new TaskChangeSet();
+        del.markDeleted(5);
+        store.apply(del);
+
+        assertNull(store.get(5));
+        assertEquals(4, store.loadAll().size());
+        assertEquals(5, store.lastId());
+    }
+
+    @Test
+    public void deleteOfNewest_doesNotFreeItsId() throws IOException {
+        store.apply(inserts(1, 5));
+        long last = store.lastId();
+        TaskChangeSet del = new TaskChangeSet();
+        del.markDeleted(last);
+        store.apply(del);
+        assertEquals(last, store.lastId());
+
+        store.close();
+        store = factory.open(ctx);
+        assertEquals("after reopen", last, store.lastId());
+    }
+
+    @Test
+    public void data_survivesReopen() throws IOException {
+        store.apply(inserts(1, 50));
+        TaskChangeSet mixed = new TaskChangeSet();
+        mixed.markUpdated(task(10, "Ten"));
+        mixed.markDeleted(11);
+        store.apply(mixed);
+        store.close();
+
+        store = factory.open(ctx);
+        Map<Long, Task> all = rowsById(store.loadAll());
+        assertEquals(49, all.size());
+        assertEquals(task(10, "Ten").asRow(), all.get(10L));
+        assertEquals(task(10, "Ten"), store.get(10));
+        assertFalse(all.containsKey(11L));
+    }
+
+    @Test
+    public void scan_visitsEveryTaskOnce() throws IOException {
+        store.apply(inserts(1, 30));
+        TaskChangeSet del = new TaskChangeSet();
+        del.markDeleted(4);
+        store.apply(del);
+
+        Map<Long, Task> seen = new HashMap<>();
+        store.scan(t -> assertNull(seen.put(t.id, t)));
+        assertEquals(29, seen.size());
+        assertEquals(29, store.count());
+        assertEquals(rowsById(store.loadAll()), rowsById(seen.values()));
+        for (Task t : seen.values()) {
+            assertEquals("notes " + t.id, t.notes); // scan always has the notes
+        }
+    }
+
+    @Test
+    public void rowUpdate_keepsTheStoredNotes() throws IOException {
+        store.apply(inserts(1, 5));
+        TaskChangeSet edit = new TaskChangeSet();
+        edit.markUpdated(Task.row(3, "Renamed", "", "Done"));
+        store.apply(edit);
+
+        assertEquals(new Task(3, "Renamed", "", "notes 3", "Done"), store.get(3));
+    }
+
+    @Test
+    public void largeNotes_areReadBackExactly() throws IOException {
+        TaskChangeSet c = new TaskChangeSet();
+        String big = chars(64 * 1024, 1);
+        String unicode = "Größe ✓ 日本語 🙂 " + chars(4 * 1024, 2);
+        c.markInserted(new Task(1, "Big", "", big, "Pending"));
+        c.markInserted(new Task(2, "Unicode", "", unicode, "Pending"));
+        c.markInserted(new Task(3, "Short", "", "x", "Pending"));
+        store.apply(c);
+        store.close();
+        store = factory.open(ctx);
+
+        assertEquals(big, store.get(1).notes);
+        assertEquals(unicode, store.get(2).notes);
+        assertEquals("x", store.get(3).notes);
+    }
+
+    /*
+     * ------------------------------- List loads --------------------------------
+     */
+
+    @Test
+    public void listLoad_neverReadsNotes() throws IOException {
+        TaskChangeSet light = new TaskChangeSet();
+        for (Task t : withNotes(8)) {
+            light.markInserted(t);
+        }
+        store.apply(light);
+        Assume.assumeFalse(name + " keeps notes in its rows", store.loadAll().get(0).notesLoaded);
+        int rowBytes = listBytes();
+
+        TaskChangeSet heavy = new TaskChangeSet();
+        for (Task t : withNotes(16 * 1024)) {
+            heavy.markUpdated(t);
+        }
+        store.apply(heavy);
+        assertEquals("list read grew with the notes", rowBytes, listBytes());
+
+        if (store instanceof SqliteTaskStore) {
+            // A list read that joined or queried task_notes would now fail
+            ((SqliteTaskStore) store).getReadableDatabase().execSQL("DROP TABLE task_notes");
+        }
+        List<Task> rows = store.loadAll();
+        assertEquals(2_000, rows.size());
+        for (Task t : rows) {
+            assertNull(t.notes);
+        }
+    }
+
+    /** Tasks 1..2000 with notes of {@code noteChars} characters. */
+    private static List<Task> withNotes(int noteChars) {
+        List<Task> out = new ArrayList<>();
+        for (int i = 1; i <= 2_000; i++) {
+            out.add(new Task(i, "Task " + i, "Oct 20, 2025", chars(noteChars, i), "Pending"));
+        }
+        return out;
+    }
+
+    /** Size of what a list read parses: the prefs array, or -1 where rows are read by column. */
+    private int listBytes() {
+        if (store instanceof PrefsTaskStore) {
+            return ctx.getSharedPreferences(PrefsTaskStore.PREFS_NAME, Context.MODE_PRIVATE)
+                    .getString(PrefsTaskStore.PREFS_KEY, "").length();
+        }
+        return -1;
+    }
+
+    /*
+     * ------------------------------- Bulk writes -------------------------------
+     */
+
+    @Test
+    public void bulkInsertThenSingleEdits_keepEveryRow() throws IOException {
+        final int rows = 5_000;
+        final int edits = 200;
+
+        store.apply(inserts(1, rows));
+        for (int i = 0; i < edits; i++) {
+            TaskChangeSet one = new TaskChangeSet();
+            one.markUpdated(task(1 + (i * 37) % rows, "Edit " + i));
+            store.apply(one);
+        }
+
+        assertEquals(rows, store.count());
+        assertEquals(rows, store.loadAll().size());
+        for (int i = 0; i < edits; i++) {
+            assertEquals("Edit " + i, store.get(1 + (i * 37) % rows).title);
+        }
+        assertEquals("Task 2", store.get(2).title); // 37 * i never lands on it
+    }
+}
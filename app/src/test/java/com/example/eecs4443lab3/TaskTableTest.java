@@ -0,0 +1,97 @@
+package com.example.eecs4443lab3;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link TaskTable} behaves like an ArrayList of tasks, and holds a large
+ * list in at most 60% of the heap of the object-per-task model (about half;
+ * its text is two bytes per char where compact strings may use one).
+ */
+public class TaskTableTest {
+
+    private static final int HEAP_ROWS = 200_000;
+    private static final String PICKER_DATE = "Oct 20, 2025";
+
+    /** A task as a store decodes it: every string is its own instance. */
+    private static Task decoded(long id) {
+        return new Task(id,
+                new String("Task number " + id),
+                id % 3 == 0 ? new String("") : new String(PICKER_DATE),
+                id % 5 == 0 ? null : new String("Notes for task " + id),
+                new String(id % 4 == 0 ? "Done" : "Pending"));
+    }
+
+    @Test
+    public void randomEdits_matchArrayList() {
+        Random random = new Random(4443);
+        List<Task> expected = new ArrayList<>();
+        TaskTable table = new TaskTable();
+        long nextId = 1;
+        for (int step = 0; step < 20_000; step++) {
+            int op = random.nextInt(10);
+            if (op < 5 || expected.isEmpty()) {
+                int at = random.nextInt(expected.size() + 1);
+                Task t = decoded(nextId++);
+                expected.add(at, t);
+                table.add(at, t);
+            } else if (op < 8) {
+                int at = random.nextInt(expected.size());
+                Task t = new Task(expected.get(at).id, "edited " + step, "after exams",
+                        step % 2 == 0 ? "" : null, "Done");
+                assertEquals(expected.set(at, t), table.set(at, t));
+            } else {
+                int at = random.nextInt(expected.size());
+                assertEquals(expected.remove(at), table.remove(at));
+            }
+        }
+        assertEquals(expected, table);
+        for (int i = 0; i < expected.size(); i++) {
+            Task t = expected.get(i);
+            assertEquals(t.id, table.id(i));
+            assertEquals(t.title, new String(table.chars(), table.titleStart(i), table.titleLength(i)));
+            assertEquals(t.subtitle(), table.subtitle(i));
+        }
+        assertEquals(expected, table.copy());
+    }
+
+    @Test
+    public void repeatedStrings_areShared() {
+        TaskTable table = TaskTable.of(List.of(decoded(1), decoded(2), decoded(4), decoded(8)));
+        assertSame(table.deadline(0), table.deadline(1));
+        assertSame(table.status(0), table.status(1));
+        assertSame(table.subtitle(2), table.subtitle(3));
+    }
+
+    @Test
+    public void heap_isAtMostSixtyPercentOfTheObjectModel() {
+        long base = retainedHeap();
+        List<Task> objects = new ArrayList<>(HEAP_ROWS);
+        for (long id = 1; id <= HEAP_ROWS; id++) {
+            objects.add(decoded(id));
+        }
+        long objectBytes = retainedHeap() - base;
+
+        TaskTable table = TaskTable.of(objects);
+        objects = null;
+        long tableBytes = retainedHeap() - base;
+
+        assertEquals(HEAP_ROWS, table.size());
+        assertTrue("objects " + objectBytes + " bytes, table " + tableBytes + " bytes",
+                tableBytes * 5 <= objectBytes * 3);
+    }
+
+    /** Heap still reachable after full collections. */
+    private static long retainedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.eecs4443lab3;
+
+import android.util.JsonWriter;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Streaming import/export: round trips through real stores, cancellation,
+ * and imports that hold only one batch at a time, 1M rows through the
+ * importer and several batches into the real SharedPreferences store.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TaskTransferTest {
+
+    private static final int MILLION = 1_000_000;
+    private static final long MAX_RETAINED_BYTES = 32L << 20;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final TaskTransfer.Progress NO_PROGRESS = (done, total) -> { };
+
+    @After
+    public void tearDown() {
+        TaskStores.closeAll();
+    }
+
+    private static List<Task> awkwardTasks() {
+        List<Task> tasks = new ArrayList<>();
+        tasks.add(new Task(1, "Plain", "Oct 20, 2025", "", "Pending"));
+        tasks.add(new Task(2, "Comma, and \"quotes\"", "after exams", "line one\nline two", "Done"));
+        tasks.add(new Task(3, "Unicode ✓ café", "", "crlf\r\ninside", "Pending"));
+        return tasks;
+    }
+
+    private static byte[] export(TaskStore store, TaskTransfer.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TaskTransfer.exportTasks(store, format, out, new AtomicBoolean(), NO_PROGRESS);
+        return out.toByteArray();
+    }
+
+    private static void assertSameContent(List<Task> expected, List<Task> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Task e = expected.get(i);
+            Task a = actual.get(i);
+            assertEquals(e.title, a.title);
+            assertEquals(e.deadline, a.deadline);
+            assertEquals(e.notes, a.notes);
+            assertEquals(e.status, a.status);
+        }
+    }
+
+    @Test
+    public void sqliteExport_roundTripsThroughJsonAndCsv() throws IOException {
+        SqliteTaskStore sqlite = TaskStores.sqlite(RuntimeEnvironment.getApplication());
+        TaskChangeSet changes = new TaskChangeSet();
+        for (Task t : awkwardTasks()) {
+            changes.markInserted(t);
+        }
+        sqlite.apply(changes);
+
+        for (TaskTransfer.Format format : TaskTransfer.Format.values()) {
+            TaskJournal journal = new TaskJournal(tmp.newFile(format + ".journal"));
+            byte[] file = export(sqlite, format);
+            int rows = TaskTransfer.importTasks(new ByteArrayInputStream(file), file.length,
+                    journal, 1, new AtomicBoolean(), NO_PROGRESS);
+
+            assertEquals(3, rows);
+            assertSameContent(awkwardTasks(), journal.loadAll());
+            journal.close();
+        }
+    }
+
+    @Test
+    public void import_appendsAfterExistingIds() throws IOException {
+        TaskJournal journal = new TaskJournal(tmp.newFile("ids.journal"));
+        TaskChangeSet changes = new TaskChangeSet();
+        changes.markInserted(new Task(41, "Existing", "", "", "Pending"));
+        journal.apply(changes);
+
+        byte[] csv = "title,status\r\nFirst,Done\r\n\r\nSecond,\r\n".getBytes(StandardCharsets.UTF_8);
+        TaskTransfer.importTasks(new ByteArrayInputStream(csv), csv.length, journal, 10,
+                new AtomicBoolean(), NO_PROGRESS);
+
+        List<Task> all = journal.loadAll();
+        assertEquals(3, all.size());
+        assertEquals(42, all.get(1).id);
+        assertEquals("Done", all.get(1).status);
+        assertEquals(43, all.get(2).id);
+        assertEquals("Pending", all.get(2).status);
+        journal.close();
+    }
+
+    @Test
+    public void cancel_stopsAtTheNextBatch() throws IOException {
+        CountingStore store = new CountingStore();
+        File json = writeJson(tmp.newFile("cancel.json"), 10 * store.writeBatchSize());
+        AtomicBoolean cancel = new AtomicBoolean();
+        try (InputStream in = new FileInputStream(json)) {
+            TaskTransfer.importTasks(in, json.length(), store, 1, cancel, (done, total) -> cancel.set(true));
+            fail("import was not cancelled");
+        } catch (TaskTransfer.CancelledException e) {
+            assertEquals(store.writeBatchSize(), e.rows);
+            assertEquals(store.writeBatchSize(), store.rows);
+        }
+    }
+
+    @Test
+    public void millionRowImport_isStreamed() throws IOException {
+        File json = writeJson(tmp.newFile("million.json"), MILLION);
+        CountingStore store = new CountingStore();
+        long baseline = retainedHeap();
+        long[] maxRetained = new long[1];
+        int[] batches = new int[1];
+
+        int rows;
+        try (InputStream in = new FileInputStream(json)) {
+            rows = TaskTransfer.importTasks(in, json.length(), store, 1, new AtomicBoolean(),
+                    (done, total) -> {
+                        if (++batches[0] % 250 == 0) {
+                            maxRetained[0] = Math.max(maxRetained[0], retainedHeap() - baseline);
+                        }
+                    });
+        }
+
+        assertEquals(MILLION, rows);
+        assertEquals(MILLION, store.rows);
+        assertTrue("largest change set " + store.largestBatch,
+                store.largestBatch <= store.writeBatchSize());
+        assertTrue("retained " + maxRetained[0] + " bytes mid-import",
+                maxRetained[0] < MAX_RETAINED_BYTES);
+    }
+
+    @Test
+    public void prefsImport_writesBoundedBatches() throws IOException {
+        int total = 2 * PrefsTaskStore.WRITE_BATCH + 500;
+        File json = writeJson(tmp.newFile("prefs.json"), total);
+        PrefsTaskStore prefs = new PrefsTaskStore(RuntimeEnvironment.getApplication());
+        int[] largestBatch = new int[1];
+        int[] batches = new int[1];
+        TaskStore counted = new CountingStore() {
+            @Override
+            public void apply(TaskChangeSet changes) {
+                largestBatch[0] = Math.max(largestBatch[0], changes.size());
+                batches[0]++;
+                try {
+                    prefs.apply(changes);
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+
+            @Override
+            public long lastId() {
+                try {
+                    return prefs.lastId();
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+
+            @Override
+            public int writeBatchSize() {
+                return prefs.writeBatchSize();
+            }
+        };
+
+        int rows;
+        try (InputStream in = new FileInputStream(json)) {
+            rows = TaskTransfer.importTasks(in, json.length(), counted, 1, new AtomicBoolean(), NO_PROGRESS);
+        }
+
+        assertEquals(total, rows);
+        assertEquals(3, batches[0]);
+        assertTrue("largest change set " + largestBatch[0], largestBatch[0] <= PrefsTaskStore.WRITE_BATCH);
+        PrefsTaskStore reopened = new PrefsTaskStore(RuntimeEnvironment.getApplication());
+        assertEquals(total, reopened.count());
+        assertEquals(total, reopened.lastId());
+        assertEquals("notes for task 7", reopened.get(7).notes);
+    }
+
+    /** Heap still reachable after a full collection. */
+    private static long retainedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /** Streams {@code rows} tasks in the export format to {@code file}. */
+    private static File writeJson(File file, int rows) throws IOException {
+        try (JsonWriter w = new JsonWriter(new OutputStreamWriter(
+                new BufferedOutputStream(new FileOutputStream(file), 1 << 16), StandardCharsets.UTF_8))) {
+            w.beginArray();
+            for (int i = 1; i <= rows; i++) {
+                w.beginObject();
+                w.name("id").value(i);
+                w.name("title").value("Task " + i);
+                w.name("deadline").value(i % 3 == 0 ? "Oct 20, 2025" : "");
+                w.name("notes").value("notes for task " + i);
+                w.name("status").value(i % 4 == 0 ? "Done" : "Pending");
+                w.endObject();
+            }
+            w.endArray();
+        }
+        return file;
+    }
+
+    /** Store that keeps nothing but counts, so the test measures the importer. */
+    private static class CountingStore implements TaskStore {
+        int rows;
+        int largestBatch;
+        long lastId;
+
+        @Override
+        public List<Task> loadAll() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Task get(long id) {
+            return null;
+        }
+
+        @Override
+        public void apply(TaskChangeSet changes) {
+            largestBatch = Math.max(largestBatch, changes.size());
+            for (Task t : changes.inserted()) {
+                rows++;
+                lastId = Math.max(lastId, t.id);
+            }
+        }
+
+        @Override
+        public long lastId() {
+            return lastId;
+        }
+
+        @Override
+        public int count() {
+            return rows;
+        }
+
+        @Override
+        public void scan(Visitor visitor) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
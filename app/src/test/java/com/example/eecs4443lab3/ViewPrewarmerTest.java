@@ -0,0 +1,132 @@
+package com.example.eecs4443lab3;
+
+import android.content.Context;
+import android.os.Looper;
+import android.view.View;
+import android.widget.ListView;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.shadows.ShadowDialog;
+
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Once the list screen has been idle, scrolling through the next screens of
+ * rows inflates none on demand, and the edit dialog reuses one view.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ViewPrewarmerTest {
+
+    private static final int STORED = 300;
+    private static final MainActivity.Mode MODE = MainActivity.Mode.SQLITE;
+
+    private Context ctx;
+
+    @Before
+    public void setUp() {
+        ctx = RuntimeEnvironment.getApplication();
+        Metrics.setEnabled(ctx, true);
+        Metrics.reset();
+        TaskChangeSet c = new TaskChangeSet();
+        for (long id = 1; id <= STORED; id++) {
+            c.markInserted(new Task(id, "Task " + id, "", id % 2 == 0 ? "notes " + id : "", "Pending"));
+        }
+        TaskStores.sqlite(ctx).apply(c);
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setEnabled(ctx, false);
+        TaskCache.clear();
+        TaskStores.closeAll();
+    }
+
+    /** Runs background work and main-thread messages until {@code done} holds. */
+    private static void settle(BooleanSupplier done) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!done.getAsBoolean()) {
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            shadowOf(Looper.getMainLooper()).idle();
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private static RecyclerView list(ActivityController<MainActivity> controller) {
+        return controller.get().findViewById(R.id.recycler);
+    }
+
+    private static long rowsInflated() {
+        return Metrics.histogram(Metrics.Path.ROW_INFLATE, MODE).count();
+    }
+
+    private static ActivityController<MainActivity> startWarm() {
+        ActivityController<MainActivity> controller = Robolectric.buildActivity(MainActivity.class).setup();
+        RecyclerView list = list(controller);
+        settle(() -> list.getAdapter().getItemCount() == STORED
+                && list.getRecycledViewPool().getRecycledViewCount(ViewPrewarmer.ROW_TYPE) > 0);
+        return controller;
+    }
+
+    @Test
+    public void scrollingAfterIdle_inflatesNoRows() {
+        ActivityController<MainActivity> controller = startWarm();
+        RecyclerView list = list(controller);
+        int pooled = list.getRecycledViewPool().getRecycledViewCount(ViewPrewarmer.ROW_TYPE);
+        assertTrue(pooled <= ViewPrewarmer.rowsPerScreen(ctx) + ViewPrewarmer.EXTRA_ROWS);
+        long before = rowsInflated();
+
+        int step = Math.max(1, list.getHeight() / 3);
+        for (int i = 0; i < 6; i++) {
+            list.scrollBy(0, step);
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+
+        assertTrue("nothing scrolled", list.computeVerticalScrollOffset() > 0);
+        assertEquals(pooled + " pooled rows", before, rowsInflated());
+        controller.pause().stop().destroy();
+    }
+
+    @Test
+    public void editDialog_reusesOneView() {
+        ActivityController<MainActivity> controller = startWarm();
+        View first = openEditDialog(controller);
+        View second = openEditDialog(controller);
+        assertSame(first, second);
+        controller.pause().stop().destroy();
+    }
+
+    /** Long-press the top row, pick Edit, and return the dialog's title field. */
+    private static View openEditDialog(ActivityController<MainActivity> controller) {
+        RecyclerView list = list(controller);
+        list.findViewHolderForAdapterPosition(0).itemView.performLongClick();
+        shadowOf(Looper.getMainLooper()).idle();
+        AlertDialog options = (AlertDialog) ShadowDialog.getLatestDialog();
+        ListView items = options.getListView();
+        items.performItemClick(items.getAdapter().getView(0, null, items), 0, 0);
+        settle(() -> ShadowDialog.getLatestDialog() != options);
+        AlertDialog edit = (AlertDialog) ShadowDialog.getLatestDialog();
+        View title = edit.findViewById(R.id.inputTitle);
+        assertNotNull(title);
+        edit.dismiss();
+        shadowOf(Looper.getMainLooper()).idle();
+        return title;
+    }
+}
@@ -0,0 +1,505 @@
+package com.example.eecs4443lab3;
+
+import android.Manifest;
+import android.app.Activity;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.content.Intent;
+import android.os.Looper;
+import android.view.View;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.shadows.ShadowActivity;
+import org.robolectric.shadows.ShadowDialog;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Workload replay
+ * ---------------------------------
+ * Replays operation traces through the list screen's real paths on top of a
+ * store of {@code size} tasks, and fails when an operation's p99 main-thread
+ * time in any storage mode is over its budget.
+ *
+ * - Operations: add (FAB, then the add screen's result through
+ *   addEditLauncher), edit (long-press, Edit, retitle, Update), delete
+ *   (long-press, Delete, confirm), toggle (the storage switch) and mode
+ *   (the overflow menu). Latencies are kept per operation and per the mode
+ *   it ran in.
+ * - Traces: workload/daily.trace (a recorded day, see its header) and a
+ *   generated one of {@link #opsPerMode} operations in every mode, seeded
+ *   for repeatable runs.
+ * - Main-thread time is what the action and the looper passes it causes
+ *   take, not the time spent waiting on background work; a warm-up trace
+ *   runs first so class loading is not counted.
+ * - Headless, like the other Robolectric tests. Sizes, budgets and the seed
+ *   come from system properties ({@code workload.*}, forwarded from Gradle
+ *   properties by app/build.gradle.kts), e.g.
+ *   {@code ./gradlew :app:testDebugUnitTest --tests '*WorkloadReplayTest'
+ *   -Pworkload.sizes=100,10000 -Pworkload.budget.edit=150}.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+public class WorkloadReplayTest {
+
+    enum Op {
+        ADD(150), EDIT(250), DELETE(150), TOGGLE(800), MODE(800);
+
+        final long defaultBudgetMs;
+
+        Op(long defaultBudgetMs) {
+            this.defaultBudgetMs = defaultBudgetMs;
+        }
+
+        /** p99 budget in ms; -Pworkload.budget.<op>=ms overrides it. */
+        long budgetMs() {
+            return Long.getLong("workload.budget." + name().toLowerCase(Locale.ROOT), defaultBudgetMs);
+        }
+    }
+
+    /** One line of a trace. */
+    static final class Step {
+        final Op op;
+        final int pick;       // edit/delete: k-th visible row, modulo the rows shown
+        final Integer dueIn;  // add: deadline in days from today, or none
+        final String title;   // add/edit
+        final MainActivity.Mode mode; // mode
+
+        Step(Op op, int pick, Integer dueIn, String title, MainActivity.Mode mode) {
+            this.op = op;
+            this.pick = pick;
+            this.dueIn = dueIn;
+            this.title = title;
+            this.mode = mode;
+        }
+
+        @Override
+        public String toString() {
+            switch (op) {
+                case ADD:
+                    return "add " + (dueIn != null ? "+" + dueIn + " " : "") + title;
+                case EDIT:
+                    return "edit " + pick + " " + title;
+                case DELETE:
+                    return "delete " + pick;
+                case MODE:
+                    return "mode " + mode;
+                default:
+                    return "toggle";
+            }
+        }
+    }
+
+    private static final int WARMUP_OPS_PER_MODE = 3;
+    private static final long SETTLE_TIMEOUT_MS = 30_000;
+    private static final long QUIET_MS = 25; // main looper idle this long: the operation is over
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{0} tasks")
+    public static Collection<Object[]> sizes() {
+        List<Object[]> sizes = new ArrayList<>();
+        for (String s : System.getProperty("workload.sizes", "200,2000").split(",")) {
+            if (!s.trim().isEmpty()) {
+                sizes.add(new Object[] { Integer.parseInt(s.trim()) });
+            }
+        }
+        return sizes;
+    }
+
+    private final int size;
+
+    private Context ctx;
+    private ActivityController<MainActivity> controller;
+    private MainActivity activity;
+    private RecyclerView list;
+    private MainActivity.Mode mode;
+    private int stored;     // tasks the store should hold once the trace is saved
+    private long mainNanos; // main-thread time of the operation under way
+    private Map<MainActivity.Mode, Map<Op, Metrics.Histogram>> latencies;
+
+    public WorkloadReplayTest(int size) {
+        this.size = size;
+    }
+
+    @Before
+    public void setUp() {
+        ctx = RuntimeEnvironment.getApplication();
+        shadowOf(RuntimeEnvironment.getApplication()).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        Metrics.setEnabled(ctx, true);
+        Metrics.reset();
+        TaskChangeSet c = new TaskChangeSet();
+        for (long id = 1; id <= size; id++) {
+            c.markInserted(new Task(id, "Task " + id, id % 3 == 0 ? TaskDates.format(TaskDates.today() + id % 60) : "",
+                    id % 2 == 0 ? "notes " + id : "", id % 5 == 0 ? "Done" : "Pending"));
+        }
+        TaskStores.sqlite(ctx).apply(c);
+        stored = size;
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setEnabled(ctx, false);
+        TaskCache.clear();
+        TaskStores.closeAll();
+    }
+
+    @Test
+    public void recordedTrace_staysWithinBudgets() throws IOException {
+        List<Step> trace = parse(WorkloadReplayTest.class.getClassLoader()
+                .getResourceAsStream("workload/daily.trace"));
+        assertFalse("empty trace", trace.isEmpty());
+        replayAndCheck("daily.trace", trace);
+    }
+
+    @Test
+    public void generatedTrace_staysWithinBudgets() {
+        long seed = Long.getLong("workload.seed", 4443);
+        replayAndCheck("generated (seed " + seed + ")", generate(new Random(seed), opsPerMode()));
+    }
+
+    /** Operations per storage mode in the generated trace: -Pworkload.ops=n. */
+    private static int opsPerMode() {
+        return Integer.getInteger("workload.ops", 40);
+    }
+
+    /*
+     * --------------------------------- Replay ---------------------------------
+     */
+
+    private void replayAndCheck(String name, List<Step> trace) {
+        start();
+        // Warm-up: every path in every mode, not counted; ends in SQLite like the traces
+        latencies = null;
+        replay(generate(new Random(1), WARMUP_OPS_PER_MODE));
+        latencies = new EnumMap<>(MainActivity.Mode.class);
+        replay(trace);
+        controller.pause().stop(); // flushes what is still queued
+        settle(() -> storedCount() == stored);
+        controller.destroy();
+
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                "%s, %d tasks: p99 main-thread ms (count, max)%n", name, size));
+        List<String> over = new ArrayList<>();
+        for (Map.Entry<MainActivity.Mode, Map<Op, Metrics.Histogram>> byMode : latencies.entrySet()) {
+            for (Map.Entry<Op, Metrics.Histogram> e : byMode.getValue().entrySet()) {
+                Metrics.Histogram h = e.getValue();
+                double p99 = h.percentile(0.99) / 1e6;
+                report.append(String.format(Locale.ROOT, "  %-12s %-6s %8.1f  (%d, %.1f)%n",
+                        byMode.getKey(), e.getKey(), p99, h.count(), h.max() / 1e6));
+                if (p99 > e.getKey().budgetMs()) {
+                    over.add(String.format(Locale.ROOT, "%s %s p99 %.1f ms > %d ms",
+                            byMode.getKey(), e.getKey(), p99, e.getKey().budgetMs()));
+                }
+            }
+        }
+        assertTrue(report + "over budget: " + over, over.isEmpty());
+    }
+
+    private int storedCount() {
+        try {
+            return TaskStores.get(ctx, mode).count();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private void start() {
+        controller = Robolectric.buildActivity(MainActivity.class).setup();
+        activity = controller.get();
+        list = activity.findViewById(R.id.recycler);
+        mode = MainActivity.Mode.SQLITE;
+        View fab = activity.findViewById(R.id.fabAdd);
+        settle(() -> fab.isEnabled() && list.getAdapter().getItemCount() > 0);
+        quiesce();
+    }
+
+    private void replay(List<Step> trace) {
+        for (Step step : trace) {
+            MainActivity.Mode ranIn = mode;
+            mainNanos = 0;
+            try {
+                if (!run(step)) {
+                    continue; // nothing to edit or delete
+                }
+                quiesce();
+            } catch (AssertionError e) {
+                throw new AssertionError("at \"" + step + "\" in " + ranIn + ": " + e.getMessage(), e);
+            }
+            if (latencies != null) {
+                latencies.computeIfAbsent(ranIn, m -> new EnumMap<>(Op.class))
+                        .computeIfAbsent(step.op, o -> new Metrics.Histogram())
+                        .record(mainNanos);
+            }
+        }
+    }
+
+    /** Performs {@code step} the way a user would; false if it could not apply. */
+    private boolean run(Step step) {
+        switch (step.op) {
+            case ADD:
+                add(step);
+                return true;
+            case EDIT:
+                return edit(step);
+            case DELETE:
+                return delete(step);
+            case TOGGLE:
+                switchTo(mode == MainActivity.Mode.SQLITE ? MainActivity.Mode.SHARED_PREFS : MainActivity.Mode.SQLITE,
+                        () -> activity.findViewById(R.id.switchMode).performClick());
+                return true;
+            default:
+                switchTo(step.mode, () -> shadowOf(activity).clickMenuItem(menuId(step.mode)));
+                return true;
+        }
+    }
+
+    private void add(Step step) {
+        onMain(() -> activity.findViewById(R.id.fabAdd).performClick());
+        ShadowActivity.IntentForResult started = shadowOf(activity).getNextStartedActivityForResult();
+        assertNotNull("FAB did not open the add screen", started);
+        Intent data = new Intent()
+                .putExtra(MainActivity.EXTRA_TITLE, step.title)
+                .putExtra(MainActivity.EXTRA_DEADLINE,
+                        step.dueIn != null ? TaskDates.format(TaskDates.today() + step.dueIn) : "")
+                .putExtra(MainActivity.EXTRA_NOTES, "")
+                .putExtra(MainActivity.EXTRA_STATUS, "Pending");
+        onMain(() -> shadowOf(activity).receiveResult(started.intent, Activity.RESULT_OK, data));
+        stored++;
+    }
+
+    private boolean edit(Step step) {
+        AlertDialog options = longPress(step.pick);
+        if (options == null) {
+            return false;
+        }
+        onMain(() -> clickItem(options, 0));
+        settle(() -> ShadowDialog.getLatestDialog() != options && ShadowDialog.getLatestDialog().isShowing());
+        AlertDialog edit = (AlertDialog) ShadowDialog.getLatestDialog();
+        onMain(() -> {
+            ((TextView) edit.findViewById(R.id.inputTitle)).setText(step.title);
+            edit.findViewById(R.id.btnSave).performClick();
+        });
+        assertFalse("edit dialog stayed open", edit.isShowing());
+        return true;
+    }
+
+    private boolean delete(Step step) {
+        AlertDialog options = longPress(step.pick);
+        if (options == null) {
+            return false;
+        }
+        onMain(() -> clickItem(options, 1));
+        AlertDialog confirm = (AlertDialog) ShadowDialog.getLatestDialog();
+        assertNotSame(options, confirm);
+        onMain(() -> confirm.getButton(DialogInterface.BUTTON_POSITIVE).performClick());
+        stored--;
+        return true;
+    }
+
+    /** Long-presses a visible row and returns the options dialog, or null with no rows. */
+    private AlertDialog longPress(int pick) {
+        LinearLayoutManager lm = (LinearLayoutManager) list.getLayoutManager();
+        int first = lm.findFirstVisibleItemPosition();
+        int shown = lm.findLastVisibleItemPosition() - first + 1;
+        if (first == RecyclerView.NO_POSITION || shown <= 0) {
+            return null;
+        }
+        RecyclerView.ViewHolder holder = list.findViewHolderForAdapterPosition(first + pick % shown);
+        if (holder == null) {
+            return null;
+        }
+        Object before = ShadowDialog.getLatestDialog();
+        onMain(() -> holder.itemView.performLongClick());
+        Object options = ShadowDialog.getLatestDialog();
+        assertNotSame("long-press opened no dialog", before, options);
+        return (AlertDialog) options;
+    }
+
+    private static void clickItem(AlertDialog dialog, int which) {
+        ListView items = dialog.getListView();
+        items.performItemClick(items.getAdapter().getView(which, null, items), which, which);
+    }
+
+    /** Switches storage, then waits for the copy and the new mode's first load. */
+    private void switchTo(MainActivity.Mode to, Runnable action) {
+        if (to == mode) {
+            onMain(action);
+            return;
+        }
+        long reloads = Metrics.histogram(Metrics.Path.RELOAD, to).count();
+        View progress = activity.findViewById(R.id.migrationProgress);
+        onMain(action);
+        mode = to;
+        settle(() -> progress.getVisibility() == View.GONE
+                && Metrics.histogram(Metrics.Path.RELOAD, to).count() > reloads);
+    }
+
+    private static int menuId(MainActivity.Mode mode) {
+        switch (mode) {
+            case SHARED_PREFS:
+                return R.id.action_mode_prefs;
+            case JOURNAL:
+                return R.id.action_mode_journal;
+            case MAPPED:
+                return R.id.action_mode_mapped;
+            default:
+                return R.id.action_mode_sqlite;
+        }
+    }
+
+    /*
+     * ------------------------------ Main thread ------------------------------
+     */
+
+    /** Runs {@code r} on the (test's) main thread and counts its time. */
+    private void onMain(Runnable r) {
+        long t0 = System.nanoTime();
+        r.run();
+        mainNanos += System.nanoTime() - t0;
+    }
+
+    /** Runs queued main-thread work, counted, until {@code done}; background work runs meanwhile. */
+    private void settle(BooleanSupplier done) {
+        ShadowLooper looper = shadowOf(Looper.getMainLooper());
+        long deadline = System.currentTimeMillis() + SETTLE_TIMEOUT_MS;
+        while (true) {
+            onMain(looper::idle);
+            if (done.getAsBoolean()) {
+                return;
+            }
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            sleep(2);
+        }
+    }
+
+    /** Lets background work finish and runs what it posts back, until nothing more comes. */
+    private void quiesce() {
+        ShadowLooper looper = shadowOf(Looper.getMainLooper());
+        long deadline = System.currentTimeMillis() + SETTLE_TIMEOUT_MS;
+        long quietSince = System.currentTimeMillis();
+        while (System.currentTimeMillis() - quietSince < QUIET_MS) {
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            if (!looper.isIdle()) {
+                onMain(looper::idle);
+                quietSince = System.currentTimeMillis();
+            }
+            sleep(2);
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /*
+     * --------------------------------- Traces ---------------------------------
+     */
+
+    /**
+     * {@code perMode} operations in each storage mode, SQLite first: mostly
+     * adds and edits, some deletes, moving on with the switch or the menu.
+     */
+    static List<Step> generate(Random random, int perMode) {
+        List<Step> trace = new ArrayList<>();
+        MainActivity.Mode[] order = {
+                MainActivity.Mode.SQLITE, MainActivity.Mode.SHARED_PREFS,
+                MainActivity.Mode.JOURNAL, MainActivity.Mode.MAPPED };
+        int n = 0;
+        for (int m = 0; m < order.length; m++) {
+            if (m == 1) {
+                trace.add(new Step(Op.TOGGLE, 0, null, null, null));
+            } else if (m > 1) {
+                trace.add(new Step(Op.MODE, 0, null, null, order[m]));
+            }
+            for (int i = 0; i < perMode; i++, n++) {
+                int roll = random.nextInt(100);
+                if (roll < 40) {
+                    Integer dueIn = random.nextBoolean() ? random.nextInt(30) : null;
+                    trace.add(new Step(Op.ADD, 0, dueIn, "Generated " + n, null));
+                } else if (roll < 80) {
+                    trace.add(new Step(Op.EDIT, random.nextInt(16), null, "Edited " + n, null));
+                } else {
+                    trace.add(new Step(Op.DELETE, random.nextInt(16), null, null, null));
+                }
+            }
+        }
+        trace.add(new Step(Op.TOGGLE, 0, null, null, null)); // back to SQLite
+        return trace;
+    }
+
+    /** Reads a trace in the format described in workload/daily.trace. */
+    static List<Step> parse(InputStream in) throws IOException {
+        assertNotNull("trace not found", in);
+        List<Step> trace = new ArrayList<>();
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            int number = 0;
+            while ((line = r.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] words = line.split("\\s+", 2);
+                String rest = words.length > 1 ? words[1] : "";
+                try {
+                    trace.add(parseStep(Op.valueOf(words[0].toUpperCase(Locale.ROOT)), rest));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("line " + number + ": " + line, e);
+                }
+            }
+        }
+        return trace;
+    }
+
+    private static Step parseStep(Op op, String rest) {
+        String[] words = rest.split("\\s+", 2);
+        switch (op) {
+            case ADD:
+                if (words[0].startsWith("+")) {
+                    return new Step(op, 0, Integer.parseInt(words[0].substring(1)),
+                            words.length > 1 ? words[1] : "", null);
+                }
+                return new Step(op, 0, null, rest, null);
+            case EDIT:
+                return new Step(op, Integer.parseInt(words[0]), null, words.length > 1 ? words[1] : "", null);
+            case DELETE:
+                return new Step(op, Integer.parseInt(words[0]), null, null, null);
+            case MODE:
+                return new Step(op, 0, null, null, MainActivity.Mode.valueOf(words[0].toUpperCase(Locale.ROOT)));
+            default:
+                return new Step(op, 0, null, null, null);
+        }
+    }
+}
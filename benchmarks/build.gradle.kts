@@ -0,0 +1,44 @@
+// JMH benchmarks for the persistence and serialization hot paths, on a plain JVM.
+//   ./gradlew :benchmarks:jmh                      all benchmarks
+//   ./gradlew :benchmarks:jmh -Pjmh.includes=Json  a subset (regex on the name)
+// Results: benchmarks/build/results/jmh/results.json
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// The model and codec classes are plain Java; compile them straight from the app
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            include(
+                "com/example/eecs4443lab3/Task.java",
+                "com/example/eecs4443lab3/TaskChangeSet.java",
+                "com/example/eecs4443lab3/TaskDates.java",
+                "com/example/eecs4443lab3/TaskJson.java",
+            )
+        }
+    }
+}
+
+dependencies {
+    implementation(libs.json) // desktop build of the org.json API Android ships
+    jmh(libs.sqlite.jdbc)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    jvmArgs.set(listOf("-Xmx4g")) // the 1M-task JSON document alone is ~100 MB of chars
+    providers.gradleProperty("jmh.includes").orNull?.let { includes.set(listOf(it)) }
+}
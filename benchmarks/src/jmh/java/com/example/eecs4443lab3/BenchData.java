@@ -0,0 +1,36 @@
+package com.example.eecs4443lab3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deterministic task data shared by the benchmarks: picker-style deadlines
+ * spread over a year, notes of a typical length, a quarter of the tasks done.
+ */
+final class BenchData {
+
+    static final long FIRST_DAY = 20_000; // epoch day of the earliest deadline
+    static final String NOTES = "Pick up the printed report from the library, then email the TA.";
+
+    private BenchData() {
+    }
+
+    static List<Task> tasks(int count) {
+        String[] deadlines = deadlines();
+        List<Task> out = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            out.add(new Task(i, "Task " + i, deadlines[i % deadlines.length],
+                    NOTES, i % 4 == 0 ? "Done" : "Pending"));
+        }
+        return out;
+    }
+
+    /** A year of DateFormat.MEDIUM strings, as the date picker writes them. */
+    static String[] deadlines() {
+        String[] out = new String[365];
+        for (int d = 0; d < out.length; d++) {
+            out[d] = TaskDates.format(FIRST_DAY + d);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.eecs4443lab3;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * tasks.db on the desktop sqlite-jdbc driver
+ * ---------------------------------
+ * The Android classes cannot run on a plain JVM, so the SQL of TaskDbHelper
+ * (schema v3, statements) and SqliteTaskStore.readTask is mirrored here; keep
+ * it in step with them.
+ */
+final class BenchDb {
+
+    static final String COLUMNS = "_id, title, deadline_day, deadline_text, notes, status";
+
+    final File dir;
+    final Connection db;
+
+    BenchDb() throws IOException, SQLException {
+        dir = Files.createTempDirectory("task-bench").toFile();
+        db = DriverManager.getConnection("jdbc:sqlite:" + new File(dir, "tasks.db"));
+        try (Statement s = db.createStatement()) {
+            s.execute("PRAGMA journal_mode=WAL");
+            s.execute("PRAGMA synchronous=NORMAL"); // Android's default in WAL mode
+        }
+    }
+
+    /** Drops and recreates an empty tasks table with its indexes. */
+    void resetSchema() throws SQLException {
+        try (Statement s = db.createStatement()) {
+            s.execute("DROP TABLE IF EXISTS tasks");
+            s.execute("CREATE TABLE tasks (" +
+                    "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "title TEXT NOT NULL," +
+                    "deadline_day INTEGER," +
+                    "deadline_text TEXT," +
+                    "notes TEXT," +
+                    "status INTEGER NOT NULL DEFAULT 0)");
+            s.execute("CREATE INDEX tasks_status_deadline ON tasks(status, deadline_day)");
+            s.execute("CREATE INDEX tasks_deadline_status ON tasks(deadline_day, status)");
+        }
+    }
+
+    /** TaskDbHelper.apply for a change set of inserts: one transaction, one reused statement. */
+    int insertAll(List<Task> tasks) throws SQLException {
+        db.setAutoCommit(false);
+        try (PreparedStatement insert = db.prepareStatement(
+                "INSERT INTO tasks(_id, title, deadline_day, deadline_text, notes, status)"
+                        + " VALUES(?,?,?,?,?,?)")) {
+            for (Task t : tasks) {
+                insert.setLong(1, t.id);
+                insert.setString(2, t.title);
+                Long day = TaskDates.toEpochDay(t.deadline);
+                if (day != null) {
+                    insert.setLong(3, day);
+                    insert.setNull(4, Types.VARCHAR);
+                } else {
+                    insert.setNull(3, Types.INTEGER);
+                    insert.setString(4, t.deadline);
+                }
+                insert.setString(5, t.notes);
+                insert.setInt(6, "Done".equalsIgnoreCase(t.status) ? 1 : 0);
+                insert.executeUpdate();
+            }
+            db.commit();
+        } finally {
+            db.setAutoCommit(true);
+        }
+        return tasks.size();
+    }
+
+    /** SqliteTaskStore.readTask over every row of {@code rs}. */
+    static List<Task> read(ResultSet rs) throws SQLException {
+        List<Task> out = new ArrayList<>();
+        try (rs) {
+            while (rs.next()) {
+                long day = rs.getLong(3);
+                String deadline = rs.wasNull() ? rs.getString(4) : TaskDates.format(day);
+                out.add(new Task(rs.getLong(1), rs.getString(2), deadline,
+                        rs.getString(5), rs.getInt(6) == 1 ? "Done" : "Pending"));
+            }
+        }
+        return out;
+    }
+
+    void close() throws SQLException {
+        db.close();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}
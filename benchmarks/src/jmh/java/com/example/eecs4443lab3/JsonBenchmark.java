@@ -0,0 +1,45 @@
+package com.example.eecs4443lab3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SharedPreferences format: every save encodes the whole array and every
+ * load decodes it ({@link TaskJson}, used by {@link PrefsTaskStore}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JsonBenchmark {
+
+    @Param({ "100", "10000", "1000000" })
+    public int size;
+
+    private List<Task> tasks;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        tasks = BenchData.tasks(size);
+        json = TaskJson.encode(tasks);
+    }
+
+    @Benchmark
+    public String encode() {
+        return TaskJson.encode(tasks);
+    }
+
+    @Benchmark
+    public List<Task> decode() {
+        return TaskJson.decode(json);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.eecs4443lab3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Saving {@code size} new tasks into an empty table (see {@link BenchDb#insertAll}). */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SqliteInsertBenchmark {
+
+    @Param({ "100", "10000", "1000000" })
+    public int size;
+
+    private BenchDb db;
+    private List<Task> tasks;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException, SQLException {
+        db = new BenchDb();
+        tasks = BenchData.tasks(size);
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyTable() throws SQLException {
+        db.resetSchema();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        db.close();
+    }
+
+    @Benchmark
+    public int bulkInsert() throws SQLException {
+        return db.insertAll(tasks);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.eecs4443lab3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Reading a table of {@code size} tasks: the full load and one keyset page. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SqliteQueryBenchmark {
+
+    private static final int PAGE_SIZE = 50; // PagedTaskList.PAGE_SIZE
+
+    @Param({ "100", "10000", "1000000" })
+    public int size;
+
+    private BenchDb db;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException, SQLException {
+        db = new BenchDb();
+        db.resetSchema();
+        db.insertAll(BenchData.tasks(size));
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        db.close();
+    }
+
+    /** SqliteTaskStore.loadAll. */
+    @Benchmark
+    public List<Task> selectAll() throws SQLException {
+        try (PreparedStatement q = db.db.prepareStatement(
+                "SELECT " + BenchDb.COLUMNS + " FROM tasks ORDER BY _id DESC")) {
+            return BenchDb.read(q.executeQuery());
+        }
+    }
+
+    /** PagedTaskList: one keyset page from the middle of the table. */
+    @Benchmark
+    public List<Task> selectPage() throws SQLException {
+        try (PreparedStatement q = db.db.prepareStatement(
+                "SELECT " + BenchDb.COLUMNS + " FROM tasks WHERE _id < ? ORDER BY _id DESC LIMIT ?")) {
+            q.setLong(1, size / 2 + 1);
+            q.setInt(2, PAGE_SIZE);
+            return BenchDb.read(q.executeQuery());
+        }
+    }
+
+    /** The typed-column query the composite index serves: pending, due in a week. */
+    @Benchmark
+    public List<Task> selectPendingDueInWeek() throws SQLException {
+        try (PreparedStatement q = db.db.prepareStatement(
+                "SELECT " + BenchDb.COLUMNS + " FROM tasks WHERE status = 0"
+                        + " AND deadline_day BETWEEN ? AND ? ORDER BY deadline_day, _id")) {
+            q.setLong(1, BenchData.FIRST_DAY);
+            q.setLong(2, BenchData.FIRST_DAY + 6);
+            return BenchDb.read(q.executeQuery());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.eecs4443lab3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the in-memory model: Task construction (one per loaded row) and
+ * recording a bulk insert in a TaskChangeSet (what a save hands the store).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TaskBenchmark {
+
+    @Param({ "100", "10000", "1000000" })
+    public int size;
+
+    private String[] titles;
+    private String[] deadlines;
+    private List<Task> tasks;
+
+    @Setup
+    public void setUp() {
+        titles = new String[size];
+        for (int i = 0; i < size; i++) {
+            titles[i] = "Task " + (i + 1);
+        }
+        deadlines = BenchData.deadlines();
+        tasks = BenchData.tasks(size);
+    }
+
+    @Benchmark
+    public void construct(Blackhole bh) {
+        for (int i = 0; i < size; i++) {
+            bh.consume(new Task(i + 1, titles[i], deadlines[i % deadlines.length],
+                    BenchData.NOTES, "Pending"));
+        }
+    }
+
+    @Benchmark
+    public TaskChangeSet markInserted() {
+        TaskChangeSet changes = new TaskChangeSet();
+        for (Task t : tasks) {
+            changes.markInserted(t);
+        }
+        return changes;
+    }
+}
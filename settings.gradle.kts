@@ -21,4 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "EECS4443Lab3"
 include(":app")
+include(":benchmarks")
  
\ No newline at end of file